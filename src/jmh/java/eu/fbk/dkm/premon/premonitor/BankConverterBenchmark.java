@@ -0,0 +1,81 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.rio.RDFHandlerException;
+
+import eu.fbk.dkm.premon.util.BenchmarkFixtures;
+import eu.fbk.rdfpro.RDFHandlers;
+
+/**
+ * Benchmarks {@link BankConverter#convert()} on the fixture PropBank framesets, with and without
+ * the extraction of examples.
+ * <p>
+ * The alignment of example arguments to the example text happens inside {@code convert()}, hence
+ * its cost is the difference between the {@code extractExamples=1} and {@code extractExamples=0}
+ * figures. A new converter is created for each invocation, as converters are not reusable.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BankConverterBenchmark {
+
+    @Param({ "0", "1" })
+    private String extractExamples;
+
+    private File frames;
+
+    private Converter converter;
+
+    @Setup
+    public void setup() throws IOException {
+        this.frames = BenchmarkFixtures.copyFrames();
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkFixtures.delete(this.frames);
+    }
+
+    @Setup(Level.Invocation)
+    public void createConverter() {
+        final Properties properties = new Properties();
+        properties.setProperty("source", "pb17");
+        properties.setProperty("resource", "pb");
+        properties.setProperty("language", "en");
+        properties.setProperty("web", "https://verbs.colorado.edu/%7Empalmer/projects/ace.html");
+        properties.setProperty("extractdefinitions", "1");
+        properties.setProperty("extractexamples", this.extractExamples);
+        this.converter = new PropbankConverter(this.frames, RDFHandlers.NIL, properties,
+                ImmutableMap.of());
+    }
+
+    @Benchmark
+    public int convert() throws IOException, RDFHandlerException {
+        this.converter.convert();
+        return this.converter.getNumFiles();
+    }
+
+}
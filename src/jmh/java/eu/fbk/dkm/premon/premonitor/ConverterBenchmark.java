@@ -0,0 +1,130 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openrdf.model.URI;
+
+import eu.fbk.dkm.premon.util.BenchmarkFixtures;
+import eu.fbk.dkm.premon.util.NF;
+import eu.fbk.dkm.premon.util.URITreeSet;
+import eu.fbk.rdfpro.RDFHandlers;
+
+/**
+ * Benchmarks {@link Converter#createURI(String)} and the {@code uriFor*} builders of
+ * {@link Converter}, invoking them on the roles and rolesets of the fixture {@code roles.tsv}.
+ * <p>
+ * Mappings hashed by {@link Converter#uriForMapping(TreeSet, String, String)} link each fixture
+ * roleset to the same roleset in two other resources, as done for SemLink and PredicateMatrix.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConverterBenchmark {
+
+    private Converter converter;
+
+    private List<String[]> roles;
+
+    private List<String> argNames;
+
+    private List<URI> posURIs;
+
+    private List<TreeSet<URI>> mappings;
+
+    @Setup
+    public void setup() throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty("source", "pb17");
+        properties.setProperty("resource", "pb");
+        properties.setProperty("language", "en");
+        properties.setProperty("web", "https://verbs.colorado.edu/%7Empalmer/projects/ace.html");
+        this.converter = new PropbankConverter(new File("."), RDFHandlers.NIL, properties,
+                ImmutableMap.of());
+
+        this.roles = BenchmarkFixtures.readRoles();
+        this.argNames = Lists.newArrayList();
+        this.posURIs = Lists.newArrayList();
+        this.mappings = Lists.newArrayList();
+        for (final String[] role : this.roles) {
+            this.argNames.add(new NF(role[3], role[4]).getArgName());
+            this.posURIs.add(this.converter.getPosURI(role[1]));
+            final TreeSet<URI> mapping = new URITreeSet();
+            mapping.add(this.converter.uriForRoleset(role[2]));
+            mapping.add(this.converter.uriForRoleset(role[2], "pb215"));
+            mapping.add(this.converter.uriForRoleset(role[2], "on5"));
+            this.mappings.add(mapping);
+        }
+    }
+
+    @Benchmark
+    public void createURI(final Blackhole blackhole) {
+        for (final String[] role : this.roles) {
+            blackhole.consume(Converter.createURI(Converter.NAMESPACE + "pb17-" + role[2]));
+            blackhole.consume(Converter.createURI(Converter.NAMESPACE, role[0] + " " + role[1]));
+        }
+    }
+
+    @Benchmark
+    public void uriForRoleset(final Blackhole blackhole) {
+        for (final String[] role : this.roles) {
+            blackhole.consume(this.converter.uriForRoleset(role[2]));
+        }
+    }
+
+    @Benchmark
+    public void uriForLexicalEntry(final Blackhole blackhole) {
+        for (int i = 0; i < this.roles.size(); ++i) {
+            blackhole.consume(this.converter.uriForLexicalEntry(this.roles.get(i)[0],
+                    this.posURIs.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void uriForConceptualization(final Blackhole blackhole) {
+        for (final String[] role : this.roles) {
+            blackhole.consume(this.converter.uriForConceptualization(role[0], role[1], role[2]));
+        }
+    }
+
+    @Benchmark
+    public void uriForArgument(final Blackhole blackhole) {
+        for (int i = 0; i < this.roles.size(); ++i) {
+            final String argName = this.argNames.get(i);
+            if (argName != null) {
+                blackhole.consume(this.converter.uriForArgument(this.roles.get(i)[2], argName));
+            }
+        }
+    }
+
+    @Benchmark
+    public void uriForMapping(final Blackhole blackhole) {
+        for (final TreeSet<URI> mapping : this.mappings) {
+            blackhole.consume(this.converter.uriForMapping(mapping,
+                    Converter.DEFAULT_PRED_SUFFIX, "sl122c"));
+        }
+    }
+
+}
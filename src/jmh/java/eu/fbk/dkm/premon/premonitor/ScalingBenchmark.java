@@ -0,0 +1,180 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.fbk.dkm.utils.CommandLine;
+
+/**
+ * Runs the whole Premonitor pipeline on {@link SyntheticCorpus} corpora of increasing scale,
+ * recording wall time, heap peak and output size of each run.
+ * <p>
+ * Each run takes place in a child JVM started with the class path of this JVM, so that heap
+ * peaks are not polluted by previous runs and a maximum heap can be set with {@code --xmx}. The
+ * heap peak is the sum of the peak usages of the heap memory pools of the child JVM, and the
+ * output size is the total size of the files written under the output base (statistics and
+ * metrics included). Results are logged and written to {@code scaling.tsv} in the work folder,
+ * next to the corpus ({@code corpus-<scale>}) and the output ({@code output-<scale>}) of each run.
+ * </p>
+ */
+public final class ScalingBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScalingBenchmark.class);
+
+    private static final String HEAP_FILE = "heap-peak.txt";
+
+    private ScalingBenchmark() {
+    }
+
+    public static void main(final String[] args) {
+        try {
+            final CommandLine cmd = CommandLine.parser().withName("scaling-benchmark")
+                    .withHeader("Run Premonitor on synthetic corpora of increasing scale")
+                    .withOption("w", "work", "Work folder (default: a new temporary folder)",
+                            "FOLDER", CommandLine.Type.FILE, true, false, false)
+                    .withOption("s", "scales",
+                            "Comma-separated list of scale factors (default '1,10,100')",
+                            "LIST", CommandLine.Type.STRING, true, false, false)
+                    .withOption("j", "jobs",
+                            "Number of resources converted in parallel (default: # cores)", "N",
+                            CommandLine.Type.POSITIVE_INTEGER, true, false, false)
+                    .withOption(null, "xmx", "Maximum heap of Premonitor runs, e.g. '8g'",
+                            "SIZE", CommandLine.Type.STRING, true, false, false)
+                    .withOption("r", "omit-owl2rl", "Omit OWL2RL reasoning (faster)")
+                    .withLogger(LoggerFactory.getLogger("eu.fbk")).parse(args);
+
+            final File work = cmd.hasOption("w") ? cmd.getOptionValue("w", File.class)
+                    : Files.createTempDir();
+            final int jobs = cmd.getOptionValue("j", Integer.class,
+                    Runtime.getRuntime().availableProcessors());
+            final String xmx = cmd.getOptionValue("xmx", String.class);
+            final boolean owl2rl = !cmd.hasOption("r");
+
+            final StringBuilder report = new StringBuilder();
+            report.append("scale\tlemmas\twallMillis\theapPeakBytes\toutputBytes\n");
+            for (final String token : cmd.getOptionValue("s", String.class, "1,10,100")
+                    .split(",")) {
+                final int scale = Integer.parseInt(token.trim());
+                final File corpus = new File(work, "corpus-" + scale);
+                final File output = new File(work, "output-" + scale);
+                delete(output);
+                output.mkdirs();
+                new SyntheticCorpus(corpus, scale, 1).generate();
+
+                final long ts = System.currentTimeMillis();
+                run(corpus, output, jobs, xmx, owl2rl);
+                final long wallMillis = System.currentTimeMillis() - ts;
+
+                final File heapFile = new File(output, HEAP_FILE);
+                final long heapPeak = Long.parseLong(
+                        Files.toString(heapFile, StandardCharsets.UTF_8).trim());
+                heapFile.delete();
+                final long outputBytes = size(output);
+
+                LOGGER.info("Scale {}: {} ms, {} MB heap peak, {} MB output", scale, wallMillis,
+                        heapPeak >> 20, outputBytes >> 20);
+                report.append(String.format(Locale.ROOT, "%d\t%d\t%d\t%d\t%d\n", scale,
+                        scale * 300, wallMillis, heapPeak, outputBytes));
+            }
+
+            final File reportFile = new File(work, "scaling.tsv");
+            try (Writer writer = Files.newWriter(reportFile, StandardCharsets.UTF_8)) {
+                writer.write(report.toString());
+            }
+            LOGGER.info("Results written to {}", reportFile);
+
+        } catch (final Throwable ex) {
+            CommandLine.fail(ex);
+        }
+    }
+
+    private static void run(final File corpus, final File output, final int jobs,
+            final String xmx, final boolean owl2rl) throws IOException, InterruptedException {
+
+        final List<String> command = Lists.newArrayList();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getAbsolutePath());
+        if (xmx != null) {
+            command.add("-Xmx" + xmx);
+        }
+        command.add("-classpath");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Run.class.getName());
+        command.add(new File(output, HEAP_FILE).getAbsolutePath());
+        command.add("-i");
+        command.add(corpus.getAbsolutePath());
+        command.add("-p");
+        command.add(new File(corpus, "premonitor.properties").getAbsolutePath());
+        command.add("-b");
+        command.add(new File(output, "premon").getAbsolutePath());
+        command.add("-j");
+        command.add(Integer.toString(jobs));
+        command.add("-C");
+        if (!owl2rl) {
+            command.add("-r");
+        }
+
+        final Process process = new ProcessBuilder(command).inheritIO().start();
+        final int status = process.waitFor();
+        if (status != 0) {
+            throw new IOException("Premonitor run on " + corpus + " failed with status " + status);
+        }
+    }
+
+    private static long size(final File file) {
+        long size = 0;
+        final File[] files = file.listFiles();
+        if (files == null) {
+            return file.length();
+        }
+        for (final File child : files) {
+            size += size(child);
+        }
+        return size;
+    }
+
+    private static void delete(final File file) {
+        final File[] files = file.listFiles();
+        if (files != null) {
+            for (final File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Entry point of child JVMs: runs Premonitor with the arguments following the first one, then
+     * writes the heap peak in bytes to the file named by the first argument.
+     */
+    public static final class Run {
+
+        public static void main(final String[] args) throws IOException {
+            final String[] premonitorArgs = new String[args.length - 1];
+            System.arraycopy(args, 1, premonitorArgs, 0, premonitorArgs.length);
+            Premonitor.main(premonitorArgs);
+
+            long heapPeak = 0;
+            for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                    heapPeak += pool.getPeakUsage().getUsed();
+                }
+            }
+            Files.write(Long.toString(heapPeak), new File(args[0]), StandardCharsets.UTF_8);
+        }
+
+    }
+
+}
@@ -0,0 +1,677 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.common.io.Resources;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import eu.fbk.dkm.utils.CommandLine;
+
+/**
+ * Generates a synthetic corpus of PropBank framesets, VerbNet classes, FrameNet frames and
+ * lexical units and PredicateMatrix rows, plus the Premonitor properties file converting them.
+ * <p>
+ * The corpus is fully determined by its scale factor and random seed. At scale 1 it contains 300
+ * lemmas, 30 VerbNet classes and 50 FrameNet frames, all the counts growing linearly with the
+ * scale. Lemmas are pseudo-words built from syllables, and resources reference each other as the
+ * real ones do: PropBank rolesets name their VerbNet class and FrameNet frame, VerbNet members
+ * list their PropBank groupings, and PredicateMatrix rows align roles of the three resources, so
+ * that mapping extraction and filtering are exercised too. PropBank framesets declare and are
+ * valid against {@code frameset.dtd}, which is copied next to them (use {@code --validate} to
+ * check it). Files are laid out as in the distributions of the resources:
+ * </p>
+ * <ul>
+ * <li>{@code propbank/*.xml} - one frameset per lemma;</li>
+ * <li>{@code verbnet/*.xml} - one {@code VNCLASS} per file;</li>
+ * <li>{@code framenet/} - {@code frame/*.xml}, {@code lu/*.xml}, {@code luIndex.xml},
+ * {@code semTypes.xml} and {@code frRelation.xml};</li>
+ * <li>{@code predicatematrix/PredicateMatrix.v1.3.txt} - tab-separated rows;</li>
+ * <li>{@code premonitor.properties} - resources {@code pb17}, {@code vn32}, {@code fn15} and
+ * {@code pm13}, with folders relative to the corpus folder.</li>
+ * </ul>
+ */
+public final class SyntheticCorpus {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SyntheticCorpus.class);
+
+    private static final int LEMMAS_PER_SCALE = 300;
+
+    private static final int CLASSES_PER_SCALE = 30;
+
+    private static final int FRAMES_PER_SCALE = 50;
+
+    private static final String DATE = "01/28/2002 04:30:50 PST Mon";
+
+    private static final String FN_NAMESPACE = "http://framenet.icsi.berkeley.edu";
+
+    private static final String[] SYLLABLES = new String[] { "ba", "ko", "ri", "te", "lu", "ma",
+            "no", "si", "de", "pa", "vi", "go", "fe", "zu", "ca", "lo" };
+
+    private static final String[] NOUNS = new String[] { "farmer", "stone", "river", "teacher",
+            "letter", "city", "engine", "garden", "doctor", "market", "bridge", "song" };
+
+    private static final String[] THEMATIC_ROLES = new String[] { "Agent", "Theme", "Patient",
+            "Location", "Instrument", "Source", "Destination", "Recipient", "Experiencer",
+            "Stimulus", "Beneficiary", "Topic" };
+
+    private static final String[] FUNCTION_TAGS = new String[] { "pag", "ppt", "gol", "dir",
+            "loc", "ext", "com" };
+
+    private static final String[] MODIFIERS = new String[] { "tmp", "loc", "mnr", "adv" };
+
+    private static final String[] MODIFIER_TEXTS = new String[] { "yesterday", "at home",
+            "slowly", "again" };
+
+    private static final String[] RESTRICTIONS = new String[] { "animate", "concrete", "human",
+            "abstract", "artifact" };
+
+    private static final String[] FRAME_SUFFIXES = new String[] { "action", "change", "state",
+            "scenario", "event" };
+
+    private static final String[] CORE_FES = new String[] { "Agent", "Theme", "Goal", "Source",
+            "Cause" };
+
+    private static final String[] PERIPHERAL_FES = new String[] { "Time", "Place", "Manner",
+            "Means", "Purpose" };
+
+    private static final String[] SEM_TYPES = new String[] { "Physical_entity",
+            "Physical_object", "Sentient", "Location", "Time" };
+
+    private static final String[] LU_STATUSES = new String[] { "Finished_Initial", "Created",
+            "In_Use" };
+
+    private final File folder;
+
+    private final int numLemmas;
+
+    private final int numClasses;
+
+    private final int numFrames;
+
+    private final long seed;
+
+    private final String[][] classRoles;
+
+    private final String[][] frameElements;
+
+    public SyntheticCorpus(final File folder, final int scale, final long seed) {
+        this.folder = folder;
+        this.numLemmas = LEMMAS_PER_SCALE * scale;
+        this.numClasses = CLASSES_PER_SCALE * scale;
+        this.numFrames = FRAMES_PER_SCALE * scale;
+        this.seed = seed;
+
+        // Thematic roles of each VerbNet class (first is Agent) and FEs of each frame (core first)
+        final Random random = new Random(seed);
+        this.classRoles = new String[this.numClasses][];
+        for (int c = 0; c < this.numClasses; ++c) {
+            this.classRoles[c] = pick(random, THEMATIC_ROLES, 1, 2 + random.nextInt(3));
+        }
+        this.frameElements = new String[this.numFrames][];
+        for (int f = 0; f < this.numFrames; ++f) {
+            final String[] core = pick(random, CORE_FES, 0, 2 + random.nextInt(2));
+            final String[] peripheral = pick(random, PERIPHERAL_FES, 0, 2);
+            final String[] fes = new String[core.length + peripheral.length];
+            System.arraycopy(core, 0, fes, 0, core.length);
+            System.arraycopy(peripheral, 0, fes, core.length, peripheral.length);
+            this.frameElements[f] = fes;
+        }
+    }
+
+    public static void main(final String[] args) {
+        try {
+            final CommandLine cmd = CommandLine.parser().withName("synthetic-corpus")
+                    .withHeader("Generate a synthetic corpus of predicate resources")
+                    .withOption("o", "output", "Output folder", "FOLDER",
+                            CommandLine.Type.FILE, true, false, true)
+                    .withOption("s", "scale", "Scale factor (default 1)", "N",
+                            CommandLine.Type.POSITIVE_INTEGER, true, false, false)
+                    .withOption(null, "seed", "Random seed (default 1)", "N",
+                            CommandLine.Type.POSITIVE_INTEGER, true, false, false)
+                    .withOption(null, "validate", "Validate PropBank framesets against the DTD")
+                    .withLogger(LoggerFactory.getLogger("eu.fbk")).parse(args);
+
+            final SyntheticCorpus corpus = new SyntheticCorpus(
+                    cmd.getOptionValue("o", File.class), cmd.getOptionValue("s", Integer.class, 1),
+                    cmd.getOptionValue("seed", Integer.class, 1));
+            corpus.generate();
+            if (cmd.hasOption("validate")) {
+                corpus.validate();
+            }
+
+        } catch (final Throwable ex) {
+            CommandLine.fail(ex);
+        }
+    }
+
+    /**
+     * Writes the corpus, replacing any file already in the output folder.
+     */
+    public void generate() throws IOException {
+        final long ts = System.currentTimeMillis();
+        writeProperties();
+        writePropbank();
+        writeVerbnet();
+        writeFramenet();
+        writePredicateMatrix();
+        LOGGER.info("Generated {} lemmas, {} VerbNet classes, {} FrameNet frames in {} ({} ms)",
+                this.numLemmas, this.numClasses, this.numFrames, this.folder,
+                System.currentTimeMillis() - ts);
+    }
+
+    /**
+     * Checks that the generated PropBank framesets are valid against {@code frameset.dtd}.
+     */
+    public void validate() throws IOException {
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setValidating(true);
+        final ErrorHandler handler = new ErrorHandler() {
+
+            @Override
+            public void warning(final SAXParseException ex) {
+                LOGGER.warn(ex.getMessage());
+            }
+
+            @Override
+            public void error(final SAXParseException ex) throws SAXException {
+                throw ex;
+            }
+
+            @Override
+            public void fatalError(final SAXParseException ex) throws SAXException {
+                throw ex;
+            }
+
+        };
+        for (int i = 0; i < this.numLemmas; ++i) {
+            final File file = new File(this.folder, "propbank/" + lemma(i) + ".xml");
+            try {
+                final DocumentBuilder builder = factory.newDocumentBuilder();
+                builder.setErrorHandler(handler);
+                builder.parse(file);
+            } catch (final Exception ex) {
+                throw new IOException("Invalid frameset " + file + ": " + ex.getMessage(), ex);
+            }
+        }
+        LOGGER.info("Validated {} PropBank framesets", this.numLemmas);
+    }
+
+    private void writeProperties() throws IOException {
+        final String vnPath = new File(this.folder, "verbnet").getAbsolutePath();
+        final StringBuilder out = new StringBuilder();
+        out.append("# Synthetic corpus, scale ").append(this.numLemmas / LEMMAS_PER_SCALE)
+                .append(", seed ").append(this.seed).append("\n\n");
+        resource(out, 1, "PropBank (synthetic)", "PropbankConverter", "pb", "pb17", "propbank",
+                "resource1.extractexamples = 1\nresource1.extractdefinitions = 1\n"
+                        + "resource1.ontonotes = 0\nresource1.extractnonverbs = 0\n"
+                        + "resource1.linkfn = fn15\nresource1.linkvn = vn32\n"
+                        + "resource1.vnpath = " + vnPath + "\n");
+        resource(out, 2, "VerbNet (synthetic)", "VerbnetConverter", "vn", "vn32", "verbnet",
+                "resource2.extractexamples = 1\nresource2.linkpb = pb17\n");
+        resource(out, 3, "FrameNet (synthetic)", "FramenetConverter", "fn", "fn15", "framenet",
+                "resource3.extractexamples = 1\nresource3.thisversion = 1.5\n");
+        resource(out, 4, "Predicate Matrix (synthetic)", "PredMatConverter", "pm", "pm13",
+                "predicatematrix", "resource4.linkfn = fn15\nresource4.linkvn = vn32\n"
+                        + "resource4.linkpb = pb17\nresource4.vnpath = " + vnPath + "\n");
+        write(new File(this.folder, "premonitor.properties"), out);
+    }
+
+    private static void resource(final StringBuilder out, final int id, final String label,
+            final String converter, final String resource, final String source,
+            final String folder, final String extra) {
+        final String p = "resource" + id + ".";
+        out.append(p).append("label = ").append(label).append('\n');
+        out.append(p).append("class = eu.fbk.dkm.premon.premonitor.").append(converter)
+                .append('\n');
+        out.append(p).append("resource = ").append(resource).append('\n');
+        out.append(p).append("source = ").append(source).append('\n');
+        out.append(p).append("folder = ").append(folder).append('\n');
+        out.append(p).append("language = en\n");
+        out.append(p).append("web = http://example.org/").append(source).append('\n');
+        out.append(p).append("active = 1\n");
+        out.append(extra).append('\n');
+    }
+
+    private void writePropbank() throws IOException {
+        final File dir = new File(this.folder, "propbank");
+        dir.mkdirs();
+        Resources.asByteSource(SyntheticCorpus.class.getResource("/frameset.dtd"))
+                .copyTo(Files.asByteSink(new File(dir, "frameset.dtd")));
+
+        for (int i = 0; i < this.numLemmas; ++i) {
+            final Random random = new Random(this.seed * 31 + i);
+            final String lemma = lemma(i);
+            final int c = i % this.numClasses;
+            final int f = i % this.numFrames;
+            final String[] roles = this.classRoles[c];
+
+            final StringBuilder out = new StringBuilder();
+            out.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.append("<!DOCTYPE frameset SYSTEM \"frameset.dtd\">\n");
+            out.append("<frameset>\n");
+            out.append("  <note>Synthetic frameset</note>\n");
+            out.append("  <predicate lemma=\"").append(lemma).append("\">\n");
+            final int numRolesets = 1 + random.nextInt(3);
+            for (int r = 1; r <= numRolesets; ++r) {
+                final boolean mapped = r == 1;
+                out.append("    <roleset id=\"").append(rolesetID(i, r)).append("\" name=\"")
+                        .append(lemma).append(" sense ").append(r).append("\" vncls=\"")
+                        .append(mapped ? classNumber(c, i) : "-").append("\" framnet=\"")
+                        .append(mapped ? frameName(f) : "").append("\">\n");
+                out.append("      <roles>\n");
+                final int numArgs = mapped ? roles.length : 2 + random.nextInt(2);
+                for (int n = 0; n < numArgs; ++n) {
+                    out.append("        <role descr=\"").append(noun(i + n)).append(" of ")
+                            .append(lemma).append("\" n=\"").append(n).append("\" f=\"")
+                            .append(FUNCTION_TAGS[random.nextInt(FUNCTION_TAGS.length)])
+                            .append("\"");
+                    if (mapped) {
+                        out.append(">\n          <vnrole vncls=\"").append(classNumber(c, i))
+                                .append("\" vntheta=\"").append(roles[n].toLowerCase())
+                                .append("\"/>\n        </role>\n");
+                    } else {
+                        out.append("/>\n");
+                    }
+                }
+                out.append("      </roles>\n");
+                final int numExamples = 1 + random.nextInt(2);
+                for (int e = 0; e < numExamples; ++e) {
+                    final String arg0 = "the " + noun(i + e);
+                    final String rel = lemma + "s";
+                    final String arg1 = "the " + noun(i + e + 1);
+                    final int m = random.nextInt(MODIFIERS.length);
+                    out.append("      <example name=\"example ").append(e + 1)
+                            .append("\" type=\"synthetic\">\n");
+                    out.append("        <inflection person=\"third\" tense=\"present\" "
+                            + "aspect=\"ns\" voice=\"active\" form=\"full\"/>\n");
+                    out.append("        <text>").append(capitalize(arg0)).append(' ').append(rel)
+                            .append(' ').append(arg1).append(' ').append(MODIFIER_TEXTS[m])
+                            .append(".</text>\n");
+                    out.append("        <arg n=\"0\">").append(capitalize(arg0))
+                            .append("</arg>\n");
+                    out.append("        <rel>").append(rel).append("</rel>\n");
+                    out.append("        <arg n=\"1\">").append(arg1).append("</arg>\n");
+                    out.append("        <arg n=\"m\" f=\"").append(MODIFIERS[m]).append("\">")
+                            .append(MODIFIER_TEXTS[m]).append("</arg>\n");
+                    out.append("      </example>\n");
+                }
+                out.append("    </roleset>\n");
+            }
+            out.append("  </predicate>\n");
+            out.append("</frameset>\n");
+            write(new File(dir, lemma + ".xml"), out);
+        }
+    }
+
+    private void writeVerbnet() throws IOException {
+        final File dir = new File(this.folder, "verbnet");
+        dir.mkdirs();
+        for (int c = 0; c < this.numClasses; ++c) {
+            final String id = classID(c);
+            final String[] roles = this.classRoles[c];
+            final List<Integer> members = Lists.newArrayList();
+            final List<Integer> subMembers = Lists.newArrayList();
+            for (int i = c; i < this.numLemmas; i += this.numClasses) {
+                (hasSubclass(c) && i / this.numClasses % 2 == 1 ? subMembers : members).add(i);
+            }
+
+            final StringBuilder out = new StringBuilder();
+            out.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.append("<VNCLASS ID=\"").append(id).append("\">\n");
+            appendVerbnetClass(out, c, members, roles, "  ");
+            out.append("  <SUBCLASSES>\n");
+            if (!subMembers.isEmpty()) {
+                out.append("    <VNSUBCLASS ID=\"").append(id).append("-1\">\n");
+                appendVerbnetClass(out, c, subMembers, new String[0], "      ");
+                out.append("      <SUBCLASSES/>\n");
+                out.append("    </VNSUBCLASS>\n");
+            }
+            out.append("  </SUBCLASSES>\n");
+            out.append("</VNCLASS>\n");
+            write(new File(dir, id + ".xml"), out);
+        }
+    }
+
+    private void appendVerbnetClass(final StringBuilder out, final int c,
+            final List<Integer> members, final String[] roles, final String indent) {
+        out.append(indent).append("<MEMBERS>\n");
+        for (final int i : members) {
+            out.append(indent).append("  <MEMBER name=\"").append(lemma(i))
+                    .append("\" wn=\"\" grouping=\"").append(rolesetID(i, 1)).append("\"/>\n");
+        }
+        out.append(indent).append("</MEMBERS>\n");
+        out.append(indent).append("<THEMROLES>\n");
+        for (int n = 0; n < roles.length; ++n) {
+            out.append(indent).append("  <THEMROLE type=\"").append(roles[n]).append("\">\n");
+            out.append(indent).append("    <SELRESTRS>");
+            if (n < 2) {
+                out.append("<SELRESTR Value=\"+\" type=\"")
+                        .append(RESTRICTIONS[(c + n) % RESTRICTIONS.length]).append("\"/>");
+            }
+            out.append("</SELRESTRS>\n");
+            out.append(indent).append("  </THEMROLE>\n");
+        }
+        out.append(indent).append("</THEMROLES>\n");
+        out.append(indent).append("<FRAMES>\n");
+        if (roles.length >= 2) {
+            final String verb = lemma(members.isEmpty() ? c : members.get(0)) + "s";
+            out.append(indent).append("  <FRAME>\n");
+            out.append(indent).append("    <DESCRIPTION descriptionNumber=\"0.2\" "
+                    + "primary=\"NP V NP\" secondary=\"Basic Transitive\" xtag=\"0.2\"/>\n");
+            out.append(indent).append("    <EXAMPLES>\n");
+            out.append(indent).append("      <EXAMPLE>The ").append(NOUNS[c % NOUNS.length])
+                    .append(' ').append(verb).append(" the ")
+                    .append(NOUNS[(c + 1) % NOUNS.length]).append(".</EXAMPLE>\n");
+            out.append(indent).append("    </EXAMPLES>\n");
+            out.append(indent).append("    <SYNTAX>\n");
+            out.append(indent).append("      <NP value=\"").append(roles[0])
+                    .append("\"><SYNRESTRS/></NP>\n");
+            out.append(indent).append("      <VERB/>\n");
+            out.append(indent).append("      <NP value=\"").append(roles[1])
+                    .append("\"><SYNRESTRS/></NP>\n");
+            out.append(indent).append("    </SYNTAX>\n");
+            out.append(indent).append("    <SEMANTICS>\n");
+            out.append(indent).append("      <PRED value=\"cause\">\n");
+            out.append(indent).append("        <ARGS>\n");
+            out.append(indent).append("          <ARG type=\"ThemRole\" value=\"")
+                    .append(roles[0]).append("\"/>\n");
+            out.append(indent).append("          <ARG type=\"Event\" value=\"E\"/>\n");
+            out.append(indent).append("        </ARGS>\n");
+            out.append(indent).append("      </PRED>\n");
+            out.append(indent).append("      <PRED value=\"motion\">\n");
+            out.append(indent).append("        <ARGS>\n");
+            out.append(indent).append("          <ARG type=\"Event\" value=\"during(E)\"/>\n");
+            out.append(indent).append("          <ARG type=\"ThemRole\" value=\"")
+                    .append(roles[1]).append("\"/>\n");
+            out.append(indent).append("        </ARGS>\n");
+            out.append(indent).append("      </PRED>\n");
+            out.append(indent).append("    </SEMANTICS>\n");
+            out.append(indent).append("  </FRAME>\n");
+        }
+        out.append(indent).append("</FRAMES>\n");
+    }
+
+    private void writeFramenet() throws IOException {
+        final File dir = new File(this.folder, "framenet");
+        new File(dir, "frame").mkdirs();
+        new File(dir, "lu").mkdirs();
+
+        // luIndex.xml, only LU statuses are used by the converter
+        final StringBuilder index = new StringBuilder();
+        index.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        index.append("<luIndex xmlns=\"").append(FN_NAMESPACE).append("\">\n");
+        index.append("  <legend>\n");
+        for (final String status : LU_STATUSES) {
+            index.append("    <statusType name=\"").append(status).append("\" description=\"")
+                    .append(status.replace('_', ' ')).append(" status\"/>\n");
+        }
+        index.append("  </legend>\n");
+        for (int i = 0; i < this.numLemmas; ++i) {
+            final int f = i % this.numFrames;
+            index.append("  <lu hasAnnotation=\"true\" frameID=\"").append(frameID(f))
+                    .append("\" frameName=\"").append(frameName(f))
+                    .append("\" status=\"").append(LU_STATUSES[i % LU_STATUSES.length])
+                    .append("\" name=\"").append(lemma(i)).append(".v\" ID=\"").append(luID(i))
+                    .append("\"/>\n");
+        }
+        index.append("</luIndex>\n");
+        write(new File(dir, "luIndex.xml"), index);
+
+        // semTypes.xml, a chain of semantic types
+        final StringBuilder semTypes = new StringBuilder();
+        semTypes.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        semTypes.append("<semTypes xmlns=\"").append(FN_NAMESPACE).append("\">\n");
+        for (int s = 0; s < SEM_TYPES.length; ++s) {
+            semTypes.append("  <semType ID=\"").append(s + 1).append("\" abbrev=\"")
+                    .append(SEM_TYPES[s].substring(0, 4)).append("\" name=\"")
+                    .append(SEM_TYPES[s]).append("\">\n");
+            semTypes.append("    <definition>Synthetic semantic type</definition>\n");
+            if (s > 0) {
+                semTypes.append("    <superType superTypeName=\"").append(SEM_TYPES[s - 1])
+                        .append("\" supID=\"").append(s).append("\"/>\n");
+            }
+            semTypes.append("  </semType>\n");
+        }
+        semTypes.append("</semTypes>\n");
+        write(new File(dir, "semTypes.xml"), semTypes);
+
+        // frRelation.xml, frames form a binary inheritance tree
+        final StringBuilder relations = new StringBuilder();
+        relations.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        relations.append("<frameRelations xmlns=\"").append(FN_NAMESPACE).append("\">\n");
+        relations.append("  <frameRelationType name=\"Inheritance\" superFrameName=\"Parent\" "
+                + "subFrameName=\"Child\" ID=\"1\">\n");
+        for (int f = 1; f < this.numFrames; ++f) {
+            final int p = (f - 1) / 2;
+            relations.append("    <frameRelation subFrameName=\"").append(frameName(f))
+                    .append("\" superFrameName=\"").append(frameName(p)).append("\" subID=\"")
+                    .append(frameID(f)).append("\" supID=\"").append(frameID(p))
+                    .append("\" ID=\"").append(f).append("\">\n");
+            for (final String fe : this.frameElements[f]) {
+                for (final String superFE : this.frameElements[p]) {
+                    if (fe.equals(superFE)) {
+                        relations.append("      <FERelation subFEName=\"").append(fe)
+                                .append("\" superFEName=\"").append(fe).append("\"/>\n");
+                    }
+                }
+            }
+            relations.append("    </frameRelation>\n");
+        }
+        relations.append("  </frameRelationType>\n");
+        relations.append("</frameRelations>\n");
+        write(new File(dir, "frRelation.xml"), relations);
+
+        // Frames, with FEs, parent frame and LUs
+        for (int f = 0; f < this.numFrames; ++f) {
+            final String[] fes = this.frameElements[f];
+            final StringBuilder out = new StringBuilder();
+            out.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.append("<frame cBy=\"SYN\" cDate=\"").append(DATE).append("\" name=\"")
+                    .append(frameName(f)).append("\" ID=\"").append(frameID(f))
+                    .append("\" xmlns=\"").append(FN_NAMESPACE).append("\">\n");
+            out.append("  <definition>&lt;def-root&gt;A synthetic frame about ")
+                    .append(lemma(f)).append(".&lt;/def-root&gt;</definition>\n");
+            for (int e = 0; e < fes.length; ++e) {
+                final boolean core = e < fes.length - 2;
+                out.append("  <FE coreType=\"").append(core ? "Core" : "Peripheral")
+                        .append("\" cBy=\"SYN\" cDate=\"").append(DATE).append("\" abbrev=\"")
+                        .append(fes[e].substring(0, 3)).append("\" name=\"").append(fes[e])
+                        .append("\" ID=\"").append(frameID(f) * 10 + e).append("\">\n");
+                out.append("    <definition>&lt;def-root&gt;The ").append(fes[e].toLowerCase())
+                        .append(".&lt;/def-root&gt;</definition>\n");
+                if (e == 0) {
+                    out.append("    <semType name=\"Sentient\" ID=\"3\"/>\n");
+                }
+                out.append("  </FE>\n");
+            }
+            out.append("  <FEcoreSet>\n");
+            for (int e = 0; e < fes.length - 2; ++e) {
+                out.append("    <memberFE name=\"").append(fes[e]).append("\" ID=\"")
+                        .append(frameID(f) * 10 + e).append("\"/>\n");
+            }
+            out.append("  </FEcoreSet>\n");
+            if (f > 0) {
+                out.append("  <frameRelation type=\"Inherits from\">\n");
+                out.append("    <relatedFrame ID=\"").append(frameID((f - 1) / 2)).append("\">")
+                        .append(frameName((f - 1) / 2)).append("</relatedFrame>\n");
+                out.append("  </frameRelation>\n");
+            }
+            for (int i = f; i < this.numLemmas; i += this.numFrames) {
+                out.append("  <lexUnit status=\"").append(LU_STATUSES[i % LU_STATUSES.length])
+                        .append("\" POS=\"V\" name=\"").append(lemma(i)).append(".v\" ID=\"")
+                        .append(luID(i)).append("\" lemmaID=\"").append(i)
+                        .append("\" cBy=\"SYN\" cDate=\"").append(DATE).append("\">\n");
+                out.append("    <definition>COD: to ").append(lemma(i))
+                        .append(" something.</definition>\n");
+                out.append("    <sentenceCount annotated=\"1\" total=\"1\"/>\n");
+                out.append("    <lexeme order=\"1\" headword=\"false\" breakBefore=\"false\" "
+                        + "POS=\"V\" name=\"").append(lemma(i)).append("\"/>\n");
+                out.append("  </lexUnit>\n");
+            }
+            out.append("</frame>\n");
+            write(new File(dir, "frame/" + frameName(f) + ".xml"), out);
+        }
+
+        // LUs, with one annotated sentence each
+        for (int i = 0; i < this.numLemmas; ++i) {
+            final int f = i % this.numFrames;
+            final String[] fes = this.frameElements[f];
+            final String arg0 = "The " + noun(i);
+            final String target = lemma(i) + "s";
+            final String arg1 = "the " + noun(i + 1);
+            final String text = arg0 + " " + target + " " + arg1 + " .";
+            final int targetStart = arg0.length() + 1;
+            final int arg1Start = targetStart + target.length() + 1;
+
+            final StringBuilder out = new StringBuilder();
+            out.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.append("<lexUnit status=\"").append(LU_STATUSES[i % LU_STATUSES.length])
+                    .append("\" POS=\"V\" name=\"").append(lemma(i)).append(".v\" ID=\"")
+                    .append(luID(i)).append("\" frame=\"").append(frameName(f))
+                    .append("\" frameID=\"").append(frameID(f))
+                    .append("\" totalAnnotated=\"1\" xmlns=\"").append(FN_NAMESPACE)
+                    .append("\">\n");
+            out.append("  <definition>COD: to ").append(lemma(i))
+                    .append(" something.</definition>\n");
+            out.append("  <lexeme order=\"1\" headword=\"false\" breakBefore=\"false\" "
+                    + "POS=\"V\" name=\"").append(lemma(i)).append("\"/>\n");
+            out.append("  <subCorpus name=\"synthetic\">\n");
+            out.append("    <sentence sentNo=\"1\" aPos=\"0\" ID=\"").append(100000 + i)
+                    .append("\">\n");
+            out.append("      <text>").append(text).append("</text>\n");
+            out.append("      <annotationSet cDate=\"").append(DATE)
+                    .append("\" status=\"MANUAL\" ID=\"").append(200000 + i).append("\">\n");
+            out.append("        <layer rank=\"1\" name=\"FE\">\n");
+            out.append("          <label end=\"").append(arg0.length() - 1)
+                    .append("\" start=\"0\" name=\"").append(fes[0]).append("\"/>\n");
+            out.append("          <label end=\"").append(arg1Start + arg1.length() - 1)
+                    .append("\" start=\"").append(arg1Start).append("\" name=\"")
+                    .append(fes[1]).append("\"/>\n");
+            out.append("        </layer>\n");
+            out.append("        <layer rank=\"1\" name=\"Target\">\n");
+            out.append("          <label end=\"").append(targetStart + target.length() - 1)
+                    .append("\" start=\"").append(targetStart).append("\" name=\"Target\"/>\n");
+            out.append("        </layer>\n");
+            out.append("      </annotationSet>\n");
+            out.append("    </sentence>\n");
+            out.append("  </subCorpus>\n");
+            out.append("</lexUnit>\n");
+            write(new File(dir, "lu/lu" + luID(i) + ".xml"), out);
+        }
+    }
+
+    private void writePredicateMatrix() throws IOException {
+        final File dir = new File(this.folder, "predicatematrix");
+        dir.mkdirs();
+        final StringBuilder out = new StringBuilder();
+        out.append("1_ID_LANG\t2_ID_POS\t3_ID_PRED\t4_ID_ROLE\t5_VN_CLASS\t6_VN_CLASS_NUMBER\t"
+                + "7_VN_SUBCLASS\t8_VN_SUBCLASS_NUMBER\t9_VN_LEMA\t10_VN_ROLE\t11_WN_SENSE\t"
+                + "12_MCR_iliOffset\t13_FN_FRAME\t14_FN_LE\t15_FN_FRAME_ELEMENT\t16_PB_ROLESET\t"
+                + "17_PB_ARG\t18_MCR_BC\t19_MCR_DOMAIN\t20_MCR_SUMO\t21_MCR_TO\t22_MCR_LEXNAME\t"
+                + "23_MCR_BLC\t24_WN_SENSE_FREQ\t25_WN_SYNSET_REL_NUM\t26_ESO_CLASS\t"
+                + "27_ESO_ROLE\n");
+        for (int i = 0; i < this.numLemmas; ++i) {
+            final int c = i % this.numClasses;
+            final int f = i % this.numFrames;
+            final String[] roles = this.classRoles[c];
+            final String[] fes = this.frameElements[f];
+            final String number = classNumber(c, i);
+            final boolean sub = !number.equals(classNumber(c, c));
+            for (int n = 0; n < roles.length; ++n) {
+                out.append("id:eng\tid:v\tid:").append(rolesetID(i, 1)).append("\tid:")
+                        .append(n).append("\tvn:").append(classNumber(c, c)).append("\tvn:")
+                        .append(classNumber(c, c)).append("\tvn:")
+                        .append(sub ? number : "NULL").append("\tvn:")
+                        .append(sub ? number : "NULL").append("\tvn:").append(lemma(i))
+                        .append("\tvn:").append(roles[n]).append("\twn:NULL\tmcr:NULL\tfn:")
+                        .append(frameName(f)).append("\tfn:").append(lemma(i)).append(".v\tfn:")
+                        .append(n < fes.length - 2 ? fes[n] : "NULL").append("\tpb:")
+                        .append(rolesetID(i, 1)).append("\tpb:").append(n);
+                for (int k = 18; k <= 27; ++k) {
+                    out.append("\tid:NULL");
+                }
+                out.append('\n');
+            }
+        }
+        write(new File(dir, "PredicateMatrix.v1.3.txt"), out);
+    }
+
+    private String classID(final int c) {
+        return lemma(c) + "-" + classNumber(c, c);
+    }
+
+    private String classNumber(final int c, final int lemma) {
+        final String number = 10 + c % 80 + "." + (1 + c / 80);
+        final boolean sub = hasSubclass(c) && lemma / this.numClasses % 2 == 1;
+        return sub ? number + "-1" : number;
+    }
+
+    private static boolean hasSubclass(final int c) {
+        return c % 3 == 0;
+    }
+
+    private static String frameName(final int f) {
+        return capitalize(lemma(f)) + "_" + FRAME_SUFFIXES[f % FRAME_SUFFIXES.length];
+    }
+
+    private static int frameID(final int f) {
+        return 10 + f;
+    }
+
+    private static int luID(final int i) {
+        return 1000 + i;
+    }
+
+    private static String rolesetID(final int i, final int r) {
+        return lemma(i) + ".0" + r;
+    }
+
+    private static String lemma(final int i) {
+        final StringBuilder builder = new StringBuilder();
+        for (int n = i + SYLLABLES.length * SYLLABLES.length; n > 0; n /= SYLLABLES.length) {
+            builder.append(SYLLABLES[n % SYLLABLES.length]);
+        }
+        return builder.toString();
+    }
+
+    private static String noun(final int i) {
+        return NOUNS[i % NOUNS.length];
+    }
+
+    private static String capitalize(final String string) {
+        return Character.toUpperCase(string.charAt(0)) + string.substring(1);
+    }
+
+    private static String[] pick(final Random random, final String[] values, final int fixed,
+            final int count) {
+        final List<String> list = Lists.newArrayList(values);
+        final List<String> result = Lists.newArrayList(list.subList(0, fixed));
+        final List<String> rest = Lists.newArrayList(list.subList(fixed, list.size()));
+        while (result.size() < count && !rest.isEmpty()) {
+            result.add(rest.remove(random.nextInt(rest.size())));
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    private static void write(final File file, final CharSequence content) throws IOException {
+        try (Writer writer = Files.newWriter(file, StandardCharsets.UTF_8)) {
+            writer.append(content);
+        }
+    }
+
+}
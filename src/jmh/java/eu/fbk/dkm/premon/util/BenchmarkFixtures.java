@@ -0,0 +1,90 @@
+package eu.fbk.dkm.premon.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.common.io.Resources;
+
+import org.openrdf.model.Statement;
+
+import eu.fbk.rdfpro.RDFSources;
+
+/**
+ * Loads the fixture data shipped under {@code src/jmh/resources}, shared by all the benchmarks.
+ * <p>
+ * Fixtures are fixed files rather than randomly generated data, so that figures measured on
+ * different commits are comparable:
+ * </p>
+ * <ul>
+ * <li>{@code roles.tsv} - one PropBank role per line, as {@code lemma, pos, roleset, n, f};</li>
+ * <li>{@code statements.nq} - PropBank rolesets, conceptualizations, lexical entries and roles
+ * closed under the types of the PreMOn TBox, as emitted by a converter;</li>
+ * <li>{@code frames/*.xml} - PropBank 1.7 framesets with annotated examples.</li>
+ * </ul>
+ */
+public final class BenchmarkFixtures {
+
+    private static final String LOCATION = "/eu/fbk/dkm/premon/bench/";
+
+    private static final String[] FRAMES = new String[] { "abandon.xml", "abide.xml",
+            "absorb.xml" };
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Returns the fields of each line of {@code roles.tsv}; {@code n} and {@code f} may be empty.
+     */
+    public static List<String[]> readRoles() throws IOException {
+        final List<String[]> roles = Lists.newArrayList();
+        for (final String line : Resources.readLines(
+                BenchmarkFixtures.class.getResource(LOCATION + "roles.tsv"),
+                StandardCharsets.UTF_8)) {
+            if (!line.trim().isEmpty()) {
+                roles.add(line.split("\t", -1));
+            }
+        }
+        return ImmutableList.copyOf(roles);
+    }
+
+    /**
+     * Returns the quads in {@code statements.nq}, in file order.
+     */
+    public static List<Statement> readStatements() {
+        final List<Statement> stmts = Lists.newArrayList();
+        RDFSources.read(false, true, null, null, "classpath:" + LOCATION + "statements.nq")
+                .forEach(stmts::add);
+        return ImmutableList.copyOf(stmts);
+    }
+
+    /**
+     * Copies the PropBank framesets to a new temporary directory, which is returned.
+     */
+    public static File copyFrames() throws IOException {
+        final File dir = Files.createTempDir();
+        for (final String name : FRAMES) {
+            Resources.asByteSource(BenchmarkFixtures.class.getResource(LOCATION + "frames/" + name))
+                    .copyTo(Files.asByteSink(new File(dir, name)));
+        }
+        return dir;
+    }
+
+    /**
+     * Deletes a directory created by {@link #copyFrames()}.
+     */
+    public static void delete(final File dir) {
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+}
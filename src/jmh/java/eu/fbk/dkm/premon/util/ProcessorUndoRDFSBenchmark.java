@@ -0,0 +1,66 @@
+package eu.fbk.dkm.premon.util;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+
+import eu.fbk.rdfpro.AbstractRDFHandler;
+import eu.fbk.rdfpro.RDFSources;
+
+/**
+ * Benchmarks the map/reduce of {@link ProcessorUndoRDFS} over the fixture statements, using the
+ * PreMOn TBox shipped with the converter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessorUndoRDFSBenchmark {
+
+    private ProcessorUndoRDFS processor;
+
+    private List<Statement> stmts;
+
+    @Setup
+    public void setup() {
+        this.processor = new ProcessorUndoRDFS(RDFSources.read(false, true, null, null,
+                "classpath:/eu/fbk/dkm/premon/premonitor/tbox.ttl"));
+        this.stmts = BenchmarkFixtures.readStatements();
+    }
+
+    @Benchmark
+    public long undoRDFS() throws RDFHandlerException {
+        final AtomicLong counter = new AtomicLong();
+        final RDFHandler handler = this.processor.wrap(new AbstractRDFHandler() {
+
+            @Override
+            public void handleStatement(final Statement stmt) {
+                counter.incrementAndGet();
+            }
+
+        });
+        handler.startRDF();
+        for (final Statement stmt : this.stmts) {
+            handler.handleStatement(stmt);
+        }
+        handler.endRDF();
+        return counter.get();
+    }
+
+}
@@ -0,0 +1,68 @@
+package eu.fbk.dkm.premon.util;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandlerException;
+
+/**
+ * Benchmarks the insertion of the fixture quads in per-graph {@code QuadModel}s through the
+ * {@link QuadModelSink} used by Premonitor, starting either from an empty dictionary or from one
+ * already holding all the terms (as for resources converted after the first one), or without a
+ * dictionary (as with {@code --no-shared-dictionary}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuadModelSinkBenchmark {
+
+    private List<Statement> stmts;
+
+    private TermDictionary dictionary;
+
+    @Setup
+    public void setup() throws RDFHandlerException {
+        this.stmts = BenchmarkFixtures.readStatements();
+        this.dictionary = new TermDictionary();
+        insert(new QuadModelSink("warmup", this.dictionary));
+    }
+
+    @Benchmark
+    public long insertNoDictionary() throws RDFHandlerException {
+        return insert(new QuadModelSink("bench"));
+    }
+
+    @Benchmark
+    public long insertNewDictionary() throws RDFHandlerException {
+        return insert(new QuadModelSink("bench", new TermDictionary()));
+    }
+
+    @Benchmark
+    public long insertSharedDictionary() throws RDFHandlerException {
+        return insert(new QuadModelSink("bench", this.dictionary));
+    }
+
+    private long insert(final QuadModelSink sink) throws RDFHandlerException {
+        sink.startRDF();
+        for (final Statement stmt : this.stmts) {
+            sink.handleStatement(stmt);
+        }
+        sink.endRDF();
+        return sink.getNumQuads();
+    }
+
+}
@@ -0,0 +1,80 @@
+package eu.fbk.dkm.premon.util;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link Replacer#apply(String, String...)} and the parsing of role names by
+ * {@link NF}, both invoked for every predicate and role of a PropBank-like resource.
+ * <p>
+ * Lookups of fixture lemmas and rolesets mostly miss the replacement rules (the common case),
+ * while lookups of the rule sources with their own contexts always hit them.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplacerBenchmark {
+
+    private Replacer replacer;
+
+    private List<String[]> roles;
+
+    private List<String> hitValues;
+
+    private List<String[]> hitContexts;
+
+    @Setup
+    public void setup() throws IOException {
+        this.replacer = new Replacer("classpath:/eu/fbk/dkm/premon/premonitor/replacements");
+        this.roles = BenchmarkFixtures.readRoles();
+        this.hitValues = Lists.newArrayList();
+        this.hitContexts = Lists.newArrayList();
+        for (final Replacer.Rule rule : this.replacer.getRules()) {
+            this.hitValues.add(rule.getSource());
+            this.hitContexts.add(rule.getContext().toArray(new String[0]));
+        }
+    }
+
+    @Benchmark
+    public void applyMiss(final Blackhole blackhole) {
+        for (final String[] role : this.roles) {
+            final String file = role[0] + ".xml";
+            blackhole.consume(this.replacer.apply(role[0], "pb", "lemma", file));
+            blackhole.consume(this.replacer.apply(role[2], "pb", "predicate", file));
+        }
+    }
+
+    @Benchmark
+    public void applyHit(final Blackhole blackhole) {
+        for (int i = 0; i < this.hitValues.size(); ++i) {
+            blackhole.consume(this.replacer.apply(this.hitValues.get(i), this.hitContexts.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void parseNF(final Blackhole blackhole) {
+        for (final String[] role : this.roles) {
+            blackhole.consume(new NF(role[3], role[4]).getArgName());
+        }
+    }
+
+}
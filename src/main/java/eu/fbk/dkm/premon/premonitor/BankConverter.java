@@ -1,16 +1,16 @@
 package eu.fbk.dkm.premon.premonitor;
 
+import com.google.common.hash.Hasher;
 import com.google.common.io.Files;
 import eu.fbk.dkm.premon.premonitor.propbank.*;
 import eu.fbk.dkm.premon.util.NF;
 import eu.fbk.dkm.premon.util.PropBankResource;
+import eu.fbk.dkm.premon.util.VerbNetIndex;
 import eu.fbk.dkm.premon.vocab.LEXINFO;
 import eu.fbk.dkm.premon.vocab.NIF;
 import eu.fbk.dkm.premon.vocab.ONTOLEX;
 import eu.fbk.dkm.premon.vocab.PMO;
 import eu.fbk.rdfpro.util.Hash;
-import org.joox.JOOX;
-import org.joox.Match;
 import org.openrdf.model.URI;
 import org.openrdf.model.vocabulary.DCTERMS;
 import org.openrdf.model.vocabulary.RDF;
@@ -20,15 +20,13 @@ import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
 import javax.annotation.Nullable;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Unmarshaller;
-import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -96,33 +94,14 @@ public abstract class BankConverter extends Converter {
 
         String vnPath = properties.getProperty("vnpath");
         if (vnPath != null) {
-            LOGGER.info("Loading VerbNet");
             File vnFile = new File(vnPath);
             if (vnFile.exists() && vnFile.isDirectory()) {
-                final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-
-                for (final File file : Files.fileTreeTraverser().preOrderTraversal(vnFile)) {
-                    if (!file.isDirectory() && file.getName().endsWith(".xml")) {
-                        LOGGER.debug("Processing {} ...", file);
-
-                        try {
-                            final Document document = dbf.newDocumentBuilder().parse(file);
-                            final Match vnClass = JOOX.$(document.getElementsByTagName("VNCLASS"))
-                                    .add(JOOX.$(document.getElementsByTagName("VNSUBCLASS")));
-
-                            for (Element thisClass : vnClass) {
-                                String id = thisClass.getAttribute("ID");
-                                Matcher mID = VN_PATTERN.matcher(id);
-                                if (mID.find()) {
-                                    vnMap.put(mID.group(2), mID.group(1) + "-" + mID.group(2));
-                                } else {
-                                    LOGGER.error("Unable to parse {}", id);
-                                }
-                            }
-
-                        } catch (final Exception ex) {
-                            ex.printStackTrace();
-                        }
+                for (String id : VerbNetIndex.forPath(vnFile).getClassIDs()) {
+                    Matcher mID = VN_PATTERN.matcher(id);
+                    if (mID.find()) {
+                        vnMap.put(mID.group(2), mID.group(1) + "-" + mID.group(2));
+                    } else {
+                        LOGGER.error("Unable to parse {}", id);
                     }
                 }
             }
@@ -136,6 +115,14 @@ public abstract class BankConverter extends Converter {
         LOGGER.info("Links to: {}", pbLinks.toString());
     }
 
+    @Override
+    protected void hashCacheContext(Hasher hasher) {
+        for (String key : new TreeSet<>(vnMap.keySet())) {
+            hasher.putString(key, StandardCharsets.UTF_8).putByte((byte) 0);
+            hasher.putString(vnMap.get(key), StandardCharsets.UTF_8).putByte((byte) 0);
+        }
+    }
+
     private static boolean discardFile(File file, boolean onlyVerbs, boolean isOntoNotes) {
         if (file.isDirectory()) {
             LOGGER.trace("File {} is a directory", file.getName());
@@ -187,7 +174,12 @@ public abstract class BankConverter extends Converter {
                     continue;
                 }
 
-                if (onlyOne != null && !onlyOne.equals(resource.getLemma())) {
+                if (!acceptsLemma(resource.getLemma())) {
+                    continue;
+                }
+
+                if (replayFile(file)) {
+                    LOGGER.debug("Replayed {}", file.getAbsolutePath());
                     continue;
                 }
 
@@ -202,6 +194,7 @@ public abstract class BankConverter extends Converter {
                 }
 
                 LOGGER.debug("Processing {}", file.getAbsolutePath());
+                recordFile(file);
 
                 String mainType = resource.getType();
                 String origLemma = resource.getLemma();
@@ -561,6 +554,8 @@ public abstract class BankConverter extends Converter {
                         }
                     }
                 }
+
+                commitFile();
             }
 
             LOGGER.info("No arg found: {}", noArgCount);
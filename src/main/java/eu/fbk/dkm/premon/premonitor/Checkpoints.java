@@ -0,0 +1,319 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import org.openrdf.model.Namespace;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.Rio;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.fbk.dkm.premon.util.QuadModelSink;
+import eu.fbk.dkm.premon.util.TermDictionary;
+import eu.fbk.rdfpro.RDFHandlers;
+import eu.fbk.rdfpro.util.QuadModel;
+
+/**
+ * Saves and loads the state reached at the end of checkpointed {@link Phase}s.
+ * <p>
+ * The checkpoint of a phase is a folder containing a gzipped Sesame binary RDF file for each
+ * source (with a context for each graph) and, if available, a file for the TBox. Checkpoints are
+ * written to a temporary folder that replaces the previous checkpoint only once complete; saving
+ * a checkpoint also deletes the checkpoints of later phases, which would be stale.
+ * </p>
+ * <p>
+ * Each checkpoint folder also stores the fingerprint of the run that produced it, computed by
+ * {@link #fingerprint(File, File, Iterable, Iterable)} from the PreMOn version, the properties
+ * file, the resource and VerbNet folders it references, the additional input files and the
+ * options affecting checkpointed data. Checkpoints whose fingerprint differs from the current
+ * one are ignored, so that a run never resumes from data computed on different inputs or
+ * options.
+ * </p>
+ */
+final class Checkpoints {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Checkpoints.class);
+
+    private static final String SOURCE_PREFIX = "source-";
+
+    private static final String TBOX_FILE = "tbox.brf.gz";
+
+    private static final String EXTENSION = ".brf.gz";
+
+    private static final String FINGERPRINT_FILE = "fingerprint";
+
+    private final File folder;
+
+    private final String fingerprint;
+
+    Checkpoints(final File folder, final String fingerprint) {
+        this.folder = folder;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Returns a fingerprint of the inputs and options of a run: the PreMOn version, the content of
+     * the properties file, the relative path, size and modification time of the files found in
+     * the resource folders and VerbNet folders referenced by the {@code folder} and
+     * {@code vnpath} properties (resolved as their consumers do) and in the additional files
+     * supplied, and the supplied options.
+     */
+    static String fingerprint(final File inputFolder, final File propertiesFile,
+            final Iterable<File> files, final Iterable<String> options) throws IOException {
+
+        final Hasher hasher = Hashing.murmur3_128().newHasher();
+        final String version = Converter.class.getPackage().getImplementationVersion();
+        hasher.putString(Objects.toString(version), StandardCharsets.UTF_8);
+        for (final String option : options) {
+            hasher.putString(option, StandardCharsets.UTF_8).putByte((byte) 0);
+        }
+
+        final List<File> inputs = Lists.newArrayList(files);
+        if (propertiesFile.exists()) {
+            hasher.putBytes(Files.toByteArray(propertiesFile));
+            final Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(propertiesFile)) {
+                properties.load(in);
+            }
+            for (final String name : Ordering.natural().sortedCopy(
+                    properties.stringPropertyNames())) {
+                final String value = properties.getProperty(name);
+                if (name.endsWith(".folder")) {
+                    // Resolved as in Premonitor.convert()
+                    inputs.add(new File(value.startsWith(File.separator) ? value
+                            : inputFolder + File.separator + value));
+                } else if (name.endsWith(".vnpath")) {
+                    // Resolved against the working directory, as done by converters
+                    inputs.add(new File(value));
+                }
+            }
+        }
+
+        for (final File input : inputs) {
+            if (input.exists()) {
+                final int prefixLength = input.getPath().length();
+                for (final File file : Ordering.natural()
+                        .sortedCopy(Files.fileTreeTraverser().preOrderTraversal(input))) {
+                    if (file.isFile()) {
+                        hasher.putString(file.getPath().substring(prefixLength),
+                                StandardCharsets.UTF_8);
+                        hasher.putLong(file.length());
+                        hasher.putLong(file.lastModified());
+                    }
+                }
+            }
+            hasher.putByte((byte) 0);
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Returns the latest phase preceding the phase supplied for which a checkpoint exists with
+     * the same fingerprint of this run.
+     */
+    @Nullable
+    Phase latest(final Phase before) throws IOException {
+        for (int i = before.ordinal() - 1; i >= 0; --i) {
+            final Phase phase = Phase.values()[i];
+            final File phaseFolder = getFolder(phase);
+            if (phase.isCheckpointed() && phaseFolder.isDirectory()) {
+                final File file = new File(phaseFolder, FINGERPRINT_FILE);
+                if (file.exists() && Files.toString(file, StandardCharsets.UTF_8).trim()
+                        .equals(this.fingerprint)) {
+                    return phase;
+                }
+                LOGGER.warn("Checkpoint {} ignored: computed on different inputs, options or "
+                        + "version", phase.getName());
+            }
+        }
+        return null;
+    }
+
+    void save(final Phase phase, final Map<String, Map<URI, QuadModel>> models,
+            @Nullable final QuadModel tbox, final TaskPool pool) throws IOException {
+
+        final long ts = System.currentTimeMillis();
+        final File phaseFolder = getFolder(phase);
+        final File tmpFolder = new File(phaseFolder.getPath() + ".tmp");
+        delete(tmpFolder);
+        if (!tmpFolder.mkdirs()) {
+            throw new IOException("Cannot create folder " + tmpFolder);
+        }
+
+        // Write a file for each source and one for the TBox, in parallel
+        final List<Callable<Void>> tasks = Lists.newArrayList();
+        for (final Map.Entry<String, Map<URI, QuadModel>> entry : models.entrySet()) {
+            final File file = new File(tmpFolder, SOURCE_PREFIX + entry.getKey() + EXTENSION);
+            tasks.add(() -> {
+                write(file, entry.getValue());
+                return null;
+            });
+        }
+        if (tbox != null) {
+            final File file = new File(tmpFolder, TBOX_FILE);
+            tasks.add(() -> {
+                write(file, Collections.singletonMap(null, tbox)); // no graph for TBox
+                return null;
+            });
+        }
+        pool.callAll(tasks);
+        Files.write(this.fingerprint, new File(tmpFolder, FINGERPRINT_FILE),
+                StandardCharsets.UTF_8);
+
+        // Replace the previous checkpoint and drop the ones of later phases
+        for (Phase p = phase; p != Phase.EMISSION; p = p.next()) {
+            delete(getFolder(p));
+        }
+        if (!tmpFolder.renameTo(phaseFolder)) {
+            throw new IOException("Cannot rename " + tmpFolder + " to " + phaseFolder);
+        }
+        LOGGER.info("Checkpoint {} saved to {} in {} ms", phase.getName(), phaseFolder,
+                System.currentTimeMillis() - ts);
+    }
+
+    Map<String, Map<URI, QuadModel>> loadModels(final Phase phase,
+            @Nullable final TermDictionary dictionary, final TaskPool pool) throws IOException {
+
+        final long ts = System.currentTimeMillis();
+        final Map<String, Map<URI, QuadModel>> models = new ConcurrentHashMap<>();
+        final List<Callable<Void>> tasks = Lists.newArrayList();
+        final File[] files = getFolder(phase).listFiles();
+        for (final File file : files == null ? new File[0] : files) {
+            final String name = file.getName();
+            if (name.startsWith(SOURCE_PREFIX) && name.endsWith(EXTENSION)) {
+                final String source = name.substring(SOURCE_PREFIX.length(),
+                        name.length() - EXTENSION.length());
+                tasks.add(() -> {
+                    final QuadModelSink sink = new QuadModelSink(source, dictionary);
+                    sink.startRDF();
+                    read(file, sink);
+                    sink.endRDF();
+                    final Map<URI, QuadModel> graphModels = sink.getModels();
+                    for (final QuadModel model : graphModels.values()) {
+                        for (final Map.Entry<String, String> entry : sink.getNamespaces()
+                                .entrySet()) {
+                            model.setNamespace(entry.getKey(), entry.getValue());
+                        }
+                    }
+                    models.put(source, graphModels);
+                    return null;
+                });
+            }
+        }
+        pool.callAll(tasks);
+        LOGGER.info("Checkpoint {} loaded ({} sources) in {} ms", phase.getName(), models.size(),
+                System.currentTimeMillis() - ts);
+        return Maps.newHashMap(models);
+    }
+
+    @Nullable
+    QuadModel loadTBox(final Phase phase) throws IOException {
+        final File file = new File(getFolder(phase), TBOX_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+        final QuadModel tbox = QuadModel.create();
+        read(file, RDFHandlers.wrap(tbox));
+        return tbox;
+    }
+
+    private File getFolder(final Phase phase) {
+        return new File(this.folder, phase.getName());
+    }
+
+    private static void write(final File file, final Map<URI, QuadModel> graphModels)
+            throws IOException {
+        try (OutputStream out = new GZIPOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)), 64 * 1024) {
+
+            {
+                this.def.setLevel(Deflater.BEST_SPEED); // favor speed over size
+            }
+
+        }) {
+            final RDFWriter writer = Rio.createWriter(RDFFormat.BINARY, out);
+            writer.startRDF();
+            final Set<Namespace> namespaces = Sets.newHashSet();
+            for (final QuadModel model : graphModels.values()) {
+                namespaces.addAll(model.getNamespaces());
+            }
+            for (final Namespace namespace : namespaces) {
+                writer.handleNamespace(namespace.getPrefix(), namespace.getName());
+            }
+            for (final Map.Entry<URI, QuadModel> entry : graphModels.entrySet()) {
+                final URI graph = entry.getKey();
+                for (final Statement stmt : entry.getValue()) {
+                    writer.handleStatement(graph == null ? stmt
+                            : new ContextStatementImpl(stmt.getSubject(), stmt.getPredicate(),
+                                    stmt.getObject(), graph));
+                }
+            }
+            writer.endRDF();
+        } catch (final IOException ex) {
+            throw ex;
+        } catch (final Exception ex) {
+            throw new IOException("Cannot write checkpoint file " + file, ex);
+        }
+    }
+
+    private static void read(final File file, final RDFHandler handler) throws IOException {
+        try (InputStream in = new GZIPInputStream(
+                new BufferedInputStream(new FileInputStream(file)), 64 * 1024)) {
+            final RDFParser parser = Rio.createParser(RDFFormat.BINARY);
+            parser.setRDFHandler(handler);
+            parser.parse(in, "");
+        } catch (final IOException ex) {
+            throw ex;
+        } catch (final Exception ex) {
+            throw new IOException("Cannot read checkpoint file " + file, ex);
+        }
+    }
+
+    private static void delete(final File file) throws IOException {
+        if (file.isDirectory()) {
+            final File[] children = file.listFiles();
+            for (final File child : children == null ? new File[0] : children) {
+                delete(child);
+            }
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot delete " + file);
+        }
+    }
+
+}
@@ -0,0 +1,213 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.common.collect.Ordering;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.Rio;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.fbk.rdfpro.AbstractRDFHandler;
+
+/**
+ * Caches the statements produced by converters for single input files, so that unchanged files
+ * can be replayed rather than parsed and converted again in later runs.
+ * <p>
+ * An entry is identified by the hash of the input file name and content and of a converter
+ * context, which covers the converter class, its properties, the data it loads from other
+ * resources (see {@link Converter#hashCacheContext(Hasher)}), the WordNet data shared by all
+ * converters and the tool version. Entries are stored as gzipped Sesame binary RDF files. Only
+ * converters whose per-file output does not depend on previously processed files can use the
+ * cache, via methods {@code replayFile()}, {@code recordFile()} and {@code commitFile()} of
+ * {@link Converter}.
+ * </p>
+ */
+final class ConversionCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConversionCache.class);
+
+    private final File folder;
+
+    private final HashCode fingerprint;
+
+    private final AtomicLong numReplayed;
+
+    private final AtomicLong numRecorded;
+
+    ConversionCache(final File folder, final Map<String, URI> wnInfo) {
+
+        final Hasher hasher = Hashing.murmur3_128().newHasher();
+        final String version = Converter.class.getPackage().getImplementationVersion();
+        hasher.putString(Objects.toString(version), StandardCharsets.UTF_8);
+        for (final String key : Ordering.natural().sortedCopy(wnInfo.keySet())) {
+            hasher.putString(key, StandardCharsets.UTF_8).putByte((byte) 0);
+            hasher.putString(Objects.toString(wnInfo.get(key)), StandardCharsets.UTF_8)
+                    .putByte((byte) 0);
+        }
+
+        this.folder = folder;
+        this.fingerprint = hasher.hash();
+        this.numReplayed = new AtomicLong();
+        this.numRecorded = new AtomicLong();
+    }
+
+    HashCode hashContext(final Converter converter) {
+        final Hasher hasher = Hashing.murmur3_128().newHasher();
+        hasher.putBytes(this.fingerprint.asBytes());
+        hasher.putString(converter.getClass().getName(), StandardCharsets.UTF_8);
+        final Properties properties = converter.properties;
+        for (final String name : Ordering.natural().sortedCopy(
+                properties.stringPropertyNames())) {
+            hasher.putString(name, StandardCharsets.UTF_8).putByte((byte) 0);
+            hasher.putString(properties.getProperty(name), StandardCharsets.UTF_8)
+                    .putByte((byte) 0);
+        }
+        converter.hashCacheContext(hasher);
+        return hasher.hash();
+    }
+
+    boolean replay(final HashCode context, final File file, final RDFHandler sink) {
+
+        final File entry = getEntryFile(context, file);
+        if (entry == null || !entry.exists()) {
+            return false;
+        }
+
+        try (InputStream in = new GZIPInputStream(
+                new BufferedInputStream(new FileInputStream(entry)))) {
+            final RDFParser parser = Rio.createParser(RDFFormat.BINARY);
+            parser.setRDFHandler(new AbstractRDFHandler() {
+
+                @Override
+                public void handleStatement(final Statement statement)
+                        throws RDFHandlerException {
+                    sink.handleStatement(statement);
+                }
+
+            });
+            parser.parse(in, "");
+            this.numReplayed.incrementAndGet();
+            LOGGER.debug("Replayed {} from {}", file, entry);
+            return true;
+
+        } catch (final Throwable ex) {
+            LOGGER.warn("Ignoring invalid cache entry " + entry + " for " + file, ex);
+            entry.delete();
+            return false;
+        }
+    }
+
+    Recording record(final HashCode context, final File file, final Converter converter) {
+        return new Recording(getEntryFile(context, file), converter);
+    }
+
+    long getNumReplayed() {
+        return this.numReplayed.get();
+    }
+
+    long getNumRecorded() {
+        return this.numRecorded.get();
+    }
+
+    private File getEntryFile(final HashCode context, final File file) {
+        try {
+            final String hash = Hashing.murmur3_128().newHasher()
+                    .putBytes(context.asBytes())
+                    .putString(file.getName(), StandardCharsets.UTF_8)
+                    .putBytes(Files.toByteArray(file)).hash().toString();
+            return new File(this.folder, hash.substring(0, 2) + File.separator + hash + ".brf.gz");
+        } catch (final IOException ex) {
+            LOGGER.warn("Could not hash " + file + "; caching disabled for it", ex);
+            return null;
+        }
+    }
+
+    final class Recording {
+
+        private final File entry;
+
+        private final Converter converter;
+
+        private final RDFHandler sink;
+
+        private final ByteArrayOutputStream bytes;
+
+        private final GZIPOutputStream stream;
+
+        private final RDFWriter writer;
+
+        Recording(final File entry, final Converter converter) {
+            this.entry = entry;
+            this.converter = converter;
+            this.sink = converter.sink;
+            try {
+                this.bytes = new ByteArrayOutputStream();
+                this.stream = new GZIPOutputStream(this.bytes);
+                this.writer = Rio.createWriter(RDFFormat.BINARY, this.stream);
+                this.writer.startRDF();
+            } catch (final IOException | RDFHandlerException ex) {
+                throw new Error(ex); // cannot happen, as data is written to memory
+            }
+            converter.setSink(new AbstractRDFHandler() {
+
+                @Override
+                public void handleStatement(final Statement statement)
+                        throws RDFHandlerException {
+                    Recording.this.sink.handleStatement(statement);
+                    Recording.this.writer.handleStatement(statement);
+                }
+
+            });
+        }
+
+        void commit() {
+            this.converter.setSink(this.sink);
+            if (this.entry == null) {
+                return;
+            }
+            try {
+                this.writer.endRDF();
+                this.stream.finish();
+                final File tmpFile = new File(this.entry.getPath() + ".tmp");
+                Files.createParentDirs(tmpFile);
+                Files.write(this.bytes.toByteArray(), tmpFile);
+                if (!tmpFile.renameTo(this.entry)) {
+                    throw new IOException("Could not rename " + tmpFile + " to " + this.entry);
+                }
+                ConversionCache.this.numRecorded.incrementAndGet();
+            } catch (final Throwable ex) {
+                LOGGER.warn("Could not store cache entry " + this.entry, ex);
+            }
+        }
+
+        void abort() {
+            this.converter.setSink(this.sink);
+        }
+
+    }
+
+}
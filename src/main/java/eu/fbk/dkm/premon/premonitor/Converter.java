@@ -10,6 +10,8 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
 
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
@@ -26,6 +28,7 @@ import org.openrdf.rio.RDFHandlerException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import eu.fbk.dkm.premon.util.LemmaFilter;
 import eu.fbk.dkm.premon.util.Replacer;
 import eu.fbk.dkm.premon.util.URITreeSet;
 import eu.fbk.dkm.premon.vocab.DECOMP;
@@ -113,12 +116,38 @@ public abstract class Converter {
 
     protected String onlyOne = null;
 
+    @Nullable
+    protected LemmaFilter lemmaFilter = null;
+
+    @Nullable
+    private ConversionCache cache = null;
+
+    @Nullable
+    private HashCode cacheContext = null;
+
+    @Nullable
+    private ConversionCache.Recording cacheRecording = null;
+
+    private int numFiles = 0;
+
+    private int numReplayedFiles = 0;
+
     public String getOnlyOne() {
         return onlyOne;
     }
 
     public void setOnlyOne(String onlyOne) {
         this.onlyOne = onlyOne;
+        this.lemmaFilter = LemmaFilter.parse(onlyOne);
+    }
+
+    /**
+     * Returns whether entries of the lemma supplied have to be extracted, based on the lemmas
+     * selected via property {@code only-one} (all lemmas if not set). Converters should call it
+     * as early as possible, skipping whole files when they contain no selected lemma.
+     */
+    protected boolean acceptsLemma(String lemma) {
+        return lemmaFilter == null || lemmaFilter.accepts(lemma);
     }
 
     public void setResource(String resource) {
@@ -139,6 +168,7 @@ public abstract class Converter {
         this.baseResource = properties.getProperty("resource");
 
         this.onlyOne = properties.getProperty("only-one");
+        this.lemmaFilter = LemmaFilter.parse(onlyOne);
         this.prefix = resource;
 
         this.RESOURCE = createURI(NAMESPACE, resource);
@@ -157,8 +187,91 @@ public abstract class Converter {
         this.sink = newSink;
     }
 
+    void setCache(@Nullable ConversionCache cache) {
+        this.cache = cache;
+        this.cacheContext = null;
+    }
+
     public abstract void convert() throws IOException, RDFHandlerException;
 
+    /**
+     * Returns the number of input files parsed, as notified via {@link #countFile(File)}.
+     */
+    public int getNumFiles() {
+        return numFiles;
+    }
+
+    /**
+     * Returns the number of input files whose statements were replayed from the cache.
+     */
+    public int getNumReplayedFiles() {
+        return numReplayedFiles;
+    }
+
+    /**
+     * Notifies that an input file is being parsed (called by {@link #recordFile(File)} for
+     * converters caching their files).
+     */
+    protected void countFile(File file) {
+        ++numFiles;
+    }
+
+    // Methods for caching the statements extracted from single input files
+
+    /**
+     * Contributes to the cache key any data, besides converter class, properties and WordNet
+     * info, that affects the statements extracted from a file (e.g., data from other resources).
+     */
+    protected void hashCacheContext(Hasher hasher) {
+    }
+
+    /**
+     * Emits the cached statements for the file supplied, returning false if they are not cached
+     * (in which case the file has to be converted).
+     */
+    protected boolean replayFile(File file) {
+        abortFile();
+        if (cache == null || !cache.replay(getCacheContext(), file, sink)) {
+            return false;
+        }
+        ++numReplayedFiles;
+        return true;
+    }
+
+    /**
+     * Starts recording the statements extracted from the file supplied, which are cached once
+     * {@link #commitFile()} is called. Only statements extracted from that file must be emitted
+     * in between.
+     */
+    protected void recordFile(File file) {
+        abortFile();
+        countFile(file);
+        if (cache != null) {
+            cacheRecording = cache.record(getCacheContext(), file, this);
+        }
+    }
+
+    protected void commitFile() {
+        if (cacheRecording != null) {
+            cacheRecording.commit();
+            cacheRecording = null;
+        }
+    }
+
+    private void abortFile() {
+        if (cacheRecording != null) {
+            cacheRecording.abort();
+            cacheRecording = null;
+        }
+    }
+
+    private HashCode getCacheContext() {
+        if (cacheContext == null) {
+            cacheContext = cache.hashContext(this);
+        }
+        return cacheContext;
+    }
+
     protected void addLinks(ArrayList<String> linkList, String linkString) {
         if (linkString != null) {
             for (String link : linkString.split(",")) {
@@ -0,0 +1,171 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.fbk.dkm.premon.util.ThreadAllocations;
+
+/**
+ * Executes a DAG of named tasks (typically one per converted resource) on a bounded thread pool.
+ * <p>
+ * A task is started only after all the tasks it depends on completed successfully; independent
+ * tasks run concurrently, up to the parallelism specified to {@link #run(int)}. If a task fails,
+ * the tasks depending on it are not executed and the failure of the first task (in insertion
+ * order) is rethrown once all the other tasks terminated.
+ * </p>
+ */
+final class ConverterScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConverterScheduler.class);
+
+    private final Map<String, Node> nodes = Maps.newLinkedHashMap();
+
+    public ConverterScheduler add(final String id, final Iterable<String> dependencies,
+            final Task task) {
+        Preconditions.checkArgument(!this.nodes.containsKey(id), "Duplicate task %s", id);
+        this.nodes.put(id, new Node(id, ImmutableList.copyOf(dependencies), task));
+        return this;
+    }
+
+    public boolean contains(final String id) {
+        return this.nodes.containsKey(id);
+    }
+
+    public void run(final int parallelism) throws Exception {
+
+        Preconditions.checkArgument(parallelism > 0);
+
+        // Sort the nodes, dropping dependencies to unknown tasks and detecting cycles
+        final List<Node> sortedNodes = sort();
+
+        // Schedule the nodes in topological order, chaining each one to its dependencies
+        final AtomicInteger counter = new AtomicInteger();
+        final ThreadFactory factory = (final Runnable runnable) -> {
+            final Thread thread = ThreadAllocations.newThread(runnable,
+                    "premonitor-converter-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism, factory);
+        final Map<String, CompletableFuture<Void>> futures = Maps.newHashMap();
+        try {
+            for (final Node node : sortedNodes) {
+                final CompletableFuture<?>[] dependencies;
+                dependencies = new CompletableFuture<?>[node.dependencies.size()];
+                for (int i = 0; i < dependencies.length; ++i) {
+                    dependencies[i] = futures.get(node.dependencies.get(i));
+                }
+                final CompletableFuture<Void> future = CompletableFuture.allOf(dependencies)
+                        .thenRunAsync(() -> {
+                            try {
+                                node.task.run();
+                            } catch (final Exception ex) {
+                                throw new CompletionException(ex);
+                            }
+                        }, executor);
+                futures.put(node.id, future);
+            }
+
+            // Wait for all the tasks, reporting the first failure (if any)
+            Throwable failure = null;
+            for (final Node node : sortedNodes) {
+                try {
+                    futures.get(node.id).get();
+                } catch (final ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    while (cause instanceof CompletionException && cause.getCause() != null) {
+                        cause = cause.getCause();
+                    }
+                    if (failure == null) {
+                        failure = cause;
+                    } else if (failure != cause) {
+                        LOGGER.error("Task " + node.id + " failed", cause);
+                    }
+                }
+            }
+            if (failure instanceof Exception) {
+                throw (Exception) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Node> sort() {
+
+        // Remove dependencies to tasks not defined
+        for (final Node node : this.nodes.values()) {
+            for (final String dependency : ImmutableList.copyOf(node.dependencies)) {
+                if (!this.nodes.containsKey(dependency)) {
+                    LOGGER.warn("Ignoring dependency of {} on undefined/inactive {}", node.id,
+                            dependency);
+                    node.dependencies.remove(dependency);
+                }
+            }
+        }
+
+        // Apply Kahn's algorithm, preserving insertion order among independent nodes
+        final List<Node> sortedNodes = Lists.newArrayList();
+        final Set<String> done = Sets.newHashSet();
+        while (sortedNodes.size() < this.nodes.size()) {
+            boolean progress = false;
+            for (final Node node : this.nodes.values()) {
+                if (!done.contains(node.id) && done.containsAll(node.dependencies)) {
+                    sortedNodes.add(node);
+                    done.add(node.id);
+                    progress = true;
+                }
+            }
+            if (!progress) {
+                throw new IllegalArgumentException("Cyclic dependencies among tasks "
+                        + Sets.difference(this.nodes.keySet(), done));
+            }
+        }
+        return sortedNodes;
+    }
+
+    @FunctionalInterface
+    interface Task {
+
+        void run() throws Exception;
+
+    }
+
+    private static final class Node {
+
+        final String id;
+
+        final List<String> dependencies;
+
+        final Task task;
+
+        Node(final String id, final List<String> dependencies, final Task task) {
+            this.id = Objects.requireNonNull(id);
+            this.dependencies = Lists.newArrayList(dependencies);
+            this.task = Objects.requireNonNull(task);
+        }
+
+    }
+
+}
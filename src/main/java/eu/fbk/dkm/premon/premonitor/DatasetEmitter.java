@@ -0,0 +1,501 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+
+import org.openrdf.model.Namespace;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.WriterConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.fbk.dkm.premon.util.AsyncRDFHandler;
+import eu.fbk.dkm.premon.util.BinaryDataset;
+import eu.fbk.dkm.premon.util.BinaryDatasetWriter;
+import eu.fbk.dkm.premon.util.ParallelGzipOutputStream;
+import eu.fbk.dkm.premon.util.ProcessorUndoRDFS;
+import eu.fbk.dkm.premon.util.UnionModel;
+import eu.fbk.dkm.premon.vocab.PM;
+import eu.fbk.rdfpro.AbstractRDFHandler;
+import eu.fbk.rdfpro.RDFHandlers;
+import eu.fbk.rdfpro.RDFProcessors;
+import eu.fbk.rdfpro.RDFSources;
+import eu.fbk.rdfpro.util.IO;
+import eu.fbk.rdfpro.util.QuadModel;
+import eu.fbk.rdfpro.util.Statements;
+import eu.fbk.rdfpro.util.Tracker;
+
+/**
+ * Emits multiple datasets (e.g., "tbox", "pb17", "all"), each one consisting of some graph
+ * models (possibly unions of per-resource models), in a single traversal of the distinct models
+ * involved by each group of datasets emitted together.
+ * <p>
+ * Each dataset is written in all the configured formats, optionally together with its
+ * statistics and its version without RDFS inferences (when OWL2RL inference is enabled). Graph
+ * models are visited once, in an order that starts with pm:meta and pm:entries, and their quads
+ * are routed to all the datasets including them. Each output stream is fed by its own thread
+ * via a bounded queue, so that the traversal proceeds at the speed of the slowest output. Gzip
+ * outputs are compressed in blocks by a {@link ParallelGzipOutputStream}, so that deflate does not
+ * bound the speed of their writer threads, while format {@code pmb} produces an indexed
+ * {@link BinaryDataset} via a {@link BinaryDatasetWriter}.
+ * </p>
+ * <p>
+ * As each open dataset holds a writer thread per output, plus the buffers of its statistics and
+ * non-inferred outputs, datasets are emitted in groups of at most {@code maxOpenDatasets} (in
+ * insertion order), each group being completed before the next one is opened. The number of
+ * outputs open and the peak heap usage sampled while emitting each group are logged.
+ * </p>
+ */
+final class DatasetEmitter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatasetEmitter.class);
+
+    private static final int HEAP_SAMPLING_INTERVAL = 64 * 1024; // quads
+
+    private final String base;
+
+    private final String[] formats;
+
+    private final int maxOpenDatasets;
+
+    private final List<Dataset> datasets;
+
+    DatasetEmitter(final String base, final String[] formats, final int maxOpenDatasets) {
+        Preconditions.checkArgument(maxOpenDatasets > 0);
+        this.base = base;
+        this.formats = formats.clone();
+        this.maxOpenDatasets = maxOpenDatasets;
+        this.datasets = Lists.newArrayList();
+    }
+
+    public DatasetEmitter add(final String classifier, final Map<URI, UnionModel> models,
+            @Nullable final QuadModel tbox, final boolean owl2rl, final boolean statistics) {
+        this.datasets.add(new Dataset(classifier, ImmutableMap.copyOf(models), tbox, owl2rl,
+                statistics));
+        return this;
+    }
+
+    public void run() {
+        final int numGroups = (this.datasets.size() + this.maxOpenDatasets - 1)
+                / this.maxOpenDatasets;
+        for (int i = 0; i < numGroups; ++i) {
+            run(this.datasets.subList(i * this.maxOpenDatasets,
+                    Math.min(this.datasets.size(), (i + 1) * this.maxOpenDatasets)), i + 1,
+                    numGroups);
+        }
+    }
+
+    private void run(final List<Dataset> group, final int groupIndex, final int numGroups) {
+
+        // Open the outputs of the datasets in the group
+        final long ts = System.currentTimeMillis();
+        int numOutputs = 0;
+        for (final Dataset dataset : group) {
+            dataset.open();
+            numOutputs += dataset.numOutputs;
+        }
+
+        // Associate each distinct graph model to the datasets including it, keeping track of
+        // the models preceding it in each union so that quads are deduplicated on the fly
+        final Map<URI, List<Route>> routes = Maps.newHashMap();
+        for (final Dataset dataset : group) {
+            for (final Map.Entry<URI, UnionModel> entry : dataset.models.entrySet()) {
+                List<Route> graphRoutes = routes.get(entry.getKey());
+                if (graphRoutes == null) {
+                    graphRoutes = Lists.newArrayList();
+                    routes.put(entry.getKey(), graphRoutes);
+                }
+                final List<QuadModel> components = entry.getValue().getModels();
+                for (int i = 0; i < components.size(); ++i) {
+                    Route route = null;
+                    for (final Route candidate : graphRoutes) {
+                        if (candidate.model == components.get(i)) {
+                            route = candidate;
+                        }
+                    }
+                    if (route == null) {
+                        route = new Route(components.get(i));
+                        graphRoutes.add(route);
+                    }
+                    route.add(components.subList(0, i), dataset);
+                }
+            }
+        }
+
+        // Emit data, one graph at a time and starting with pm:meta and pm:entries
+        final List<URI> sortedGraphs = Lists.newArrayList();
+        if (routes.containsKey(PM.META)) {
+            sortedGraphs.add(PM.META);
+        }
+        if (routes.containsKey(PM.ENTRIES)) {
+            sortedGraphs.add(PM.ENTRIES);
+        }
+        for (final URI graph : Ordering.from(Statements.valueComparator())
+                .sortedCopy(routes.keySet())) {
+            if (!graph.equals(PM.META) && !graph.equals(PM.ENTRIES)) {
+                sortedGraphs.add(graph);
+            }
+        }
+        final Runtime runtime = Runtime.getRuntime();
+        long peakHeap = runtime.totalMemory() - runtime.freeMemory();
+        long numQuads = 0;
+        for (final URI graph : sortedGraphs) {
+            for (final Route route : routes.get(graph)) {
+                for (final Statement stmt : route.model) {
+                    if (++numQuads % HEAP_SAMPLING_INTERVAL == 0) {
+                        peakHeap = Math.max(peakHeap, runtime.totalMemory() - runtime.freeMemory());
+                    }
+                    final Statement quad = new ContextStatementImpl(stmt.getSubject(),
+                            stmt.getPredicate(), stmt.getObject(), graph);
+                    outer: for (final Target target : route.targets) {
+                        for (final QuadModel model : target.precedingModels) {
+                            if (model.contains(stmt.getSubject(), stmt.getPredicate(),
+                                    stmt.getObject())) {
+                                continue outer;
+                            }
+                        }
+                        for (final Dataset dataset : target.datasets) {
+                            dataset.handleStatement(quad);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Complete the outputs of the datasets in the group, then report the resources used by
+        // the whole group, as its datasets are emitted together
+        final List<String> classifiers = Lists.newArrayList();
+        for (final Dataset dataset : group) {
+            dataset.close();
+            classifiers.add(dataset.classifier);
+        }
+        peakHeap = Math.max(peakHeap, runtime.totalMemory() - runtime.freeMemory());
+        LOGGER.info("Group {}/{} of datasets {} emitted in {} ms ({} quads traversed, {} outputs "
+                + "open, peak heap {} MB)", groupIndex, numGroups, classifiers,
+                System.currentTimeMillis() - ts, numQuads, numOutputs, peakHeap / (1024 * 1024));
+    }
+
+    private final class Dataset {
+
+        final String classifier;
+
+        final Map<URI, UnionModel> models;
+
+        @Nullable
+        final QuadModel tbox;
+
+        final boolean owl2rl;
+
+        final boolean statistics;
+
+        @Nullable
+        RDFHandler handler;
+
+        int numOutputs;
+
+        Dataset(final String classifier, final Map<URI, UnionModel> models,
+                @Nullable final QuadModel tbox, final boolean owl2rl, final boolean statistics) {
+            this.classifier = classifier;
+            this.models = models;
+            this.tbox = tbox;
+            this.owl2rl = owl2rl;
+            this.statistics = statistics;
+        }
+
+        void open() {
+
+            // Emit closed data in all configured formats, tracking the number of quads
+            final String name = this.classifier + (this.owl2rl ? "-inf" : "");
+            final List<RDFHandler> handlers = Lists.newArrayList(writers(name));
+            handlers.add(RDFProcessors
+                    .track(new Tracker(LOGGER, null, name + " - %d quads", null))
+                    .wrap(RDFHandlers.NIL));
+
+            // Compute and emit statistics if enabled
+            if (this.statistics) {
+                final RDFHandler statsHandler = RDFProcessors.stats(null, null, null, null, false)
+                        .wrap(fanout(writers(this.classifier + "-stats"),
+                                RDFProcessors.track(new Tracker(LOGGER, null,
+                                        this.classifier + "-stats - %d quads", null))
+                                        .wrap(RDFHandlers.NIL)));
+                handlers.add(new AsyncRDFHandler(statsHandler,
+                        "premonitor-emit-" + this.classifier + "-stats"));
+                ++this.numOutputs;
+            }
+
+            // Remove inferrable triples, write
+            if (this.owl2rl && this.tbox != null) {
+                final RDFHandler noinfHandler = new ProcessorUndoRDFS(RDFSources.wrap(this.tbox))
+                        .wrap(fanout(writers(this.classifier + "-noinf"),
+                                RDFProcessors.track(new Tracker(LOGGER, null,
+                                        this.classifier + "-noinf - %d quads", null))
+                                        .wrap(RDFHandlers.NIL)));
+                handlers.add(new AsyncRDFHandler(noinfHandler,
+                        "premonitor-emit-" + this.classifier + "-noinf"));
+                ++this.numOutputs;
+            }
+
+            // Start the resulting handler, emitting namespaces first
+            final RDFHandler handler = fanout(handlers);
+            try {
+                handler.startRDF();
+                final Set<Namespace> namespaces = Sets.newHashSet();
+                for (final UnionModel model : this.models.values()) {
+                    namespaces.addAll(model.getNamespaces());
+                }
+                for (final Namespace namespace : Ordering.natural().sortedCopy(namespaces)) {
+                    handler.handleNamespace(namespace.getPrefix(), namespace.getName());
+                }
+                this.handler = handler;
+            } catch (final Throwable ex) {
+                LOGGER.error("File generation failed", ex);
+                closeQuietly(handler);
+            }
+        }
+
+        void handleStatement(final Statement quad) {
+            final RDFHandler handler = this.handler;
+            if (handler != null) {
+                try {
+                    handler.handleStatement(quad);
+                } catch (final Throwable ex) {
+                    LOGGER.error("File generation failed", ex);
+                    closeQuietly(handler);
+                    this.handler = null;
+                }
+            }
+        }
+
+        void close() {
+            final RDFHandler handler = this.handler;
+            if (handler != null) {
+                try {
+                    handler.endRDF();
+                } catch (final Throwable ex) {
+                    LOGGER.error("File generation failed", ex);
+                } finally {
+                    IO.closeQuietly(handler);
+                    this.handler = null;
+                }
+            }
+        }
+
+        private List<RDFHandler> writers(final String name) {
+            final List<RDFHandler> writers = Lists.newArrayList();
+            for (final String format : DatasetEmitter.this.formats) {
+                final String location = DatasetEmitter.this.base + "-" + name + "." + format;
+                writers.add(new AsyncRDFHandler(write(location),
+                        "premonitor-emit-" + name + "." + format));
+                ++this.numOutputs;
+            }
+            return writers;
+        }
+
+        private void closeQuietly(final RDFHandler handler) {
+            try {
+                handler.endRDF();
+            } catch (final Throwable ex) {
+                // Ignore
+            }
+            IO.closeQuietly(handler);
+        }
+
+    }
+
+    /**
+     * Returns a handler writing to the location supplied. Gzip locations are compressed with a
+     * {@link ParallelGzipOutputStream} instead of by rdfpro, using the same Rio writer and
+     * {@link #newWriterConfig() writer configuration} of other locations, so that decompressed
+     * output is the same produced by rdfpro for the uncompressed location.
+     */
+    static RDFHandler write(final String location) {
+        if (location.endsWith("." + BinaryDataset.EXTENSION)) {
+            return new BinaryDatasetWriter(new File(location));
+        } else if (location.endsWith(".gz")) {
+            final RDFFormat format = Rio
+                    .getWriterFormatForFileName(location.substring(0, location.length() - 3));
+            if (format != null) {
+                return new GzipWriter(location, format);
+            }
+        }
+        return RDFHandlers.write(newWriterConfig(), 1000, location);
+    }
+
+    static WriterConfig newWriterConfig() {
+        return new WriterConfig(); // Rio defaults, passed explicitly to rdfpro and gzip writers
+    }
+
+    private static final class GzipWriter extends AbstractRDFHandler implements Closeable {
+
+        private final String location;
+
+        private final RDFFormat format;
+
+        @Nullable
+        private OutputStream stream;
+
+        @Nullable
+        private RDFWriter writer;
+
+        GzipWriter(final String location, final RDFFormat format) {
+            this.location = location;
+            this.format = format;
+        }
+
+        @Override
+        public void startRDF() throws RDFHandlerException {
+            try {
+                this.stream = new ParallelGzipOutputStream(new FileOutputStream(this.location));
+            } catch (final IOException ex) {
+                throw new RDFHandlerException("Cannot open " + this.location, ex);
+            }
+            this.writer = Rio.createWriter(this.format, this.stream);
+            this.writer.setWriterConfig(newWriterConfig());
+            this.writer.startRDF();
+        }
+
+        @Override
+        public void handleNamespace(final String prefix, final String uri)
+                throws RDFHandlerException {
+            this.writer.handleNamespace(prefix, uri);
+        }
+
+        @Override
+        public void handleStatement(final Statement statement) throws RDFHandlerException {
+            this.writer.handleStatement(statement);
+        }
+
+        @Override
+        public void endRDF() throws RDFHandlerException {
+            this.writer.endRDF();
+            try {
+                this.stream.close(); // also writes the last blocks, reporting errors
+            } catch (final IOException ex) {
+                throw new RDFHandlerException("Cannot write " + this.location, ex);
+            } finally {
+                this.stream = null;
+            }
+        }
+
+        @Override
+        public void close() {
+            IO.closeQuietly(this.stream);
+            this.stream = null;
+        }
+
+    }
+
+    private static final class Route {
+
+        final QuadModel model;
+
+        final List<Target> targets;
+
+        Route(final QuadModel model) {
+            this.model = model;
+            this.targets = Lists.newArrayList();
+        }
+
+        void add(final List<QuadModel> precedingModels, final Dataset dataset) {
+            for (final Target target : this.targets) {
+                if (target.precedingModels.size() == precedingModels.size()) {
+                    boolean same = true;
+                    for (int i = 0; i < precedingModels.size(); ++i) {
+                        same &= target.precedingModels.get(i) == precedingModels.get(i);
+                    }
+                    if (same) {
+                        target.datasets.add(dataset);
+                        return;
+                    }
+                }
+            }
+            final Target target = new Target(precedingModels);
+            target.datasets.add(dataset);
+            this.targets.add(target);
+        }
+
+    }
+
+    private static final class Target {
+
+        final List<QuadModel> precedingModels;
+
+        final List<Dataset> datasets;
+
+        Target(final List<QuadModel> precedingModels) {
+            this.precedingModels = precedingModels;
+            this.datasets = Lists.newArrayList();
+        }
+
+    }
+
+    private static RDFHandler fanout(final List<RDFHandler> handlers,
+            final RDFHandler... moreHandlers) {
+        final List<RDFHandler> list = ImmutableList.<RDFHandler>builder().addAll(handlers)
+                .add(moreHandlers).build();
+        return new AbstractRDFHandler() {
+
+            @Override
+            public void startRDF() throws RDFHandlerException {
+                for (final RDFHandler handler : list) {
+                    handler.startRDF();
+                }
+            }
+
+            @Override
+            public void handleNamespace(final String prefix, final String uri)
+                    throws RDFHandlerException {
+                for (final RDFHandler handler : list) {
+                    handler.handleNamespace(prefix, uri);
+                }
+            }
+
+            @Override
+            public void handleStatement(final Statement statement) throws RDFHandlerException {
+                for (final RDFHandler handler : list) {
+                    handler.handleStatement(statement);
+                }
+            }
+
+            @Override
+            public void endRDF() throws RDFHandlerException {
+                RDFHandlerException exception = null;
+                for (final RDFHandler handler : list) {
+                    try {
+                        handler.endRDF();
+                    } catch (final RDFHandlerException ex) {
+                        exception = exception != null ? exception : ex;
+                    }
+                }
+                if (exception != null) {
+                    throw exception;
+                }
+            }
+
+        };
+    }
+
+}
@@ -139,6 +139,7 @@ public class EsoConverter extends Converter {
         final QuadModel model = QuadModel.create();
 
         for (final File file : this.path.listFiles()) {
+            countFile(file);
             try {
 
                 final AtomicInteger counter = new AtomicInteger();
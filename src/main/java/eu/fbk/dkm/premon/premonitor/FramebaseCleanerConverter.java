@@ -76,8 +76,10 @@ public class FramebaseCleanerConverter extends Converter {
         for (final File file : Files.fileTreeTraverser().preOrderTraversal(this.path)) {
             if (Rio.getParserFormatForFileName(file.getName()) != null) {
                 schemaFiles.add(file.getAbsolutePath());
+                countFile(file);
             } else if (file.getName().endsWith(".txt")) {
                 synsetFiles.add(file.getAbsolutePath());
+                countFile(file);
             }
         }
 
@@ -112,6 +112,7 @@ public class FramebaseConverter extends Converter {
     private QuadModel readFramebaseTriples() throws IOException {
         final QuadModel model = QuadModel.create();
         for (final File file : this.path.listFiles()) {
+            countFile(file);
             try {
                 final AtomicInteger counter = new AtomicInteger();
                 final RDFSource source = RDFSources.read(false, true, null, null,
@@ -153,6 +154,9 @@ public class FramebaseConverter extends Converter {
             final String frame = tokens[0].toLowerCase();
             final String lemma = fixFramebaseLemma(tokens[1]);
             final String pos = tokens[2].toLowerCase();
+            if (!acceptsLemma(lemma)) {
+                continue;
+            }
             for (final String fnPrefix : this.fnPrefixes) {
                 final URI fnCon = uriForConceptualization(fnPrefix, lemma,
                         getPosURIfromFramebase(pos, lemma, frame), frame);
@@ -222,6 +226,9 @@ public class FramebaseConverter extends Converter {
                     : "nb".equals(bank) ? this.nbPrefixes : null;
             final String roleset = fields[0].substring(index1 + 1).replace(".lv", ".LV");
             final String lemma = fields[0].substring(index1 + 1, index2);
+            if (!acceptsLemma(lemma)) {
+                continue;
+            }
             final String frame = fields[1];
             rolesetFrames.put(fields[0], fields[1]);
 
@@ -272,6 +279,9 @@ public class FramebaseConverter extends Converter {
             final String bank = fields[0].substring(0, index);
             final String roleset = fields[0].substring(index + 1).replace(".lv", ".LV");
             final List<String> prefixes = "pb".equals(bank) ? this.pbPrefixes : this.nbPrefixes;
+            if (!acceptsLemma(roleset.substring(0, roleset.lastIndexOf('.')))) {
+                continue;
+            }
             final String role = fields[1];
             final String frame = rolesetFrames.get(fields[0]);
             final String fe = fields[2];
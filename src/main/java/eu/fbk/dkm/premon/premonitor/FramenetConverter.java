@@ -1,5 +1,6 @@
 package eu.fbk.dkm.premon.premonitor;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.io.Files;
 import eu.fbk.dkm.premon.vocab.*;
 import eu.fbk.dkm.utils.FrequencyHashSet;
@@ -35,14 +36,16 @@ public class FramenetConverter extends Converter {
     HashMap<String, File> paths = new HashMap<>();
     private String retroMappings = null;
 
-    // 01/28/2002 04:30:50 PST Mon
-    private static final DateFormat format = new SimpleDateFormat("MM/dd/yyyy HH:mm:ss z E", Locale.ENGLISH);
+    // 01/28/2002 04:30:50 PST Mon (SimpleDateFormat is not thread safe, hence one per converter)
+    private final DateFormat format = new SimpleDateFormat("MM/dd/yyyy HH:mm:ss z E", Locale.ENGLISH);
 
     private static final Pattern TOKEN_REGEX = Pattern.compile("[^\\s]+");
 
+    private static final Pattern LU_FILE_PATTERN = Pattern.compile("lu([0-9]+)\\.xml");
+
     //        private static final String ONE_FRAME = "Measurable_attributes.xml";
     private static final String ONE_FRAME = null;
-    private static final Set<String> bugMap = new HashSet<>();
+    private static final Set<String> bugMap = ImmutableSet.of("Test35", "Test_the_test");
 
     private String thisVersion = null;
 
@@ -57,9 +60,6 @@ public class FramenetConverter extends Converter {
         paths.put("retroMappings",
                 new File(this.path.getAbsolutePath() + File.separator + properties.getProperty("retromapfile")));
 
-        bugMap.add("Test35");
-        bugMap.add("Test_the_test");
-
 //        argumentSeparator = "@";
 
         retroMappings = properties.getProperty("retromappings");
@@ -100,6 +100,7 @@ public class FramenetConverter extends Converter {
             // Retro Mappings
             if (retroMappings != null) {
                 LOGGER.info("Extracting diff file");
+                countFile(paths.get("retroMappings"));
                 document = dbf.newDocumentBuilder().parse(paths.get("retroMappings"));
 
                 Match diffs;
@@ -137,6 +138,7 @@ public class FramenetConverter extends Converter {
 
             // luIndex
             LOGGER.info("Extracting luIndex");
+            countFile(paths.get("luIndex"));
             document = dbf.newDocumentBuilder().parse(paths.get("luIndex"));
             Match statusTypes = JOOX.$(document.getElementsByTagName("statusType"));
             for (Element statusType : statusTypes) {
@@ -145,6 +147,7 @@ public class FramenetConverter extends Converter {
 
             // semTypes
             LOGGER.info("Extracting semTypes");
+            countFile(paths.get("semTypes"));
             document = dbf.newDocumentBuilder().parse(paths.get("semTypes"));
             Match semTypes = JOOX.$(document.getElementsByTagName("semType"));
             for (Element semType : semTypes) {
@@ -156,6 +159,7 @@ public class FramenetConverter extends Converter {
             FrequencyHashSet<URI> typesFreqsFER = new FrequencyHashSet<>();
 
             LOGGER.info("Extracting frRelations");
+            countFile(paths.get("frRelation"));
             document = dbf.newDocumentBuilder().parse(paths.get("frRelation"));
             Match frRelationTypes = JOOX.$(document.getElementsByTagName("frameRelationType"));
             for (Element frRelationType : frRelationTypes) {
@@ -260,7 +264,12 @@ public class FramenetConverter extends Converter {
                     }
 
                     try {
+                        countFile(file);
                         document = dbf.newDocumentBuilder().parse(file);
+                        if (!hasAcceptedLexUnit(document)) {
+                            LOGGER.debug("Skipped {}: no selected lexical unit", file);
+                            continue;
+                        }
                         final Match frame = JOOX.$(document.getElementsByTagName("frame"));
 
                         for (Element element : frame) {
@@ -477,6 +486,9 @@ public class FramenetConverter extends Converter {
 
                             final Match lexUnits = JOOX.$(element.getElementsByTagName("lexUnit"));
                             for (Element lexUnit : lexUnits) {
+                                if (!acceptsLemma(getLexUnitLemma(lexUnit))) {
+                                    continue;
+                                }
                                 luCount++;
                                 String leCBy = lexUnit.getAttribute("cBy");
                                 String leCDate = lexUnit.getAttribute("cDate");
@@ -622,7 +634,15 @@ public class FramenetConverter extends Converter {
                     if (!file.isDirectory() && file.getName().endsWith(".xml")) {
                         LOGGER.debug("Processing {} ...", file);
 
+                        // LU files are named after LU IDs: skip the ones of non-selected LUs
+                        Matcher luMatcher = LU_FILE_PATTERN.matcher(file.getName());
+                        if (lemmaFilter != null && luMatcher.matches()
+                                && !lus.containsKey(luMatcher.group(1))) {
+                            continue;
+                        }
+
                         try {
+                            countFile(file);
                             document = dbf.newDocumentBuilder().parse(file);
                             final Match lexUnits = JOOX.$(document.getElementsByTagName("lexUnit"));
                             String frameName = lexUnits.attr("frame");
@@ -897,6 +917,25 @@ public class FramenetConverter extends Converter {
         }
     }
 
+    private boolean hasAcceptedLexUnit(Document document) {
+        if (lemmaFilter == null) {
+            return true;
+        }
+        for (Element lexUnit : JOOX.$(document.getElementsByTagName("lexUnit"))) {
+            if (acceptsLemma(getLexUnitLemma(lexUnit))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // take off.v => take off
+    private static String getLexUnitLemma(Element lexUnit) {
+        String name = lexUnit.getAttribute("name");
+        int index = name.lastIndexOf('.');
+        return index < 0 ? name : name.substring(0, index);
+    }
+
     private URI addCBy(String cBy) {
         URI cbyURI = uriForCBy(cBy);
         addStatementToSink(cbyURI, DCTERMS.IDENTIFIER, cBy, false);
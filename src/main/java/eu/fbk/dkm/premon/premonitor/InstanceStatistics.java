@@ -0,0 +1,345 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RecursiveAction;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.vocabulary.DCTERMS;
+import org.openrdf.model.vocabulary.OWL;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.rio.RDFHandlerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.fbk.dkm.premon.util.DistinctCounter;
+import eu.fbk.dkm.premon.util.LongSet;
+import eu.fbk.dkm.premon.vocab.DECOMP;
+import eu.fbk.dkm.premon.vocab.LEXINFO;
+import eu.fbk.dkm.premon.vocab.ONTOLEX;
+import eu.fbk.dkm.premon.vocab.PMO;
+import eu.fbk.rdfpro.util.QuadModel;
+
+/**
+ * Number of semantic classes, roles, conceptualizations, entries, examples, annotation sets,
+ * class / role relations and core triples of a resource (a source or "all").
+ * <p>
+ * Statistics for all the resources are computed by
+ * {@link #compute(Map, QuadModel, boolean, TaskPool)}, which processes each graph in a parallel
+ * task that collects 64-bit hashes of values and statements in its own accumulator, merged into the
+ * accumulators of the graph source and of "all" once done. Instances and relations are located
+ * through the indexes of graph models, so that each graph is scanned in full only once, to identify
+ * the statements about core instances.
+ * </p>
+ */
+final class InstanceStatistics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InstanceStatistics.class);
+
+    private static final Set<Value> CORE_TYPES = ImmutableSet.of(PMO.SEMANTIC_CLASS,
+            PMO.SEMANTIC_ROLE, PMO.CONCEPTUALIZATION, PMO.MAPPING, ONTOLEX.LEXICAL_ENTRY,
+            ONTOLEX.FORM);
+
+    private static final Set<String> CORE_NAMESPACES = ImmutableSet.of(PMO.NAMESPACE,
+            ONTOLEX.NAMESPACE, DECOMP.NAMESPACE, LEXINFO.NAMESPACE, RDFS.NAMESPACE,
+            OWL.NAMESPACE, DCTERMS.NAMESPACE);
+
+    private static final Set<URI> INFERRED_PROPERTIES = ImmutableSet.of(ONTOLEX.CANONICAL_FORM,
+            ONTOLEX.WRITTEN_REP, PMO.FIRST);
+
+    final int numSemanticClasses;
+
+    final int numSemanticRoles;
+
+    final int numConceptualizations;
+
+    final int numLexicalEntries;
+
+    final int numExamples;
+
+    final int numAnnotationSets;
+
+    final int numClassRels;
+
+    final int numRoleRels;
+
+    final int numCoreTriples;
+
+    final double relativeError;
+
+    private InstanceStatistics(final Accumulator acc, final boolean approximate) {
+
+        final DistinctCounter conceptualizations = DistinctCounter.create(approximate);
+        final DistinctCounter lexicalEntries = DistinctCounter.create(approximate);
+        for (int i = 0; i < acc.numEvokes; i += 3) {
+            final long object = acc.evokes[i + 2];
+            if (acc.classes.contains(object) || acc.roles.contains(object)) {
+                conceptualizations.add(acc.evokes[i]);
+                lexicalEntries.add(acc.evokes[i + 1]);
+            }
+        }
+
+        this.numSemanticClasses = acc.classes.size();
+        this.numSemanticRoles = acc.roles.size();
+        this.numConceptualizations = (int) conceptualizations.count();
+        this.numLexicalEntries = (int) lexicalEntries.count();
+        this.numExamples = (int) acc.examples.count();
+        this.numAnnotationSets = (int) acc.annotationSets.count();
+        this.numClassRels = (int) acc.classRels.count();
+        this.numRoleRels = (int) acc.roleRels.count();
+        this.numCoreTriples = (int) acc.coreStmts.count();
+
+        double error = 0.0;
+        for (final DistinctCounter counter : new DistinctCounter[] { conceptualizations,
+                lexicalEntries, acc.examples, acc.annotationSets, acc.classRels, acc.roleRels,
+                acc.coreStmts }) {
+            error = Math.max(error, counter.getRelativeError());
+        }
+        this.relativeError = error;
+    }
+
+    /**
+     * Computes the statistics of each source and of "all" sources, either exactly or using
+     * HyperLogLog sketches for the counters not needed for membership checks.
+     */
+    static Map<String, InstanceStatistics> compute(final Map<String, Map<URI, QuadModel>> models,
+            final QuadModel tbox, final boolean approximate, final TaskPool pool)
+            throws RDFHandlerException {
+
+        final long ts = System.currentTimeMillis();
+
+        final Set<URI> roleRelProperties = Sets.newHashSet();
+        for (final Resource rel : tbox.filter(null, RDFS.SUBPROPERTYOF, PMO.ROLE_REL)
+                .subjects()) {
+            if (rel instanceof URI && !rel.equals(PMO.ROLE_REL)) {
+                roleRelProperties.add((URI) rel);
+            }
+        }
+
+        final Map<String, Accumulator> accs = Maps.newHashMap();
+        for (final String resource : Iterables.concat(models.keySet(),
+                ImmutableList.of("all"))) {
+            accs.put(resource, new Accumulator(approximate));
+        }
+        final Accumulator allAcc = accs.get("all");
+
+        // Collect instances and relations of each graph via index lookups
+        final List<RecursiveAction> tasks = Lists.newArrayList();
+        for (final Map.Entry<String, Map<URI, QuadModel>> entry : models.entrySet()) {
+            final Accumulator sourceAcc = accs.get(entry.getKey());
+            for (final QuadModel model : entry.getValue().values()) {
+                tasks.add(new RecursiveAction() {
+
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected void compute() {
+                        final Accumulator acc = new Accumulator(approximate);
+                        collectInstances(model, roleRelProperties, acc);
+                        sourceAcc.merge(acc);
+                        allAcc.merge(acc);
+                    }
+
+                });
+            }
+        }
+        pool.invokeAll("Instance statistics", tasks);
+
+        // Scan each graph once to collect core statements, for its source and for "all"
+        tasks.clear();
+        for (final Map.Entry<String, Map<URI, QuadModel>> entry : models.entrySet()) {
+            final Accumulator sourceAcc = accs.get(entry.getKey());
+            for (final QuadModel model : entry.getValue().values()) {
+                tasks.add(new RecursiveAction() {
+
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected void compute() {
+                        final DistinctCounter sourceStmts = DistinctCounter.create(approximate);
+                        final DistinctCounter allStmts = DistinctCounter.create(approximate);
+                        for (final Statement stmt : model) {
+                            final URI pred = stmt.getPredicate();
+                            if (INFERRED_PROPERTIES.contains(pred)
+                                    || !CORE_NAMESPACES.contains(pred.getNamespace())) {
+                                continue; // avoid counting inferences
+                            }
+                            final long subj = hash(stmt.getSubject());
+                            final long obj = hash(stmt.getObject());
+                            final boolean inSource = sourceAcc.coreInstances.contains(subj)
+                                    || sourceAcc.coreInstances.contains(obj);
+                            if (inSource || allAcc.coreInstances.contains(subj)
+                                    || allAcc.coreInstances.contains(obj)) {
+                                final long hash = hash(subj, hash(pred), obj);
+                                allStmts.add(hash);
+                                if (inSource) {
+                                    sourceStmts.add(hash);
+                                }
+                            }
+                        }
+                        synchronized (sourceAcc) {
+                            sourceAcc.coreStmts.merge(sourceStmts);
+                        }
+                        synchronized (allAcc) {
+                            allAcc.coreStmts.merge(allStmts);
+                        }
+                    }
+
+                });
+            }
+        }
+        pool.invokeAll("Instance statistics", tasks);
+
+        final Map<String, InstanceStatistics> statistics = Maps.newHashMap();
+        for (final Map.Entry<String, Accumulator> entry : accs.entrySet()) {
+            statistics.put(entry.getKey(), new InstanceStatistics(entry.getValue(), approximate));
+        }
+        LOGGER.info("Instance statistics computed for {} graphs in {} ms", tasks.size(),
+                System.currentTimeMillis() - ts);
+        return statistics;
+    }
+
+    private static void collectInstances(final QuadModel model,
+            final Set<URI> roleRelProperties, final Accumulator acc) {
+
+        for (final Resource c : model.filter(null, RDF.TYPE, PMO.SEMANTIC_CLASS).subjects()) {
+            if (model.contains(null, PMO.EVOKED_CONCEPT, c)
+                    || model.contains(c, PMO.CLASS_REL, null)
+                    || model.contains(null, PMO.CLASS_REL, c)) {
+                acc.classes.add(hash(c));
+            }
+        }
+        for (final Statement stmt : model.filter(null, PMO.SEM_ROLE, null)) {
+            acc.roles.add(hash(stmt.getObject()));
+        }
+        for (final Statement stmt : model.filter(null, RDF.TYPE, PMO.EXAMPLE)) {
+            acc.examples.add(hash(stmt.getSubject()));
+        }
+        for (final Statement stmt : model.filter(null, RDF.TYPE, PMO.ANNOTATION_SET)) {
+            acc.annotationSets.add(hash(stmt.getSubject()));
+        }
+        for (final Statement stmt : model.filter(null, PMO.CLASS_REL, null)) {
+            acc.classRels.add(hash(stmt));
+        }
+        for (final URI roleRelProperty : roleRelProperties) {
+            for (final Statement stmt : model.filter(null, roleRelProperty, null)) {
+                acc.roleRels.add(hash(stmt));
+            }
+        }
+        for (final Statement stmt : model.filter(null, ONTOLEX.EVOKES, null)) {
+            acc.addEvokes(hash(stmt), hash(stmt.getSubject()), hash(stmt.getObject()));
+        }
+        for (final Value type : CORE_TYPES) {
+            for (final Statement stmt : model.filter(null, RDF.TYPE, type)) {
+                acc.coreInstances.add(hash(stmt.getSubject()));
+            }
+        }
+    }
+
+    private static long hash(final Statement stmt) {
+        return hash(hash(stmt.getSubject()), hash(stmt.getPredicate()), hash(stmt.getObject()));
+    }
+
+    private static long hash(final long... hashes) {
+        final Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (final long hash : hashes) {
+            hasher.putLong(hash);
+        }
+        return hasher.hash().asLong();
+    }
+
+    private static long hash(final Value value) {
+        final Hasher hasher = Hashing.murmur3_128().newHasher();
+        if (value instanceof URI) {
+            hasher.putByte((byte) 1);
+        } else if (value instanceof BNode) {
+            hasher.putByte((byte) 2);
+        } else {
+            final Literal literal = (Literal) value;
+            hasher.putByte((byte) 3);
+            if (literal.getLanguage() != null) {
+                hasher.putString(literal.getLanguage(), StandardCharsets.UTF_8);
+            } else if (literal.getDatatype() != null) {
+                hasher.putString(literal.getDatatype().stringValue(), StandardCharsets.UTF_8);
+            }
+            hasher.putByte((byte) 0);
+        }
+        hasher.putString(value.stringValue(), StandardCharsets.UTF_8);
+        return hasher.hash().asLong();
+    }
+
+    private static final class Accumulator {
+
+        // Classes, roles and core instances are used for membership checks, hence exact
+
+        final LongSet classes = new LongSet();
+
+        final LongSet roles = new LongSet();
+
+        final LongSet coreInstances = new LongSet();
+
+        final DistinctCounter examples;
+
+        final DistinctCounter annotationSets;
+
+        final DistinctCounter classRels;
+
+        final DistinctCounter roleRels;
+
+        final DistinctCounter coreStmts;
+
+        long[] evokes = new long[48]; // (statement, subject, object) hash triples
+
+        int numEvokes = 0;
+
+        Accumulator(final boolean approximate) {
+            this.examples = DistinctCounter.create(approximate);
+            this.annotationSets = DistinctCounter.create(approximate);
+            this.classRels = DistinctCounter.create(approximate);
+            this.roleRels = DistinctCounter.create(approximate);
+            this.coreStmts = DistinctCounter.create(approximate);
+        }
+
+        void addEvokes(final long stmt, final long subj, final long obj) {
+            if (this.numEvokes + 3 > this.evokes.length) {
+                this.evokes = Arrays.copyOf(this.evokes, this.evokes.length * 2);
+            }
+            this.evokes[this.numEvokes++] = stmt;
+            this.evokes[this.numEvokes++] = subj;
+            this.evokes[this.numEvokes++] = obj;
+        }
+
+        synchronized void merge(final Accumulator acc) {
+            this.classes.addAll(acc.classes);
+            this.roles.addAll(acc.roles);
+            this.examples.merge(acc.examples);
+            this.annotationSets.merge(acc.annotationSets);
+            this.classRels.merge(acc.classRels);
+            this.roleRels.merge(acc.roleRels);
+            this.coreInstances.addAll(acc.coreInstances);
+            for (int i = 0; i < acc.numEvokes; i += 3) {
+                addEvokes(acc.evokes[i], acc.evokes[i + 1], acc.evokes[i + 2]);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,34 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import javax.annotation.Nullable;
+
+/**
+ * Helpers for the JSON written by {@link PipelineMetrics} and served by {@link LemmaServer}.
+ */
+final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * Returns the JSON string literal for the string supplied, or {@code null} if null.
+     */
+    static String quote(@Nullable final String string) {
+        if (string == null) {
+            return "null";
+        }
+        final StringBuilder builder = new StringBuilder("\"");
+        for (int i = 0; i < string.length(); ++i) {
+            final char c = string.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+}
@@ -0,0 +1,131 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import com.google.common.collect.Maps;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.fbk.dkm.premon.util.LemmaIndex;
+import eu.fbk.dkm.utils.CommandLine;
+
+/**
+ * Serves lookups on a {@link LemmaIndex} produced by Premonitor via a local HTTP endpoint.
+ * <p>
+ * Requests have the form {@code GET /lookup?lemma=<LEMMA>[&pos=<POS>]}, where {@code pos} is a
+ * LexInfo part of speech (e.g., {@code verb}); the response is a JSON array of objects with
+ * properties {@code lemma}, {@code pos}, {@code entry}, {@code resource} and {@code concept}.
+ * </p>
+ */
+public final class LemmaServer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LemmaServer.class);
+
+    private static final int DEFAULT_PORT = 8642;
+
+    private LemmaServer() {
+    }
+
+    public static void main(final String[] args) {
+        try {
+            final CommandLine cmd = CommandLine.parser().withName("lemma-server")
+                    .withHeader("Serve lookups of the predicates evoked by lemmas over HTTP")
+                    .withOption("i", "index", "Lemma index file (e.g., premon-lemmas.pmi)",
+                            "FILE", CommandLine.Type.FILE_EXISTING, true, false, true)
+                    .withOption("p", "port",
+                            String.format("Port to listen to (default %d)", DEFAULT_PORT),
+                            "PORT", CommandLine.Type.POSITIVE_INTEGER, true, false, false)
+                    .withOption(null, "host", "Host/address to bind to (default localhost)",
+                            "HOST", CommandLine.Type.STRING, true, false, false)
+                    .withLogger(LoggerFactory.getLogger("eu.fbk")).parse(args);
+
+            final File file = cmd.getOptionValue("i", File.class);
+            final int port = cmd.getOptionValue("p", Integer.class, DEFAULT_PORT);
+            final String host = cmd.getOptionValue("host", String.class, "localhost");
+
+            final LemmaIndex index = LemmaIndex.open(file);
+            final HttpServer server = HttpServer.create(new InetSocketAddress(host, port), 0);
+            server.createContext("/lookup", exchange -> handle(index, exchange));
+            server.setExecutor(Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors()));
+            server.start();
+            LOGGER.info("Serving {} lemma/POS pairs of {} at http://{}:{}/lookup", index.size(),
+                    file, host, port);
+
+        } catch (final Throwable ex) {
+            CommandLine.fail(ex);
+        }
+    }
+
+    private static void handle(final LemmaIndex index, final HttpExchange exchange)
+            throws IOException {
+        try {
+            final Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            final String lemma = params.get("lemma");
+            if (!"GET".equals(exchange.getRequestMethod()) || lemma == null) {
+                send(exchange, 400,
+                        "{ \"error\": \"usage: GET /lookup?lemma=<LEMMA>[&pos=<POS>]\" }\n");
+                return;
+            }
+            final List<LemmaIndex.Match> matches = index.lookup(lemma, params.get("pos"));
+            final StringBuilder out = new StringBuilder("[");
+            String separator = "\n";
+            for (final LemmaIndex.Match match : matches) {
+                out.append(separator);
+                out.append("  { \"lemma\": ").append(Json.quote(match.getLemma()));
+                out.append(", \"pos\": ").append(Json.quote(match.getPos()));
+                out.append(", \"entry\": ")
+                        .append(Json.quote(match.getEntry().stringValue()));
+                out.append(", \"resource\": ")
+                        .append(Json.quote(match.getResource()));
+                out.append(", \"concept\": ")
+                        .append(Json.quote(match.getConcept().stringValue()));
+                out.append(" }");
+                separator = ",\n";
+            }
+            out.append(matches.isEmpty() ? "]\n" : "\n]\n");
+            send(exchange, 200, out.toString());
+        } catch (final Throwable ex) {
+            LOGGER.error("Lookup failed: " + exchange.getRequestURI(), ex);
+            send(exchange, 500, "{ \"error\": " + Json.quote(ex.toString()) + " }");
+        }
+    }
+
+    private static Map<String, String> parseQuery(final String query)
+            throws UnsupportedEncodingException {
+        final Map<String, String> params = Maps.newHashMap();
+        if (query != null) {
+            for (final String param : query.split("&")) {
+                final int index = param.indexOf('=');
+                if (index > 0) {
+                    params.put(URLDecoder.decode(param.substring(0, index), "UTF-8"),
+                            URLDecoder.decode(param.substring(index + 1), "UTF-8"));
+                }
+            }
+        }
+        return params;
+    }
+
+    private static void send(final HttpExchange exchange, final int status, final String body)
+            throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveAction;
+
+import com.google.common.collect.Lists;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.rio.RDFHandlerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.fbk.dkm.premon.util.ConcurrentUnionFind;
+import eu.fbk.dkm.premon.util.TermDictionary;
+import eu.fbk.dkm.premon.vocab.PMO;
+import eu.fbk.rdfpro.util.Hash;
+import eu.fbk.rdfpro.util.QuadModel;
+
+/**
+ * Computes the closure of conceptualization, semantic class and semantic role mappings, merging
+ * the mappings that share some item (possibly asserted by different resources) into a single
+ * cluster, i.e., a connected component of the graph linking the items of each mapping.
+ * <p>
+ * Items are mapped to dense IDs by a {@link TermDictionary}, collecting the items of each mapping
+ * with one task per graph; components are then computed by another set of tasks sharing a
+ * {@link ConcurrentUnionFind}, and grouped with a counting sort on their representative. Each
+ * component is emitted as a mapping of the same type of its source mappings (items of different
+ * types are disjoint), identified by a hash of its items as done for converter mappings.
+ * </p>
+ */
+final class MappingClosure {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappingClosure.class);
+
+    private static final URI[] TYPES = new URI[] { PMO.CONCEPTUALIZATION_MAPPING,
+            PMO.SEMANTIC_CLASS_MAPPING, PMO.SEMANTIC_ROLE_MAPPING };
+
+    private static final String[] SUFFIXES = new String[] { Converter.DEFAULT_CON_SUFFIX,
+            Converter.DEFAULT_PRED_SUFFIX, Converter.DEFAULT_ARG_SUFFIX };
+
+    private static final String PREFIX = "closure";
+
+    private MappingClosure() {
+    }
+
+    /**
+     * Returns a model with the merged mappings of all the graphs supplied.
+     */
+    static QuadModel compute(final Map<String, Map<URI, QuadModel>> models, final TaskPool pool)
+            throws RDFHandlerException {
+
+        LOGGER.info("Computing mapping closure...");
+        final long ts = System.currentTimeMillis();
+
+        // Collect mappings as arrays (type, item IDs...), with one task per graph
+        final TermDictionary dictionary = new TermDictionary();
+        final List<List<int[]>> mappings = Lists.newArrayList();
+        final List<RecursiveAction> tasks = Lists.newArrayList();
+        for (final Map<URI, QuadModel> map : models.values()) {
+            for (final QuadModel model : map.values()) {
+                final List<int[]> graphMappings = Lists.newArrayList();
+                mappings.add(graphMappings);
+                tasks.add(new RecursiveAction() {
+
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected void compute() {
+                        collect(model, dictionary, graphMappings);
+                    }
+
+                });
+            }
+        }
+        pool.invokeAll("Mapping closure", tasks);
+
+        // Link the items of each mapping, again with one task per graph
+        final ConcurrentUnionFind unionFind = new ConcurrentUnionFind(dictionary.size());
+        tasks.clear();
+        for (final List<int[]> graphMappings : mappings) {
+            tasks.add(new RecursiveAction() {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    for (final int[] mapping : graphMappings) {
+                        for (int i = 2; i < mapping.length; ++i) {
+                            unionFind.union(mapping[1], mapping[i]);
+                        }
+                    }
+                }
+
+            });
+        }
+        pool.invokeAll("Mapping closure", tasks);
+
+        // Group items by representative (counting sort), recording the type of each component
+        final int size = dictionary.size();
+        final byte[] types = new byte[size];
+        final int[] offsets = new int[size + 1];
+        final boolean[] counted = new boolean[size];
+        int numMappings = 0;
+        for (final List<int[]> graphMappings : mappings) {
+            for (final int[] mapping : graphMappings) {
+                types[unionFind.find(mapping[1])] = (byte) mapping[0];
+                for (int i = 1; i < mapping.length; ++i) {
+                    if (!counted[mapping[i]]) {
+                        counted[mapping[i]] = true;
+                        ++offsets[unionFind.find(mapping[i]) + 1];
+                    }
+                }
+                ++numMappings;
+            }
+        }
+        for (int i = 0; i < size; ++i) {
+            offsets[i + 1] += offsets[i];
+        }
+        final int[] items = new int[offsets[size]];
+        final int[] fill = Arrays.copyOf(offsets, size);
+        for (int i = 0; i < size; ++i) {
+            if (counted[i]) {
+                items[fill[unionFind.find(i)]++] = i;
+            }
+        }
+
+        // Emit a mapping for each component
+        final QuadModel closure = QuadModel.create();
+        int numClusters = 0;
+        for (int root = 0; root < size; ++root) {
+            final int start = offsets[root];
+            final int end = offsets[root + 1];
+            if (end - start < 2) {
+                continue;
+            }
+            final String[] strings = new String[end - start + 1];
+            for (int i = start; i < end; ++i) {
+                strings[i - start] = dictionary.decode(items[i]).stringValue();
+            }
+            strings[end - start] = PREFIX;
+            Arrays.sort(strings);
+            final URI mappingURI = Converter.createURI(Converter.NAMESPACE + SUFFIXES[types[root]]
+                    + "-" + Hash.murmur3(String.join("|", strings)).toString());
+            closure.add(mappingURI, RDF.TYPE, TYPES[types[root]]);
+            for (int i = start; i < end; ++i) {
+                closure.add(mappingURI, PMO.ITEM, dictionary.decode(items[i]));
+            }
+            ++numClusters;
+        }
+
+        LOGGER.info("{} mappings over {} items merged into {} clusters in {} ms", numMappings,
+                items.length, numClusters, System.currentTimeMillis() - ts);
+        return closure;
+    }
+
+    private static void collect(final QuadModel model, final TermDictionary dictionary,
+            final List<int[]> mappings) {
+        for (int type = 0; type < TYPES.length; ++type) {
+            for (final Resource mapping : model.filter(null, RDF.TYPE, TYPES[type]).subjects()) {
+                int[] ids = new int[8];
+                int length = 1;
+                ids[0] = type;
+                for (final Statement stmt : model.filter(mapping, PMO.ITEM, null)) {
+                    if (length == ids.length) {
+                        ids = Arrays.copyOf(ids, length * 2);
+                    }
+                    ids[length++] = dictionary.encode(stmt.getObject());
+                }
+                if (length > 2) {
+                    mappings.add(Arrays.copyOf(ids, length));
+                }
+            }
+        }
+    }
+
+}
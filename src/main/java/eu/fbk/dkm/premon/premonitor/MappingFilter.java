@@ -0,0 +1,320 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RecursiveAction;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.rio.RDFHandlerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.fbk.dkm.premon.util.LongSet;
+import eu.fbk.dkm.premon.vocab.PMO;
+import eu.fbk.rdfpro.util.QuadModel;
+
+/**
+ * Removes illegal mappings and ontoMatch assertions, i.e., the ones referring to non-existing
+ * conceptualizations, semantic classes and semantic roles.
+ * <p>
+ * Valid items are collected by {@link #collectValidItems(Map, TaskPool)} in a set of 64-bit hashes,
+ * shared with {@link MappingStatistics}. Each graph is then filtered by
+ * {@link #apply(Map, LongSet, TaskPool)} in a parallel task that collects the statements to remove
+ * in a per-graph batch, removed only at the end of the task. Statements already in the batch are
+ * skipped when querying the graph, and the ontoMatch assertions still referring to an object or
+ * made by a subject are tracked with reference counts rather than by querying the graph, so that
+ * the outcome is the same as removing statements one at a time.
+ * </p>
+ */
+final class MappingFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappingFilter.class);
+
+    private static final URI[] FILTERED_TYPES = new URI[] { PMO.CONCEPTUALIZATION_MAPPING,
+            PMO.SEMANTIC_CLASS_MAPPING, PMO.SEMANTIC_ROLE_MAPPING };
+
+    private final QuadModel model;
+
+    private final URI graph;
+
+    private final LongSet validItems;
+
+    private final SourceMatcher matcher;
+
+    private final Set<Statement> removed;
+
+    private final Multiset<Value> ontoMatchObjects;
+
+    private final Multiset<Value> ontoMatchSubjects;
+
+    private MappingFilter(final QuadModel model, final URI graph, final LongSet validItems,
+            final SourceMatcher matcher) {
+        this.model = model;
+        this.graph = graph;
+        this.validItems = validItems;
+        this.matcher = matcher;
+        this.removed = Sets.newHashSet();
+        this.ontoMatchObjects = HashMultiset.create();
+        this.ontoMatchSubjects = HashMultiset.create();
+    }
+
+    /**
+     * Returns the hashes of valid mapping items, i.e., conceptualizations, semantic classes and
+     * semantic roles, as tested by {@link #isValid(LongSet, Value)}.
+     */
+    static LongSet collectValidItems(final Map<String, Map<URI, QuadModel>> models,
+            final TaskPool pool) throws RDFHandlerException {
+
+        final LongSet validItems = new LongSet();
+        final List<RecursiveAction> tasks = Lists.newArrayList();
+        for (final Map<URI, QuadModel> map : models.values()) {
+            for (final QuadModel model : map.values()) {
+                tasks.add(new RecursiveAction() {
+
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected void compute() {
+                        final LongSet items = new LongSet();
+                        for (final Statement stmt : model.filter(null, PMO.EVOKED_CONCEPT,
+                                null)) {
+                            items.add(hash(stmt.getSubject())); // conceptualizations
+                        }
+                        for (final Statement stmt : model.filter(null, PMO.SEM_ROLE, null)) {
+                            items.add(hash(stmt.getSubject())); // semantic class
+                            items.add(hash(stmt.getObject())); // semantic roles
+                        }
+                        synchronized (validItems) {
+                            validItems.addAll(items);
+                        }
+                    }
+
+                });
+            }
+        }
+        pool.invokeAll("Mapping filtering", tasks);
+        return validItems;
+    }
+
+    static boolean isValid(final LongSet validItems, final Value item) {
+        return validItems.contains(hash(item));
+    }
+
+    /**
+     * Removes illegal mappings and ontoMatch assertions from all the graphs, in parallel.
+     */
+    static void apply(final Map<String, Map<URI, QuadModel>> models, final LongSet validItems,
+            final TaskPool pool) throws RDFHandlerException {
+
+        LOGGER.info("Removing illegal mappings...");
+
+        final long ts = System.currentTimeMillis();
+        final SourceMatcher matcher = new SourceMatcher(models.keySet());
+        final List<RecursiveAction> tasks = Lists.newArrayList();
+        for (final Map<URI, QuadModel> map : models.values()) {
+            for (final Map.Entry<URI, QuadModel> entry : map.entrySet()) {
+                tasks.add(new RecursiveAction() {
+
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected void compute() {
+                        new MappingFilter(entry.getValue(), entry.getKey(), validItems, matcher)
+                                .run();
+                    }
+
+                });
+            }
+        }
+        pool.invokeAll("Mapping filtering", tasks);
+        LOGGER.info("Illegal mappings removed from {} graphs in {} ms", tasks.size(),
+                System.currentTimeMillis() - ts);
+    }
+
+    private void run() {
+        for (final URI type : FILTERED_TYPES) {
+            filterMappings(type);
+        }
+        filterOntoMatches();
+        for (final Statement stmt : this.removed) {
+            this.model.remove(stmt);
+        }
+    }
+
+    private void filterMappings(final URI type) {
+
+        int numMappingsToDelete = 0;
+        int numMappings = 0;
+        int mappingsDeletedCompletely = 0;
+        int referencesRemoved = 0;
+        final Map<String, Integer> numMappingsPerSource = Maps.newHashMap();
+        final List<Statement> stmtsToDelete = Lists.newArrayList();
+        for (final Resource m : this.model.filter(null, RDF.TYPE, type).subjects()) {
+            if (!isLive(m, RDF.TYPE, type)) {
+                continue; // mapping deleted while filtering a previous type
+            }
+            ++numMappings;
+
+            // Locate the first invalid item, counting items
+            Statement invalidStmt = null;
+            int items = 0;
+            for (final Statement stmt : this.model.filter(m, null, null)) {
+                if (stmt.getPredicate().equals(PMO.ITEM) && !this.removed.contains(stmt)) {
+                    ++items;
+                    if (invalidStmt == null && !isValid(this.validItems, stmt.getObject())) {
+                        invalidStmt = stmt;
+                    }
+                }
+            }
+            if (invalidStmt == null) {
+                continue;
+            }
+
+            ++numMappingsToDelete;
+            final String str = invalidStmt.getObject().stringValue();
+            for (long mask = this.matcher.matchAll(str); mask != 0L; mask &= mask - 1) {
+                final String source = this.matcher.getKey(Long.numberOfTrailingZeros(mask));
+                numMappingsPerSource.put(source,
+                        1 + numMappingsPerSource.getOrDefault(source, 0));
+            }
+            if (numMappingsToDelete <= 10) {
+                LOGGER.warn("Removing illegal mapping {} - missing {}", m,
+                        invalidStmt.getObject());
+            } else if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Removing illegal mapping {} - missing {}", m,
+                        invalidStmt.getObject());
+            } else if (numMappingsToDelete == 11) {
+                LOGGER.warn("Omitting further illegal mappings ....");
+            }
+
+            // Drop the whole mapping if less than two items would be left
+            if (items - 1 < 2) {
+                for (final Statement stmt : this.model.filter(m, null, null)) {
+                    if (!this.removed.contains(stmt)) {
+                        stmtsToDelete.add(stmt);
+                    }
+                }
+                mappingsDeletedCompletely++;
+                if (numMappingsToDelete <= 10 || LOGGER.isDebugEnabled()) {
+                    LOGGER.info("Removing the complete mapping");
+                }
+            } else {
+                stmtsToDelete.add(invalidStmt);
+                referencesRemoved++;
+                if (numMappingsToDelete <= 10 || LOGGER.isDebugEnabled()) {
+                    LOGGER.info("Removing only missing reference");
+                }
+            }
+        }
+
+        if (numMappingsToDelete > 0) {
+            this.removed.addAll(stmtsToDelete);
+            LOGGER.warn("{}/{} illegal {} mappings and {} references {} removed from {}\n"
+                    + "###########################################################"
+                    + "#################################################",
+                    mappingsDeletedCompletely, numMappings,
+                    type.equals(PMO.SEMANTIC_CLASS_MAPPING) ? "semantic class"
+                            : type.equals(PMO.CONCEPTUALIZATION_MAPPING) ? "conceptualization"
+                                    : "semantic role",
+                    referencesRemoved, numMappingsPerSource, this.graph);
+        }
+    }
+
+    private void filterOntoMatches() {
+
+        // Index the ontoMatch assertions still in the graph
+        final List<Statement> stmts = Lists.newArrayList();
+        for (final Statement stmt : this.model.filter(null, PMO.ONTO_MATCH, null)) {
+            if (!this.removed.contains(stmt)) {
+                stmts.add(stmt);
+                this.ontoMatchObjects.add(stmt.getObject());
+                this.ontoMatchSubjects.add(stmt.getSubject());
+            }
+        }
+
+        int numMappingsToDelete = 0;
+        int numTriplesToDelete = 0;
+        for (final Statement stmt : stmts) {
+            if (isValid(this.validItems, stmt.getSubject())) {
+                continue;
+            }
+
+            // Delete ontology matching triple
+            ++numMappingsToDelete;
+            ++numTriplesToDelete;
+            remove(stmt);
+            if (numMappingsToDelete <= 10) {
+                LOGGER.warn("Removing illegal ontoMatch {} - missing {}", stmt.getSubject(),
+                        stmt.getObject());
+            } else if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Removing illegal ontoMatch {} - missing {}", stmt.getSubject(),
+                        stmt.getObject());
+            } else if (numMappingsToDelete == 11) {
+                LOGGER.warn("Omitting further illegal ontoMatch assertions ....");
+            }
+
+            // Remove all the triples of the ontological concept if nothing else maps to it
+            if (this.ontoMatchObjects.count(stmt.getObject()) == 0) {
+                for (final Statement s : this.model.filter((URI) stmt.getObject(), null, null)) {
+                    if (!this.removed.contains(s)) {
+                        ++numTriplesToDelete;
+                        remove(s);
+                        LOGGER.debug("Removing onto triple {} - {} - {}", s.getSubject(),
+                                s.getPredicate(), s.getObject());
+                    }
+                }
+            }
+
+            // Triples of a subject left with no ontoMatch are counted, but kept in the graph
+            if (this.ontoMatchSubjects.count(stmt.getSubject()) == 0) {
+                for (final Statement s : this.model.filter(stmt.getSubject(), null, null)) {
+                    if (!this.removed.contains(s)) {
+                        ++numTriplesToDelete;
+                        LOGGER.debug("Removing type triple {} - {} - {}", s.getSubject(),
+                                s.getPredicate(), s.getObject());
+                    }
+                }
+            }
+        }
+
+        LOGGER.warn("{} illegal ontoMatch assertions and {} related triples removed from {}\n"
+                + "###########################################################"
+                + "#################################################", numMappingsToDelete,
+                numTriplesToDelete, this.graph);
+    }
+
+    private boolean isLive(final Resource subj, final URI pred, final Value obj) {
+        for (final Statement stmt : this.model.filter(subj, pred, obj)) {
+            if (!this.removed.contains(stmt)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void remove(final Statement stmt) {
+        if (this.removed.add(stmt) && stmt.getPredicate().equals(PMO.ONTO_MATCH)) {
+            this.ontoMatchObjects.remove(stmt.getObject());
+            this.ontoMatchSubjects.remove(stmt.getSubject());
+        }
+    }
+
+    private static long hash(final Value value) {
+        return Hashing.murmur3_128().hashString(value.stringValue(), StandardCharsets.UTF_8)
+                .asLong();
+    }
+
+}
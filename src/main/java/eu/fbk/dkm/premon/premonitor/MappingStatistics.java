@@ -0,0 +1,328 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveAction;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Table;
+import com.google.common.collect.Table.Cell;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.rio.RDFHandlerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.fbk.dkm.premon.util.DistinctCounter;
+import eu.fbk.dkm.premon.util.LongSet;
+import eu.fbk.dkm.premon.vocab.PMO;
+import eu.fbk.rdfpro.util.QuadModel;
+
+/**
+ * Number of distinct mappings between pairs of sources, by mapping type, for a resource (a
+ * source or "all").
+ * <p>
+ * Statistics for all the resources are computed by
+ * {@link #compute(Map, List, LongSet, boolean, TaskPool, Map, Map)} with a single parallel
+ * traversal of the mappings and ontoMatch assertions of each graph, collecting 64-bit hashes in
+ * per-task accumulators that are then merged. The same traversal also yields the statistics after
+ * the removal of illegal mappings, by applying to each mapping the same rules applied by
+ * {@link MappingFilter}. Hashes of each table cell are counted either exactly or with a mergeable
+ * {@link DistinctCounter} sketch, whose error is reported in {@link #errors}.
+ * </p>
+ */
+final class MappingStatistics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappingStatistics.class);
+
+    private static final URI[] FILTERED_TYPES = new URI[] { PMO.CONCEPTUALIZATION_MAPPING,
+            PMO.SEMANTIC_CLASS_MAPPING, PMO.SEMANTIC_ROLE_MAPPING };
+
+    final Table<String, String, Integer> conMappings;
+
+    final Table<String, String, Integer> classMappings;
+
+    final Table<String, String, Integer> roleMappings;
+
+    final Table<String, String, Integer> otherMappings;
+
+    final Table<String, String, Double> errors; // max relative error of counts for (from, to)
+
+    private MappingStatistics(final Accumulator accumulator) {
+        this.conMappings = accumulator.counts(0);
+        this.classMappings = accumulator.counts(1);
+        this.roleMappings = accumulator.counts(2);
+        this.otherMappings = accumulator.counts(3);
+        this.errors = accumulator.errors();
+    }
+
+    /**
+     * Computes the mapping statistics of each source and of "all" sources, storing them in the
+     * {@code before} map and, if not null, storing the statistics after the removal of illegal
+     * mappings in the {@code after} map, based on the valid items supplied (required in that
+     * case). If {@code approximate} is set, counts are estimated using HyperLogLog sketches.
+     */
+    static void compute(final Map<String, Map<URI, QuadModel>> models,
+            final List<String> sourceKeys, @Nullable final LongSet validItems,
+            final boolean approximate, final TaskPool pool,
+            final Map<String, MappingStatistics> before,
+            @Nullable final Map<String, MappingStatistics> after) throws RDFHandlerException {
+
+        Preconditions.checkArgument(after == null || validItems != null);
+
+        // Allocate an accumulator for each resource and state (before/after filtering)
+        final Map<String, Accumulator[]> accumulators = Maps.newHashMap();
+        for (final String resource : Iterables.concat(models.keySet(),
+                ImmutableList.of("all"))) {
+            accumulators.put(resource, new Accumulator[] { new Accumulator(approximate),
+                    after == null ? null : new Accumulator(approximate) });
+        }
+
+        // Process each graph in a separate task, merging task results once done
+        final SourceMatcher matcher = new SourceMatcher(sourceKeys);
+        final List<RecursiveAction> tasks = Lists.newArrayList();
+        for (final Map.Entry<String, Map<URI, QuadModel>> entry : models.entrySet()) {
+            final String source = entry.getKey();
+            for (final QuadModel model : entry.getValue().values()) {
+                tasks.add(new RecursiveAction() {
+
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected void compute() {
+                        final Accumulator[] sourceAccs = new Accumulator[] {
+                                new Accumulator(approximate),
+                                after == null ? null : new Accumulator(approximate) };
+                        final Accumulator[] allAccs = new Accumulator[] {
+                                new Accumulator(approximate),
+                                after == null ? null : new Accumulator(approximate) };
+                        process(model, source, matcher, validItems, sourceAccs, allAccs);
+                        merge(accumulators.get(source), sourceAccs);
+                        merge(accumulators.get("all"), allAccs);
+                    }
+
+                });
+            }
+        }
+        final long ts = System.currentTimeMillis();
+        pool.invokeAll("Mapping statistics", tasks);
+
+        // Turn accumulated hashes into counts
+        for (final Map.Entry<String, Accumulator[]> entry : accumulators.entrySet()) {
+            before.put(entry.getKey(), new MappingStatistics(entry.getValue()[0]));
+            if (after != null) {
+                after.put(entry.getKey(), new MappingStatistics(entry.getValue()[1]));
+            }
+        }
+        LOGGER.info("Mapping statistics computed for {} graphs in {} ms", tasks.size(),
+                System.currentTimeMillis() - ts);
+    }
+
+    private static void process(final QuadModel model, final String source,
+            final SourceMatcher matcher, @Nullable final LongSet validItems,
+            final Accumulator[] sourceAccs, final Accumulator[] allAccs) {
+
+        for (final Resource mapping : model.filter(null, RDF.TYPE, PMO.MAPPING).subjects()) {
+
+            final int type;
+            if (model.contains(mapping, RDF.TYPE, PMO.CONCEPTUALIZATION_MAPPING)) {
+                type = 0;
+            } else if (model.contains(mapping, RDF.TYPE, PMO.SEMANTIC_CLASS_MAPPING)) {
+                type = 1;
+            } else if (model.contains(mapping, RDF.TYPE, PMO.SEMANTIC_ROLE_MAPPING)) {
+                type = 2;
+            } else {
+                type = 3;
+            }
+
+            // Retrieve items in the order they are checked when filtering mappings
+            final List<Value> items = Lists.newArrayList();
+            for (final Statement stmt : model.filter(mapping, null, null)) {
+                if (stmt.getPredicate().equals(PMO.ITEM)) {
+                    items.add(stmt.getObject());
+                }
+            }
+            addMapping(sourceAccs[0], allAccs[0], type, items, matcher);
+
+            // Filtering removes the first invalid item once for each mapping type filtered,
+            // dropping the whole mapping if less than two items would be left
+            if (sourceAccs[1] != null) {
+                List<Value> filteredItems = items;
+                for (final URI filteredType : FILTERED_TYPES) {
+                    if (filteredItems != null
+                            && model.contains(mapping, RDF.TYPE, filteredType)) {
+                        for (final Value item : filteredItems) {
+                            if (!MappingFilter.isValid(validItems, item)) {
+                                if (filteredItems.size() - 1 < 2) {
+                                    filteredItems = null;
+                                } else {
+                                    filteredItems = Lists.newArrayList(filteredItems);
+                                    filteredItems.remove(item);
+                                }
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (filteredItems != null) {
+                    addMapping(sourceAccs[1], allAccs[1], type, filteredItems, matcher);
+                }
+            }
+        }
+
+        for (final Statement stmt : model.filter(null, PMO.ONTO_MATCH, null)) {
+
+            final Resource subject = stmt.getSubject();
+            final int type;
+            if (model.contains(subject, RDF.TYPE, PMO.CONCEPTUALIZATION)) {
+                type = 0;
+            } else if (model.contains(subject, RDF.TYPE, PMO.SEMANTIC_CLASS)) {
+                type = 1;
+            } else if (model.contains(subject, RDF.TYPE, PMO.SEMANTIC_ROLE)) {
+                type = 2;
+            } else {
+                type = 3;
+            }
+
+            final String subjStr = subject.stringValue();
+            final int subjIndex = matcher.match(subjStr);
+            final String subjRes = subjIndex < 0 ? "" : matcher.getKey(subjIndex);
+            final long hash = hash(subjStr, stmt.getObject().stringValue());
+
+            // Statistics for "all" are computed with no source keys, hence the empty row key
+            final boolean valid = validItems == null
+                    || MappingFilter.isValid(validItems, subject);
+            for (int i = 0; i < (valid ? 2 : 1); ++i) {
+                if (sourceAccs[i] != null) {
+                    sourceAccs[i].add(type, subjRes, source, hash);
+                    sourceAccs[i].add(type, "all", "all", hash);
+                    allAccs[i].add(type, "", "all", hash);
+                    allAccs[i].add(type, "all", "all", hash);
+                }
+            }
+        }
+    }
+
+    private static void addMapping(final Accumulator sourceAcc, final Accumulator allAcc,
+            final int type, final List<Value> items, final SourceMatcher matcher) {
+
+        final Map<String, String> itemsBySource = Maps.newHashMap();
+        for (final Value item : items) {
+            final String str = item.stringValue();
+            for (long mask = matcher.matchAll(str); mask != 0L; mask &= mask - 1) {
+                itemsBySource.put(matcher.getKey(Long.numberOfTrailingZeros(mask)), str);
+            }
+        }
+
+        for (final String fromSource : itemsBySource.keySet()) {
+            for (final String toSource : itemsBySource.keySet()) {
+                if (fromSource.compareTo(toSource) < 0) {
+                    sourceAcc.add(type, fromSource, toSource,
+                            hash(itemsBySource.get(fromSource), itemsBySource.get(toSource)));
+                }
+            }
+        }
+        sourceAcc.add(type, "all", "all", hash(Joiner.on('|')
+                .join(Ordering.natural().sortedCopy(itemsBySource.values()))));
+
+        // Statistics for "all" are computed with no source keys: items are never matched
+        allAcc.add(type, "all", "all", hash(""));
+    }
+
+    private static void merge(final Accumulator[] targets, final Accumulator[] sources) {
+        for (int i = 0; i < targets.length; ++i) {
+            if (targets[i] != null) {
+                synchronized (targets[i]) {
+                    targets[i].addAll(sources[i]);
+                }
+            }
+        }
+    }
+
+    private static long hash(final String... strings) {
+        final Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (final String string : strings) {
+            hasher.putString(string, StandardCharsets.UTF_8).putByte((byte) 0);
+        }
+        return hasher.hash().asLong();
+    }
+
+    private static final class Accumulator {
+
+        private final boolean approximate;
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private final Table<String, String, DistinctCounter>[] hashes = new Table[] {
+                HashBasedTable.create(), HashBasedTable.create(), HashBasedTable.create(),
+                HashBasedTable.create() };
+
+        Accumulator(final boolean approximate) {
+            this.approximate = approximate;
+        }
+
+        void add(final int type, final String row, final String col, final long hash) {
+            getCounter(type, row, col).add(hash);
+        }
+
+        void addAll(final Accumulator accumulator) {
+            for (int type = 0; type < this.hashes.length; ++type) {
+                for (final Cell<String, String, DistinctCounter> cell : accumulator.hashes[type]
+                        .cellSet()) {
+                    getCounter(type, cell.getRowKey(), cell.getColumnKey())
+                            .merge(cell.getValue());
+                }
+            }
+        }
+
+        Table<String, String, Integer> counts(final int type) {
+            final Table<String, String, Integer> counts = HashBasedTable.create();
+            for (final Cell<String, String, DistinctCounter> cell : this.hashes[type]
+                    .cellSet()) {
+                counts.put(cell.getRowKey(), cell.getColumnKey(),
+                        (int) cell.getValue().count());
+            }
+            return counts;
+        }
+
+        Table<String, String, Double> errors() {
+            final Table<String, String, Double> errors = HashBasedTable.create();
+            for (final Table<String, String, DistinctCounter> table : this.hashes) {
+                for (final Cell<String, String, DistinctCounter> cell : table.cellSet()) {
+                    final Double error = errors.get(cell.getRowKey(), cell.getColumnKey());
+                    final double newError = cell.getValue().getRelativeError();
+                    if (error == null || newError > error) {
+                        errors.put(cell.getRowKey(), cell.getColumnKey(), newError);
+                    }
+                }
+            }
+            return errors;
+        }
+
+        private DistinctCounter getCounter(final int type, final String row, final String col) {
+            DistinctCounter counter = this.hashes[type].get(row, col);
+            if (counter == null) {
+                counter = DistinctCounter.create(this.approximate);
+                this.hashes[type].put(row, col, counter);
+            }
+            return counter;
+        }
+
+    }
+
+}
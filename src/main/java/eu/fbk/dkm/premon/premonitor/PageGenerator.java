@@ -0,0 +1,314 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+
+import org.openrdf.model.Literal;
+import org.openrdf.model.Namespace;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.Rio;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.fbk.dkm.premon.util.UnionModel;
+import eu.fbk.dkm.premon.vocab.PM;
+import eu.fbk.rdfpro.util.QuadModel;
+
+/**
+ * Renders a static Linked Data site with one page per PreMOn resource URI (rolesets, frames,
+ * conceptualizations, lexical entries, ...) directly from the final graph models.
+ * <p>
+ * Each URI {@code pm:<name>} with some statement as subject gets an HTML page listing its
+ * properties (with links to the pages of the other resources) and the same statements as Turtle
+ * and JSON-LD fragments (the latter keeping the graph of each statement). Statements of a subject
+ * are obtained by probing the subject indexes of the models, and subjects are split in chunks
+ * rendered in parallel. Files are sharded by a hash of the name in 256 sub-folders, i.e.,
+ * {@code <folder>/<shard>/<name>.{html,ttl,jsonld}}, with characters other than letters,
+ * digits, {@code -}, {@code _} and non-leading {@code .} percent-encoded in file names.
+ * </p>
+ */
+final class PageGenerator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PageGenerator.class);
+
+    private static final ValueFactoryImpl FACTORY = ValueFactoryImpl.getInstance();
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private static final Comparator<Statement> ORDER = (s1, s2) -> {
+        int result = s1.getPredicate().stringValue().compareTo(s2.getPredicate().stringValue());
+        if (result == 0) {
+            result = s1.getObject().stringValue().compareTo(s2.getObject().stringValue());
+        }
+        if (result == 0) {
+            result = s1.getContext().stringValue().compareTo(s2.getContext().stringValue());
+        }
+        return result;
+    };
+
+    private final File folder;
+
+    private final Map<URI, UnionModel> models;
+
+    private final List<Namespace> namespaces;
+
+    private final String[] names;
+
+    private final AtomicLong numStatements;
+
+    private PageGenerator(final File folder, final Map<URI, UnionModel> models,
+            final List<Namespace> namespaces, final String[] names) {
+        this.folder = folder;
+        this.models = models;
+        this.namespaces = namespaces;
+        this.names = names;
+        this.numStatements = new AtomicLong();
+    }
+
+    /**
+     * Renders the pages of all the PreMOn resources with some statement in the graph models
+     * supplied, writing them to the folder specified.
+     */
+    static void generate(final File folder, final Map<URI, UnionModel> models,
+            final TaskPool pool) throws RDFHandlerException {
+
+        LOGGER.info("Generating pages in {}...", folder);
+        final long ts = System.currentTimeMillis();
+
+        // Collect the names of PreMOn resources used as subjects, and the namespaces in use
+        final Set<String> nameSet = Sets.newHashSet();
+        final Set<Namespace> namespaceSet = Sets.newHashSet();
+        for (final UnionModel model : models.values()) {
+            namespaceSet.addAll(model.getNamespaces());
+            for (final QuadModel quadModel : model.getModels()) {
+                for (final Resource subject : quadModel.subjects()) {
+                    final String string = subject.stringValue();
+                    if (subject instanceof URI && string.startsWith(PM.NAMESPACE)
+                            && string.length() > PM.NAMESPACE.length()) {
+                        nameSet.add(string.substring(PM.NAMESPACE.length()));
+                    }
+                }
+            }
+        }
+        final String[] names = nameSet.toArray(new String[0]);
+        Arrays.sort(names);
+        final List<Namespace> namespaces = Ordering.natural().sortedCopy(namespaceSet);
+
+        // Create shard folders upfront, so that tasks do not race on them
+        for (int shard = 0; shard < 256; ++shard) {
+            final File shardFolder = new File(folder, String.format("%02x", shard));
+            if (!shardFolder.isDirectory() && !shardFolder.mkdirs()) {
+                throw new RDFHandlerException("Cannot create folder " + shardFolder);
+            }
+        }
+
+        // Render pages in chunks of consecutive names, one task per chunk
+        final PageGenerator generator = new PageGenerator(folder, models, namespaces, names);
+        final List<RecursiveAction> tasks = Lists.newArrayList();
+        for (int start = 0; start < names.length; start += CHUNK_SIZE) {
+            final int chunkStart = start;
+            final int chunkEnd = Math.min(names.length, start + CHUNK_SIZE);
+            tasks.add(new RecursiveAction() {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    for (int i = chunkStart; i < chunkEnd; ++i) {
+                        generator.render(names[i]);
+                    }
+                }
+
+            });
+        }
+        pool.invokeAll("Page generation", tasks);
+
+        LOGGER.info("{} pages with {} statements generated in {} ms", names.length,
+                generator.numStatements.get(), System.currentTimeMillis() - ts);
+    }
+
+    private void render(final String name) {
+
+        // Retrieve the statements of the subject from all graphs, sorted for display
+        final URI subject = FACTORY.createURI(PM.NAMESPACE + name);
+        final List<Statement> stmts = Lists.newArrayList();
+        for (final Map.Entry<URI, UnionModel> entry : this.models.entrySet()) {
+            for (final Statement stmt : entry.getValue().filter(subject, null, null)) {
+                stmts.add(FACTORY.createStatement(subject, stmt.getPredicate(), stmt.getObject(),
+                        entry.getKey()));
+            }
+        }
+        stmts.sort(ORDER);
+        this.numStatements.addAndGet(stmts.size());
+
+        // Write the HTML page and the Turtle and JSON-LD fragments
+        final String path = getPath(name);
+        try {
+            try (Writer out = new OutputStreamWriter(new BufferedOutputStream(
+                    new FileOutputStream(new File(this.folder, path + ".html"))),
+                    StandardCharsets.UTF_8)) {
+                writeHtml(out, subject, name, stmts);
+            }
+            writeRDF(new File(this.folder, path + ".ttl"), RDFFormat.TURTLE, stmts);
+            writeRDF(new File(this.folder, path + ".jsonld"), RDFFormat.JSONLD, stmts);
+        } catch (final IOException | RDFHandlerException ex) {
+            throw new RuntimeException("Cannot generate page for " + subject, ex);
+        }
+    }
+
+    private void writeHtml(final Writer out, final URI subject, final String name,
+            final List<Statement> stmts) throws IOException {
+
+        String label = name;
+        for (final Statement stmt : stmts) {
+            if (stmt.getPredicate().equals(RDFS.LABEL) && stmt.getObject() instanceof Literal) {
+                label = stmt.getObject().stringValue();
+                break;
+            }
+        }
+
+        final String file = encode(name).replace("%", "%25");
+        out.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n<title>");
+        out.write(escape(label));
+        out.write("</title>\n");
+        out.write("<link rel=\"alternate\" type=\"text/turtle\" href=\"" + file + ".ttl\">\n");
+        out.write("<link rel=\"alternate\" type=\"application/ld+json\" href=\"" + file
+                + ".jsonld\">\n");
+        out.write("</head>\n<body>\n<h1>");
+        out.write(escape(label));
+        out.write("</h1>\n<p><a href=\"");
+        out.write(escape(subject.stringValue()));
+        out.write("\">");
+        out.write(escape(subject.stringValue()));
+        out.write("</a> (<a href=\"" + file + ".ttl\">Turtle</a>, <a href=\"" + file
+                + ".jsonld\">JSON-LD</a>)</p>\n");
+        out.write("<table>\n<tr><th>Property</th><th>Value</th><th>Graph</th></tr>\n");
+        for (final Statement stmt : stmts) {
+            out.write("<tr><td>");
+            writeHtmlValue(out, stmt.getPredicate());
+            out.write("</td><td>");
+            writeHtmlValue(out, stmt.getObject());
+            out.write("</td><td>");
+            writeHtmlValue(out, stmt.getContext());
+            out.write("</td></tr>\n");
+        }
+        out.write("</table>\n</body>\n</html>\n");
+    }
+
+    private void writeHtmlValue(final Writer out, final Value value) throws IOException {
+        if (value instanceof Literal) {
+            final Literal literal = (Literal) value;
+            out.write(escape(literal.getLabel()));
+            if (literal.getLanguage() != null) {
+                out.write(" <small>@" + escape(literal.getLanguage()) + "</small>");
+            } else if (literal.getDatatype() != null) {
+                out.write(" <small>" + escape(abbreviate(literal.getDatatype())) + "</small>");
+            }
+        } else if (value instanceof URI) {
+            final String string = value.stringValue();
+            final String name = string.startsWith(PM.NAMESPACE)
+                    ? string.substring(PM.NAMESPACE.length()) : null;
+            final String href = name != null && Arrays.binarySearch(this.names, name) >= 0
+                    ? "../" + getPath(name).replace("%", "%25") + ".html" : string;
+            out.write("<a href=\"" + escape(href) + "\">");
+            out.write(escape(abbreviate((URI) value)));
+            out.write("</a>");
+        } else {
+            out.write(escape("_:" + value.stringValue()));
+        }
+    }
+
+    private void writeRDF(final File file, final RDFFormat format, final List<Statement> stmts)
+            throws IOException, RDFHandlerException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            final RDFWriter writer = Rio.createWriter(format, out);
+            writer.startRDF();
+            for (final Namespace namespace : this.namespaces) {
+                writer.handleNamespace(namespace.getPrefix(), namespace.getName());
+            }
+            for (final Statement stmt : stmts) {
+                writer.handleStatement(stmt);
+            }
+            writer.endRDF();
+        }
+    }
+
+    private String abbreviate(final URI uri) {
+        final String string = uri.stringValue();
+        Namespace best = null;
+        for (final Namespace namespace : this.namespaces) {
+            if (string.startsWith(namespace.getName()) && (best == null
+                    || namespace.getName().length() > best.getName().length())) {
+                best = namespace;
+            }
+        }
+        return best == null ? string
+                : best.getPrefix() + ":" + string.substring(best.getName().length());
+    }
+
+    // Returns the path of a page relative to the site folder, without extension
+    private static String getPath(final String name) {
+        final int hash = name.hashCode();
+        return String.format("%02x", (hash ^ hash >>> 8 ^ hash >>> 16 ^ hash >>> 24) & 0xFF)
+                + "/" + encode(name);
+    }
+
+    private static String encode(final String name) {
+        final StringBuilder builder = new StringBuilder(name.length());
+        for (final byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            final char c = (char) (b & 0xFF);
+            if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                    || c == '.' && builder.length() > 0 || c == '-' || c == '_') {
+                builder.append(c);
+            } else {
+                builder.append('%').append(String.format("%02X", b & 0xFF));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String escape(final String string) {
+        final StringBuilder builder = new StringBuilder(string.length() + 16);
+        for (int i = 0; i < string.length(); ++i) {
+            final char c = string.charAt(i);
+            if (c == '<') {
+                builder.append("&lt;");
+            } else if (c == '>') {
+                builder.append("&gt;");
+            } else if (c == '&') {
+                builder.append("&amp;");
+            } else if (c == '"') {
+                builder.append("&quot;");
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,68 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.util.Arrays;
+
+/**
+ * The phases of a Premonitor run, in execution order.
+ * <p>
+ * The state reached at the end of a checkpointed phase (converted graph models, closed and
+ * filtered ABox graph models with the closed TBox) can be saved by {@link Checkpoints} and
+ * reloaded in later runs, which then resume from the following phase.
+ * </p>
+ */
+enum Phase {
+
+    WORDNET(false, true),
+
+    CONVERSION(true, true),
+
+    TBOX(false, true),
+
+    ABOX(true, true),
+
+    FILTERING(true, true),
+
+    STATISTICS(false, false),
+
+    EMISSION(false, false);
+
+    private final boolean checkpointed;
+
+    private final boolean stateful;
+
+    private Phase(final boolean checkpointed, final boolean stateful) {
+        this.checkpointed = checkpointed;
+        this.stateful = stateful;
+    }
+
+    public boolean isCheckpointed() {
+        return this.checkpointed;
+    }
+
+    /**
+     * Returns whether the phase produces state needed by later phases; phases that do not (e.g.,
+     * statistics) can be skipped when resuming from a later phase.
+     */
+    public boolean isStateful() {
+        return this.stateful;
+    }
+
+    public Phase next() {
+        return values()[Math.min(ordinal() + 1, values().length - 1)];
+    }
+
+    public String getName() {
+        return name().toLowerCase();
+    }
+
+    public static Phase forName(final String name) {
+        for (final Phase phase : values()) {
+            if (phase.getName().equalsIgnoreCase(name.trim())) {
+                return phase;
+            }
+        }
+        throw new IllegalArgumentException("Invalid phase '" + name + "' (valid phases: "
+                + Arrays.toString(values()).toLowerCase() + ")");
+    }
+
+}
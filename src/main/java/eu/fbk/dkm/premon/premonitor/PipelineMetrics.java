@@ -0,0 +1,256 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.fbk.dkm.premon.util.ThreadAllocations;
+
+/**
+ * Collects wall time, CPU time, allocated bytes and throughput figures for the phases of a run
+ * and for each converter, and writes them as a JSON report.
+ * <p>
+ * Measures start with {@link #begin()}, which returns a {@link Probe} snapshot, and end with
+ * {@link #addPhase(Phase, Probe, long)} or
+ * {@link #addConverter(String, Converter, Probe, long, long)}. Phases run on multiple threads,
+ * hence their CPU time is the one of the whole process and their allocated bytes are summed over
+ * all threads via {@link ThreadAllocations}, which also accounts for the pool and writer threads
+ * terminated during the phase (other terminated threads are ignored, so the figure is a lower
+ * bound). Converters run on a single thread, whose CPU time and allocated bytes are reported.
+ * Measures of a phase run more than once (e.g., statistics computed before and after filtering)
+ * are summed.
+ * </p>
+ */
+final class PipelineMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelineMetrics.class);
+
+    private final Probe start;
+
+    private final Date startDate;
+
+    private final Map<Phase, Record> phases;
+
+    private final List<Record> converters;
+
+    PipelineMetrics() {
+        this.start = new Probe();
+        this.startDate = new Date();
+        this.phases = Maps.newEnumMap(Phase.class);
+        this.converters = Lists.newArrayList();
+    }
+
+    Probe begin() {
+        return new Probe();
+    }
+
+    synchronized void addPhase(final Phase phase, final Probe probe, final long numStatements) {
+        final Probe end = new Probe();
+        Record record = this.phases.get(phase);
+        if (record == null) {
+            record = new Record(phase.getName());
+            this.phases.put(phase, record);
+        }
+        record.wallNanos += end.wallNanos - probe.wallNanos;
+        record.cpuNanos = sum(record.cpuNanos, delta(probe.processCpuNanos, end.processCpuNanos));
+        record.allocatedBytes = sum(record.allocatedBytes,
+                ThreadAllocations.allocatedBytes(probe.allocations, end.allocations));
+        record.numStatements += numStatements;
+    }
+
+    synchronized void addConverter(final String source, final Converter converter,
+            final Probe probe, final long numQuads, final long numUniqueQuads) {
+        final Probe end = new Probe();
+        final Record record = new Record(source);
+        record.className = converter.getClass().getName();
+        record.wallNanos = end.wallNanos - probe.wallNanos;
+        record.cpuNanos = delta(probe.threadCpuNanos, end.threadCpuNanos);
+        record.allocatedBytes = delta(probe.threadAllocatedBytes, end.threadAllocatedBytes);
+        record.numFiles = converter.getNumFiles();
+        record.numReplayedFiles = converter.getNumReplayedFiles();
+        record.numStatements = numQuads;
+        record.numUniqueStatements = numUniqueQuads;
+        this.converters.add(record);
+    }
+
+    /**
+     * Writes the JSON report to the file supplied.
+     */
+    synchronized void write(final File file, final int jobs) throws IOException {
+
+        final Probe end = new Probe();
+        final String version = Converter.class.getPackage().getImplementationVersion();
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX");
+
+        final StringBuilder out = new StringBuilder();
+        out.append("{\n");
+        out.append("  \"version\": ").append(Json.quote(version)).append(",\n");
+        out.append("  \"started\": ").append(Json.quote(format.format(this.startDate)))
+                .append(",\n");
+        out.append("  \"jobs\": ").append(jobs).append(",\n");
+        out.append("  \"processors\": ").append(Runtime.getRuntime().availableProcessors())
+                .append(",\n");
+        out.append("  \"wallMillis\": ").append(millis(end.wallNanos - this.start.wallNanos))
+                .append(",\n");
+        out.append("  \"cpuMillis\": ")
+                .append(millis(delta(this.start.processCpuNanos, end.processCpuNanos)))
+                .append(",\n");
+        out.append("  \"maxHeapBytes\": ").append(Runtime.getRuntime().maxMemory())
+                .append(",\n");
+        out.append("  \"phases\": [");
+        String separator = "\n";
+        for (final Record record : this.phases.values()) {
+            out.append(separator);
+            record.write(out);
+            separator = ",\n";
+        }
+        out.append("\n  ],\n");
+        out.append("  \"converters\": [");
+        separator = "\n";
+        for (final Record record : this.converters) {
+            out.append(separator);
+            record.write(out);
+            separator = ",\n";
+        }
+        out.append("\n  ]\n");
+        out.append("}\n");
+
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        try (Writer writer = Files.newWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(out.toString());
+        }
+        LOGGER.info("Metrics written to {}", file);
+    }
+
+    private static long delta(final long from, final long to) {
+        return from < 0 || to < 0 ? -1 : to - from;
+    }
+
+    private static long sum(final long a, final long b) {
+        return a < 0 || b < 0 ? -1 : a + b;
+    }
+
+    private static long millis(final long nanos) {
+        return nanos < 0 ? -1 : nanos / 1000000;
+    }
+
+    private static String rate(final long count, final long nanos) {
+        return nanos <= 0 ? "null" : String.format(Locale.ROOT, "%.1f", count * 1e9 / nanos);
+    }
+
+    /**
+     * A snapshot of time and allocation counters, -1 if not supported by the JVM.
+     */
+    static final class Probe {
+
+        final long wallNanos;
+
+        final long processCpuNanos;
+
+        final long threadCpuNanos;
+
+        final long threadAllocatedBytes;
+
+        @Nullable
+        final ThreadAllocations.Snapshot allocations;
+
+        Probe() {
+            this.wallNanos = System.nanoTime();
+
+            final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+            this.processCpuNanos = os instanceof com.sun.management.OperatingSystemMXBean
+                    ? ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime() : -1;
+
+            final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            this.threadCpuNanos = threads.isCurrentThreadCpuTimeSupported()
+                    ? threads.getCurrentThreadCpuTime() : -1;
+
+            long threadAllocatedBytes = -1;
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                final com.sun.management.ThreadMXBean t = //
+                        (com.sun.management.ThreadMXBean) threads;
+                if (t.isThreadAllocatedMemorySupported() && t.isThreadAllocatedMemoryEnabled()) {
+                    threadAllocatedBytes = t.getThreadAllocatedBytes(
+                            Thread.currentThread().getId());
+                }
+            }
+            this.threadAllocatedBytes = threadAllocatedBytes;
+            this.allocations = ThreadAllocations.snapshot();
+        }
+
+    }
+
+    private static final class Record {
+
+        final String name;
+
+        String className;
+
+        long wallNanos;
+
+        long cpuNanos;
+
+        long allocatedBytes;
+
+        long numStatements;
+
+        long numUniqueStatements = -1;
+
+        int numFiles = -1;
+
+        int numReplayedFiles = -1;
+
+        Record(final String name) {
+            this.name = name;
+        }
+
+        void write(final StringBuilder out) {
+            out.append("    { \"name\": ").append(Json.quote(this.name));
+            if (this.className != null) {
+                out.append(", \"class\": ").append(Json.quote(this.className));
+            }
+            out.append(", \"wallMillis\": ").append(millis(this.wallNanos));
+            out.append(", \"cpuMillis\": ").append(millis(this.cpuNanos));
+            out.append(", \"allocatedBytes\": ").append(this.allocatedBytes);
+            if (this.numFiles >= 0) {
+                out.append(", \"files\": ").append(this.numFiles);
+                out.append(", \"replayedFiles\": ").append(this.numReplayedFiles);
+                out.append(", \"filesPerSecond\": ").append(
+                        rate(this.numFiles + this.numReplayedFiles, this.wallNanos));
+            }
+            out.append(", \"statements\": ").append(this.numStatements);
+            out.append(", \"statementsPerSecond\": ")
+                    .append(rate(this.numStatements, this.wallNanos));
+            if (this.numUniqueStatements >= 0) {
+                out.append(", \"uniqueStatements\": ").append(this.numUniqueStatements);
+                out.append(", \"duplicateRatio\": ").append(this.numStatements == 0 ? "0.0"
+                        : String.format(Locale.ROOT, "%.4f",
+                                1.0 - (double) this.numUniqueStatements / this.numStatements));
+            }
+            out.append(" }");
+        }
+
+    }
+
+}
@@ -1,21 +1,16 @@
 package eu.fbk.dkm.premon.premonitor;
 
-import com.google.common.io.Files;
 import eu.fbk.dkm.premon.vocab.LEXINFO;
 import eu.fbk.dkm.premon.vocab.PMO;
+import eu.fbk.dkm.premon.util.VerbNetIndex;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
-import org.joox.JOOX;
-import org.joox.Match;
 import org.openrdf.model.URI;
 import org.openrdf.model.vocabulary.RDF;
 import org.openrdf.model.vocabulary.RDFS;
 import org.openrdf.rio.RDFHandler;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
-import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
@@ -62,36 +57,16 @@ public class PredMatConverter extends Converter {
 
 		String vnPath = properties.getProperty("vnpath");																// --> Import HashMap for VerbNet ID
 		if (vnPath != null) {
-			LOGGER.info("Loading VerbNet");
 			File vnFile = new File(vnPath);
 			if (vnFile.exists() && vnFile.isDirectory()) {
-				final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-
-				for (final File file : Files.fileTreeTraverser().preOrderTraversal(vnFile)) {
-					if (!file.isDirectory() && file.getName().endsWith(".xml")) {
-						LOGGER.debug("Processing {} ...", file);
-
-						try {
-							final Document document = dbf.newDocumentBuilder().parse(file);
-							final Match vnClass = JOOX.$(document.getElementsByTagName("VNCLASS"))
-									.add(JOOX.$(document.getElementsByTagName("VNSUBCLASS")));
-
-							for (Element thisClass : vnClass) {
-								String id = thisClass.getAttribute("ID");
-								Matcher mID = VN_PATTERN.matcher(id);
-								if (mID.find()) {
-									vnMap.put(mID.group(2), mID.group(1));
-								} else {
-									LOGGER.error("Unable to parse {}", id);
-								}
-							}
-
-						} catch (final Exception ex) {
-							ex.printStackTrace();
-						}
+				for (String id : VerbNetIndex.forPath(vnFile).getClassIDs()) {
+					Matcher mID = VN_PATTERN.matcher(id);
+					if (mID.find()) {
+						vnMap.put(mID.group(2), mID.group(1));
+					} else {
+						LOGGER.error("Unable to parse {}", id);
 					}
 				}
-
 			}
 		}																												// Import HashMap for VerbNet ID -->
 
@@ -109,6 +84,7 @@ public class PredMatConverter extends Converter {
 
 		try{
 
+			countFile(PredMat);
 			List<URI> classes = new ArrayList<URI>();
 			List<URI> conceptualizations = new ArrayList<URI>();
 			List<URI> arguments = new ArrayList<URI>();
@@ -148,6 +124,11 @@ public class PredMatConverter extends Converter {
 
 				pbSr = pbSr == null? null : "arg" + pbSr;																// Add "arg" to pbSr 1 => arg1
 
+				if(lemmaFilter != null && !acceptsLemma(vnLe) && !acceptsLemma(fnLe)						// Skip rows of non-selected lemmas
+						&& (pbSc == null || !acceptsLemma(pbSc.substring(0, pbSc.indexOf("."))))){
+					continue;
+				}
+
 				String hash = vnSc + vnLe + vnSr + fnSc + fnLe + fnSr + pbSc + pbSr + wnSense; 							// --> Duplicate Check
 				if(!entries.add(hash.hashCode())){
 					notadded++;
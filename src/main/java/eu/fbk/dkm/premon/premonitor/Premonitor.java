@@ -2,27 +2,27 @@ package eu.fbk.dkm.premon.premonitor;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.net.URL;
 import java.nio.file.Files;
-import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 
 import com.google.common.base.Charsets;
-import com.google.common.base.Joiner;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -30,24 +30,17 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
-import com.google.common.collect.Ordering;
+import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
-import com.google.common.collect.Table;
-import com.google.common.collect.Table.Cell;
 import com.google.common.io.Resources;
 
 import org.openrdf.model.BNode;
-import org.openrdf.model.Namespace;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
-import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.StatementImpl;
 import org.openrdf.model.impl.URIImpl;
-import org.openrdf.model.vocabulary.DCTERMS;
-import org.openrdf.model.vocabulary.OWL;
 import org.openrdf.model.vocabulary.RDF;
 import org.openrdf.model.vocabulary.RDFS;
 import org.openrdf.rio.RDFHandler;
@@ -55,7 +48,15 @@ import org.openrdf.rio.RDFHandlerException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import eu.fbk.dkm.premon.util.ProcessorUndoRDFS;
+import eu.fbk.dkm.premon.util.ExampleIndex;
+import eu.fbk.dkm.premon.util.LemmaFilter;
+import eu.fbk.dkm.premon.util.LemmaIndex;
+import eu.fbk.dkm.premon.util.LongSet;
+import eu.fbk.dkm.premon.util.MappingGraph;
+import eu.fbk.dkm.premon.util.QuadModelSink;
+import eu.fbk.dkm.premon.util.TermDictionary;
+import eu.fbk.dkm.premon.util.UnionModel;
+import eu.fbk.dkm.premon.util.VerbNetIndex;
 import eu.fbk.dkm.premon.vocab.DECOMP;
 import eu.fbk.dkm.premon.vocab.FB;
 import eu.fbk.dkm.premon.vocab.LEXINFO;
@@ -68,18 +69,12 @@ import eu.fbk.dkm.premon.vocab.PMOPB;
 import eu.fbk.dkm.utils.CommandLine;
 import eu.fbk.rdfpro.AbstractRDFHandler;
 import eu.fbk.rdfpro.RDFHandlers;
-import eu.fbk.rdfpro.RDFProcessor;
-import eu.fbk.rdfpro.RDFProcessors;
 import eu.fbk.rdfpro.RDFSource;
 import eu.fbk.rdfpro.RDFSources;
 import eu.fbk.rdfpro.RuleEngine;
 import eu.fbk.rdfpro.Ruleset;
-import eu.fbk.rdfpro.SetOperator;
-import eu.fbk.rdfpro.util.Hash;
-import eu.fbk.rdfpro.util.IO;
 import eu.fbk.rdfpro.util.QuadModel;
 import eu.fbk.rdfpro.util.Statements;
-import eu.fbk.rdfpro.util.Tracker;
 
 /**
  * Premonitor command line tool for converting predicate resources to the PreMOn model
@@ -91,6 +86,7 @@ public class Premonitor {
     private static final String DEFAULT_OUTPUT_BASE = "output/premon";
     private static final String DEFAULT_OUTPUT_FORMATS = "trig.gz,tql.gz,ttl.gz";
     private static final String DEFAULT_WORDNET_FILE = "wordnet-3.1/wn31.nt.gz";
+    private static final String DEFAULT_CACHE_FOLDER = "output/cache";
 
     private static final Pattern PROPERTIES_RESOURCES_PATTERN = Pattern
             .compile("^resource([0-9]+)\\.(.*)$");
@@ -117,13 +113,16 @@ public class Premonitor {
                     .withOption("b", "output-base", "Output base path/name (default 'premon')",
                             "PATH", CommandLine.Type.FILE, true, false, false)
                     .withOption("f", "output-formats",
-                            "Comma-separated list of output formats (default 'tql.gz')", "FMTS",
-                            CommandLine.Type.STRING, true, false, false)
+                            "Comma-separated list of output formats, 'pmb' for the indexed "
+                                    + "binary format (default 'tql.gz')",
+                            "FMTS", CommandLine.Type.STRING, true, false, false)
                     .withOption("p", "properties",
                             String.format("Property file (default %s)", DEFAULT_PROPERTIES_FILE),
                             "FILE", CommandLine.Type.FILE, true, false, false)
-                    .withOption("s", "single", "Extract single lemma (apply to all resources)",
-                            "LEMMA", CommandLine.Type.STRING, true, false, false)
+                    .withOption("s", "single",
+                            "Extract only the given comma-separated lemmas or /regex/ (apply to "
+                                    + "all resources and WordNet; disables checkpoints)",
+                            "LEMMAS", CommandLine.Type.STRING, true, false, false)
                     .withOption(null, "wordnet",
                             String.format("WordNet RDF triple file (default: %s)",
                                     DEFAULT_WORDNET_FILE),
@@ -132,6 +131,41 @@ public class Premonitor {
                             CommandLine.Type.FILE_EXISTING, true, false, false)
                     .withOption("r", "omit-owl2rl", "Omit OWL2RL reasoning (faster)")
                     .withOption("x", "omit-stats", "Omit generation of statistics (faster)")
+                    .withOption(null, "stats",
+                            "Statistics mode: exact (default) or approx (HyperLogLog "
+                                    + "sketches, less memory)",
+                            "MODE", CommandLine.Type.STRING, true, false, false)
+                    .withOption("c", "cache",
+                            String.format("Folder where to cache data reused across runs "
+                                    + "(default %s)", DEFAULT_CACHE_FOLDER),
+                            "FOLDER", CommandLine.Type.FILE, true, false, false)
+                    .withOption("C", "no-cache", "Disable caching of data across runs")
+                    .withOption(null, "checkpoint",
+                            "Save checkpoints of processed data in the cache folder")
+                    .withOption(null, "resume-from",
+                            "Resume from phase (wordnet, conversion, tbox, abox, filtering, "
+                                    + "statistics, emission) using checkpoints saved with "
+                                    + "--checkpoint",
+                            "PHASE", CommandLine.Type.STRING, true, false, false)
+                    .withOption("j", "jobs",
+                            "Number of parallel jobs used by all the phases (default: # cores)",
+                            "N", CommandLine.Type.POSITIVE_INTEGER, true, false, false)
+                    .withOption(null, "no-shared-dictionary",
+                            "Do not intern terms in a dictionary shared among resources "
+                                    + "(more memory)")
+                    .withOption(null, "closure",
+                            "Emit also a closure dataset merging the mappings that share items")
+                    .withOption(null, "lemma-index",
+                            "Build an index of the concepts evoked by each lemma and part of "
+                                    + "speech")
+                    .withOption(null, "mapping-graph",
+                            "Build a graph of mappings and their items for multi-hop traversal")
+                    .withOption(null, "example-index",
+                            "Build a full-text index of example sentences and markables")
+                    .withOption(null, "pages",
+                            "Render a static Linked Data site (HTML, Turtle and JSON-LD pages "
+                                    + "of each resource URI) in the folder specified",
+                            "FOLDER", CommandLine.Type.FILE, true, false, false)
                     .withOption("m", "omit-filter-mappings",
                             "Omit filtering illegal mappings " //
                                     + "referring to non-existing conceptualizations (faster)")
@@ -149,6 +183,70 @@ public class Premonitor {
 
             System.setProperty("javax.xml.accessExternalDTD", "file");
 
+            // Lemmas to extract, if restricted (null = all lemmas)
+            final LemmaFilter lemmaFilter = LemmaFilter
+                    .parse(cmd.getOptionValue("s", String.class));
+            if (lemmaFilter != null) {
+                LOGGER.info("Extracting only lemmas {}", lemmaFilter);
+            }
+
+            // Track time, CPU and allocations of each phase and converter
+            final PipelineMetrics metrics = new PipelineMetrics();
+
+            // Configure the cache folder shared by all the resources and checkpoints (which
+            // store whole models, hence are saved only on request and are not used when
+            // extracting only some lemmas); checkpoints are tied to a fingerprint of inputs,
+            // options and version, so that a run never resumes from data computed differently
+            final File cacheFolder = cmd.hasOption("C") ? null
+                    : cmd.getOptionValue("c", File.class, new File(DEFAULT_CACHE_FOLDER));
+            final boolean saveCheckpoints = cmd.hasOption("checkpoint");
+            Checkpoints checkpoints = null;
+            if (saveCheckpoints || cmd.hasOption("resume-from")) {
+                if (cacheFolder == null || lemmaFilter != null) {
+                    LOGGER.warn("Checkpoints disabled as caching is disabled or only some "
+                            + "lemmas are extracted");
+                } else {
+                    final List<File> files = Lists.newArrayList();
+                    for (final String option : new String[] { "wordnet", "wordnet-sensekeys" }) {
+                        if (cmd.hasOption(option)) {
+                            files.add(cmd.getOptionValue(option, File.class));
+                        }
+                    }
+                    final List<String> options = ImmutableList.of(
+                            "omit-owl2rl=" + cmd.hasOption("r"),
+                            "omit-filter-mappings=" + cmd.hasOption("m"));
+                    checkpoints = new Checkpoints(new File(cacheFolder, "checkpoints"),
+                            Checkpoints.fingerprint(inputFolder, propertiesFile, files, options));
+                }
+            }
+
+            // Determine the phase to start from, based on the latest usable checkpoint
+            Phase start = Phase.WORDNET;
+            Phase checkpoint = null;
+            if (cmd.hasOption("resume-from")) {
+                final Phase resumeFrom = Phase
+                        .forName(cmd.getOptionValue("resume-from", String.class));
+                Preconditions.checkArgument(checkpoints != null, "Cannot resume from "
+                        + "checkpoints if caching is disabled or only some lemmas are extracted");
+                checkpoint = checkpoints.latest(resumeFrom);
+                if (checkpoint != null) {
+                    // Skip the phases before the requested one whose results are not needed
+                    start = checkpoint.next();
+                    while (start.compareTo(resumeFrom) < 0 && !start.isStateful()) {
+                        start = start.next();
+                    }
+                    if (start != resumeFrom) {
+                        LOGGER.warn("No checkpoint available for resuming from phase {}",
+                                resumeFrom.getName());
+                    }
+                    LOGGER.info("Resuming from phase {} using checkpoint {}", start.getName(),
+                            checkpoint.getName());
+                } else {
+                    LOGGER.warn("No checkpoint available before phase {}, running all phases",
+                            resumeFrom.getName());
+                }
+            }
+
             // WordNet
             final HashMap<String, URI> wnInfo = new HashMap<>();
 
@@ -170,16 +268,22 @@ public class Premonitor {
                     if (parts.length >= 2) {
                         String senseKey = parts[0];
                         final String synsetID = parts[1];
+                        if (lemmaFilter != null
+                                && !lemmaFilter.accepts(senseKey.split("%")[0])) {
+                            continue;
+                        }
                         senseKey = senseKey.replaceAll(":[^:]*:[^:]*$", "");
                         wnInfo.put(senseKey, Converter.createURI(WN_PREFIX, synsetID));
                     }
                 }
             }
 
-            if (cmd.hasOption("wordnet")) {
+            if (cmd.hasOption("wordnet") && start == Phase.WORDNET) {
                 final File wnRDF = cmd.getOptionValue("wordnet", File.class);
                 if (wnRDF != null && wnRDF.exists()) {
                     LOGGER.info("Loading WordNet");
+                    final PipelineMetrics.Probe probe = metrics.begin();
+                    final AtomicLong numStatements = new AtomicLong();
                     final RDFSource source = RDFSources.read(true, true, null, null,
                             wnRDF.getAbsolutePath());
                     source.emit(new AbstractRDFHandler() {
@@ -188,10 +292,13 @@ public class Premonitor {
                         public void handleStatement(final Statement statement)
                                 throws RDFHandlerException {
 
+                            numStatements.incrementAndGet();
+
                             // Really really bad!
                             if (statement.getPredicate().equals(RDF.TYPE)
                                     && statement.getObject().equals(LEMON_LEXICAL_ENTRY)) {
-                                if (statement.getSubject() instanceof URI) {
+                                if (statement.getSubject() instanceof URI
+                                        && acceptsEntry(lemmaFilter, statement.getSubject())) {
                                     synchronized (wnInfo) {
                                         // required to establish owl:sameAs links
                                         wnInfo.put(statement.getSubject().stringValue(),
@@ -204,7 +311,8 @@ public class Premonitor {
                             if (statement.getPredicate().equals(LEMON_REFERENCE)) {
                                 final Resource s = statement.getSubject();
                                 final Value o = statement.getObject();
-                                if (s instanceof URI && o instanceof URI) {
+                                if (s instanceof URI && o instanceof URI
+                                        && acceptsEntry(lemmaFilter, s)) {
                                     synchronized (wnInfo) {
                                         // required to establish VN32 links
                                         final String name = s.stringValue();
@@ -224,6 +332,7 @@ public class Premonitor {
                     }, 1);
 
                     LOGGER.info("Loaded {} URIs", wnInfo.size());
+                    metrics.addPhase(Phase.WORDNET, probe, numStatements.get());
                 }
             }
 
@@ -251,7 +360,8 @@ public class Premonitor {
                 }
             }
 
-            final Map<String, Map<URI, QuadModel>> models = new HashMap<>();
+            // Select active resources; if a source is defined multiple times, the last one wins
+            final Map<String, Integer> ids = new LinkedHashMap<>();
             for (final Integer id : multiProperties.keySet()) {
                 final Properties properties = multiProperties.get(id);
 
@@ -267,298 +377,478 @@ public class Premonitor {
                     continue;
                 }
 
-                LOGGER.info("Processing {}", properties.getProperty("label"));
+                // Lemmas selected on the command line override the ones in the properties
+                if (lemmaFilter != null) {
+                    properties.setProperty("only-one", lemmaFilter.toString());
+                }
 
-                // Check class
-                final String className = properties.getProperty("class");
-                if (className == null) {
-                    LOGGER.error("Resource {} has no class", id);
-                    continue;
+                final Integer previousID = ids.remove(source);
+                if (previousID != null) {
+                    LOGGER.warn("Resource {} ignored: source {} redefined by resource {}",
+                            previousID, source, id);
                 }
+                ids.put(source, id);
+            }
 
-                // Check folder
-                String folderName = properties.getProperty("folder");
-                if (folderName == null) {
-                    LOGGER.error("Resource {} has no folder", id);
-                    continue;
+            // Configure the cache of converted files, which depends on WordNet data
+            final ConversionCache conversionCache = cacheFolder == null ? null
+                    : new ConversionCache(new File(cacheFolder, "conversion"), wnInfo);
+
+            // Unless disabled, resources share a dictionary so that equal terms are stored once
+            final TermDictionary dictionary = cmd.hasOption("no-shared-dictionary") ? null
+                    : new TermDictionary();
+            final int jobs = cmd.getOptionValue("j", Integer.class,
+                    Runtime.getRuntime().availableProcessors());
+
+            // Run parallel phases on a single pool sized by the requested number of jobs
+            try (final TaskPool pool = new TaskPool(jobs)) {
+
+                // Convert resources, or reload converted/processed data from the checkpoint,
+                // measuring the heap retained by the resulting models
+                final long heapBefore = usedHeapAfterGC();
+                final PipelineMetrics.Probe conversionProbe = metrics.begin();
+                final Map<String, Map<URI, QuadModel>> models;
+                if (checkpoint != null) {
+                    models = checkpoints.loadModels(checkpoint, dictionary, pool);
+                } else {
+                    // Schedule the loading of VerbNet indexes, shared by resources with same vnpath
+                    final ConverterScheduler scheduler = new ConverterScheduler();
+                    final Map<File, String> vnTasks = new LinkedHashMap<>();
+                    for (final Integer id : ids.values()) {
+                        final String vnPath = multiProperties.get(id).getProperty("vnpath");
+                        final File vnFolder = vnPath == null ? null : new File(vnPath);
+                        if (vnFolder != null && vnFolder.isDirectory()
+                                && !vnTasks.containsKey(vnFolder)) {
+                            final String task = "verbnet-index:" + vnPath;
+                            vnTasks.put(vnFolder, task);
+                            scheduler.add(task, ImmutableList.of(),
+                                    () -> VerbNetIndex.forPath(vnFolder, cacheFolder));
+                        }
+                    }
+
+                    // Schedule the conversion of each selected resource, honoring dependencies
+                    final File folder = inputFolder;
+                    final Map<Integer, Map<URI, QuadModel>> results = new ConcurrentHashMap<>();
+                    for (final Map.Entry<String, Integer> entry : ids.entrySet()) {
+                        final Integer id = entry.getValue();
+                        final Properties properties = multiProperties.get(id);
+                        final List<String> dependencies = Lists.newArrayList(
+                                Converter.parseLinks(properties.getProperty("depends")));
+                        final String vnPath = properties.getProperty("vnpath");
+                        if (vnPath != null && vnTasks.containsKey(new File(vnPath))) {
+                            dependencies.add(vnTasks.get(new File(vnPath)));
+                        }
+                        scheduler.add(entry.getKey().toLowerCase(), dependencies, () -> {
+                            final Map<URI, QuadModel> graphModels = convert(id, properties, folder,
+                                    wnInfo, dictionary, conversionCache, metrics);
+                            if (graphModels != null) {
+                                results.put(id, graphModels);
+                            }
+                        });
+                    }
+
+                    // Run the converters, then collect their results
+                    LOGGER.info("Converting {} resources using {} jobs", ids.size(), jobs);
+                    scheduler.run(jobs);
+                    models = new HashMap<>();
+                    for (final Map.Entry<String, Integer> entry : ids.entrySet()) {
+                        final Map<URI, QuadModel> graphModels = results.get(entry.getValue());
+                        if (graphModels != null) {
+                            models.put(entry.getKey(), graphModels);
+                        }
+                    }
+                    if (checkpoints != null && saveCheckpoints) {
+                        checkpoints.save(Phase.CONVERSION, models, null, pool);
+                    }
                 }
-                if (!folderName.startsWith(File.separator)) {
-                    folderName = inputFolder + File.separator + folderName;
+                final long numQuads = size(models);
+                if (checkpoint == null) {
+                    metrics.addPhase(Phase.CONVERSION, conversionProbe, numQuads);
                 }
-                final File folder = new File(folderName);
-                if (!folder.exists()) {
-                    LOGGER.error("Folder {} does not exist", folderName);
-                    continue;
+
+                // Release the dictionary, as models share the interned terms without needing it,
+                // then report the heap retained by the models (difference of heap after GC)
+                final int numTerms = dictionary == null ? -1 : dictionary.size();
+                if (dictionary != null) {
+                    dictionary.clear();
                 }
-                if (!folder.isDirectory()) {
-                    LOGGER.error("Folder {} is not a folder", folderName);
-                    continue;
+                final long heapAfter = usedHeapAfterGC();
+                final long retained = Math.max(0, heapAfter - heapBefore);
+                LOGGER.info("Converted {} quads, {} MB retained, {} bytes/quad (heap after GC "
+                        + "{} MB before, {} MB after){}", numQuads, retained / (1024 * 1024),
+                        numQuads == 0 ? 0 : retained / numQuads, heapBefore / (1024 * 1024),
+                        heapAfter / (1024 * 1024), numTerms < 0 ? ", no shared dictionary"
+                                : ", " + numTerms + " distinct terms interned");
+                if (conversionCache != null && checkpoint == null) {
+                    LOGGER.info(
+                            "Conversion cache: {} files replayed, {} files converted and cached",
+                            conversionCache.getNumReplayed(), conversionCache.getNumRecorded());
                 }
 
                 try {
-                    // Build an RDFHandler that populates a NS map and a QuadModel for each graph
-                    final AtomicInteger numQuads = new AtomicInteger();
-                    final Map<String, String> namespaces = Maps.newHashMap();
-                    final Map<URI, QuadModel> graphModels = new HashMap<>();
-                    models.put(source, graphModels);
-                    final RDFHandler handler = new AbstractRDFHandler() {
-
-                        @Override
-                        public void handleNamespace(final String prefix, final String uri) {
-                            namespaces.put(prefix, uri);
+                    // Extract output base name and formats, removing leading '.' from them
+                    final String base = cmd.getOptionValue("b", String.class, DEFAULT_OUTPUT_BASE);
+                    final String[] formats = cmd
+                            .getOptionValue("f", String.class, DEFAULT_OUTPUT_FORMATS).split(",");
+                    for (int i = 0; i < formats.length; ++i) {
+                        if (formats[i].charAt(0) == '.') {
+                            formats[i] = formats[i].substring(1);
                         }
+                    }
 
-                        @Override
-                        public synchronized void handleStatement(final Statement stmt) {
-                            numQuads.incrementAndGet();
-                            URI graph;
-                            try {
-                                graph = (URI) stmt.getContext();
-                            } catch (final ClassCastException ex) {
-                                LOGGER.warn("Unexpected non-URI graph: " + stmt.getContext());
-                                return;
-                            }
-                            QuadModel graphModel = graphModels.get(graph);
-                            if (graphModel == null) {
-                                graphModel = QuadModel.create();
-                                graphModels.put(graph, graphModel);
-                            }
-                            graphModel.add(stmt.getSubject(), stmt.getPredicate(),
-                                    stmt.getObject());
-                        }
+                    // Extract flags controlling output generation
+                    final boolean owl2rl = !cmd.hasOption("r");
+                    final boolean statistics = !cmd.hasOption("x");
+                    final String statsMode = cmd.getOptionValue("stats", String.class, "exact");
+                    if (!statsMode.equals("exact") && !statsMode.equals("approx")) {
+                        throw new IllegalArgumentException("Invalid statistics mode " + statsMode);
+                    }
+                    final boolean approximate = statsMode.equals("approx");
+                    final boolean filterMappings = !cmd.hasOption("m");
+                    final boolean closure = cmd.hasOption("closure");
+                    final boolean lemmaIndex = cmd.hasOption("lemma-index");
+                    final boolean mappingGraph = cmd.hasOption("mapping-graph");
+                    final boolean exampleIndex = cmd.hasOption("example-index");
+                    final File pagesFolder = cmd.getOptionValue("pages", File.class);
+
+                    // Emit the output based on previous settings
+                    final QuadModel tbox = checkpoint == null ? null
+                            : checkpoints.loadTBox(checkpoint);
+                    emit(base, formats, models, tbox, start,
+                            saveCheckpoints ? checkpoints : null, owl2rl, statistics,
+                            approximate, filterMappings, closure, lemmaIndex, mappingGraph,
+                            exampleIndex, pagesFolder, metrics, pool);
+                    metrics.write(new File(base + "-metrics.json"), jobs);
+
+                } catch (final Exception ex) {
+                    // Wrap and propagate
+                    throw new RDFHandlerException(
+                            "IO error, some files might not have been properly saved ("
+                                    + ex.getMessage() + ")",
+                            ex);
+                }
+            }
 
-                    };
+        } catch (final Throwable ex) {
+            CommandLine.fail(ex);
+        }
+    }
 
-                    // Create and invoke Converter using reflection
-                    final Class<?> cls = Class.forName(className);
-                    final Constructor<?> constructor = cls.getConstructor(File.class,
-                            RDFHandler.class, Properties.class, Map.class);
-                    final Object converter = constructor.newInstance(folder, handler, properties,
-                            wnInfo);
-                    if (converter instanceof Converter) {
-                        ((Converter) converter).convert();
-                    }
+    private static long usedHeapAfterGC() {
+        System.gc();
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
 
-                    // Apply default + Converter namespaces to all the graphs collected
-                    int numUniqueQuads = 0;
-                    for (final QuadModel model : graphModels.values()) {
-                        numUniqueQuads += model.size();
-                        for (final Map.Entry<String, String> entry : namespaces.entrySet()) {
-                            model.setNamespace(entry.getKey(), entry.getValue());
-                        }
-                        model.setNamespace(PM.PREFIX, PM.NAMESPACE);
-                        model.setNamespace(PMO.PREFIX, PMO.NAMESPACE);
-                        model.setNamespace(PMOPB.PREFIX, PMOPB.NAMESPACE);
-                        model.setNamespace(PMONB.PREFIX, PMONB.NAMESPACE);
-                        model.setNamespace(ONTOLEX.PREFIX, ONTOLEX.NAMESPACE);
-                        model.setNamespace(DECOMP.PREFIX, DECOMP.NAMESPACE);
-                        model.setNamespace(LEXINFO.PREFIX, LEXINFO.NAMESPACE);
-                        model.setNamespace(FB.PREFIX, FB.NAMESPACE);
-                    }
+    @Nullable
+    private static Map<URI, QuadModel> convert(final Integer id, final Properties properties,
+            final File inputFolder, final Map<String, URI> wnInfo,
+            @Nullable final TermDictionary dictionary,
+            @Nullable final ConversionCache conversionCache, final PipelineMetrics metrics)
+            throws Exception {
 
-                    // Log the number of triples extracted
-                    LOGGER.info("Extracted {} quads ({} before deduplication)", numUniqueQuads,
-                            numQuads.get());
+        LOGGER.info("Processing {}", properties.getProperty("label"));
 
-                } catch (final ClassNotFoundException e) {
-                    // Log and ignore
-                    LOGGER.error("Class {} not found", className);
-                }
-            }
+        // Check class
+        final String className = properties.getProperty("class");
+        if (className == null) {
+            LOGGER.error("Resource {} has no class", id);
+            return null;
+        }
 
-            try {
-                // Extract output base name and formats, removing leading '.' character from them
-                final String base = cmd.getOptionValue("b", String.class, DEFAULT_OUTPUT_BASE);
-                final String[] formats = cmd
-                        .getOptionValue("f", String.class, DEFAULT_OUTPUT_FORMATS).split(",");
-                for (int i = 0; i < formats.length; ++i) {
-                    if (formats[i].charAt(0) == '.') {
-                        formats[i] = formats[i].substring(1);
-                    }
-                }
+        // Check folder
+        String folderName = properties.getProperty("folder");
+        if (folderName == null) {
+            LOGGER.error("Resource {} has no folder", id);
+            return null;
+        }
+        if (!folderName.startsWith(File.separator)) {
+            folderName = inputFolder + File.separator + folderName;
+        }
+        final File folder = new File(folderName);
+        if (!folder.exists()) {
+            LOGGER.error("Folder {} does not exist", folderName);
+            return null;
+        }
+        if (!folder.isDirectory()) {
+            LOGGER.error("Folder {} is not a folder", folderName);
+            return null;
+        }
 
-                // Extract flags controlling output generation
-                final boolean owl2rl = !cmd.hasOption("r");
-                final boolean statistics = !cmd.hasOption("x");
-                final boolean filterMappings = !cmd.hasOption("m");
+        // Build an RDFHandler that populates a NS map and a QuadModel for each graph, letting
+        // each converter thread buffer its quads without contention
+        final String source = properties.getProperty("source");
+        final QuadModelSink handler = new QuadModelSink(source, dictionary);
+        final PipelineMetrics.Probe probe = metrics.begin();
+        try {
+            // Create and invoke Converter using reflection
+            final Class<?> cls = Class.forName(className);
+            final Constructor<?> constructor = cls.getConstructor(File.class, RDFHandler.class,
+                    Properties.class, Map.class);
+            final Object converter = constructor.newInstance(folder, handler, properties,
+                    wnInfo);
+            if (converter instanceof Converter) {
+                ((Converter) converter).setCache(conversionCache);
+                handler.startRDF();
+                ((Converter) converter).convert();
+                handler.endRDF();
+            }
 
-                // Emit the output based on previous settings
-                emit(base, formats, models, owl2rl, statistics, filterMappings);
+            // Apply default + Converter namespaces to all the graphs collected
+            final Map<String, String> namespaces = handler.getNamespaces();
+            int numUniqueQuads = 0;
+            for (final QuadModel model : handler.getModels().values()) {
+                numUniqueQuads += model.size();
+                for (final Map.Entry<String, String> entry : namespaces.entrySet()) {
+                    model.setNamespace(entry.getKey(), entry.getValue());
+                }
+                model.setNamespace(PM.PREFIX, PM.NAMESPACE);
+                model.setNamespace(PMO.PREFIX, PMO.NAMESPACE);
+                model.setNamespace(PMOPB.PREFIX, PMOPB.NAMESPACE);
+                model.setNamespace(PMONB.PREFIX, PMONB.NAMESPACE);
+                model.setNamespace(ONTOLEX.PREFIX, ONTOLEX.NAMESPACE);
+                model.setNamespace(DECOMP.PREFIX, DECOMP.NAMESPACE);
+                model.setNamespace(LEXINFO.PREFIX, LEXINFO.NAMESPACE);
+                model.setNamespace(FB.PREFIX, FB.NAMESPACE);
+            }
 
-            } catch (final Exception ex) {
-                // Wrap and propagate
-                throw new RDFHandlerException(
-                        "IO error, some files might not have been properly saved ("
-                                + ex.getMessage() + ")",
-                        ex);
+            // Log the number of triples extracted
+            LOGGER.info("Extracted {} quads ({} before deduplication) for {}", numUniqueQuads,
+                    handler.getNumQuads(), source);
+            if (converter instanceof Converter) {
+                metrics.addConverter(source, (Converter) converter, probe,
+                        handler.getNumQuads(), numUniqueQuads);
             }
 
-        } catch (final Throwable ex) {
-            CommandLine.fail(ex);
+        } catch (final ClassNotFoundException e) {
+            // Log and ignore
+            LOGGER.error("Class {} not found", className);
         }
+        return handler.getModels();
     }
 
     private static void emit(final String base, final String[] formats,
-            final Map<String, Map<URI, QuadModel>> models, final boolean owl2rl,
-            final boolean statistics, final boolean filterMappings) throws RDFHandlerException {
-
-        // Load TBox and get rid of unwanted classes
-        final QuadModel tbox = QuadModel.create();
-        RDFSources
-                .read(false, true, null, null, "classpath:/eu/fbk/dkm/premon/premonitor/tbox.ttl")
-                .emit(RDFHandlers.wrap(tbox), 1);
-        final String semNS = "http://www.ontologydesignpatterns.org/cp/owl/semiotics.owl#";
-        final Set<URI> unwantedConcepts = ImmutableSet.of(RDFS.RESOURCE, NIF.URISCHEME,
-                NIF.RFC5147_STRING, NIF.CSTRING, new URIImpl(semNS + "InformationEntity"),
-                new URIImpl(semNS + "Expression"), new URIImpl(semNS + "Meaning"));
-        for (final Statement stmt : ImmutableList.copyOf(tbox)) {
-            final Resource s = stmt.getSubject();
-            final URI p = stmt.getPredicate();
-            final Value o = stmt.getObject();
-            if (unwantedConcepts.contains(s) || unwantedConcepts.contains(o)
-                    || (s.equals(PMO.SEMANTIC_CLASS_MAPPING) || s.equals(PMO.SEMANTIC_ROLE_MAPPING)
-                            || s.equals(PMO.CONCEPTUALIZATION_MAPPING))
-                            && p.equals(RDFS.SUBCLASSOF) && o instanceof BNode) {
-                tbox.remove(stmt);
+            final Map<String, Map<URI, QuadModel>> models, @Nullable final QuadModel closedTBox,
+            final Phase start, @Nullable final Checkpoints checkpoints, final boolean owl2rl,
+            final boolean statistics, final boolean approximate, final boolean filterMappings,
+            final boolean closure, final boolean lemmaIndex, final boolean mappingGraph,
+            final boolean exampleIndex, @Nullable final File pagesFolder,
+            final PipelineMetrics metrics, final TaskPool pool)
+            throws RDFHandlerException, IOException {
+
+        // Reuse the closed TBox and ABox graphs of the checkpoint, if resuming after inference
+        final QuadModel tbox;
+        if (start.compareTo(Phase.ABOX) > 0) {
+            tbox = Preconditions.checkNotNull(closedTBox, "No TBox in checkpoint");
+        } else {
+            // Load TBox and get rid of unwanted classes
+            final PipelineMetrics.Probe tboxProbe = metrics.begin();
+            tbox = QuadModel.create();
+            RDFSources.read(false, true, null, null,
+                    "classpath:/eu/fbk/dkm/premon/premonitor/tbox.ttl")
+                    .emit(RDFHandlers.wrap(tbox), 1);
+            final String semNS = "http://www.ontologydesignpatterns.org/cp/owl/semiotics.owl#";
+            final Set<URI> unwantedConcepts = ImmutableSet.of(RDFS.RESOURCE, NIF.URISCHEME,
+                    NIF.RFC5147_STRING, NIF.CSTRING, new URIImpl(semNS + "InformationEntity"),
+                    new URIImpl(semNS + "Expression"), new URIImpl(semNS + "Meaning"));
+            for (final Statement stmt : ImmutableList.copyOf(tbox)) {
+                final Resource s = stmt.getSubject();
+                final URI p = stmt.getPredicate();
+                final Value o = stmt.getObject();
+                if (unwantedConcepts.contains(s) || unwantedConcepts.contains(o)
+                        || (s.equals(PMO.SEMANTIC_CLASS_MAPPING)
+                                || s.equals(PMO.SEMANTIC_ROLE_MAPPING)
+                                || s.equals(PMO.CONCEPTUALIZATION_MAPPING))
+                                && p.equals(RDFS.SUBCLASSOF) && o instanceof BNode) {
+                    tbox.remove(stmt);
+                }
             }
-        }
-        LOGGER.info("TBox loaded - {} quads", tbox.size());
-
-        // Close TBox
-        final Ruleset tboxRuleset = Ruleset
-                .fromRDF("classpath:/eu/fbk/dkm/premon/premonitor/ruleset.ttl");
-        RuleEngine.create(tboxRuleset).eval(tbox);
-        LOGGER.info("TBox closed - {} quads", tbox.size());
-
-        if (owl2rl) {
-            // Initialize ABox rule engine
-            final Ruleset aboxRuleset = tboxRuleset.getABoxRuleset(tbox);
-            final RuleEngine aboxEngine = RuleEngine.create(aboxRuleset);
-            LOGGER.info("ABox rule engine initialized - {}", aboxEngine);
-
-            // Perform ABox inference
-            for (final Map.Entry<String, Map<URI, QuadModel>> entry1 : models.entrySet()) {
-                for (final Map.Entry<URI, QuadModel> entry2 : entry1.getValue().entrySet()) {
-                    final int sizeBefore = entry2.getValue().size();
-                    aboxEngine.eval(entry2.getValue());
-                    for (final Statement stmt : tbox) {
-                        entry2.getValue().remove(stmt.getSubject(), stmt.getPredicate(),
-                                stmt.getObject());
+            LOGGER.info("TBox loaded - {} quads", tbox.size());
+
+            // Close TBox
+            final Ruleset tboxRuleset = Ruleset
+                    .fromRDF("classpath:/eu/fbk/dkm/premon/premonitor/ruleset.ttl");
+            RuleEngine.create(tboxRuleset).eval(tbox);
+            LOGGER.info("TBox closed - {} quads", tbox.size());
+            metrics.addPhase(Phase.TBOX, tboxProbe, tbox.size());
+            final PipelineMetrics.Probe aboxProbe = metrics.begin();
+
+            if (owl2rl) {
+                // Derive the ABox ruleset; each task builds its own engine from it, as rule
+                // engines are not documented to be safe for concurrent evaluations
+                final Ruleset aboxRuleset = tboxRuleset.getABoxRuleset(tbox);
+                LOGGER.info("ABox ruleset derived - {}", aboxRuleset);
+
+                // Index TBox triples, so that they can be removed from closed ABox graphs by
+                // probing the (few) TBox subjects rather than by removing each TBox triple
+                final Set<Statement> tboxTriples = Sets.newHashSet();
+                for (final Statement stmt : tbox) {
+                    tboxTriples.add(new StatementImpl(stmt.getSubject(), stmt.getPredicate(),
+                            stmt.getObject()));
+                }
+                final Set<Resource> tboxSubjects = ImmutableSet.copyOf(tbox.subjects());
+
+                // Perform ABox inference, with a task for each source graph (largest first)
+                final List<ABoxTask> tasks = Lists.newArrayList();
+                for (final Map.Entry<String, Map<URI, QuadModel>> entry1 : models.entrySet()) {
+                    for (final Map.Entry<URI, QuadModel> entry2 : entry1.getValue().entrySet()) {
+                        tasks.add(new ABoxTask(aboxRuleset, tboxSubjects, tboxTriples,
+                                entry1.getKey(), entry2.getKey(), entry2.getValue()));
                     }
-                    final int sizeAfter = entry2.getValue().size();
-                    LOGGER.info("ABox closed for {}, graph {}: from {} to {} quads",
-                            entry1.getKey(), entry2.getKey(), sizeBefore, sizeAfter);
                 }
-            }
+                tasks.sort((t1, t2) -> Integer.compare(t2.model.size(), t1.model.size()));
+                final long ts = System.currentTimeMillis();
+                pool.invokeAll("ABox inference", tasks);
+                LOGGER.info("ABox closed for {} graphs in {} ms", tasks.size(),
+                        System.currentTimeMillis() - ts);
+
+                // Remove redundant quads (i.e., type quads of pm:entries from other graphs, and
+                // type quads of pm:entries and resource graphs from pm:examples)
+                for (final Map.Entry<String, Map<URI, QuadModel>> entry1 : models.entrySet()) {
+                    final String source = entry1.getKey();
+                    final Map<URI, QuadModel> sourceModels = entry1.getValue();
+                    final QuadModel entriesModel = sourceModels.get(PM.ENTRIES);
+
+                    // Index the type quads of non-example graphs by subject, so that checking an
+                    // example type quad takes a single probe. Filtering non-example graphs only
+                    // drops type quads also in pm:entries, so the index needs no update afterwards
+                    final SetMultimap<Resource, Value> types = HashMultimap.create();
+                    for (final Map.Entry<URI, QuadModel> entry2 : sourceModels.entrySet()) {
+                        if (!isExampleGraph(entry2.getKey())) {
+                            for (final Statement stmt : entry2.getValue().filter(null, RDF.TYPE,
+                                    null)) {
+                                types.put(stmt.getSubject(), stmt.getObject());
+                            }
+                        }
+                    }
 
-            // Remove redundant quads (i.e., type quads of pm:entries from other graphs, and type
-            // quads of pm:entries and resource graphs from pm:examples)
-            for (final Map.Entry<String, Map<URI, QuadModel>> entry1 : models.entrySet()) {
-                final String source = entry1.getKey();
-                final Map<URI, QuadModel> sourceModels = entry1.getValue();
-                final QuadModel entriesModel = sourceModels.get(PM.ENTRIES);
-                for (final Map.Entry<URI, QuadModel> entry2 : sourceModels.entrySet()) {
-                    final URI graph = entry2.getKey();
-                    final boolean isEntries = graph.equals(PM.ENTRIES);
-                    final boolean isExamples = isExampleGraph(graph);
-                    final QuadModel filteredModel = QuadModel.create();
-                    outer: for (final Statement stmt : entry2.getValue()) {
-                        if (stmt.getPredicate().getNamespace().equals("sys:")) {
-                            continue;
-                        } else if (stmt.getPredicate().equals(RDF.TYPE)) {
-                            if (stmt.getObject() instanceof BNode) {
-                                continue;
-                            } else if (stmt.getObject() instanceof URI
-                                    && ((URI) stmt.getObject()).getNamespace().equals("sys:")) {
-                                continue;
-                            } else if (isExamples) {
-                                for (final QuadModel model : sourceModels.values()) {
-                                    if (model != entry2.getValue() && model.contains(stmt)) {
-                                        continue outer;
+                    // Filter each graph in place, collecting redundant quads before removing them
+                    for (final Map.Entry<URI, QuadModel> entry2 : sourceModels.entrySet()) {
+                        final URI graph = entry2.getKey();
+                        final QuadModel graphModel = entry2.getValue();
+                        final boolean isEntries = graph.equals(PM.ENTRIES);
+                        final boolean isExamples = isExampleGraph(graph);
+                        final List<Statement> redundantStmts = Lists.newArrayList();
+                        outer: for (final Statement stmt : graphModel) {
+                            if (stmt.getPredicate().getNamespace().equals("sys:")) {
+                                redundantStmts.add(stmt);
+                            } else if (stmt.getPredicate().equals(RDF.TYPE)) {
+                                if (stmt.getObject() instanceof BNode) {
+                                    redundantStmts.add(stmt);
+                                } else if (stmt.getObject() instanceof URI
+                                        && ((URI) stmt.getObject()).getNamespace()
+                                                .equals("sys:")) {
+                                    redundantStmts.add(stmt);
+                                } else if (isExamples) {
+                                    if (types.containsEntry(stmt.getSubject(), stmt.getObject())) {
+                                        redundantStmts.add(stmt);
+                                        continue;
+                                    }
+                                    for (final Map.Entry<URI, QuadModel> entry3 : sourceModels
+                                            .entrySet()) {
+                                        if (entry3.getValue() != graphModel
+                                                && isExampleGraph(entry3.getKey())
+                                                && entry3.getValue().contains(stmt)) {
+                                            redundantStmts.add(stmt);
+                                            continue outer;
+                                        }
+                                    }
+                                } else if (!isEntries) {
+                                    if (entriesModel != null && entriesModel.contains(stmt)) {
+                                        redundantStmts.add(stmt);
                                     }
-                                }
-                            } else if (!isEntries) {
-                                if (entriesModel != null && entriesModel.contains(stmt)) {
-                                    continue;
                                 }
                             }
                         }
-                        filteredModel.add(stmt);
+                        final int sizeBefore = graphModel.size();
+                        for (final Statement stmt : redundantStmts) {
+                            graphModel.remove(stmt.getSubject(), stmt.getPredicate(),
+                                    stmt.getObject());
+                        }
+                        final int sizeAfter = graphModel.size();
+                        LOGGER.info("ABox filtered for {}, graph {}: from {} to {} quads", source,
+                                graph, sizeBefore, sizeAfter);
                     }
-                    final int sizeBefore = entry2.getValue().size();
-                    entry2.setValue(filteredModel);
-                    final int sizeAfter = entry2.getValue().size();
-                    LOGGER.info("ABox filtered for {}, graph {}: from {} to {} quads", source,
-                            entry2.getKey(), sizeBefore, sizeAfter);
                 }
             }
-        }
 
-        // Filter TBox
-        for (final Statement stmt : ImmutableList.copyOf(tbox)) {
-            if (stmt.getPredicate().getNamespace().equals("sys:")
-                    || stmt.getObject() instanceof URI
-                            && ((URI) stmt.getObject()).getNamespace().equals("sys:")) {
-                tbox.remove(stmt);
+            // Filter TBox
+            for (final Statement stmt : ImmutableList.copyOf(tbox)) {
+                if (stmt.getPredicate().getNamespace().equals("sys:")
+                        || stmt.getObject() instanceof URI
+                                && ((URI) stmt.getObject()).getNamespace().equals("sys:")) {
+                    tbox.remove(stmt);
+                }
+            }
+
+            // Save the closed TBox and ABox graphs
+            if (checkpoints != null) {
+                checkpoints.save(Phase.ABOX, models, tbox, pool);
             }
+            metrics.addPhase(Phase.ABOX, aboxProbe, size(models));
         }
 
-        // Compute mapping statistics before filtering mappings
+        // Compute mapping statistics before and after filtering mappings, in a single pass
         final List<String> sourceKeys = ImmutableList.copyOf(Iterables.concat(models.keySet(),
                 ImmutableList.of("on5", "wn30", "wn31", "ili", "all")));
-        final List<QuadModel> quadModels = models.values().stream()
-                .flatMap(m -> m.values().stream()).collect(Collectors.toList());
+        final boolean filter = filterMappings && start.compareTo(Phase.FILTERING) <= 0;
+        final PipelineMetrics.Probe validItemsProbe = metrics.begin();
+        final LongSet validItems = filter ? MappingFilter.collectValidItems(models, pool) : null;
+        if (filter) {
+            metrics.addPhase(Phase.FILTERING, validItemsProbe, 0);
+        }
         Map<String, MappingStatistics> msBefore = null;
         Map<String, MappingStatistics> msAfter = null;
-        if (statistics) {
+        if (statistics && start.compareTo(Phase.FILTERING) <= 0) {
+            final PipelineMetrics.Probe statisticsProbe = metrics.begin();
             msBefore = Maps.newHashMap();
-            for (final Map.Entry<String, Map<URI, QuadModel>> entry : models.entrySet()) {
-                msBefore.put(entry.getKey(), new MappingStatistics(entry.getValue().values(),
-                        sourceKeys, entry.getKey()));
-            }
-            msBefore.put("all", new MappingStatistics(quadModels, ImmutableList.of(), "all"));
-            msAfter = msBefore;
+            msAfter = filter ? Maps.newHashMap() : msBefore;
+            MappingStatistics.compute(models, sourceKeys, validItems, approximate, pool,
+                    msBefore, filter ? msAfter : null);
+            metrics.addPhase(Phase.STATISTICS, statisticsProbe, 0);
         }
 
-        // Remove illegal mappings
-        if (filterMappings) {
-            filterMappings(models);
+        // Remove illegal mappings and save the resulting graphs
+        if (filter) {
+            final PipelineMetrics.Probe filterProbe = metrics.begin();
+            MappingFilter.apply(models, validItems, pool);
+            if (checkpoints != null) {
+                checkpoints.save(Phase.FILTERING, models, tbox, pool);
+            }
+            metrics.addPhase(Phase.FILTERING, filterProbe, size(models));
         }
 
-        // Compute and emit statistics
-        if (statistics) {
-            if (filterMappings) {
-                msAfter = Maps.newHashMap();
-                for (final Map.Entry<String, Map<URI, QuadModel>> entry : models.entrySet()) {
-                    msAfter.put(entry.getKey(), new MappingStatistics(entry.getValue().values(),
-                            sourceKeys, entry.getKey()));
-                }
-                msAfter.put("all", new MappingStatistics(quadModels, ImmutableList.of(), "all"));
+        // Compute and emit statistics (mappings before filtering are unknown if resuming later)
+        if (statistics && start.compareTo(Phase.STATISTICS) <= 0) {
+            final PipelineMetrics.Probe statisticsProbe = metrics.begin();
+            if (msBefore == null) {
+                LOGGER.info("Mappings removed by filtering not available when resuming");
+                msBefore = Maps.newHashMap();
+                MappingStatistics.compute(models, sourceKeys, null, approximate, pool,
+                        msBefore, null);
+                msAfter = msBefore;
             }
-            LOGGER.info("Resource statistics");
+            final Map<String, InstanceStatistics> is = InstanceStatistics.compute(models, tbox,
+                    approximate, pool);
+            LOGGER.info("Resource statistics" + (approximate ? " (approximate)" : ""));
             LOGGER.info(String.format("  %-10s %-9s %-9s %-9s %-9s %-9s %-9s %-9s %-9s %-9s",
                     "source", "#classes", "#roles", "#conc", "#entries", "#examples", "#annsets",
-                    "#classrel", "#rolerel", "#corestmt"));
-            for (final Map.Entry<String, Map<URI, QuadModel>> entry : models.entrySet()) {
-                final String source = entry.getKey();
-                final InstanceStatistics s = new InstanceStatistics(entry.getValue().values(),
-                        tbox);
+                    "#classrel", "#rolerel", "#corestmt") + (approximate ? " error" : ""));
+            for (final String source : Iterables.concat(models.keySet(),
+                    ImmutableList.of("all"))) {
+                final InstanceStatistics s = is.get(source);
                 LOGGER.info(String.format("  %-10s %-9d %-9d %-9d %-9d %-9d %-9d %-9d %-9d %-9d",
                         source, s.numSemanticClasses, s.numSemanticRoles, s.numConceptualizations,
                         s.numLexicalEntries, s.numExamples, s.numAnnotationSets, s.numClassRels,
-                        s.numRoleRels, s.numCoreTriples));
+                        s.numRoleRels, s.numCoreTriples)
+                        + (approximate ? formatError(s.relativeError) : ""));
             }
-            final InstanceStatistics s = new InstanceStatistics(quadModels, tbox);
-            LOGGER.info(String.format("  %-10s %-9d %-9d %-9d %-9d %-9d %-9d %-9d %-9d %-9d",
-                    "all", s.numSemanticClasses, s.numSemanticRoles, s.numConceptualizations,
-                    s.numLexicalEntries, s.numExamples, s.numAnnotationSets, s.numClassRels,
-                    s.numRoleRels, s.numCoreTriples));
-            LOGGER.info("Mapping statistics");
+            LOGGER.info("Mapping statistics" + (approximate ? " (approximate)" : ""));
             LOGGER.info(String.format("  %-32s %-39s %-39s", "sources", "# good mappings",
                     "# invalid mappings"));
             LOGGER.info(String.format(
                     "  %-10s %-10s %-10s %-9s %-9s %-9s %-9s %-9s %-9s %-9s %-9s", "from", "to",
-                    "resource", "con", "class", "role", "other", "con", "class", "role", "other"));
+                    "resource", "con", "class", "role", "other", "con", "class", "role", "other")
+                    + (approximate ? " error" : ""));
             for (final String from : sourceKeys) {
                 final Integer z = new Integer(0);
                 for (final String to : sourceKeys) {
@@ -576,564 +866,286 @@ public class Premonitor {
                         nrb = MoreObjects.firstNonNull(msb.roleMappings.get(from, to), z);
                         nob = MoreObjects.firstNonNull(msb.otherMappings.get(from, to), z);
                         if (nxb + ncb + nrb + nob > 0) {
+                            // Sketch estimates before / after filtering may be inconsistent
+                            final String error = !approximate ? ""
+                                    : formatError(Math.max(
+                                            MoreObjects.firstNonNull(ms.errors.get(from, to), 0.0),
+                                            MoreObjects.firstNonNull(msb.errors.get(from, to),
+                                                    0.0)));
                             LOGGER.info(String.format(
                                     "  %-10s %-10s %-10s %-9d %-9d %-9d %-9d %-9d %-9d %-9d %-9d",
-                                    from, to, resource, nx, nc, nr, no, nxb - nx, ncb - nc,
-                                    nrb - nr, nob - no));
+                                    from, to, resource, nx, nc, nr, no, Math.max(0, nxb - nx),
+                                    Math.max(0, ncb - nc), Math.max(0, nrb - nr),
+                                    Math.max(0, nob - no)) + error);
                         }
                     }
                 }
             }
+            metrics.addPhase(Phase.STATISTICS, statisticsProbe, size(models));
         }
 
         // Start emitting data
         LOGGER.info("Emitting datasets ...");
-
-        // Emit TBox
-        emit(base, "tbox", formats, ImmutableMap.of(PM.TBOX, tbox), null, owl2rl, false);
-
-        // Emit data of each resource, separating examples from other graphs
-        final Multimap<URI, QuadModel> modelsByURI = HashMultimap.create();
+        final PipelineMetrics.Probe emissionProbe = metrics.begin();
+
+        // Emit TBox, the data of each resource (separating examples from other graphs) and the
+        // aggregated data, walking each graph model once for each group of (at most -j)
+        // datasets open together
+        final DatasetEmitter emitter = new DatasetEmitter(base, formats, pool.getParallelism());
+        emitter.add("tbox", ImmutableMap.of(PM.TBOX, UnionModel.of(tbox)), null, owl2rl, false);
+        final Map<URI, List<QuadModel>> modelsByURI = Maps.newLinkedHashMap();
         for (final Map.Entry<String, Map<URI, QuadModel>> entry : models.entrySet()) {
             final String source = entry.getKey();
-            final Map<URI, QuadModel> graphModels = entry.getValue();
-            emit(base, source, formats, Maps.filterKeys(graphModels, g -> !isExampleGraph(g)),
-                    tbox, owl2rl, statistics);
-            emit(base, source + "-examples", formats,
+            final Map<URI, UnionModel> graphModels = Maps.transformValues(entry.getValue(),
+                    UnionModel::of);
+            emitter.add(source, Maps.filterKeys(graphModels, g -> !isExampleGraph(g)), tbox,
+                    owl2rl, statistics);
+            emitter.add(source + "-examples",
                     Maps.filterKeys(graphModels, g -> isExampleGraph(g)), tbox, owl2rl,
                     statistics);
-            modelsByURI.putAll(Multimaps.forMap(graphModels));
-        }
-
-        // Emit aggregated data
-        final Map<URI, QuadModel> mergedGraphModels = Maps.newHashMap();
-        mergedGraphModels.put(PM.TBOX, tbox);
-        for (final Map.Entry<URI, Collection<QuadModel>> entry : modelsByURI.asMap().entrySet()) {
-            if (entry.getValue().size() == 1) {
-                mergedGraphModels.put(entry.getKey(), entry.getValue().iterator().next());
-            } else if (entry.getValue().size() > 1) {
-                final QuadModel mergedModel = QuadModel.create();
-                for (final QuadModel model : entry.getValue()) {
-                    for (final Namespace ns : model.getNamespaces()) {
-                        mergedModel.setNamespace(ns);
-                    }
-                    mergedModel.addAll(model);
+            for (final Map.Entry<URI, QuadModel> entry2 : entry.getValue().entrySet()) {
+                List<QuadModel> list = modelsByURI.get(entry2.getKey());
+                if (list == null) {
+                    list = Lists.newArrayList();
+                    modelsByURI.put(entry2.getKey(), list);
                 }
-                mergedGraphModels.put(entry.getKey(), mergedModel);
+                list.add(entry2.getValue());
             }
         }
-        emit(base, "models", formats, Maps.filterKeys(mergedGraphModels, g -> !isExampleGraph(g)),
-                tbox, owl2rl, statistics);
-        emit(base, "all", formats, mergedGraphModels, tbox, owl2rl, statistics);
-    }
-
-    private static void emit(final String base, final String classifier, final String[] formats,
-            final Map<URI, QuadModel> models, @Nullable final QuadModel tbox, final boolean owl2rl,
-            final boolean statistics) throws RDFHandlerException {
 
-        // Assemble RDFpro pipeline - start emitting closed data in all configured formats
-        final List<RDFProcessor> processors = Lists.newArrayList();
-        for (final String format : formats) {
-            final String location = base + "-" + classifier + (owl2rl ? "-inf." : ".") + format;
-            processors.add(RDFProcessors.write(null, 1000, location));
+        // Emit aggregated data, using union views rather than materializing merged models
+        final Map<URI, UnionModel> mergedGraphModels = Maps.newHashMap();
+        mergedGraphModels.put(PM.TBOX, UnionModel.of(tbox));
+        for (final Map.Entry<URI, List<QuadModel>> entry : modelsByURI.entrySet()) {
+            mergedGraphModels.put(entry.getKey(), UnionModel.of(entry.getValue()));
         }
-        processors.add(RDFProcessors.track(new Tracker(LOGGER, null,
-                classifier + (owl2rl ? "-inf" : "") + " - %d quads", null)));
-
-        // Compute and emit statistics if enabled
-        if (statistics) {
-            final List<RDFProcessor> statsProcessors = Lists.newArrayList();
-            statsProcessors.add(RDFProcessors.stats(null, null, null, null, false));
-            for (final String format : formats) {
-                final String location = base + "-" + classifier + "-stats." + format;
-                statsProcessors.add(RDFProcessors.write(null, 1000, location));
-            }
-            statsProcessors.add(RDFProcessors
-                    .track(new Tracker(LOGGER, null, classifier + "-stats - %d quads", null)));
-            statsProcessors.add(RDFProcessors.NIL);
-            processors
-                    .add(RDFProcessors.parallel(SetOperator.UNION_MULTISET, RDFProcessors.IDENTITY,
-                            RDFProcessors.sequence(statsProcessors.toArray(new RDFProcessor[0]))));
+        emitter.add("models", Maps.filterKeys(mergedGraphModels, g -> !isExampleGraph(g)), tbox,
+                owl2rl, statistics);
+        emitter.add("all", mergedGraphModels, tbox, owl2rl, statistics);
+
+        // Emit merged mappings separately, alongside the raw ones
+        if (closure) {
+            emitter.add("closure", ImmutableMap.of(PM.CLOSURE,
+                    UnionModel.of(MappingClosure.compute(models, pool))), null, false, false);
         }
-
-        // Remove inferrable triples, write, compute statistics, write
-        if (owl2rl && tbox != null) {
-            processors.add(new ProcessorUndoRDFS(RDFSources.wrap(tbox)));
-            for (final String format : formats) {
-                final String location = base + "-" + classifier + "-noinf." + format;
-                processors.add(RDFProcessors.write(null, 1000, location));
-            }
-            processors.add(RDFProcessors
-                    .track(new Tracker(LOGGER, null, classifier + "-noinf - %d quads", null)));
+        emitter.run();
+        if (lemmaIndex) {
+            writeLemmaIndex(new File(base + "-lemmas." + LemmaIndex.EXTENSION),
+                    mergedGraphModels);
         }
+        if (mappingGraph) {
+            writeMappingGraph(new File(base + "-mappings." + MappingGraph.EXTENSION), models);
+        }
+        if (exampleIndex) {
+            writeExampleIndex(new File(base + "-examples." + ExampleIndex.EXTENSION),
+                    mergedGraphModels);
+        }
+        if (pagesFolder != null) {
+            PageGenerator.generate(pagesFolder, mergedGraphModels, pool);
+        }
+        metrics.addPhase(Phase.EMISSION, emissionProbe, size(models) + tbox.size());
+    }
 
-        // Build the resulting sequence processor
-        final RDFProcessor processor = RDFProcessors
-                .sequence(processors.toArray(new RDFProcessor[processors.size()]));
-
-        // Apply the processor
-        final RDFHandler handler = RDFHandlers.decouple(processor.wrap(RDFHandlers.NIL));
-        try {
-            // Start
-            handler.startRDF();
-
-            // Emit namespaces first
-            final Set<Namespace> namespaces = Sets.newHashSet();
-            for (final QuadModel model : models.values()) {
-                namespaces.addAll(model.getNamespaces());
-            }
-            for (final Namespace namespace : Ordering.natural().sortedCopy(namespaces)) {
-                handler.handleNamespace(namespace.getPrefix(), namespace.getName());
-            }
-
-            // Emit data, one graph at a time and starting with pm:meta and pm:entries
-            final List<URI> sortedGraphs = Lists.newArrayList();
-            if (models.containsKey(PM.META)) {
-                sortedGraphs.add(PM.META);
-            }
-            if (models.containsKey(PM.ENTRIES)) {
-                sortedGraphs.add(PM.ENTRIES);
-            }
-            for (final URI graph : Ordering.from(Statements.valueComparator())
-                    .sortedCopy(models.keySet())) {
-                if (!graph.equals(PM.META) && !graph.equals(PM.ENTRIES)) {
-                    sortedGraphs.add(graph);
-                }
-            }
-            for (final URI graph : sortedGraphs) {
-                for (final Statement stmt : models.get(graph)) {
-                    handler.handleStatement(new ContextStatementImpl(stmt.getSubject(),
-                            stmt.getPredicate(), stmt.getObject(), graph));
-                }
+    private static long size(final Map<String, Map<URI, QuadModel>> models) {
+        long size = 0;
+        for (final Map<URI, QuadModel> graphModels : models.values()) {
+            for (final QuadModel model : graphModels.values()) {
+                size += model.size();
             }
-        } catch (final Throwable ex) {
-            LOGGER.error("File generation failed", ex);
-
-        } finally {
-            // End and release allocated resources
-            handler.endRDF();
-            IO.closeQuietly(handler);
         }
+        return size;
     }
 
-    private static void filterMappings(final Map<String, Map<URI, QuadModel>> models) {
+    // Tests the lemma of WordNet entries and senses (e.g., wn31/take+off-v#1-v)
+    private static boolean acceptsEntry(@Nullable final LemmaFilter lemmaFilter,
+            final Resource entry) {
+        if (lemmaFilter == null) {
+            return true;
+        }
+        final String name = entry.stringValue();
+        final int start = name.lastIndexOf('/') + 1;
+        final int hash = name.indexOf('#', start);
+        final int end = name.lastIndexOf('-', hash < 0 ? name.length() : hash);
+        return end > start && lemmaFilter.accepts(name.substring(start, end));
+    }
 
-        LOGGER.info("Removing illegal mappings...");
+    private static String formatError(final double relativeError) {
+        return String.format(" \u00b1%.1f%%", relativeError * 100);
+    }
 
-        final Set<URI> validItems = Sets.newHashSet();
-        for (final Map<URI, QuadModel> map : models.values()) {
-            for (final QuadModel model : map.values()) {
-                for (final Statement stmt : model.filter(null, PMO.EVOKED_CONCEPT, null)) {
-                    validItems.add((URI) stmt.getSubject()); // conceptualizations
+    // Indexes the concepts evoked by each lexical entry of pm:entries in the graphs of the
+    // resources, i.e., excluding entries, metadata, TBox and examples
+    private static void writeLemmaIndex(final File file, final Map<URI, UnionModel> models)
+            throws IOException {
 
-                }
-                for (final Statement stmt : model.filter(null, PMO.SEM_ROLE, null)) {
-                    validItems.add((URI) stmt.getSubject()); // semantic class
-                    validItems.add((URI) stmt.getObject()); // semantic roles
-                }
-            }
+        final UnionModel entries = models.get(PM.ENTRIES);
+        if (entries == null) {
+            return;
         }
 
-        for (final Map<URI, QuadModel> map : models.values()) {
-            for (final Map.Entry<URI, QuadModel> entry : map.entrySet()) {
-                final QuadModel model = entry.getValue();
-                for (final URI type : new URI[] { PMO.CONCEPTUALIZATION_MAPPING,
-                        PMO.SEMANTIC_CLASS_MAPPING, PMO.SEMANTIC_ROLE_MAPPING }) {
-
-                    int numMappingsToDelete = 0;
-                    int numMappings = 0;
-                    int mappingsDeletedCompletely = 0;
-                    int referencesRemoved = 0;
-                    final Map<String, Integer> numMappingsPerSource = Maps.newHashMap();
-                    final List<Statement> stmtsToDelete = Lists.newArrayList();
-                    for (final Resource m : model.filter(null, RDF.TYPE, type).subjects()) {
-                        ++numMappings;
-                        final List<Statement> stmts = ImmutableList
-                                .copyOf(model.filter(m, null, null));
-                        boolean valid = true;
-                        final List<Statement> stmtsInvalid = Lists.newArrayList();
-                        for (final Statement stmt : stmts) {
-                            if (stmt.getPredicate().equals(PMO.ITEM)
-                                    && !validItems.contains(stmt.getObject())) {
-
-                                ++numMappingsToDelete;
-                                final String str = stmt.getObject().stringValue();
-                                for (final String source : models.keySet()) {
-                                    if (str.contains("-" + source + "-")
-                                            || str.contains("/" + source + "-")) {
-                                        numMappingsPerSource.put(source,
-                                                1 + numMappingsPerSource.getOrDefault(source, 0));
-                                    }
-                                }
-
-                                if (numMappingsToDelete <= 10) {
-                                    LOGGER.warn("Removing illegal mapping {} - missing {}", m,
-                                            stmt.getObject());
-                                } else if (LOGGER.isDebugEnabled()) {
-                                    LOGGER.debug("Removing illegal mapping {} - missing {}", m,
-                                            stmt.getObject());
-                                } else if (numMappingsToDelete == 11) {
-                                    LOGGER.warn("Omitting further illegal mappings ....");
-                                }
-                                stmtsInvalid.add(stmt);
-                                valid = false;
-                                break;
-                            }
-                        }
-                        if (!valid) {
-                            int items = 0, itemsInv = 0;
-                            for (final Statement stmt : stmts) {
-                                if (stmt.getPredicate().equals(PMO.ITEM)) {
-                                    items++;
-                                }
-                            }
-                            for (final Statement stmt : stmtsInvalid) {
-                                if (stmt.getPredicate().equals(PMO.ITEM)) {
-                                    itemsInv++;// useless (all Statement in stmtsInvalid are
-                                               // items)
-                                }
-                            }
-                            if (items - itemsInv < 2) {
-                                stmtsToDelete.addAll(stmts);
-                                mappingsDeletedCompletely++;
-                                if (numMappingsToDelete <= 10 || LOGGER.isDebugEnabled()) {
-                                    LOGGER.info("Removing the complete mapping");
-                                }
-                            } else {
-                                stmtsToDelete.addAll(stmtsInvalid);
-                                referencesRemoved++;
-                                if (numMappingsToDelete <= 10 || LOGGER.isDebugEnabled()) {
-                                    LOGGER.info("Removing only missing reference");
-                                }
-                            }
-                        }
-                    }
-                    if (numMappingsToDelete > 0) {
-                        for (final Statement stmt : stmtsToDelete) {
-                            model.remove(stmt);
-                        }
-                        LOGGER.warn(
-                                "{}/{} illegal {} mappings and {} references {} removed from {}\n############################################################################################################",
-                                mappingsDeletedCompletely, numMappings,
-                                type.equals(PMO.SEMANTIC_CLASS_MAPPING) ? "semantic class"
-                                        : type.equals(PMO.CONCEPTUALIZATION_MAPPING)
-                                                ? "conceptualization" : "semantic role",
-                                referencesRemoved, numMappingsPerSource, entry.getKey());
-                    }
-                }
+        final Map<String, UnionModel> resourceModels = Maps.newHashMap();
+        for (final Map.Entry<URI, UnionModel> entry : models.entrySet()) {
+            final URI graph = entry.getKey();
+            if (!graph.equals(PM.ENTRIES) && !graph.equals(PM.META) && !graph.equals(PM.TBOX)
+                    && !isExampleGraph(graph)) {
+                resourceModels.put(graph.getLocalName(), entry.getValue());
             }
         }
 
-        // Cleaning Ontological Mappings
-        for (final Map<URI, QuadModel> map : models.values()) {
-            for (final Map.Entry<URI, QuadModel> entry : map.entrySet()) {
-                final QuadModel model = entry.getValue();
-
-                final List<Statement> stmts = ImmutableList
-                        .copyOf(model.filter(null, PMO.ONTO_MATCH, null));
-                int numMappingsToDelete = 0;
-                int numTriplesToDelete = 0;
-
-                for (Statement stmt : stmts) {
-                    if (!validItems.contains(stmt.getSubject())) {
-                        ++numMappingsToDelete;
-
-                        // delete ontology matching triple
-                        ++numTriplesToDelete;
-                        model.remove(stmt);
-                        if (numMappingsToDelete <= 10) {
-                            LOGGER.warn("Removing illegal ontoMatch {} - missing {}",
-                                    stmt.getSubject(), stmt.getObject());
-                        } else if (LOGGER.isDebugEnabled()) {
-                            LOGGER.debug("Removing illegal ontoMatch {} - missing {}",
-                                    stmt.getSubject(), stmt.getObject());
-                        } else if (numMappingsToDelete == 11) {
-                            LOGGER.warn("Omitting further illegal ontoMatch assertions ....");
-                        }
-
-                        // check if there are other things mapping to the same ontological
-                        // concept, otherwise remove all its triple
-                        if (ImmutableList
-                                .copyOf(model.filter(null, PMO.ONTO_MATCH, stmt.getObject()))
-                                .isEmpty()) {
-
-                            final List<Statement> onto_stmts_all = ImmutableList
-                                    .copyOf(model.filter((URI) stmt.getObject(), null, null));
-                            for (final Statement s : onto_stmts_all) {
-
-                                ++numTriplesToDelete;
-                                model.remove(s);
-                                LOGGER.debug("Removing onto triple {} - {} - {}", s.getSubject(),
-                                        s.getPredicate(), s.getObject());
-                            }
-                        }
-
-                        // for all
-                        // Check if only remaining triple on subject is "rdf:type skos:Concept".
-                        // if so remove
-
-                        if (!model.contains(stmt.getSubject(), PMO.ONTO_MATCH, null)) {
-
-                            for (Statement rel_stmt : ImmutableList
-                                    .copyOf(model.filter(stmt.getSubject(), null, null))) {
-
-                                ++numTriplesToDelete;
-                                LOGGER.debug("Removing type triple {} - {} - {}",
-                                        rel_stmt.getSubject(), rel_stmt.getPredicate(),
-                                        rel_stmt.getObject());
-                                model.remove(stmt);
-
-                            }
-                        }
-
-                    }
-
-                }
+        final LemmaIndex.Builder builder = LemmaIndex.builder().addAll(entries, resourceModels);
+        builder.write(file);
+        LOGGER.info("Lemma index with {} lemma/POS pairs written to {}", builder.size(), file);
+    }
 
-                LOGGER.warn(
-                        "{} illegal ontoMatch assertions and {} related triples removed from {}\n############################################################################################################",
-                        numMappingsToDelete, numTriplesToDelete, entry.getKey());
+    // Indexes the items of the mappings in the final models, tagging each mapping with the
+    // resources whose data contains it and each item with the resource its URI refers to
+    private static void writeMappingGraph(final File file,
+            final Map<String, Map<URI, QuadModel>> models) throws IOException {
 
+        final SourceMatcher matcher = new SourceMatcher(models.keySet());
+        final MappingGraph.Builder builder = MappingGraph.builder(item -> {
+            final int key = matcher.match(item.stringValue());
+            return key < 0 ? null : matcher.getKey(key);
+        });
+        for (final Map.Entry<String, Map<URI, QuadModel>> entry : models.entrySet()) {
+            for (final QuadModel model : entry.getValue().values()) {
+                builder.add(entry.getKey(), model);
             }
         }
 
+        final MappingGraph graph = builder.build();
+        graph.write(file);
+        LOGGER.info("Mapping graph with {} items and {} mappings written to {}",
+                graph.getNumItems(), graph.getNumMappings(), file);
     }
 
-    private static boolean isExampleGraph(final URI uri) {
-        return uri.getLocalName().endsWith("-ex");
-    }
-
-    private static final class InstanceStatistics {
-
-        final int numSemanticClasses;
-
-        final int numSemanticRoles;
-
-        final int numConceptualizations;
-
-        final int numLexicalEntries;
-
-        final int numExamples;
-
-        final int numAnnotationSets;
-
-        final int numClassRels;
-
-        final int numRoleRels;
-
-        final int numCoreTriples;
-
-        public InstanceStatistics(final Iterable<? extends QuadModel> models,
-                final QuadModel tbox) {
-
-            final Set<URI> roleRelProperties = Sets.newHashSet();
-            for (final Resource rel : tbox.filter(null, RDFS.SUBPROPERTYOF, PMO.ROLE_REL)
-                    .subjects()) {
-                if (rel instanceof URI && !rel.equals(PMO.ROLE_REL)) {
-                    roleRelProperties.add((URI) rel);
-                }
+    // Indexes the text, the markable anchors and the annotations of each example, associating
+    // each annotation set with the concepts (pmo:valueObj) of its annotations; markables may also
+    // be annotated directly with a concept, as done for PropBank and NomBank rolesets
+    private static void writeExampleIndex(final File file, final Map<URI, UnionModel> models)
+            throws IOException {
+
+        final ExampleIndex.Builder builder = ExampleIndex.builder();
+        for (final Map.Entry<URI, UnionModel> graphEntry : models.entrySet()) {
+            final URI graph = graphEntry.getKey();
+            if (!isExampleGraph(graph)) {
+                continue;
             }
-
-            final Set<Value> classes = Sets.newHashSet();
-            final Set<Value> roles = Sets.newHashSet();
-            final Set<Value> examples = Sets.newHashSet();
-            final Set<Value> annotationSets = Sets.newHashSet();
-            final Set<Statement> classRels = Sets.newHashSet();
-            final Set<Statement> roleRels = Sets.newHashSet();
-            for (final QuadModel model : models) {
-                for (final Resource c : model.filter(null, RDF.TYPE, PMO.SEMANTIC_CLASS)
-                        .subjects()) {
-                    if (model.contains(null, PMO.EVOKED_CONCEPT, c)
-                            || model.contains(c, PMO.CLASS_REL, null)
-                            || model.contains(null, PMO.CLASS_REL, c)) {
-                        classes.add(c);
-                    }
+            final String name = graph.getLocalName();
+            final String resource = name.substring(0, name.length() - "-ex".length());
+            final UnionModel model = graphEntry.getValue();
+            for (final Statement stmt : model.filter(null, NIF.IS_STRING, null)) {
+                if (!(stmt.getSubject() instanceof URI)) {
+                    continue;
                 }
-                roles.addAll(model.filter(null, PMO.SEM_ROLE, null).objects());
-                examples.addAll(model.filter(null, RDF.TYPE, PMO.EXAMPLE).subjects());
-                annotationSets.addAll(model.filter(null, RDF.TYPE, PMO.ANNOTATION_SET).subjects());
-                classRels.addAll(model.filter(null, PMO.CLASS_REL, null));
-                for (final URI roleRelProperty : roleRelProperties) {
-                    roleRels.addAll(model.filter(null, roleRelProperty, null));
+                final URI example = (URI) stmt.getSubject();
+                final List<String> anchors = Lists.newArrayList();
+                final Set<Value> annotations = Sets.newLinkedHashSet();
+                for (final Statement stmt2 : model.filter(example, NIF.ANNOTATION_P, null)) {
+                    annotations.add(stmt2.getObject());
                 }
-            }
-            this.numSemanticClasses = classes.size();
-            this.numSemanticRoles = roles.size();
-            this.numExamples = examples.size();
-            this.numAnnotationSets = annotationSets.size();
-            this.numClassRels = classRels.size();
-            this.numRoleRels = roleRels.size();
-
-            final Set<Statement> conceptualizations = Sets.newHashSet();
-            final Set<Value> lexicalEntries = Sets.newHashSet();
-            for (final QuadModel model : models) {
-                for (final Statement stmt : model.filter(null, ONTOLEX.EVOKES, null)) {
-                    if (classes.contains(stmt.getObject()) || roles.contains(stmt.getObject())) {
-                        conceptualizations.add(stmt);
-                        lexicalEntries.add(stmt.getSubject());
+                for (final Statement stmt2 : model.filter(null, NIF.REFERENCE_CONTEXT, example)) {
+                    final Resource markable = stmt2.getSubject();
+                    for (final Statement stmt3 : model.filter(markable, NIF.ANCHOR_OF, null)) {
+                        anchors.add(stmt3.getObject().stringValue());
                     }
-                }
-            }
-            this.numConceptualizations = conceptualizations.size();
-            this.numLexicalEntries = lexicalEntries.size();
-
-            final Set<Value> coreInstances = Sets.newHashSet();
-            for (final QuadModel model : models) {
-                for (final Statement stmt : model.filter(null, RDF.TYPE, null)) {
-                    final Value type = stmt.getObject();
-                    if (type.equals(PMO.SEMANTIC_CLASS) || type.equals(PMO.SEMANTIC_ROLE)
-                            || type.equals(PMO.CONCEPTUALIZATION) || type.equals(PMO.MAPPING)
-                            || type.equals(ONTOLEX.LEXICAL_ENTRY) || type.equals(ONTOLEX.FORM)) {
-                        coreInstances.add(stmt.getSubject());
+                    for (final Statement stmt3 : model.filter(markable, NIF.ANNOTATION_P, null)) {
+                        annotations.add(stmt3.getObject());
                     }
                 }
-            }
-
-            final Set<Statement> coreStmts = Sets.newHashSet();
-            for (final QuadModel model : models) {
-                for (final Statement stmt : model) {
-                    if (coreInstances.contains(stmt.getSubject())
-                            || coreInstances.contains(stmt.getObject())) {
-                        if (stmt.getPredicate().equals(ONTOLEX.CANONICAL_FORM)
-                                || stmt.getPredicate().equals(ONTOLEX.WRITTEN_REP)
-                                || stmt.getPredicate().equals(PMO.FIRST)) {
-                            continue; // avoid counting inferences
-                        }
-                        final String ns = stmt.getPredicate().getNamespace();
-                        if (ns.equals(PMO.NAMESPACE) || ns.equals(ONTOLEX.NAMESPACE)
-                                || ns.equals(DECOMP.NAMESPACE) || ns.equals(LEXINFO.NAMESPACE)
-                                || ns.equals(RDFS.NAMESPACE) || ns.equals(OWL.NAMESPACE)
-                                || ns.equals(DCTERMS.NAMESPACE)) {
-                            coreStmts.add(stmt);
+                final Map<String, Set<URI>> sets = Maps.newLinkedHashMap();
+                for (final Value annotation : annotations) {
+                    if (!(annotation instanceof Resource)) {
+                        continue;
+                    }
+                    final List<URI> concepts = Lists.newArrayList();
+                    for (final Statement stmt2 : model.filter((Resource) annotation,
+                            PMO.VALUE_OBJ, null)) {
+                        if (stmt2.getObject() instanceof URI) {
+                            concepts.add((URI) stmt2.getObject());
                         }
                     }
+                    String set = "";
+                    for (final Statement stmt2 : model.filter(null, PMO.ITEM, annotation)) {
+                        set = stmt2.getSubject().stringValue();
+                    }
+                    if (concepts.isEmpty() && set.isEmpty() && annotation instanceof URI) {
+                        concepts.add((URI) annotation);
+                    }
+                    Set<URI> setConcepts = sets.get(set);
+                    if (setConcepts == null) {
+                        setConcepts = Sets.newLinkedHashSet();
+                        sets.put(set, setConcepts);
+                    }
+                    setConcepts.addAll(concepts);
                 }
+                builder.add(example, resource, stmt.getObject().stringValue(), anchors, sets);
             }
-            this.numCoreTriples = coreStmts.size();
         }
 
+        builder.write(file);
+        LOGGER.info("Example index with {} examples written to {}", builder.size(), file);
     }
 
-    private static final class MappingStatistics {
-
-        final Table<String, String, Integer> conMappings;
-
-        final Table<String, String, Integer> classMappings;
-
-        final Table<String, String, Integer> roleMappings;
+    private static boolean isExampleGraph(final URI uri) {
+        return uri.getLocalName().endsWith("-ex");
+    }
 
-        final Table<String, String, Integer> otherMappings;
+    private static final class ABoxTask extends RecursiveAction {
 
-        public MappingStatistics(final Iterable<? extends QuadModel> models,
-                final Iterable<String> sources, final String resource) {
+        private static final long serialVersionUID = 1L;
 
-            final Table<String, String, Set<Hash>> conHashes = HashBasedTable.create();
-            final Table<String, String, Set<Hash>> classHashes = HashBasedTable.create();
-            final Table<String, String, Set<Hash>> roleHashes = HashBasedTable.create();
-            final Table<String, String, Set<Hash>> otherHashes = HashBasedTable.create();
+        final Ruleset ruleset;
 
-            final List<String> sourceKeys = ImmutableList.copyOf(sources);
-            final List<Pattern> sourcePatterns = ImmutableList.copyOf(sourceKeys.stream()
-                    .map(s -> Pattern.compile("[-/]" + Pattern.quote(s) + "-")).iterator());
+        final Set<Resource> tboxSubjects;
 
-            for (final QuadModel model : models) {
-                for (final Resource mapping : model.filter(null, RDF.TYPE, PMO.MAPPING)
-                        .subjects()) {
+        final Set<Statement> tboxTriples;
 
-                    final Table<String, String, Set<Hash>> hashes;
-                    if (model.contains(mapping, RDF.TYPE, PMO.CONCEPTUALIZATION_MAPPING)) {
-                        hashes = conHashes;
-                    } else if (model.contains(mapping, RDF.TYPE, PMO.SEMANTIC_CLASS_MAPPING)) {
-                        hashes = classHashes;
-                    } else if (model.contains(mapping, RDF.TYPE, PMO.SEMANTIC_ROLE_MAPPING)) {
-                        hashes = roleHashes;
-                    } else {
-                        hashes = otherHashes;
-                    }
+        final String source;
 
-                    final Map<String, String> items = Maps.newHashMap();
-                    for (final Value item : model.filter(mapping, PMO.ITEM, null).objects()) {
-                        final String str = item.stringValue();
-                        for (int i = 0; i < sourceKeys.size(); ++i) {
-                            if (sourcePatterns.get(i).matcher(str).find()) {
-                                items.put(sourceKeys.get(i), item.stringValue());
-                            }
-                        }
-                    }
+        final URI graph;
 
-                    for (final String fromSource : items.keySet()) {
-                        for (final String toSource : items.keySet()) {
-                            if (fromSource.compareTo(toSource) < 0) {
-                                addHash(hashes, fromSource, toSource, items.get(fromSource), "|",
-                                        items.get(toSource));
-                            }
-                        }
-                    }
+        final QuadModel model;
 
-                    addHash(hashes, "all", "all",
-                            Joiner.on('|').join(Ordering.natural().sortedCopy(items.values())));
-                }
+        ABoxTask(final Ruleset ruleset, final Set<Resource> tboxSubjects,
+                final Set<Statement> tboxTriples, final String source, final URI graph,
+                final QuadModel model) {
+            this.ruleset = ruleset;
+            this.tboxSubjects = tboxSubjects;
+            this.tboxTriples = tboxTriples;
+            this.source = source;
+            this.graph = graph;
+            this.model = model;
+        }
 
-                int mappingsCount = model.filter(null, PMO.ONTO_MATCH, null).size();
-                if (mappingsCount != 0)
-                    LOGGER.debug(
-                            "Processing " + mappingsCount + " for mapping resource " + resource);
-
-                for (final Statement mapping : model.filter(null, PMO.ONTO_MATCH, null)) {
-
-                    final Resource subject = mapping.getSubject();
-                    final Value object = mapping.getObject();
-
-                    final Table<String, String, Set<Hash>> hashes;
-
-                    if (model.contains(subject, RDF.TYPE, PMO.CONCEPTUALIZATION)) {
-                        hashes = conHashes;
-                    } else if (model.contains(subject, RDF.TYPE, PMO.SEMANTIC_CLASS)) {
-                        hashes = classHashes;
-                    } else if (model.contains(subject, RDF.TYPE, PMO.SEMANTIC_ROLE)) {
-                        hashes = roleHashes;
-                    } else
-                        hashes = otherHashes;
-
-                    final String subjStr = subject.stringValue();
-                    String subjRes = "";
-                    for (int i = 0; i < sourceKeys.size(); ++i) {
-                        if (sourcePatterns.get(i).matcher(subjStr).find()) {
-                            subjRes = sourceKeys.get(i);
-                            break;
-                        }
+        @Override
+        protected void compute() {
+
+            // Close the graph
+            final long ts = System.currentTimeMillis();
+            final int sizeBefore = this.model.size();
+            RuleEngine.create(this.ruleset).eval(this.model);
+            final int sizeClosed = this.model.size();
+
+            // Remove TBox quads, which can only have a TBox subject
+            final List<Statement> tboxStmts = Lists.newArrayList();
+            for (final Resource subject : this.tboxSubjects) {
+                for (final Statement stmt : this.model.filter(subject, null, null)) {
+                    if (this.tboxTriples.contains(new StatementImpl(stmt.getSubject(),
+                            stmt.getPredicate(), stmt.getObject()))) {
+                        tboxStmts.add(stmt);
                     }
-                    final String objStr = object.stringValue();
-
-                    addHash(hashes, subjRes, resource, subjStr, "|", objStr);
-                    addHash(hashes, "all", "all", subjStr, "|", objStr);
                 }
-
             }
-
-            this.conMappings = countHashes(conHashes);
-            this.classMappings = countHashes(classHashes);
-            this.roleMappings = countHashes(roleHashes);
-            this.otherMappings = countHashes(otherHashes);
-        }
-
-        private static void addHash(final Table<String, String, Set<Hash>> hashes,
-                final String row, final String col, final String... hashedStrings) {
-            Set<Hash> set = hashes.get(row, col);
-            if (set == null) {
-                set = Sets.newHashSet();
-                hashes.put(row, col, set);
+            for (final Statement stmt : tboxStmts) {
+                this.model.remove(stmt.getSubject(), stmt.getPredicate(), stmt.getObject());
             }
-            set.add(Hash.murmur3(hashedStrings));
-        }
+            final int sizeAfter = this.model.size();
 
-        private static Table<String, String, Integer> countHashes(
-                final Table<String, String, Set<Hash>> hashes) {
-            final Table<String, String, Integer> counts = HashBasedTable.create();
-            for (final Cell<String, String, Set<Hash>> cell : hashes.cellSet()) {
-                counts.put(cell.getRowKey(), cell.getColumnKey(), cell.getValue().size());
-            }
-            return counts;
+            LOGGER.info("ABox closed for {}, graph {}: from {} to {} quads "
+                    + "({} inferred, {} TBox quads removed) in {} ms", this.source, this.graph,
+                    sizeBefore, sizeAfter, sizeClosed - sizeBefore, sizeClosed - sizeAfter,
+                    System.currentTimeMillis() - ts);
         }
 
     }
@@ -13,7 +13,6 @@ import java.util.regex.Pattern;
 import javax.xml.parsers.DocumentBuilderFactory;
 
 import com.google.common.collect.HashMultimap;
-import com.google.common.io.Files;
 
 import org.joox.JOOX;
 import org.joox.Match;
@@ -24,6 +23,7 @@ import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
+import eu.fbk.dkm.premon.util.VerbNetIndex;
 import eu.fbk.dkm.premon.vocab.LEXINFO;
 
 /*
@@ -64,36 +64,16 @@ public class SemlinkConverter extends Converter {
 
         String vnPath = properties.getProperty("vnpath");
         if (vnPath != null) {
-            LOGGER.info("Loading VerbNet");
             File vnFile = new File(vnPath);
             if (vnFile.exists() && vnFile.isDirectory()) {
-                final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-
-                for (final File file : Files.fileTreeTraverser().preOrderTraversal(vnFile)) {
-                    if (!file.isDirectory() && file.getName().endsWith(".xml")) {
-                        LOGGER.debug("Processing {} ...", file);
-
-                        try {
-                            final Document document = dbf.newDocumentBuilder().parse(file);
-                            final Match vnClass = JOOX.$(document.getElementsByTagName("VNCLASS"))
-                                    .add(JOOX.$(document.getElementsByTagName("VNSUBCLASS")));
-
-                            for (Element thisClass : vnClass) {
-                                String id = thisClass.getAttribute("ID");
-                                Matcher mID = VN_PATTERN.matcher(id);
-                                if (mID.find()) {
-                                    vnMap.put(mID.group(2), mID.group(1));
-                                } else {
-                                    LOGGER.error("Unable to parse {}", id);
-                                }
-                            }
-
-                        } catch (final Exception ex) {
-                            ex.printStackTrace();
-                        }
+                for (String id : VerbNetIndex.forPath(vnFile).getClassIDs()) {
+                    Matcher mID = VN_PATTERN.matcher(id);
+                    if (mID.find()) {
+                        vnMap.put(mID.group(2), mID.group(1));
+                    } else {
+                        LOGGER.error("Unable to parse {}", id);
                     }
                 }
-
             }
         }
 
@@ -119,12 +99,16 @@ public class SemlinkConverter extends Converter {
         try {
 
             LOGGER.debug("Processing {} ...", vnPbMappings);
+            countFile(vnPbMappings);
             document = dbf.newDocumentBuilder().parse(vnPbMappings);
             final Match predicates = JOOX.$(document.getElementsByTagName("predicate"));
 
             for (Element predicate : predicates) {
                 String lemma = predicate.getAttribute("lemma");
                 String uriLemma = BankConverter.getLemmaFromPredicateName(lemma);
+                if (!acceptsLemma(uriLemma)) {
+                    continue;
+                }
 
                 final Match argmaps = JOOX.$(predicate.getElementsByTagName("argmap"));
                 for (Element argmap : argmaps) {
@@ -178,6 +162,7 @@ public class SemlinkConverter extends Converter {
             LOGGER.debug("Processing {} ...", vnFnMappings);
             HashMultimap<String, String> vnfnMap = HashMultimap.create();
             HashMultimap<String, String> vnfnLemmaMap = HashMultimap.create();
+            countFile(vnFnMappings);
             document = dbf.newDocumentBuilder().parse(vnFnMappings);
             final Match vnClasses = JOOX.$(document.getElementsByTagName("vncls"));
 
@@ -185,6 +170,9 @@ public class SemlinkConverter extends Converter {
                 String vnCls = vnClass.getAttribute("class");
                 String lemma = vnClass.getAttribute("vnmember");
                 String uriLemma = BankConverter.getLemmaFromPredicateName(lemma);
+                if (!acceptsLemma(uriLemma)) {
+                    continue;
+                }
 
                 String frame = vnClass.getAttribute("fnframe");
                 frame = frame.toLowerCase();
@@ -216,6 +204,7 @@ public class SemlinkConverter extends Converter {
 
             LOGGER.debug("Processing {} ...", vnFnMappingsRole);
             int notFound = 0;
+            countFile(vnFnMappingsRole);
             document = dbf.newDocumentBuilder().parse(vnFnMappingsRole);
             final Match vnClasses2 = JOOX.$(document.getElementsByTagName("vncls"));
 
@@ -225,6 +214,10 @@ public class SemlinkConverter extends Converter {
 
                 frame = frame.toLowerCase();
 
+                if (lemmaFilter != null && !vnfnMap.containsEntry(vnCls, frame)) {
+                    continue; // no selected lemma
+                }
+
                 String vnID = vnMap.get(vnCls);
                 if (vnID == null) {
                     LOGGER.error("VerbNet ID {} not found", vnCls);
@@ -0,0 +1,112 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Identifies the sources referenced by a PreMOn URI, i.e., the source keys {@code key} such that
+ * the URI contains {@code -key-} or {@code /key-}.
+ * <p>
+ * Source keys are stored in a trie that is walked from each {@code -} or {@code /} character of
+ * the URI, so that all the keys are matched in a single scan instead of one regular expression
+ * per key. Keys are identified by their position in the list supplied at construction time, and
+ * at most 64 keys are supported so that all the matches can be returned as a bit mask.
+ * </p>
+ */
+final class SourceMatcher {
+
+    private final List<String> keys;
+
+    private final Node root;
+
+    SourceMatcher(final Iterable<String> keys) {
+        this.keys = ImmutableList.copyOf(keys);
+        this.root = new Node();
+        Preconditions.checkArgument(this.keys.size() <= 64, "Too many source keys");
+        for (int i = 0; i < this.keys.size(); ++i) {
+            Node node = this.root;
+            for (final char c : this.keys.get(i).toCharArray()) {
+                node = node.getOrCreateChild(c);
+            }
+            if (node.key < 0) {
+                node.key = i; // on duplicate keys, the first one wins
+            }
+        }
+    }
+
+    List<String> getKeys() {
+        return this.keys;
+    }
+
+    String getKey(final int index) {
+        return this.keys.get(index);
+    }
+
+    /**
+     * Returns the index of the first key (in key order) referenced by the string supplied, or
+     * -1 if the string does not reference any key.
+     */
+    int match(final String string) {
+        final long mask = matchAll(string);
+        return mask == 0L ? -1 : Long.numberOfTrailingZeros(mask);
+    }
+
+    /**
+     * Returns a bit mask where bit {@code i} is set if the string supplied references the key
+     * with index {@code i}.
+     */
+    long matchAll(final String string) {
+        long mask = 0L;
+        final int length = string.length();
+        for (int start = 0; start < length; ++start) {
+            final char d = string.charAt(start);
+            if (d != '-' && d != '/') {
+                continue;
+            }
+            Node node = this.root;
+            for (int i = start + 1; i < length && node != null; ++i) {
+                final char c = string.charAt(i);
+                if (c == '-' && node.key >= 0) {
+                    mask |= 1L << node.key;
+                }
+                node = node.getChild(c);
+            }
+        }
+        return mask;
+    }
+
+    private static final class Node {
+
+        char[] chars = new char[0];
+
+        Node[] children = new Node[0];
+
+        int key = -1;
+
+        Node getChild(final char c) {
+            for (int i = 0; i < this.chars.length; ++i) {
+                if (this.chars[i] == c) {
+                    return this.children[i];
+                }
+            }
+            return null;
+        }
+
+        Node getOrCreateChild(final char c) {
+            Node child = getChild(c);
+            if (child == null) {
+                child = new Node();
+                this.chars = Arrays.copyOf(this.chars, this.chars.length + 1);
+                this.children = Arrays.copyOf(this.children, this.children.length + 1);
+                this.chars[this.chars.length - 1] = c;
+                this.children[this.children.length - 1] = child;
+            }
+            return child;
+        }
+
+    }
+
+}
@@ -0,0 +1,94 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Preconditions;
+
+import org.openrdf.rio.RDFHandlerException;
+
+import eu.fbk.dkm.premon.util.ThreadAllocations;
+
+/**
+ * Fork/join pool shared by the parallel phases of a Premonitor run.
+ * <p>
+ * A single pool with the parallelism requested via {@code -j} is created per run and reused by
+ * all the phases processing graphs in parallel (checkpointing, ABox inference, mapping filtering,
+ * statistics, closure and page generation), so that worker threads are started once and the
+ * number of busy threads never exceeds the parallelism requested. Workers record their allocated
+ * bytes via {@link ThreadAllocations} when they terminate, so that {@link PipelineMetrics} still
+ * accounts for them.
+ * </p>
+ */
+final class TaskPool implements AutoCloseable {
+
+    private final ForkJoinPool pool;
+
+    TaskPool(final int parallelism) {
+        Preconditions.checkArgument(parallelism > 0);
+        this.pool = new ForkJoinPool(parallelism, (final ForkJoinPool p) -> {
+            return new ForkJoinWorkerThread(p) {
+
+                @Override
+                protected void onTermination(final Throwable exception) {
+                    ThreadAllocations.recordTermination(); // account allocations in metrics
+                    super.onTermination(exception);
+                }
+
+            };
+        }, null, false);
+    }
+
+    int getParallelism() {
+        return this.pool.getParallelism();
+    }
+
+    /**
+     * Runs the fork/join tasks supplied, returning once all of them completed and wrapping their
+     * first failure in an {@code RDFHandlerException} whose message starts with the description
+     * supplied (e.g., "Mapping filtering").
+     */
+    void invokeAll(final String description, final Collection<? extends ForkJoinTask<?>> tasks)
+            throws RDFHandlerException {
+        try {
+            this.pool.submit(() -> ForkJoinTask.invokeAll(tasks)).get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RDFHandlerException(description + " interrupted", ex);
+        } catch (final ExecutionException ex) {
+            throw new RDFHandlerException(description + " failed: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Runs the I/O tasks supplied, returning once all of them completed and propagating the
+     * {@code IOException} (or wrapping the exception) of the first failed task.
+     */
+    void callAll(final Collection<? extends Callable<Void>> tasks) throws IOException {
+        try {
+            for (final Future<Void> future : this.pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", ex);
+        } catch (final ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        this.pool.shutdown();
+    }
+
+}
@@ -64,10 +64,20 @@ public class VerbnetConverter extends Converter {
 
         for (final File file : Files.fileTreeTraverser().preOrderTraversal(this.path)) {
             if (!file.isDirectory() && file.getName().endsWith(".xml")) {
+                if (replayFile(file)) {
+                    LOGGER.debug("Replayed {}", file);
+                    continue;
+                }
+
                 LOGGER.debug("Processing {} ...", file);
 
                 try {
                     final Document document = dbf.newDocumentBuilder().parse(file);
+                    if (!hasAcceptedMember(document)) {
+                        LOGGER.debug("Skipped {}: no selected member", file);
+                        continue;
+                    }
+                    recordFile(file);
                     final Match vnClass = JOOX.$(document.getElementsByTagName("VNCLASS"));
 
                     for (final Element thisClass : vnClass) {
@@ -82,6 +92,8 @@ public class VerbnetConverter extends Converter {
 
                     }
 
+                    commitFile();
+
                 } catch (final Exception ex) {
                     throw new IOException(ex);
                 }
@@ -90,6 +102,19 @@ public class VerbnetConverter extends Converter {
 
     }
 
+    private boolean hasAcceptedMember(final Document document) {
+        if (this.lemmaFilter == null) {
+            return true;
+        }
+        final NodeList members = document.getElementsByTagName("MEMBER");
+        for (int i = 0; i < members.getLength(); ++i) {
+            if (acceptsLemma(((Element) members.item(i)).getAttribute("name"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void addClassToSink(final Element thisClass, @Nullable final URI superClass,
             @Nullable final HashMap<String, Element> themRolesElements,
             @Nullable final HashSet<URI> framesElements) {
@@ -120,6 +145,9 @@ public class VerbnetConverter extends Converter {
         elements = JOOX.$(thisClass).xpath("MEMBERS/MEMBER");
         for (final Element member : elements) {
             String uriLemma = member.getAttribute("name");
+            if (!acceptsLemma(uriLemma)) {
+                continue;
+            }
             uriLemma = uriLemma.replaceAll("_", "+");
             final String goodLemma = uriLemma.replaceAll("\\+", " ");
 
@@ -0,0 +1,189 @@
+package eu.fbk.dkm.premon.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+import org.openrdf.model.Statement;
+import org.openrdf.model.impl.NamespaceImpl;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+
+import eu.fbk.rdfpro.AbstractRDFHandler;
+import eu.fbk.rdfpro.util.IO;
+
+/**
+ * An {@code RDFHandler} forwarding events to a delegate handler running in a dedicated thread.
+ * <p>
+ * Events are accumulated in batches that are passed to the delegate thread through a bounded
+ * queue, so that a slow delegate (e.g., a writer producing compressed output) blocks producers
+ * rather than causing unbounded buffering. The delegate is started in the calling thread and is
+ * ended (and closed, if closeable) in the delegate thread; the first failure of the delegate, if
+ * any, is rethrown to the producer either when the next batch is submitted or at
+ * {@link #endRDF()}, which waits for the delegate thread to complete. Methods may be called
+ * concurrently by multiple producer threads.
+ * </p>
+ */
+public final class AsyncRDFHandler extends AbstractRDFHandler {
+
+    private static final Object[] EOF = new Object[0];
+
+    private static final int DEFAULT_BATCH_SIZE = 1024;
+
+    private static final int DEFAULT_QUEUE_SIZE = 16;
+
+    private final RDFHandler delegate;
+
+    private final String name;
+
+    private final int batchSize;
+
+    private final BlockingQueue<Object[]> queue;
+
+    private Object[] batch;
+
+    private int batchLength;
+
+    @Nullable
+    private Thread thread;
+
+    @Nullable
+    private volatile Throwable failure;
+
+    public AsyncRDFHandler(final RDFHandler delegate, final String name) {
+        this(delegate, name, DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_SIZE);
+    }
+
+    public AsyncRDFHandler(final RDFHandler delegate, final String name, final int batchSize,
+            final int queueSize) {
+        Preconditions.checkArgument(batchSize > 0 && queueSize > 0);
+        this.delegate = delegate;
+        this.name = name;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batch = new Object[batchSize];
+        this.batchLength = 0;
+    }
+
+    @Override
+    public synchronized void startRDF() throws RDFHandlerException {
+        Preconditions.checkState(this.thread == null, "Already started");
+        this.delegate.startRDF();
+        this.thread = ThreadAllocations.newThread(this::consume, this.name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public synchronized void handleNamespace(final String prefix, final String uri)
+            throws RDFHandlerException {
+        add(new NamespaceImpl(prefix, uri));
+    }
+
+    @Override
+    public synchronized void handleStatement(final Statement statement)
+            throws RDFHandlerException {
+        add(statement);
+    }
+
+    @Override
+    public synchronized void endRDF() throws RDFHandlerException {
+        if (this.thread == null) {
+            return;
+        }
+        flush();
+        put(EOF);
+        try {
+            this.thread.join();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RDFHandlerException("Interrupted while waiting for " + this.name, ex);
+        } finally {
+            this.thread = null;
+        }
+        checkFailure();
+    }
+
+    private void add(final Object event) throws RDFHandlerException {
+        this.batch[this.batchLength++] = event;
+        if (this.batchLength == this.batchSize) {
+            flush();
+        }
+    }
+
+    private void flush() throws RDFHandlerException {
+        checkFailure();
+        if (this.batchLength > 0) {
+            final Object[] batch = this.batch;
+            if (this.batchLength < batch.length) {
+                batch[this.batchLength] = null; // marks the end of a partial batch
+            }
+            this.batch = new Object[this.batchSize];
+            this.batchLength = 0;
+            put(batch);
+        }
+    }
+
+    private void put(final Object[] batch) throws RDFHandlerException {
+        try {
+            this.queue.put(batch);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RDFHandlerException("Interrupted while feeding " + this.name, ex);
+        }
+    }
+
+    private void checkFailure() throws RDFHandlerException {
+        final Throwable failure = this.failure;
+        if (failure instanceof RDFHandlerException) {
+            throw (RDFHandlerException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new RDFHandlerException(this.name + " failed: " + failure.getMessage(),
+                    failure);
+        }
+    }
+
+    private void consume() {
+        try {
+            while (true) {
+                final Object[] batch = this.queue.take();
+                if (batch == EOF) {
+                    break;
+                }
+                if (this.failure != null) {
+                    continue; // drain the queue, so that producers are never blocked
+                }
+                try {
+                    for (final Object event : batch) {
+                        if (event == null) {
+                            break;
+                        } else if (event instanceof Statement) {
+                            this.delegate.handleStatement((Statement) event);
+                        } else {
+                            final NamespaceImpl namespace = (NamespaceImpl) event;
+                            this.delegate.handleNamespace(namespace.getPrefix(),
+                                    namespace.getName());
+                        }
+                    }
+                } catch (final Throwable ex) {
+                    this.failure = ex;
+                }
+            }
+            if (this.failure == null) {
+                this.delegate.endRDF();
+            }
+        } catch (final Throwable ex) {
+            if (this.failure == null) {
+                this.failure = ex;
+            }
+        } finally {
+            IO.closeQuietly(this.delegate);
+        }
+    }
+
+}
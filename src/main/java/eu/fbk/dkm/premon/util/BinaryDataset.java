@@ -0,0 +1,490 @@
+package eu.fbk.dkm.premon.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Namespace;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.NamespaceImpl;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+/**
+ * A read-only, memory-mapped view of a dataset in the PreMOn binary format ({@code .pmb}), as
+ * written by {@link BinaryDatasetWriter}.
+ * <p>
+ * The format consists of a term dictionary and of three sorted indexes of term ID triples for
+ * each graph. Terms are sorted by the UTF-8 bytes of their key (a type character followed by the
+ * URI, blank node ID or literal label, language and datatype) and are identified by their rank;
+ * keys are front-coded in buckets of {@value #BUCKET_SIZE}, each one starting with a full key at
+ * an offset listed in a bucket table. The triples of each graph are stored three times, sorted in
+ * SPO, POS and OSP order, as arrays of 12-byte records. All integers are big endian:
+ * </p>
+ *
+ * <pre>
+ * header     := "PMBD" version:int numNamespaces:int (prefix:str name:str)*
+ * dictionary := numTerms:int bucketOffset:long* bucket*
+ * bucket     := length:varint key:byte* (prefixLength:varint suffixLength:varint suffix:byte*)*
+ * graphs     := numGraphs:int (graph:int numTriples:int spo:long pos:long osp:long)*
+ * indexes    := (s:int p:int o:int)*
+ * </pre>
+ * <p>
+ * where {@code str} is a length-prefixed UTF-8 string, offsets are absolute, and graph ID -1
+ * denotes the default graph. Lookups decode only the terms they touch, hence a dataset can be
+ * queried without loading it into the heap; instances are thread-safe. Files must be smaller
+ * than 2 GB, the maximum size of a single mapping.
+ * </p>
+ */
+public final class BinaryDataset implements Closeable {
+
+    public static final String EXTENSION = "pmb";
+
+    static final int MAGIC = 0x504D4244; // "PMBD"
+
+    static final int VERSION = 1;
+
+    static final int BUCKET_SIZE = 16;
+
+    static final int DEFAULT_GRAPH = -1;
+
+    private static final ValueFactoryImpl FACTORY = ValueFactoryImpl.getInstance();
+
+    private final File file;
+
+    private final MappedByteBuffer buffer;
+
+    private final List<Namespace> namespaces;
+
+    private final int numTerms;
+
+    private final int bucketTableOffset;
+
+    private final int[] graphIDs;
+
+    private final int[] graphSizes;
+
+    private final int[][] graphIndexes; // offsets of SPO, POS, OSP indexes for each graph
+
+    private BinaryDataset(final File file, final MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+
+        final ByteBuffer in = buffer.duplicate();
+        if (in.getInt() != MAGIC) {
+            throw new IOException("Not a PreMOn binary dataset: " + file);
+        }
+        final int version = in.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version + " of " + file);
+        }
+        final int numNamespaces = in.getInt();
+        final List<Namespace> namespaces = Lists.newArrayListWithCapacity(numNamespaces);
+        for (int i = 0; i < numNamespaces; ++i) {
+            namespaces.add(new NamespaceImpl(readString(in), readString(in)));
+        }
+        this.namespaces = ImmutableList.copyOf(namespaces);
+
+        this.numTerms = in.getInt();
+        this.bucketTableOffset = in.position();
+
+        final int numBuckets = (this.numTerms + BUCKET_SIZE - 1) / BUCKET_SIZE;
+        in.position(numBuckets == 0 ? in.position()
+                : (int) buffer.getLong(this.bucketTableOffset + 8 * (numBuckets - 1)));
+        for (int i = (numBuckets - 1) * BUCKET_SIZE; i < this.numTerms; ++i) {
+            skipKey(in, i % BUCKET_SIZE == 0); // skip the last bucket
+        }
+
+        final int numGraphs = in.getInt();
+        this.graphIDs = new int[numGraphs];
+        this.graphSizes = new int[numGraphs];
+        this.graphIndexes = new int[numGraphs][];
+        for (int i = 0; i < numGraphs; ++i) {
+            this.graphIDs[i] = in.getInt();
+            this.graphSizes[i] = in.getInt();
+            this.graphIndexes[i] = new int[] { (int) in.getLong(), (int) in.getLong(),
+                    (int) in.getLong() };
+        }
+    }
+
+    /**
+     * Opens the binary dataset file specified, mapping it in memory.
+     */
+    public static BinaryDataset open(final File file) throws IOException {
+        return new BinaryDataset(file, MappedFiles.map(file, "Binary dataset"));
+    }
+
+    public List<Namespace> getNamespaces() {
+        return this.namespaces;
+    }
+
+    public int getNumTerms() {
+        return this.numTerms;
+    }
+
+    /**
+     * Returns the named graphs of the dataset (excluding the default graph).
+     */
+    public List<URI> getGraphs() {
+        final List<URI> graphs = Lists.newArrayList();
+        for (final int id : this.graphIDs) {
+            if (id != DEFAULT_GRAPH) {
+                graphs.add((URI) getTerm(id));
+            }
+        }
+        return graphs;
+    }
+
+    /**
+     * Returns the number of quads in the dataset.
+     */
+    public long size() {
+        long size = 0;
+        for (final int graphSize : this.graphSizes) {
+            size += graphSize;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the term with the ID specified.
+     */
+    public Value getTerm(final int id) {
+        if (id < 0 || id >= this.numTerms) {
+            throw new IllegalArgumentException("Invalid term ID " + id);
+        }
+        return decode(getKey(id));
+    }
+
+    /**
+     * Returns the ID of the term specified, or -1 if not in the dataset.
+     */
+    public int lookup(final Value term) {
+
+        // Binary search of the last bucket whose first key is <= the key searched
+        final byte[] key = encode(term);
+        final ByteBuffer in = this.buffer.duplicate();
+        int low = 0;
+        int high = (this.numTerms + BUCKET_SIZE - 1) / BUCKET_SIZE - 1;
+        int bucket = -1;
+        while (low <= high) {
+            final int mid = low + high >>> 1;
+            in.position(bucketOffset(mid));
+            final byte[] first = new byte[MappedFiles.readVarInt(in)];
+            in.get(first);
+            final int cmp = compare(first, key);
+            if (cmp == 0) {
+                return mid * BUCKET_SIZE;
+            } else if (cmp < 0) {
+                bucket = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        // Scan the bucket
+        if (bucket >= 0) {
+            in.position(bucketOffset(bucket));
+            byte[] current = null;
+            final int end = Math.min(this.numTerms, (bucket + 1) * BUCKET_SIZE);
+            for (int id = bucket * BUCKET_SIZE; id < end; ++id) {
+                current = readKey(in, current);
+                final int cmp = compare(current, key);
+                if (cmp == 0) {
+                    return id;
+                } else if (cmp > 0) {
+                    break;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of quads matching the pattern specified, where null components are
+     * wildcards ({@code graph} null matches all the graphs).
+     */
+    public long count(@Nullable final Resource subj, @Nullable final URI pred,
+            @Nullable final Value obj, @Nullable final Resource graph) {
+        final Query query = new Query(subj, pred, obj, graph);
+        long count = 0;
+        while (query.nextRange()) {
+            count += query.end - query.start;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the quads matching the pattern specified, where null components are wildcards
+     * ({@code graph} null matches all the graphs). Quads are decoded lazily while iterating.
+     */
+    public Iterable<Statement> filter(@Nullable final Resource subj, @Nullable final URI pred,
+            @Nullable final Value obj, @Nullable final Resource graph) {
+        return () -> new Iterator<Statement>() {
+
+            private final Query query = new Query(subj, pred, obj, graph);
+
+            private int record = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.record < this.query.end || this.query.nextRange()
+                        && (this.record = this.query.start) < this.query.end;
+            }
+
+            @Override
+            public Statement next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final Query q = this.query;
+                final int offset = q.offset + 12 * this.record++;
+                final Value[] spo = new Value[3];
+                for (int i = 0; i < 3; ++i) {
+                    final int component = q.order[i];
+                    final int id = BinaryDataset.this.buffer.getInt(offset + 4 * i);
+                    spo[component] = q.bound[component] != null ? q.bound[component]
+                            : getTerm(id);
+                }
+                final int graphID = BinaryDataset.this.graphIDs[q.graph];
+                return graphID == DEFAULT_GRAPH
+                        ? FACTORY.createStatement((Resource) spo[0], (URI) spo[1], spo[2])
+                        : FACTORY.createStatement((Resource) spo[0], (URI) spo[1], spo[2],
+                                q.graphTerm != null ? q.graphTerm
+                                        : (Resource) getTerm(graphID));
+            }
+
+        };
+    }
+
+    @Override
+    public void close() {
+        // Mapping is released when the buffer is garbage collected
+    }
+
+    @Override
+    public String toString() {
+        return this.file.toString();
+    }
+
+    private byte[] getKey(final int id) {
+        final ByteBuffer in = this.buffer.duplicate();
+        in.position(bucketOffset(id / BUCKET_SIZE));
+        byte[] key = null;
+        for (int i = 0; i <= id % BUCKET_SIZE; ++i) {
+            key = readKey(in, key);
+        }
+        return key;
+    }
+
+    private int bucketOffset(final int bucket) {
+        return (int) this.buffer.getLong(this.bucketTableOffset + 8 * bucket);
+    }
+
+    private static byte[] readKey(final ByteBuffer in, @Nullable final byte[] previous) {
+        if (previous == null) {
+            final byte[] key = new byte[MappedFiles.readVarInt(in)];
+            in.get(key);
+            return key;
+        }
+        final int prefixLength = MappedFiles.readVarInt(in);
+        final int suffixLength = MappedFiles.readVarInt(in);
+        final byte[] key = new byte[prefixLength + suffixLength];
+        System.arraycopy(previous, 0, key, 0, prefixLength);
+        in.get(key, prefixLength, suffixLength);
+        return key;
+    }
+
+    private static void skipKey(final ByteBuffer in, final boolean first) {
+        if (!first) {
+            MappedFiles.readVarInt(in);
+        }
+        final int length = MappedFiles.readVarInt(in);
+        in.position(in.position() + length);
+    }
+
+    private static String readString(final ByteBuffer in) {
+        final byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the dictionary key of a term: 'U' + URI, 'B' + blank node ID, or 'L' + label +
+     * '\0' + optional '@' + language or '^' + datatype.
+     */
+    static byte[] encode(final Value term) {
+        final StringBuilder builder = new StringBuilder();
+        if (term instanceof URI) {
+            builder.append('U').append(term.stringValue());
+        } else if (term instanceof BNode) {
+            builder.append('B').append(((BNode) term).getID());
+        } else {
+            final Literal literal = (Literal) term;
+            builder.append('L').append(literal.getLabel()).append('\0');
+            if (literal.getLanguage() != null) {
+                builder.append('@').append(literal.getLanguage());
+            } else if (literal.getDatatype() != null) {
+                builder.append('^').append(literal.getDatatype().stringValue());
+            }
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static Value decode(final byte[] key) {
+        final String string = new String(key, 1, key.length - 1, StandardCharsets.UTF_8);
+        if (key[0] == 'U') {
+            return FACTORY.createURI(string);
+        } else if (key[0] == 'B') {
+            return FACTORY.createBNode(string);
+        }
+        final int index = string.lastIndexOf('\0');
+        final String label = string.substring(0, index);
+        if (index == string.length() - 1) {
+            return FACTORY.createLiteral(label);
+        } else if (string.charAt(index + 1) == '@') {
+            return FACTORY.createLiteral(label, string.substring(index + 2));
+        } else {
+            return FACTORY.createLiteral(label, FACTORY.createURI(string.substring(index + 2)));
+        }
+    }
+
+    /**
+     * Compares keys as sequences of unsigned bytes.
+     */
+    static int compare(final byte[] a, final byte[] b) {
+        final int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; ++i) {
+            final int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    /**
+     * The evaluation state of a triple pattern: graphs are visited in turn, locating in each one
+     * the range of index records matching the bound components by binary search.
+     */
+    private final class Query {
+
+        final Value[] bound;
+
+        final int[] ids;
+
+        @Nullable
+        final Resource graphTerm;
+
+        final int graphID;
+
+        final int[] order;
+
+        final int numBound;
+
+        final int index;
+
+        final boolean empty;
+
+        int graph = -1;
+
+        int offset;
+
+        int start;
+
+        int end;
+
+        Query(@Nullable final Resource subj, @Nullable final URI pred,
+                @Nullable final Value obj, @Nullable final Resource graph) {
+
+            this.bound = new Value[] { subj, pred, obj };
+            this.ids = new int[3];
+            this.graphTerm = graph;
+
+            // Pick the index whose sort order starts with the bound components
+            final boolean s = subj != null;
+            final boolean p = pred != null;
+            final boolean o = obj != null;
+            this.index = s && (p || !o) || !p && !o ? 0 : p ? 1 : 2;
+            this.order = this.index == 0 ? new int[] { 0, 1, 2 }
+                    : this.index == 1 ? new int[] { 1, 2, 0 } : new int[] { 2, 0, 1 };
+            int numBound = 0;
+            while (numBound < 3 && this.bound[this.order[numBound]] != null) {
+                ++numBound;
+            }
+            this.numBound = numBound;
+
+            // Map bound terms to IDs: a term not in the dictionary matches nothing
+            this.graphID = graph == null ? DEFAULT_GRAPH : lookup(graph);
+            boolean empty = graph != null && this.graphID < 0;
+            for (int i = 0; i < 3; ++i) {
+                if (this.bound[i] != null) {
+                    this.ids[i] = lookup(this.bound[i]);
+                    empty |= this.ids[i] < 0;
+                }
+            }
+            this.empty = empty;
+        }
+
+        boolean nextRange() {
+            if (this.empty) {
+                return false;
+            }
+            while (++this.graph < BinaryDataset.this.graphIDs.length) {
+                if (this.graphTerm != null
+                        && BinaryDataset.this.graphIDs[this.graph] != this.graphID) {
+                    continue;
+                }
+                this.offset = BinaryDataset.this.graphIndexes[this.graph][this.index];
+                final int size = BinaryDataset.this.graphSizes[this.graph];
+                this.start = search(size, false);
+                this.end = search(size, true);
+                if (this.start < this.end) {
+                    return true;
+                }
+            }
+            this.start = 0;
+            this.end = 0;
+            return false;
+        }
+
+        // Returns the first record > (if after) or >= (otherwise) the bound components
+        private int search(final int size, final boolean after) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                final int mid = low + high >>> 1;
+                final int record = this.offset + 12 * mid;
+                int cmp = 0;
+                for (int i = 0; i < this.numBound && cmp == 0; ++i) {
+                    cmp = Integer.compare(BinaryDataset.this.buffer.getInt(record + 4 * i),
+                            this.ids[this.order[i]]);
+                }
+                if (cmp < 0 || cmp == 0 && after) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+    }
+
+}
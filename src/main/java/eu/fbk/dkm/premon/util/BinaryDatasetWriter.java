@@ -0,0 +1,381 @@
+package eu.fbk.dkm.premon.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.CountingOutputStream;
+
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.rio.RDFHandlerException;
+
+import eu.fbk.rdfpro.AbstractRDFHandler;
+
+/**
+ * An {@code RDFHandler} writing the quads it receives to a file in the PreMOn binary format,
+ * described in {@link BinaryDataset}.
+ * <p>
+ * Terms are mapped to temporary IDs and quads are buffered as ID triples per graph while
+ * receiving them; at {@link #endRDF()} terms are sorted, IDs are remapped, and each graph is
+ * deduplicated and sorted in the three index orders before being written. Instances are not
+ * thread-safe.
+ * </p>
+ * <p>
+ * The whole dataset is thus buffered in memory until {@link #endRDF()}: a hash map from each
+ * distinct term to its temporary ID, plus 12 bytes per quad, and then the encoded terms and a
+ * copy of the triples of each graph while sorting. This is comparable to the models the dataset
+ * is emitted from, and is held only while the dataset is being written (with
+ * {@code DatasetEmitter}, for at most as many datasets at once as the configured jobs). As the
+ * resulting file is memory-mapped by {@link BinaryDataset}, its size is computed before writing
+ * it and an {@code IOException} is thrown if larger than 2 GB.
+ * </p>
+ */
+public final class BinaryDatasetWriter extends AbstractRDFHandler {
+
+    private final File file;
+
+    private final Map<String, String> namespaces;
+
+    private final Map<Value, Integer> termIDs;
+
+    private final List<Value> terms;
+
+    private final Map<Integer, Triples> graphs;
+
+    public BinaryDatasetWriter(final File file) {
+        this.file = file;
+        this.namespaces = Maps.newLinkedHashMap();
+        this.termIDs = Maps.newHashMap();
+        this.terms = Lists.newArrayList();
+        this.graphs = Maps.newHashMap();
+    }
+
+    @Override
+    public void startRDF() {
+        this.namespaces.clear();
+        this.termIDs.clear();
+        this.terms.clear();
+        this.graphs.clear();
+    }
+
+    @Override
+    public void handleNamespace(final String prefix, final String uri) {
+        this.namespaces.putIfAbsent(prefix, uri);
+    }
+
+    @Override
+    public void handleStatement(final Statement statement) {
+        final Integer graph = statement.getContext() == null ? BinaryDataset.DEFAULT_GRAPH
+                : id(statement.getContext());
+        Triples triples = this.graphs.get(graph);
+        if (triples == null) {
+            triples = new Triples();
+            this.graphs.put(graph, triples);
+        }
+        triples.add(id(statement.getSubject()), id(statement.getPredicate()),
+                id(statement.getObject()));
+    }
+
+    @Override
+    public void endRDF() throws RDFHandlerException {
+        try {
+            write();
+        } catch (final IOException ex) {
+            throw new RDFHandlerException("Cannot write " + this.file, ex);
+        } finally {
+            startRDF(); // release memory
+        }
+    }
+
+    private int id(final Value term) {
+        Integer id = this.termIDs.get(term);
+        if (id == null) {
+            id = this.terms.size();
+            this.termIDs.put(term, id);
+            this.terms.add(term);
+        }
+        return id;
+    }
+
+    private void write() throws IOException {
+
+        // Sort terms by key, computing the final ID (rank) of each temporary ID
+        final int numTerms = this.terms.size();
+        final byte[][] keys = new byte[numTerms][];
+        final Integer[] order = new Integer[numTerms];
+        for (int i = 0; i < numTerms; ++i) {
+            keys[i] = BinaryDataset.encode(this.terms.get(i));
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> BinaryDataset.compare(keys[a], keys[b]));
+        final int[] ranks = new int[numTerms];
+        for (int i = 0; i < numTerms; ++i) {
+            ranks[order[i]] = i;
+        }
+
+        // Remap, sort in SPO order and deduplicate the triples of each graph, by graph ID
+        final int[] graphIDs = new int[this.graphs.size()];
+        final int[][] graphTriples = new int[graphIDs.length][];
+        final int[] graphSizes = new int[graphIDs.length];
+        int index = 0;
+        for (final Integer graph : this.graphs.keySet()) {
+            graphIDs[index++] = graph == BinaryDataset.DEFAULT_GRAPH ? graph : ranks[graph];
+        }
+        Arrays.sort(graphIDs);
+        for (final Map.Entry<Integer, Triples> entry : this.graphs.entrySet()) {
+            final int graph = entry.getKey() == BinaryDataset.DEFAULT_GRAPH ? entry.getKey()
+                    : ranks[entry.getKey()];
+            final int i = Arrays.binarySearch(graphIDs, graph);
+            final Triples triples = entry.getValue();
+            final int[] data = Arrays.copyOf(triples.data, triples.size * 3);
+            for (int j = 0; j < data.length; ++j) {
+                data[j] = ranks[data[j]];
+            }
+            sort(data, 0, triples.size - 1);
+            graphTriples[i] = data;
+            graphSizes[i] = deduplicate(data, triples.size);
+        }
+
+        // Fail before writing anything if the file would not fit a single mapping
+        final long fileSize = size(keys, order, graphSizes);
+        MappedFiles.checkSize(fileSize, "Binary dataset");
+
+        try (RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+                FileChannel channel = raf.getChannel()) {
+
+            channel.truncate(0);
+            final CountingOutputStream counter = new CountingOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+            final DataOutputStream out = new DataOutputStream(counter);
+
+            // Header
+            out.writeInt(BinaryDataset.MAGIC);
+            out.writeInt(BinaryDataset.VERSION);
+            out.writeInt(this.namespaces.size());
+            for (final Map.Entry<String, String> entry : this.namespaces.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+
+            // Dictionary: bucket offsets are filled in after writing the buckets
+            final int numBuckets = (numTerms + BinaryDataset.BUCKET_SIZE - 1)
+                    / BinaryDataset.BUCKET_SIZE;
+            out.writeInt(numTerms);
+            final long tableOffset = counter.getCount();
+            final ByteBuffer table = ByteBuffer.allocate(8 * numBuckets);
+            out.write(table.array());
+            byte[] previous = null;
+            for (int i = 0; i < numTerms; ++i) {
+                final byte[] key = keys[order[i]];
+                if (i % BinaryDataset.BUCKET_SIZE == 0) {
+                    table.putLong(counter.getCount());
+                    MappedFiles.writeVarInt(out, key.length);
+                    out.write(key);
+                } else {
+                    final int prefix = prefixLength(previous, key);
+                    MappedFiles.writeVarInt(out, prefix);
+                    MappedFiles.writeVarInt(out, key.length - prefix);
+                    out.write(key, prefix, key.length - prefix);
+                }
+                previous = key;
+            }
+
+            // Graphs, with the offsets of their indexes
+            out.writeInt(graphIDs.length);
+            long offset = counter.getCount() + graphIDs.length * (4 + 4 + 3 * 8);
+            for (int i = 0; i < graphIDs.length; ++i) {
+                out.writeInt(graphIDs[i]);
+                out.writeInt(graphSizes[i]);
+                for (int j = 0; j < 3; ++j) {
+                    out.writeLong(offset);
+                    offset += 12L * graphSizes[i];
+                }
+            }
+
+            // Indexes: SPO, then POS and OSP obtained by rotating and sorting triples
+            for (int i = 0; i < graphIDs.length; ++i) {
+                final int[] data = graphTriples[i];
+                final int size = graphSizes[i];
+                for (int rotation = 0; rotation < 3; ++rotation) {
+                    if (rotation > 0) {
+                        rotate(data, size);
+                        sort(data, 0, size - 1);
+                    }
+                    for (int j = 0; j < size * 3; ++j) {
+                        out.writeInt(data[j]);
+                    }
+                }
+                graphTriples[i] = null;
+            }
+
+            out.flush();
+            table.flip();
+            channel.write(table, tableOffset);
+        }
+    }
+
+    // Returns the size of the file, mirroring the layout produced by write()
+    private long size(final byte[][] keys, final Integer[] order, final int[] graphSizes) {
+        long size = 3 * 4;
+        for (final Map.Entry<String, String> entry : this.namespaces.entrySet()) {
+            size += 4 + entry.getKey().getBytes(StandardCharsets.UTF_8).length;
+            size += 4 + entry.getValue().getBytes(StandardCharsets.UTF_8).length;
+        }
+        final int numBuckets = (keys.length + BinaryDataset.BUCKET_SIZE - 1)
+                / BinaryDataset.BUCKET_SIZE;
+        size += 4 + 8L * numBuckets;
+        byte[] previous = null;
+        for (int i = 0; i < keys.length; ++i) {
+            final byte[] key = keys[order[i]];
+            if (i % BinaryDataset.BUCKET_SIZE == 0) {
+                size += MappedFiles.varIntSize(key.length) + key.length;
+            } else {
+                final int prefix = prefixLength(previous, key);
+                size += MappedFiles.varIntSize(prefix)
+                        + MappedFiles.varIntSize(key.length - prefix) + key.length - prefix;
+            }
+            previous = key;
+        }
+        size += 4 + (4 + 4 + 3 * 8) * (long) graphSizes.length;
+        for (final int graphSize : graphSizes) {
+            size += 36L * graphSize;
+        }
+        return size;
+    }
+
+    private static int prefixLength(final byte[] previous, final byte[] key) {
+        int prefix = 0;
+        final int max = Math.min(previous.length, key.length);
+        while (prefix < max && previous[prefix] == key[prefix]) {
+            ++prefix;
+        }
+        return prefix;
+    }
+
+    private static void writeString(final DataOutputStream out, final String string)
+            throws IOException {
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // (s, p, o) -> (p, o, s) for each of the first size triples
+    private static void rotate(final int[] data, final int size) {
+        for (int i = 0; i < size * 3; i += 3) {
+            final int first = data[i];
+            data[i] = data[i + 1];
+            data[i + 1] = data[i + 2];
+            data[i + 2] = first;
+        }
+    }
+
+    private static int deduplicate(final int[] data, final int size) {
+        int length = 0;
+        for (int i = 0; i < size; ++i) {
+            if (length == 0 || compare(data, i, data[3 * length - 3], data[3 * length - 2],
+                    data[3 * length - 1]) != 0) {
+                System.arraycopy(data, 3 * i, data, 3 * length++, 3);
+            }
+        }
+        return length;
+    }
+
+    // Quicksort of the triples with index in [low, high], looping on the larger partition
+    private static void sort(final int[] data, int low, int high) {
+        while (high - low > 16) {
+            final int mid = low + high >>> 1;
+            if (compare(data, mid, low) < 0) {
+                swap(data, mid, low);
+            }
+            if (compare(data, high, low) < 0) {
+                swap(data, high, low);
+            }
+            if (compare(data, high, mid) < 0) {
+                swap(data, high, mid);
+            }
+            final int s = data[3 * mid];
+            final int p = data[3 * mid + 1];
+            final int o = data[3 * mid + 2];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compare(data, i, s, p, o) < 0) {
+                    ++i;
+                }
+                while (compare(data, j, s, p, o) > 0) {
+                    --j;
+                }
+                if (i <= j) {
+                    swap(data, i++, j--);
+                }
+            }
+            if (j - low < high - i) {
+                sort(data, low, j);
+                low = i;
+            } else {
+                sort(data, i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; ++i) {
+            for (int j = i; j > low && compare(data, j, j - 1) < 0; --j) {
+                swap(data, j, j - 1);
+            }
+        }
+    }
+
+    private static int compare(final int[] data, final int i, final int j) {
+        return compare(data, i, data[3 * j], data[3 * j + 1], data[3 * j + 2]);
+    }
+
+    private static int compare(final int[] data, final int i, final int s, final int p,
+            final int o) {
+        int cmp = Integer.compare(data[3 * i], s);
+        if (cmp == 0) {
+            cmp = Integer.compare(data[3 * i + 1], p);
+            if (cmp == 0) {
+                cmp = Integer.compare(data[3 * i + 2], o);
+            }
+        }
+        return cmp;
+    }
+
+    private static void swap(final int[] data, final int i, final int j) {
+        for (int k = 0; k < 3; ++k) {
+            final int t = data[3 * i + k];
+            data[3 * i + k] = data[3 * j + k];
+            data[3 * j + k] = t;
+        }
+    }
+
+    private static final class Triples {
+
+        int[] data = new int[3 * 16];
+
+        int size = 0;
+
+        void add(final int s, final int p, final int o) {
+            if (3 * this.size == this.data.length) {
+                this.data = Arrays.copyOf(this.data, this.data.length * 2);
+            }
+            this.data[3 * this.size] = s;
+            this.data[3 * this.size + 1] = p;
+            this.data[3 * this.size + 2] = o;
+            ++this.size;
+        }
+
+    }
+
+}
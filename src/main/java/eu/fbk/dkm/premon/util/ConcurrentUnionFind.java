@@ -0,0 +1,79 @@
+package eu.fbk.dkm.premon.util;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A lock-free union-find (disjoint-set) structure over the integers {@code 0 .. size - 1}.
+ * <p>
+ * Each element stores its parent in an {@code AtomicIntegerArray}. Roots are linked by index (the
+ * root with the larger index is attached to the other one) with a compare-and-set, retried if
+ * either root changed in the meanwhile, so that no cycle can arise; {@link #find(int)} compacts
+ * paths by halving, again with compare-and-set. Hence {@link #union(int, int)} and
+ * {@link #find(int)} can be called concurrently by multiple threads, and the resulting partition
+ * does not depend on the interleaving of calls.
+ * </p>
+ */
+public final class ConcurrentUnionFind {
+
+    private final AtomicIntegerArray parents;
+
+    public ConcurrentUnionFind(final int size) {
+        Preconditions.checkArgument(size >= 0);
+        this.parents = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; ++i) {
+            this.parents.lazySet(i, i);
+        }
+    }
+
+    public int size() {
+        return this.parents.length();
+    }
+
+    /**
+     * Returns the representative of the set containing the element specified, i.e., the
+     * smallest element of the set once all the pending unions are done.
+     */
+    public int find(int element) {
+        while (true) {
+            final int parent = this.parents.get(element);
+            if (parent == element) {
+                return element;
+            }
+            final int grandParent = this.parents.get(parent);
+            if (grandParent != parent) {
+                this.parents.compareAndSet(element, parent, grandParent); // path halving
+            }
+            element = grandParent;
+        }
+    }
+
+    /**
+     * Merges the sets containing the two elements specified, returning true if they were
+     * distinct.
+     */
+    public boolean union(final int element1, final int element2) {
+        int root1 = element1;
+        int root2 = element2;
+        while (true) {
+            root1 = find(root1);
+            root2 = find(root2);
+            if (root1 == root2) {
+                return false;
+            } else if (root1 < root2) {
+                if (this.parents.compareAndSet(root2, root2, root1)) {
+                    return true;
+                }
+            } else if (this.parents.compareAndSet(root1, root1, root2)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Union-find (" + size() + " elements)";
+    }
+
+}
@@ -0,0 +1,59 @@
+package eu.fbk.dkm.premon.util;
+
+/**
+ * Counts the distinct 64-bit hashes added to it, either exactly or approximately.
+ * <p>
+ * Counters can be merged, provided they are of the same kind, so that counters filled by
+ * different threads (or for different sources) can be combined into a global counter. Instances
+ * are not thread-safe.
+ * </p>
+ */
+public interface DistinctCounter {
+
+    void add(long hash);
+
+    void merge(DistinctCounter counter);
+
+    long count();
+
+    /**
+     * Returns the relative standard error of {@link #count()}, 0 if the count is exact.
+     */
+    double getRelativeError();
+
+    static DistinctCounter create(final boolean approximate) {
+        return approximate ? new HyperLogLog() : new Exact();
+    }
+
+    static final class Exact implements DistinctCounter {
+
+        private final LongSet hashes = new LongSet();
+
+        @Override
+        public void add(final long hash) {
+            this.hashes.add(hash);
+        }
+
+        @Override
+        public void merge(final DistinctCounter counter) {
+            this.hashes.addAll(((Exact) counter).hashes);
+        }
+
+        @Override
+        public long count() {
+            return this.hashes.size();
+        }
+
+        @Override
+        public double getRelativeError() {
+            return 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return "Exact counter (" + count() + " values)";
+        }
+
+    }
+
+}
@@ -0,0 +1,561 @@
+package eu.fbk.dkm.premon.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+/**
+ * A read-only, memory-mapped full-text index of PreMOn examples, supporting conjunctive queries
+ * over the tokens of example texts, the tokens of markable anchors and the concepts (e.g.,
+ * frames, rolesets, roles) annotated on examples, with top-k ranking.
+ * <p>
+ * The index maps each term, i.e., a field character ({@code t} = text token, {@code a} = anchor
+ * token, {@code c} = concept URI) followed by its value, to the postings of the examples
+ * containing it, stored as (document ID delta, term frequency) pairs encoded as varints. Terms are
+ * sorted as unsigned bytes and located by binary search on a table of offsets. Examples are
+ * stored with their URI, resource, text and annotation sets (each one with its concepts), so
+ * that hits can be returned without accessing the RDF data. All integers are big endian:
+ * </p>
+ *
+ * <pre>
+ * header   := "PMXI" version:int numDocs:int numTerms:int termTable:int docTable:int
+ * terms    := termOffset:int* (length:varint key:byte* docFreq:varint postingsLength:varint
+ *                              (docDelta:varint tf:varint)*)*
+ * docs     := docOffset:int* (example:str resource:str text:str numSets:varint
+ *                             (set:str numConcepts:varint concept:str*)*)*
+ * </pre>
+ * <p>
+ * where {@code str} is a varint length followed by UTF-8 bytes, and concepts not attached to any
+ * annotation set are stored under a set with empty URI. Tokens are obtained by
+ * {@link #tokenize(String)}. Instances are thread-safe. Files are produced by a {@link Builder}.
+ * </p>
+ */
+public final class ExampleIndex implements Closeable {
+
+    public static final String EXTENSION = "pmx";
+
+    private static final int MAGIC = 0x504D5849; // "PMXI"
+
+    private static final int VERSION = 1;
+
+    private static final ValueFactoryImpl FACTORY = ValueFactoryImpl.getInstance();
+
+    private static final double K1 = 1.2;
+
+    private final File file;
+
+    private final MappedByteBuffer buffer;
+
+    private final int numDocs;
+
+    private final int numTerms;
+
+    private final int termTableOffset;
+
+    private final int docTableOffset;
+
+    private ExampleIndex(final File file, final MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a PreMOn example index: " + file);
+        }
+        final int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version + " of " + file);
+        }
+        this.numDocs = buffer.getInt(8);
+        this.numTerms = buffer.getInt(12);
+        this.termTableOffset = buffer.getInt(16);
+        this.docTableOffset = buffer.getInt(20);
+    }
+
+    /**
+     * Opens the example index file specified, mapping it in memory.
+     */
+    public static ExampleIndex open(final File file) throws IOException {
+        return new ExampleIndex(file, MappedFiles.map(file, "Example index"));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Splits a text in lowercase tokens, i.e., maximal sequences of letters and digits.
+     */
+    public static List<String> tokenize(final String text) {
+        final List<String> tokens = Lists.newArrayList();
+        int start = -1;
+        for (int i = 0; i <= text.length(); ++i) {
+            final boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the number of indexed examples.
+     */
+    public int size() {
+        return this.numDocs;
+    }
+
+    /**
+     * Returns the top {@code k} examples whose text contains all the tokens of {@code text},
+     * whose markables contain all the tokens of {@code anchor}, and that are annotated with all
+     * the {@code concepts} supplied (null arguments are ignored). Hits are ranked by a BM25-like
+     * score of text and anchor tokens, and then by example order.
+     */
+    public List<Hit> search(@Nullable final String text, @Nullable final String anchor,
+            @Nullable final Collection<URI> concepts, final int k) {
+
+        // Collect the query terms, with the weight of their matches for ranking
+        final List<String> terms = Lists.newArrayList();
+        final List<Boolean> ranked = Lists.newArrayList();
+        for (final String token : text == null ? ImmutableList.<String>of() : tokenize(text)) {
+            terms.add("t" + token);
+            ranked.add(true);
+        }
+        for (final String token : anchor == null ? ImmutableList.<String>of()
+                : tokenize(anchor)) {
+            terms.add("a" + token);
+            ranked.add(true);
+        }
+        final Set<String> conceptStrings = Sets.newHashSet();
+        for (final URI concept : concepts == null ? ImmutableList.<URI>of() : concepts) {
+            terms.add("c" + concept.stringValue());
+            ranked.add(false);
+            conceptStrings.add(concept.stringValue());
+        }
+        if (terms.isEmpty() || k <= 0) {
+            return Collections.emptyList();
+        }
+
+        // Locate term postings, failing fast if some term is missing
+        final int[] offsets = new int[terms.size()];
+        final int[] docFreqs = new int[terms.size()];
+        for (int i = 0; i < terms.size(); ++i) {
+            offsets[i] = lookup(terms.get(i).getBytes(StandardCharsets.UTF_8));
+            if (offsets[i] < 0) {
+                return Collections.emptyList();
+            }
+            docFreqs[i] = readVarIntAt(offsets[i]);
+        }
+
+        // Intersect postings starting from the shortest one, accumulating scores
+        final Integer[] order = new Integer[terms.size()];
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(docFreqs[a], docFreqs[b]));
+        int[] docs = null;
+        double[] scores = null;
+        int size = 0;
+        for (final int i : order) {
+            final int[][] postings = decode(offsets[i]);
+            final double idf = Math.log(1 + (this.numDocs - docFreqs[i] + 0.5)
+                    / (docFreqs[i] + 0.5));
+            if (docs == null) {
+                docs = postings[0];
+                scores = new double[docs.length];
+                size = docs.length;
+            }
+            int n = 0;
+            for (int j = 0, l = 0; j < size && l < postings[0].length;) {
+                if (docs[j] < postings[0][l]) {
+                    ++j;
+                } else if (docs[j] > postings[0][l]) {
+                    ++l;
+                } else {
+                    final int tf = postings[1][l];
+                    docs[n] = docs[j];
+                    scores[n] = scores[j]
+                            + (ranked.get(i) ? idf * tf * (K1 + 1) / (tf + K1) : 0.0);
+                    ++n;
+                    ++j;
+                    ++l;
+                }
+            }
+            size = n;
+            if (size == 0) {
+                return Collections.emptyList();
+            }
+        }
+
+        // Select the top k documents with a bounded heap (worst hit on top)
+        final double[] finalScores = scores;
+        final int[] finalDocs = docs;
+        final PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(k, size) + 1,
+                (a, b) -> finalScores[a] != finalScores[b]
+                        ? Double.compare(finalScores[a], finalScores[b])
+                        : Integer.compare(finalDocs[b], finalDocs[a]));
+        for (int j = 0; j < size; ++j) {
+            heap.add(j);
+            if (heap.size() > k) {
+                heap.poll();
+            }
+        }
+        final Hit[] hits = new Hit[heap.size()];
+        for (int i = hits.length - 1; i >= 0; --i) {
+            final int j = heap.poll();
+            hits[i] = getHit(docs[j], scores[j], conceptStrings);
+        }
+        return Arrays.asList(hits);
+    }
+
+    @Override
+    public void close() {
+        // Mapping is released when the buffer is garbage collected
+    }
+
+    @Override
+    public String toString() {
+        return this.file.toString();
+    }
+
+    // Returns the offset of the docFreq field of the term specified, or -1 if missing
+    private int lookup(final byte[] key) {
+        final ByteBuffer in = this.buffer.duplicate();
+        int low = 0;
+        int high = this.numTerms - 1;
+        while (low <= high) {
+            final int mid = low + high >>> 1;
+            in.position(this.buffer.getInt(this.termTableOffset + 4 * mid));
+            final int length = MappedFiles.readVarInt(in);
+            final int start = in.position();
+            int cmp = 0;
+            for (int i = 0; i < Math.min(length, key.length) && cmp == 0; ++i) {
+                cmp = (this.buffer.get(start + i) & 0xFF) - (key[i] & 0xFF);
+            }
+            cmp = cmp != 0 ? cmp : length - key.length;
+            if (cmp == 0) {
+                return start + length;
+            } else if (cmp < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    // Decodes the postings at the offset specified as an array of doc IDs and one of frequencies
+    private int[][] decode(final int offset) {
+        final ByteBuffer in = this.buffer.duplicate();
+        in.position(offset);
+        final int docFreq = MappedFiles.readVarInt(in);
+        MappedFiles.readVarInt(in); // postings length
+        final int[] docs = new int[docFreq];
+        final int[] tfs = new int[docFreq];
+        int doc = 0;
+        for (int i = 0; i < docFreq; ++i) {
+            doc += MappedFiles.readVarInt(in);
+            docs[i] = doc;
+            tfs[i] = MappedFiles.readVarInt(in);
+        }
+        return new int[][] { docs, tfs };
+    }
+
+    private int readVarIntAt(final int offset) {
+        final ByteBuffer in = this.buffer.duplicate();
+        in.position(offset);
+        return MappedFiles.readVarInt(in);
+    }
+
+    private Hit getHit(final int doc, final double score, final Set<String> concepts) {
+        final ByteBuffer in = this.buffer.duplicate();
+        in.position(this.buffer.getInt(this.docTableOffset + 4 * doc));
+        final URI example = FACTORY.createURI(readString(in));
+        final String resource = readString(in);
+        final String text = readString(in);
+        final List<URI> sets = Lists.newArrayList();
+        final Set<URI> docConcepts = Sets.newLinkedHashSet();
+        final int numSets = MappedFiles.readVarInt(in);
+        for (int i = 0; i < numSets; ++i) {
+            final String set = readString(in);
+            boolean matched = concepts.isEmpty();
+            final int numConcepts = MappedFiles.readVarInt(in);
+            for (int j = 0; j < numConcepts; ++j) {
+                final String concept = readString(in);
+                matched |= concepts.contains(concept);
+                docConcepts.add(FACTORY.createURI(concept));
+            }
+            if (matched && !set.isEmpty()) {
+                sets.add(FACTORY.createURI(set));
+            }
+        }
+        return new Hit(example, resource, text, score, sets, ImmutableList.copyOf(docConcepts));
+    }
+
+    private static String readString(final ByteBuffer in) {
+        final byte[] bytes = new byte[MappedFiles.readVarInt(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(final DataOutputStream out, final String string)
+            throws IOException {
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        MappedFiles.writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * An example matching a query, with its score, the annotation sets annotating it with the
+     * queried concepts (all its annotation sets, if no concept was queried) and all the concepts
+     * annotated on it.
+     */
+    public static final class Hit {
+
+        private final URI example;
+
+        private final String resource;
+
+        private final String text;
+
+        private final double score;
+
+        private final List<URI> annotationSets;
+
+        private final List<URI> concepts;
+
+        Hit(final URI example, final String resource, final String text, final double score,
+                final List<URI> annotationSets, final List<URI> concepts) {
+            this.example = example;
+            this.resource = resource;
+            this.text = text;
+            this.score = score;
+            this.annotationSets = annotationSets;
+            this.concepts = concepts;
+        }
+
+        public URI getExample() {
+            return this.example;
+        }
+
+        public String getResource() {
+            return this.resource;
+        }
+
+        public String getText() {
+            return this.text;
+        }
+
+        public double getScore() {
+            return this.score;
+        }
+
+        public List<URI> getAnnotationSets() {
+            return this.annotationSets;
+        }
+
+        public List<URI> getConcepts() {
+            return this.concepts;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%.3f %s (%s): %s", this.score, this.example,
+                    this.resource, this.text);
+        }
+
+    }
+
+    /**
+     * Collects examples and writes an example index to a file. Examples are numbered in the
+     * order they are added. Instances are not thread-safe.
+     */
+    public static final class Builder {
+
+        private final Map<String, Postings> postings;
+
+        private final ByteArrayOutputStream docBytes;
+
+        private final DataOutputStream docData;
+
+        private int[] docOffsets;
+
+        private int numDocs;
+
+        private Builder() {
+            this.postings = Maps.newHashMap();
+            this.docBytes = new ByteArrayOutputStream();
+            this.docData = new DataOutputStream(this.docBytes);
+            this.docOffsets = new int[1024];
+            this.numDocs = 0;
+        }
+
+        /**
+         * Adds an example with its text, the anchors of its markables and its annotation sets,
+         * each one mapped to the concepts it annotates (use the empty string as set URI for
+         * concepts not attached to a set).
+         */
+        public Builder add(final URI example, final String resource, final String text,
+                final Iterable<String> anchors, final Map<String, ? extends Collection<URI>> sets)
+                throws IOException {
+
+            // Count term frequencies in the example
+            final Map<String, Integer> frequencies = Maps.newHashMap();
+            for (final String token : tokenize(text)) {
+                frequencies.merge("t" + token, 1, Integer::sum);
+            }
+            for (final String anchor : anchors) {
+                for (final String token : tokenize(anchor)) {
+                    frequencies.merge("a" + token, 1, Integer::sum);
+                }
+            }
+            for (final Collection<URI> concepts : sets.values()) {
+                for (final URI concept : concepts) {
+                    frequencies.put("c" + concept.stringValue(), 1);
+                }
+            }
+            final int doc = this.numDocs++;
+            for (final Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                Postings postings = this.postings.get(entry.getKey());
+                if (postings == null) {
+                    postings = new Postings();
+                    this.postings.put(entry.getKey(), postings);
+                }
+                postings.add(doc, entry.getValue());
+            }
+
+            // Store the example
+            if (doc == this.docOffsets.length) {
+                this.docOffsets = Arrays.copyOf(this.docOffsets, doc * 2);
+            }
+            this.docOffsets[doc] = this.docData.size();
+            writeString(this.docData, example.stringValue());
+            writeString(this.docData, resource);
+            writeString(this.docData, text);
+            MappedFiles.writeVarInt(this.docData, sets.size());
+            for (final Map.Entry<String, ? extends Collection<URI>> entry : sets.entrySet()) {
+                writeString(this.docData, entry.getKey());
+                MappedFiles.writeVarInt(this.docData, entry.getValue().size());
+                for (final URI concept : entry.getValue()) {
+                    writeString(this.docData, concept.stringValue());
+                }
+            }
+            return this;
+        }
+
+        public int size() {
+            return this.numDocs;
+        }
+
+        public void write(final File file) throws IOException {
+
+            // Serialize term records sorted by key bytes, computing their offsets
+            final List<byte[]> keys = Lists.newArrayListWithCapacity(this.postings.size());
+            final List<Postings> values = Lists.newArrayListWithCapacity(this.postings.size());
+            final String[] strings = this.postings.keySet().toArray(new String[0]);
+            final byte[][] sortedKeys = new byte[strings.length][];
+            for (int i = 0; i < strings.length; ++i) {
+                sortedKeys[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+            }
+            Arrays.sort(sortedKeys, BinaryDataset::compare);
+            for (final byte[] key : sortedKeys) {
+                keys.add(key);
+                values.add(this.postings.get(new String(key, StandardCharsets.UTF_8)));
+            }
+            final int termTableOffset = 24;
+            final ByteArrayOutputStream termBytes = new ByteArrayOutputStream();
+            final DataOutputStream termData = new DataOutputStream(termBytes);
+            final int[] termOffsets = new int[keys.size()];
+            final int base = termTableOffset + 4 * keys.size();
+            for (int i = 0; i < keys.size(); ++i) {
+                termOffsets[i] = base + termData.size();
+                MappedFiles.writeVarInt(termData, keys.get(i).length);
+                termData.write(keys.get(i));
+                MappedFiles.writeVarInt(termData, values.get(i).numDocs);
+                MappedFiles.writeVarInt(termData, values.get(i).length);
+                termData.write(values.get(i).data, 0, values.get(i).length);
+            }
+            final int docTableOffset = base + termData.size();
+            final long end = (long) docTableOffset + 4L * this.numDocs + this.docData.size();
+            MappedFiles.checkSize(end, "Example index");
+
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(this.numDocs);
+                out.writeInt(keys.size());
+                out.writeInt(termTableOffset);
+                out.writeInt(docTableOffset);
+                for (final int offset : termOffsets) {
+                    out.writeInt(offset);
+                }
+                termBytes.writeTo(out);
+                final int docBase = docTableOffset + 4 * this.numDocs;
+                for (int i = 0; i < this.numDocs; ++i) {
+                    out.writeInt(docBase + this.docOffsets[i]);
+                }
+                this.docBytes.writeTo(out);
+            }
+        }
+
+    }
+
+    // Postings of a term as (doc delta, tf) varints, with docs added in increasing order
+    private static final class Postings {
+
+        byte[] data = new byte[8];
+
+        int length = 0;
+
+        int numDocs = 0;
+
+        int lastDoc = 0;
+
+        void add(final int doc, final int tf) {
+            write(doc - this.lastDoc);
+            write(tf);
+            this.lastDoc = doc;
+            ++this.numDocs;
+        }
+
+        private void write(int value) {
+            if (this.length + 5 > this.data.length) {
+                this.data = Arrays.copyOf(this.data, this.data.length * 2);
+            }
+            while ((value & ~0x7F) != 0) {
+                this.data[this.length++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            this.data[this.length++] = (byte) value;
+        }
+
+    }
+
+}
@@ -0,0 +1,107 @@
+package eu.fbk.dkm.premon.util;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A HyperLogLog sketch estimating the number of distinct 64-bit hashes added to it.
+ * <p>
+ * With precision {@code p} the sketch uses {@code 2^p} one-byte registers and has a relative
+ * standard error of {@code 1.04 / sqrt(2^p)} (about 0.8% for the default precision 14). Hashes
+ * are kept exactly in a {@link LongSet} until there are {@code 2^p / 16} of them, so that small
+ * counts (e.g., most mapping table cells) are exact and take little memory. Hashes are assumed
+ * to be uniformly distributed, as produced by murmur3.
+ * </p>
+ */
+public final class HyperLogLog implements DistinctCounter {
+
+    private static final int DEFAULT_PRECISION = 14;
+
+    private final int precision;
+
+    private LongSet hashes;
+
+    private byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(final int precision) {
+        Preconditions.checkArgument(precision >= 4 && precision <= 18);
+        this.precision = precision;
+        this.hashes = new LongSet();
+        this.registers = null;
+    }
+
+    @Override
+    public void add(final long hash) {
+        if (this.registers != null) {
+            final int index = (int) (hash >>> 64 - this.precision);
+            final int rank = Math.min(Long.numberOfLeadingZeros(hash << this.precision),
+                    64 - this.precision) + 1;
+            if (rank > this.registers[index]) {
+                this.registers[index] = (byte) rank;
+            }
+        } else {
+            this.hashes.add(hash);
+            if (this.hashes.size() > 1 << this.precision - 4) {
+                this.registers = new byte[1 << this.precision];
+                this.hashes.forEach(this::add);
+                this.hashes = null;
+            }
+        }
+    }
+
+    @Override
+    public void merge(final DistinctCounter counter) {
+        final HyperLogLog sketch = (HyperLogLog) counter;
+        Preconditions.checkArgument(sketch.precision == this.precision);
+        if (sketch.registers == null) {
+            sketch.hashes.forEach(this::add);
+        } else {
+            if (this.registers == null) {
+                this.registers = new byte[1 << this.precision];
+                this.hashes.forEach(this::add);
+                this.hashes = null;
+            }
+            for (int i = 0; i < this.registers.length; ++i) {
+                if (sketch.registers[i] > this.registers[i]) {
+                    this.registers[i] = sketch.registers[i];
+                }
+            }
+        }
+    }
+
+    @Override
+    public long count() {
+        if (this.registers == null) {
+            return this.hashes.size();
+        }
+        final int m = this.registers.length;
+        double sum = 0.0;
+        int zeros = 0;
+        for (final byte register : this.registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                ++zeros;
+            }
+        }
+        final double alpha = 0.7213 / (1.0 + 1.079 / m);
+        final double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            return Math.round(m * Math.log((double) m / zeros)); // linear counting
+        }
+        return Math.round(estimate);
+    }
+
+    @Override
+    public double getRelativeError() {
+        return this.registers == null ? 0.0 : 1.04 / Math.sqrt(1 << this.precision);
+    }
+
+    @Override
+    public String toString() {
+        return "HyperLogLog sketch (p=" + this.precision + ", ~" + count() + " values)";
+    }
+
+}
@@ -0,0 +1,88 @@
+package eu.fbk.dkm.premon.util;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Selects the lemmas to extract when running Premonitor on a subset of the resources.
+ * <p>
+ * A filter is specified as a comma-separated list of lemmas and of regular expressions enclosed
+ * in slashes, e.g., {@code abandon,take_off,/ab[a-z]+/}. Lemmas are compared after
+ * normalization, i.e., lowercased and with spaces and '+' characters of multiword lemmas replaced
+ * by '_', so that {@code take off}, {@code take+off} and {@code take_off} all match entry
+ * {@code take_off}. Regular expressions must match the whole normalized lemma.
+ * </p>
+ */
+public final class LemmaFilter {
+
+    private final String spec;
+
+    private final Set<String> lemmas;
+
+    private final List<Pattern> patterns;
+
+    private LemmaFilter(final String spec, final Set<String> lemmas,
+            final List<Pattern> patterns) {
+        this.spec = spec;
+        this.lemmas = lemmas;
+        this.patterns = patterns;
+    }
+
+    /**
+     * Parses a filter specification, returning null if it is null or empty (i.e., all lemmas are
+     * accepted).
+     */
+    @Nullable
+    public static LemmaFilter parse(@Nullable final String spec) {
+        if (spec == null || spec.trim().isEmpty()) {
+            return null;
+        }
+        final ImmutableSet.Builder<String> lemmas = ImmutableSet.builder();
+        final ImmutableList.Builder<Pattern> patterns = ImmutableList.builder();
+        for (String token : spec.split(",")) {
+            token = token.trim();
+            if (token.length() > 2 && token.startsWith("/") && token.endsWith("/")) {
+                patterns.add(Pattern.compile(token.substring(1, token.length() - 1)));
+            } else if (!token.isEmpty()) {
+                lemmas.add(normalize(token));
+            }
+        }
+        return new LemmaFilter(spec.trim(), lemmas.build(), patterns.build());
+    }
+
+    /**
+     * Returns the lemma in the normalized form used for comparisons.
+     */
+    public static String normalize(final String lemma) {
+        return lemma.trim().toLowerCase(Locale.ROOT).replace(' ', '_').replace('+', '_');
+    }
+
+    public boolean accepts(@Nullable final String lemma) {
+        if (lemma == null) {
+            return false;
+        }
+        final String normalized = normalize(lemma);
+        if (this.lemmas.contains(normalized)) {
+            return true;
+        }
+        for (final Pattern pattern : this.patterns) {
+            if (pattern.matcher(normalized).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return this.spec;
+    }
+
+}
@@ -0,0 +1,478 @@
+package eu.fbk.dkm.premon.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.RDFS;
+
+import eu.fbk.dkm.premon.vocab.LEXINFO;
+import eu.fbk.dkm.premon.vocab.ONTOLEX;
+import eu.fbk.dkm.premon.vocab.PMO;
+
+/**
+ * A read-only, memory-mapped index from (lemma, part of speech) pairs to the predicates (e.g.,
+ * PropBank rolesets, VerbNet classes, FrameNet frames) they evoke, with the lexical entry and the
+ * resource involved.
+ * <p>
+ * Lemmas are normalized with {@link LemmaFilter#normalize(String)} and parts of speech are the
+ * local names of LexInfo classes (e.g., {@code verb}, {@code noun}). The file contains a table of
+ * strings (URIs and resource names) and a sorted table of keys ({@code lemma '\0' pos}), each
+ * followed by its matches as triples of string indexes, so that a lookup is a binary search over
+ * the mapped file with no parsing. All integers are big endian:
+ * </p>
+ *
+ * <pre>
+ * header  := "PMLI" version:int numStrings:int numKeys:int keyTable:int
+ * strings := stringOffset:int* (length:varint utf8:byte*)*
+ * keys    := keyOffset:int* (length:varint key:byte* numMatches:varint
+ *                            (entry:varint resource:varint concept:varint)*)*
+ * </pre>
+ * <p>
+ * Instances are thread-safe. Files are produced by a {@link Builder}.
+ * </p>
+ */
+public final class LemmaIndex implements Closeable {
+
+    public static final String EXTENSION = "pmi";
+
+    private static final int MAGIC = 0x504D4C49; // "PMLI"
+
+    private static final int VERSION = 1;
+
+    private static final ValueFactoryImpl FACTORY = ValueFactoryImpl.getInstance();
+
+    private final File file;
+
+    private final MappedByteBuffer buffer;
+
+    private final int numKeys;
+
+    private final int stringTableOffset;
+
+    private final int keyTableOffset;
+
+    private LemmaIndex(final File file, final MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a PreMOn lemma index: " + file);
+        }
+        final int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version + " of " + file);
+        }
+        this.numKeys = buffer.getInt(12);
+        this.stringTableOffset = 20;
+        this.keyTableOffset = buffer.getInt(16);
+    }
+
+    /**
+     * Opens the lemma index file specified, mapping it in memory.
+     */
+    public static LemmaIndex open(final File file) throws IOException {
+        return new LemmaIndex(file, MappedFiles.map(file, "Lemma index"));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the number of distinct (lemma, part of speech) pairs in the index.
+     */
+    public int size() {
+        return this.numKeys;
+    }
+
+    /**
+     * Returns the predicates evoked by the lemma specified with the given part of speech, or with
+     * any part of speech if {@code pos} is null.
+     */
+    public List<Match> lookup(final String lemma, @Nullable final String pos) {
+        final String normalized = LemmaFilter.normalize(lemma);
+        final String normalizedPos = pos == null ? "" : pos.toLowerCase(Locale.ROOT);
+        final byte[] key = (normalized + '\0' + normalizedPos).getBytes(StandardCharsets.UTF_8);
+
+        // Binary search of the first key >= the query key
+        int low = 0;
+        int high = this.numKeys;
+        while (low < high) {
+            final int mid = low + high >>> 1;
+            if (compare(keyOffset(mid), key, false) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        // Collect matches of that key (exact search) or of all the keys with the lemma prefix
+        List<Match> matches = null;
+        final ByteBuffer in = this.buffer.duplicate();
+        for (int i = low; i < this.numKeys; ++i) {
+            final int offset = keyOffset(i);
+            if (compare(offset, key, pos == null) != 0) {
+                break;
+            }
+            in.position(offset);
+            final byte[] bytes = new byte[MappedFiles.readVarInt(in)];
+            in.get(bytes);
+            final String string = new String(bytes, StandardCharsets.UTF_8);
+            final String matchPos = string.substring(string.indexOf('\0') + 1);
+            final int numMatches = MappedFiles.readVarInt(in);
+            if (matches == null) {
+                matches = Lists.newArrayListWithCapacity(numMatches);
+            }
+            for (int j = 0; j < numMatches; ++j) {
+                final URI entry = FACTORY.createURI(getString(MappedFiles.readVarInt(in)));
+                final String resource = getString(MappedFiles.readVarInt(in));
+                final URI concept = FACTORY.createURI(getString(MappedFiles.readVarInt(in)));
+                matches.add(new Match(normalized, matchPos, entry, resource, concept));
+            }
+            if (pos != null) {
+                break;
+            }
+        }
+        return matches == null ? Collections.emptyList() : matches;
+    }
+
+    @Override
+    public void close() {
+        // Mapping is released when the buffer is garbage collected
+    }
+
+    @Override
+    public String toString() {
+        return this.file.toString();
+    }
+
+    private int keyOffset(final int key) {
+        return this.buffer.getInt(this.keyTableOffset + 4 * key);
+    }
+
+    private String getString(final int index) {
+        final ByteBuffer in = this.buffer.duplicate();
+        in.position(this.buffer.getInt(this.stringTableOffset + 4 * index));
+        final byte[] bytes = new byte[MappedFiles.readVarInt(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Compares the key at the offset specified with the query key, as unsigned bytes; if prefix
+    // is true, only the first query.length bytes of the stored key are compared
+    private int compare(final int offset, final byte[] key, final boolean prefix) {
+        int start = offset;
+        int length = 0;
+        for (int shift = 0;; shift += 7) {
+            final byte b = this.buffer.get(start++);
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        final int min = Math.min(length, key.length);
+        for (int i = 0; i < min; ++i) {
+            final int cmp = (this.buffer.get(start + i) & 0xFF) - (key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return prefix && length >= key.length ? 0 : length - key.length;
+    }
+
+    // Returns the written representation (or label) and the LexInfo POS of a lexical entry
+    private static String[] getLemmaAndPos(final UnionModel entries, final Resource entry) {
+        String lemma = null;
+        String pos = null;
+        for (final Statement stmt : entries.filter(entry, ONTOLEX.CANONICAL_FORM, null)) {
+            if (stmt.getObject() instanceof Resource) {
+                for (final Statement stmt2 : entries.filter((Resource) stmt.getObject(),
+                        ONTOLEX.WRITTEN_REP, null)) {
+                    lemma = stmt2.getObject().stringValue();
+                }
+            }
+        }
+        if (lemma == null) {
+            for (final Statement stmt : entries.filter(entry, RDFS.LABEL, null)) {
+                lemma = stmt.getObject().stringValue();
+            }
+        }
+        for (final Statement stmt : entries.filter(entry, LEXINFO.PART_OF_SPEECH_P, null)) {
+            if (stmt.getObject() instanceof URI) {
+                pos = ((URI) stmt.getObject()).getLocalName();
+            }
+        }
+        return new String[] { lemma, pos };
+    }
+
+    /**
+     * A predicate evoked by a lemma: the lexical entry, the resource (e.g., {@code pb17}) and the
+     * evoked concept.
+     */
+    public static final class Match implements Comparable<Match> {
+
+        private final String lemma;
+
+        private final String pos;
+
+        private final URI entry;
+
+        private final String resource;
+
+        private final URI concept;
+
+        public Match(final String lemma, final String pos, final URI entry,
+                final String resource, final URI concept) {
+            this.lemma = Objects.requireNonNull(lemma);
+            this.pos = Objects.requireNonNull(pos);
+            this.entry = Objects.requireNonNull(entry);
+            this.resource = Objects.requireNonNull(resource);
+            this.concept = Objects.requireNonNull(concept);
+        }
+
+        public String getLemma() {
+            return this.lemma;
+        }
+
+        public String getPos() {
+            return this.pos;
+        }
+
+        public URI getEntry() {
+            return this.entry;
+        }
+
+        public String getResource() {
+            return this.resource;
+        }
+
+        public URI getConcept() {
+            return this.concept;
+        }
+
+        @Override
+        public int compareTo(final Match other) {
+            int result = this.resource.compareTo(other.resource);
+            if (result == 0) {
+                result = this.concept.stringValue().compareTo(other.concept.stringValue());
+                if (result == 0) {
+                    result = this.entry.stringValue().compareTo(other.entry.stringValue());
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            if (object == this) {
+                return true;
+            }
+            if (!(object instanceof Match)) {
+                return false;
+            }
+            final Match other = (Match) object;
+            return this.lemma.equals(other.lemma) && this.pos.equals(other.pos)
+                    && this.entry.equals(other.entry) && this.resource.equals(other.resource)
+                    && this.concept.equals(other.concept);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.lemma, this.pos, this.entry, this.resource, this.concept);
+        }
+
+        @Override
+        public String toString() {
+            return this.lemma + "/" + this.pos + " -> " + this.resource + " " + this.concept
+                    + " (" + this.entry + ")";
+        }
+
+    }
+
+    /**
+     * Collects the matches of a lemma index and writes them to a file. Instances are not
+     * thread-safe.
+     */
+    public static final class Builder {
+
+        private final Map<String, Set<Match>> matches;
+
+        private Builder() {
+            this.matches = Maps.newHashMap();
+        }
+
+        public Builder add(final String lemma, final String pos, final URI entry,
+                final String resource, final URI concept) {
+            final String normalized = LemmaFilter.normalize(lemma);
+            final String normalizedPos = pos.toLowerCase(Locale.ROOT);
+            final String key = normalized + '\0' + normalizedPos;
+            Set<Match> set = this.matches.get(key);
+            if (set == null) {
+                set = Sets.newHashSet();
+                this.matches.put(key, set);
+            }
+            set.add(new Match(normalized, normalizedPos, entry, resource, concept));
+            return this;
+        }
+
+        /**
+         * Adds the concepts evoked by the lexical entries of the models supplied, indexed by the
+         * name of their resource (e.g., {@code pb17}), either directly ({@code ontolex:evokes})
+         * or via a conceptualization ({@code pmo:evokingEntry}, {@code pmo:evokedConcept}).
+         * Lemmas and parts of speech of lexical entries are read from the entries model.
+         */
+        public Builder addAll(final UnionModel entries, final Map<String, UnionModel> models) {
+            final Map<Resource, String[]> lemmas = Maps.newHashMap();
+            for (final Map.Entry<String, UnionModel> modelEntry : models.entrySet()) {
+                final String resource = modelEntry.getKey();
+                final UnionModel model = modelEntry.getValue();
+                final SetMultimap<Resource, Value> evoked = HashMultimap.create();
+                for (final Statement stmt : model.filter(null, ONTOLEX.EVOKES, null)) {
+                    evoked.put(stmt.getSubject(), stmt.getObject());
+                }
+                for (final Statement stmt : model.filter(null, PMO.EVOKED_CONCEPT, null)) {
+                    for (final Statement stmt2 : model.filter(stmt.getSubject(),
+                            PMO.EVOKING_ENTRY, null)) {
+                        if (stmt2.getObject() instanceof Resource) {
+                            evoked.put((Resource) stmt2.getObject(), stmt.getObject());
+                        }
+                    }
+                }
+                for (final Map.Entry<Resource, Value> entry : evoked.entries()) {
+                    if (!(entry.getKey() instanceof URI) || !(entry.getValue() instanceof URI)) {
+                        continue;
+                    }
+                    String[] lemma = lemmas.get(entry.getKey());
+                    if (lemma == null) {
+                        lemma = getLemmaAndPos(entries, entry.getKey());
+                        lemmas.put(entry.getKey(), lemma);
+                    }
+                    if (lemma[0] != null && lemma[1] != null) {
+                        add(lemma[0], lemma[1], (URI) entry.getKey(), resource,
+                                (URI) entry.getValue());
+                    }
+                }
+            }
+            return this;
+        }
+
+        public int size() {
+            return this.matches.size();
+        }
+
+        public void write(final File file) throws IOException {
+
+            // Sort keys as unsigned bytes, assign an index to each distinct string
+            final List<byte[]> keys = Lists.newArrayListWithCapacity(this.matches.size());
+            for (final String key : this.matches.keySet()) {
+                keys.add(key.getBytes(StandardCharsets.UTF_8));
+            }
+            keys.sort(LemmaIndex::compareBytes);
+            final Map<String, Integer> stringIndexes = Maps.newHashMap();
+            final List<String> strings = Lists.newArrayList();
+            final List<List<Match>> sortedMatches = Lists.newArrayListWithCapacity(keys.size());
+            for (final byte[] key : keys) {
+                final List<Match> list = Lists.newArrayList(
+                        this.matches.get(new String(key, StandardCharsets.UTF_8)));
+                Collections.sort(list);
+                for (final Match match : list) {
+                    for (final String string : new String[] { match.entry.stringValue(),
+                            match.resource, match.concept.stringValue() }) {
+                        if (!stringIndexes.containsKey(string)) {
+                            stringIndexes.put(string, strings.size());
+                            strings.add(string);
+                        }
+                    }
+                }
+                sortedMatches.add(list);
+            }
+
+            // Serialize string and key records, computing their offsets
+            final ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+            final DataOutputStream stringData = new DataOutputStream(stringBytes);
+            final int[] stringOffsets = new int[strings.size()];
+            int base = 20 + 4 * strings.size();
+            for (int i = 0; i < strings.size(); ++i) {
+                stringOffsets[i] = base + stringData.size();
+                final byte[] bytes = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                MappedFiles.writeVarInt(stringData, bytes.length);
+                stringData.write(bytes);
+            }
+            final ByteArrayOutputStream keyBytes = new ByteArrayOutputStream();
+            final DataOutputStream keyData = new DataOutputStream(keyBytes);
+            final int[] keyOffsets = new int[keys.size()];
+            final int keyTableOffset = base + stringData.size();
+            base = keyTableOffset + 4 * keys.size();
+            for (int i = 0; i < keys.size(); ++i) {
+                keyOffsets[i] = base + keyData.size();
+                final byte[] key = keys.get(i);
+                MappedFiles.writeVarInt(keyData, key.length);
+                keyData.write(key);
+                MappedFiles.writeVarInt(keyData, sortedMatches.get(i).size());
+                for (final Match match : sortedMatches.get(i)) {
+                    MappedFiles.writeVarInt(keyData, stringIndexes.get(match.entry.stringValue()));
+                    MappedFiles.writeVarInt(keyData, stringIndexes.get(match.resource));
+                    MappedFiles.writeVarInt(keyData,
+                            stringIndexes.get(match.concept.stringValue()));
+                }
+            }
+            MappedFiles.checkSize((long) base + keyData.size(), "Lemma index");
+
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(strings.size());
+                out.writeInt(keys.size());
+                out.writeInt(keyTableOffset);
+                for (final int offset : stringOffsets) {
+                    out.writeInt(offset);
+                }
+                stringBytes.writeTo(out);
+                for (final int offset : keyOffsets) {
+                    out.writeInt(offset);
+                }
+                keyBytes.writeTo(out);
+            }
+        }
+
+    }
+
+    private static int compareBytes(final byte[] a, final byte[] b) {
+        final int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; ++i) {
+            final int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+
+}
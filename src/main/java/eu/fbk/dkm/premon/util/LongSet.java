@@ -0,0 +1,118 @@
+package eu.fbk.dkm.premon.util;
+
+import java.util.function.LongConsumer;
+
+/**
+ * A set of {@code long} values (e.g., 64-bit hashes) based on open addressing, with no boxing.
+ * <p>
+ * Value 0 is tracked with a separate flag, so that it can be used to mark empty slots. Instances
+ * are not thread-safe: sets filled by different threads should be combined using
+ * {@link #addAll(LongSet)}.
+ * </p>
+ */
+public final class LongSet {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] table;
+
+    private int size;
+
+    private boolean containsZero;
+
+    public LongSet() {
+        this.table = new long[MIN_CAPACITY];
+        this.size = 0;
+        this.containsZero = false;
+    }
+
+    public boolean add(final long value) {
+        if (value == 0L) {
+            if (this.containsZero) {
+                return false;
+            }
+            this.containsZero = true;
+            return true;
+        }
+        final int mask = this.table.length - 1;
+        int slot = mix(value) & mask;
+        while (true) {
+            final long current = this.table[slot];
+            if (current == 0L) {
+                this.table[slot] = value;
+                if (++this.size * 2 > this.table.length) {
+                    rehash(this.table.length * 2);
+                }
+                return true;
+            } else if (current == value) {
+                return false;
+            }
+            slot = slot + 1 & mask;
+        }
+    }
+
+    public void addAll(final LongSet set) {
+        if (set.containsZero) {
+            this.containsZero = true;
+        }
+        for (final long value : set.table) {
+            if (value != 0L) {
+                add(value);
+            }
+        }
+    }
+
+    public boolean contains(final long value) {
+        if (value == 0L) {
+            return this.containsZero;
+        }
+        final int mask = this.table.length - 1;
+        int slot = mix(value) & mask;
+        while (true) {
+            final long current = this.table[slot];
+            if (current == 0L) {
+                return false;
+            } else if (current == value) {
+                return true;
+            }
+            slot = slot + 1 & mask;
+        }
+    }
+
+    public void forEach(final LongConsumer consumer) {
+        if (this.containsZero) {
+            consumer.accept(0L);
+        }
+        for (final long value : this.table) {
+            if (value != 0L) {
+                consumer.accept(value);
+            }
+        }
+    }
+
+    public int size() {
+        return this.size + (this.containsZero ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "Long set (" + size() + " values)";
+    }
+
+    private void rehash(final int capacity) {
+        final long[] oldTable = this.table;
+        this.table = new long[capacity];
+        this.size = 0;
+        for (final long value : oldTable) {
+            if (value != 0L) {
+                add(value);
+            }
+        }
+    }
+
+    private static int mix(final long value) {
+        final long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ h >>> 32);
+    }
+
+}
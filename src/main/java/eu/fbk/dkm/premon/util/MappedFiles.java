@@ -0,0 +1,76 @@
+package eu.fbk.dkm.premon.util;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Helpers shared by the memory-mapped binary formats ({@link BinaryDataset}, {@link LemmaIndex},
+ * {@link ExampleIndex}): mapping a file, enforcing the 2 GB limit of a single mapping and
+ * encoding variable-length integers.
+ * <p>
+ * Variable-length integers are stored in 7-bit groups, least significant group first, with the
+ * high bit of each byte set if more bytes follow.
+ * </p>
+ */
+final class MappedFiles {
+
+    private MappedFiles() {
+    }
+
+    /**
+     * Maps the file specified in memory, read-only, failing if larger than 2 GB; the description
+     * (e.g., "Lemma index") is used in error messages.
+     */
+    static MappedByteBuffer map(final File file, final String description) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(description + " larger than 2 GB: " + file);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Fails if a file of the size specified could not be mapped, to be checked before writing it;
+     * the description (e.g., "Lemma index") is used in error messages.
+     */
+    static void checkSize(final long size, final String description) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(description + " larger than 2 GB (" + size + " bytes)");
+        }
+    }
+
+    static int readVarInt(final ByteBuffer in) {
+        int result = 0;
+        for (int shift = 0;; shift += 7) {
+            final byte b = in.get();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+    }
+
+    static void writeVarInt(final DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static int varIntSize(final int value) {
+        int size = 1;
+        for (int v = value >>> 7; v != 0; v >>>= 7) {
+            ++size;
+        }
+        return size;
+    }
+
+}
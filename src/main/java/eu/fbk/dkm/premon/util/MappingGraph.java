@@ -0,0 +1,481 @@
+package eu.fbk.dkm.premon.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.RDF;
+
+import eu.fbk.dkm.premon.vocab.PMO;
+import eu.fbk.rdfpro.util.QuadModel;
+
+/**
+ * The graph of PreMOn mappings, linking each mapping item (conceptualization, semantic class or
+ * semantic role) to the mappings including it and each mapping to its items, stored as adjacency
+ * arrays for fast multi-hop traversal.
+ * <p>
+ * Items and mappings are identified by their rank in the sorted arrays of their URIs. The
+ * mappings of item {@code i} are {@code itemMappings[itemOffsets[i] .. itemOffsets[i + 1]]} and
+ * the items of mapping {@code m} are {@code mappingItems[mappingOffsets[m] .. mappingOffsets[m +
+ * 1]]} (compressed sparse row layout); each item is tagged with its resource (e.g.,
+ * {@code pb17}, or the empty string if unknown), and each mapping with its {@link Type} and its
+ * sources (the resources whose data contains it), stored as a bit mask over at most 64 sources.
+ * Graphs are produced by a {@link Builder}, saved with {@link #write(File)} and loaded with
+ * {@link #read(File)}; instances are immutable and thread-safe.
+ * </p>
+ */
+public final class MappingGraph {
+
+    public static final String EXTENSION = "pmg";
+
+    private static final int MAGIC = 0x504D4D47; // "PMMG"
+
+    private static final int VERSION = 2;
+
+    private static final int MAX_SOURCES = 64;
+
+    private static final ValueFactoryImpl FACTORY = ValueFactoryImpl.getInstance();
+
+    private static final Type[] TYPES = Type.values();
+
+    private final String[] resources;
+
+    private final String[] sources;
+
+    private final String[] items;
+
+    private final int[] itemResources;
+
+    private final int[] itemOffsets;
+
+    private final int[] itemMappings;
+
+    private final String[] mappings;
+
+    private final byte[] mappingTypes;
+
+    private final long[] mappingSources;
+
+    private final int[] mappingOffsets;
+
+    private final int[] mappingItems;
+
+    private MappingGraph(final String[] resources, final String[] sources, final String[] items,
+            final int[] itemResources, final int[] itemOffsets, final int[] itemMappings,
+            final String[] mappings, final byte[] mappingTypes, final long[] mappingSources,
+            final int[] mappingOffsets, final int[] mappingItems) {
+        this.resources = resources;
+        this.sources = sources;
+        this.items = items;
+        this.itemResources = itemResources;
+        this.itemOffsets = itemOffsets;
+        this.itemMappings = itemMappings;
+        this.mappings = mappings;
+        this.mappingTypes = mappingTypes;
+        this.mappingSources = mappingSources;
+        this.mappingOffsets = mappingOffsets;
+        this.mappingItems = mappingItems;
+    }
+
+    /**
+     * Returns a builder whose items are tagged with the resource returned by the function
+     * supplied (null or empty if unknown).
+     */
+    public static Builder builder(final Function<URI, String> resourceFunction) {
+        return new Builder(resourceFunction);
+    }
+
+    public int getNumItems() {
+        return this.items.length;
+    }
+
+    public int getNumMappings() {
+        return this.mappings.length;
+    }
+
+    public List<String> getResources() {
+        return ImmutableList.copyOf(this.resources);
+    }
+
+    public List<String> getSources() {
+        return ImmutableList.copyOf(this.sources);
+    }
+
+    /**
+     * Returns the resource of the item specified, the empty string if unknown, or null if the
+     * item does not belong to any mapping.
+     */
+    @Nullable
+    public String getResource(final URI item) {
+        final int id = Arrays.binarySearch(this.items, item.stringValue());
+        return id < 0 ? null : this.resources[this.itemResources[id]];
+    }
+
+    /**
+     * Returns the items reachable from the item specified within the given number of hops, each
+     * one with its distance in hops (the item itself has distance 0), in order of distance. A hop
+     * goes from an item to the other items of a mapping including it; if not null, {@code types}
+     * and {@code sources} restrict the mappings that can be traversed (a mapping can be traversed
+     * if at least one of its sources is accepted), and {@code resources} restricts the items that
+     * can be visited (the starting item is always included).
+     */
+    public Map<URI, Integer> reachable(final URI item, final int maxHops,
+            @Nullable final Set<String> resources, @Nullable final Set<Type> types,
+            @Nullable final Set<String> sources) {
+
+        final int start = Arrays.binarySearch(this.items, item.stringValue());
+        if (start < 0) {
+            return Collections.emptyMap();
+        }
+
+        // Translate restrictions into masks over resource, type and source indexes
+        final boolean[] resourceMask = mask(this.resources, resources);
+        long sourceMask = 0L;
+        for (int i = 0; i < this.sources.length; ++i) {
+            if (sources == null || sources.contains(this.sources[i])) {
+                sourceMask |= 1L << i;
+            }
+        }
+        final boolean[] typeMask = new boolean[TYPES.length];
+        for (final Type type : TYPES) {
+            typeMask[type.ordinal()] = types == null || types.contains(type);
+        }
+
+        // Breadth-first visit, one hop at a time
+        final Map<URI, Integer> result = Maps.newLinkedHashMap();
+        result.put(item, 0);
+        final Set<Integer> visitedItems = Sets.newHashSet(start);
+        final Set<Integer> visitedMappings = Sets.newHashSet();
+        int[] frontier = new int[] { start };
+        for (int hop = 1; hop <= maxHops && frontier.length > 0; ++hop) {
+            int[] next = new int[16];
+            int size = 0;
+            for (final int i : frontier) {
+                for (int j = this.itemOffsets[i]; j < this.itemOffsets[i + 1]; ++j) {
+                    final int m = this.itemMappings[j];
+                    if (!typeMask[this.mappingTypes[m]]
+                            || (this.mappingSources[m] & sourceMask) == 0L
+                            || !visitedMappings.add(m)) {
+                        continue;
+                    }
+                    for (int k = this.mappingOffsets[m]; k < this.mappingOffsets[m + 1]; ++k) {
+                        final int n = this.mappingItems[k];
+                        if (resourceMask[this.itemResources[n]] && visitedItems.add(n)) {
+                            if (size == next.length) {
+                                next = Arrays.copyOf(next, size * 2);
+                            }
+                            next[size++] = n;
+                            result.put(FACTORY.createURI(this.items[n]), hop);
+                        }
+                    }
+                }
+            }
+            frontier = Arrays.copyOf(next, size);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the graph to the file specified, in a binary format.
+     */
+    public void write(final File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeStrings(out, this.resources);
+            writeStrings(out, this.sources);
+            writeStrings(out, this.items);
+            writeInts(out, this.itemResources);
+            writeInts(out, this.itemOffsets);
+            writeInts(out, this.itemMappings);
+            writeStrings(out, this.mappings);
+            out.writeInt(this.mappingTypes.length);
+            out.write(this.mappingTypes);
+            out.writeInt(this.mappingSources.length);
+            for (final long mask : this.mappingSources) {
+                out.writeLong(mask);
+            }
+            writeInts(out, this.mappingOffsets);
+            writeInts(out, this.mappingItems);
+        }
+    }
+
+    /**
+     * Reads a graph previously saved with {@link #write(File)}.
+     */
+    public static MappingGraph read(final File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a PreMOn mapping graph: " + file);
+            }
+            final int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of " + file);
+            }
+            final String[] resources = readStrings(in);
+            final String[] sources = readStrings(in);
+            final String[] items = readStrings(in);
+            final int[] itemResources = readInts(in);
+            final int[] itemOffsets = readInts(in);
+            final int[] itemMappings = readInts(in);
+            final String[] mappings = readStrings(in);
+            final byte[] mappingTypes = new byte[in.readInt()];
+            in.readFully(mappingTypes);
+            final long[] mappingSources = new long[in.readInt()];
+            for (int i = 0; i < mappingSources.length; ++i) {
+                mappingSources[i] = in.readLong();
+            }
+            final int[] mappingOffsets = readInts(in);
+            final int[] mappingItems = readInts(in);
+            return new MappingGraph(resources, sources, items, itemResources, itemOffsets,
+                    itemMappings, mappings, mappingTypes, mappingSources, mappingOffsets,
+                    mappingItems);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MappingGraph (" + this.items.length + " items, " + this.mappings.length
+                + " mappings)";
+    }
+
+    private static boolean[] mask(final String[] values, @Nullable final Set<String> accepted) {
+        final boolean[] mask = new boolean[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            mask[i] = accepted == null || accepted.contains(values[i]);
+        }
+        return mask;
+    }
+
+    private static void writeStrings(final DataOutputStream out, final String[] strings)
+            throws IOException {
+        out.writeInt(strings.length);
+        for (final String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static String[] readStrings(final DataInputStream in) throws IOException {
+        final String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; ++i) {
+            strings[i] = in.readUTF();
+        }
+        return strings;
+    }
+
+    private static void writeInts(final DataOutputStream out, final int[] ints)
+            throws IOException {
+        out.writeInt(ints.length);
+        for (final int value : ints) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(final DataInputStream in) throws IOException {
+        final int[] ints = new int[in.readInt()];
+        for (int i = 0; i < ints.length; ++i) {
+            ints[i] = in.readInt();
+        }
+        return ints;
+    }
+
+    /**
+     * The type of a mapping, i.e., the kind of items it relates.
+     */
+    public enum Type {
+
+        CONCEPTUALIZATION,
+
+        SEMANTIC_CLASS,
+
+        SEMANTIC_ROLE,
+
+        OTHER
+
+    }
+
+    /**
+     * Collects mappings and their items, building a {@link MappingGraph}. The same mapping can be
+     * added multiple times, in which case its items and sources are merged and its type is the
+     * one first supplied. At most 64 distinct sources are supported. Instances are not
+     * thread-safe.
+     */
+    public static final class Builder {
+
+        private final Function<URI, String> resourceFunction;
+
+        private final Map<String, MappingRecord> mappings;
+
+        private Builder(final Function<URI, String> resourceFunction) {
+            this.resourceFunction = resourceFunction;
+            this.mappings = Maps.newHashMap();
+        }
+
+        public Builder add(final URI mapping, final Type type, final String source,
+                final Iterable<URI> items) {
+            MappingRecord record = this.mappings.get(mapping.stringValue());
+            if (record == null) {
+                record = new MappingRecord(type);
+                this.mappings.put(mapping.stringValue(), record);
+            }
+            record.sources.add(source);
+            for (final URI item : items) {
+                record.items.add(item.stringValue());
+            }
+            return this;
+        }
+
+        /**
+         * Adds all the mappings of the model supplied, i.e., the URIs with some
+         * {@code pmo:item}, tagging them with the source specified and with the type derived
+         * from their {@code rdf:type}.
+         */
+        public Builder add(final String source, final QuadModel model) {
+            for (final Resource mapping : model.filter(null, PMO.ITEM, null).subjects()) {
+                if (!(mapping instanceof URI)) {
+                    continue;
+                }
+                final Type type;
+                if (model.contains(mapping, RDF.TYPE, PMO.CONCEPTUALIZATION_MAPPING)) {
+                    type = Type.CONCEPTUALIZATION;
+                } else if (model.contains(mapping, RDF.TYPE, PMO.SEMANTIC_CLASS_MAPPING)) {
+                    type = Type.SEMANTIC_CLASS;
+                } else if (model.contains(mapping, RDF.TYPE, PMO.SEMANTIC_ROLE_MAPPING)) {
+                    type = Type.SEMANTIC_ROLE;
+                } else {
+                    type = Type.OTHER;
+                }
+                final List<URI> items = Lists.newArrayList();
+                for (final Statement stmt : model.filter(mapping, PMO.ITEM, null)) {
+                    if (stmt.getObject() instanceof URI) {
+                        items.add((URI) stmt.getObject());
+                    }
+                }
+                add((URI) mapping, type, source, items);
+            }
+            return this;
+        }
+
+        public MappingGraph build() {
+
+            // Assign IDs to mappings, items, resources and sources
+            final String[] mappings = this.mappings.keySet().toArray(new String[0]);
+            Arrays.sort(mappings);
+            final Set<String> itemSet = Sets.newHashSet();
+            for (final MappingRecord record : this.mappings.values()) {
+                itemSet.addAll(record.items);
+            }
+            final String[] items = itemSet.toArray(new String[0]);
+            Arrays.sort(items);
+            final Map<String, Integer> itemIDs = Maps.newHashMapWithExpectedSize(items.length);
+            for (int i = 0; i < items.length; ++i) {
+                itemIDs.put(items[i], i);
+            }
+            final List<String> resources = Lists.newArrayList();
+            final int[] itemResources = new int[items.length];
+            for (int i = 0; i < items.length; ++i) {
+                final String resource = this.resourceFunction.apply(FACTORY.createURI(items[i]));
+                itemResources[i] = index(resources, resource == null ? "" : resource);
+            }
+            final List<String> sources = Lists.newArrayList();
+
+            // Fill mapping -> items adjacency arrays, counting the mappings of each item
+            final byte[] mappingTypes = new byte[mappings.length];
+            final long[] mappingSources = new long[mappings.length];
+            final int[] mappingOffsets = new int[mappings.length + 1];
+            final int[] itemOffsets = new int[items.length + 1];
+            int numEdges = 0;
+            for (int m = 0; m < mappings.length; ++m) {
+                numEdges += this.mappings.get(mappings[m]).items.size();
+            }
+            final int[] mappingItems = new int[numEdges];
+            int offset = 0;
+            for (int m = 0; m < mappings.length; ++m) {
+                final MappingRecord record = this.mappings.get(mappings[m]);
+                mappingTypes[m] = (byte) record.type.ordinal();
+                for (final String source : record.sources) {
+                    final int index = index(sources, source);
+                    Preconditions.checkState(index < MAX_SOURCES, "More than %s mapping sources",
+                            MAX_SOURCES);
+                    mappingSources[m] |= 1L << index;
+                }
+                mappingOffsets[m] = offset;
+                for (final String item : record.items) {
+                    final int i = itemIDs.get(item);
+                    mappingItems[offset++] = i;
+                    ++itemOffsets[i + 1];
+                }
+            }
+            mappingOffsets[mappings.length] = offset;
+
+            // Fill item -> mappings adjacency arrays from the counts (prefix sums)
+            for (int i = 0; i < items.length; ++i) {
+                itemOffsets[i + 1] += itemOffsets[i];
+            }
+            final int[] itemMappings = new int[numEdges];
+            final int[] itemFill = Arrays.copyOf(itemOffsets, items.length);
+            for (int m = 0; m < mappings.length; ++m) {
+                for (int k = mappingOffsets[m]; k < mappingOffsets[m + 1]; ++k) {
+                    itemMappings[itemFill[mappingItems[k]]++] = m;
+                }
+            }
+
+            return new MappingGraph(resources.toArray(new String[0]),
+                    sources.toArray(new String[0]), items, itemResources, itemOffsets,
+                    itemMappings, mappings, mappingTypes, mappingSources, mappingOffsets,
+                    mappingItems);
+        }
+
+        private static int index(final List<String> list, final String value) {
+            int index = list.indexOf(value);
+            if (index < 0) {
+                index = list.size();
+                list.add(value);
+            }
+            return index;
+        }
+
+    }
+
+    private static final class MappingRecord {
+
+        final Type type;
+
+        final Set<String> sources;
+
+        final Set<String> items;
+
+        MappingRecord(final Type type) {
+            this.type = type;
+            this.sources = Sets.newTreeSet();
+            this.items = Sets.newLinkedHashSet();
+        }
+
+    }
+
+}
@@ -0,0 +1,194 @@
+package eu.fbk.dkm.premon.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * An {@code OutputStream} producing gzip data, where blocks of input are compressed in parallel.
+ * <p>
+ * Input is split in blocks of fixed size, each one compressed as an independent gzip member by a
+ * pool of threads shared by all the instances and sized to the number of cores. Members are
+ * written in order to the underlying stream: their concatenation is a valid gzip stream (RFC
+ * 1952), readable by {@code gzip}, {@code GZIPInputStream} and the like. Compression ratio is
+ * slightly lower than a single-member stream, as no compression history is shared among blocks.
+ * At most two blocks per core are waiting for or undergoing compression across all the instances
+ * (so that memory stays bounded however many streams are open), after which writes block until
+ * some block is compressed; in addition, an instance buffers at most two compressed blocks per
+ * core, after which writes block until its oldest block is written. Instances are not
+ * thread-safe.
+ * </p>
+ */
+public final class ParallelGzipOutputStream extends OutputStream {
+
+    private static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private static final int NUM_THREADS = Runtime.getRuntime().availableProcessors();
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(NUM_THREADS,
+            new ThreadFactory() {
+
+                private final AtomicInteger counter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable,
+                            "premonitor-gzip-" + this.counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+
+            });
+
+    private static final Semaphore IN_FLIGHT = new Semaphore(2 * NUM_THREADS); // all instances
+
+    private final OutputStream out;
+
+    private final int blockSize;
+
+    private final Deque<Future<byte[]>> pending;
+
+    private byte[] block;
+
+    private int blockLength;
+
+    private boolean empty;
+
+    private boolean closed;
+
+    public ParallelGzipOutputStream(final OutputStream out) {
+        this(out, DEFAULT_BLOCK_SIZE);
+    }
+
+    public ParallelGzipOutputStream(final OutputStream out, final int blockSize) {
+        Preconditions.checkArgument(blockSize > 0);
+        this.out = out;
+        this.blockSize = blockSize;
+        this.pending = new ArrayDeque<>();
+        this.block = new byte[blockSize];
+        this.blockLength = 0;
+        this.empty = true;
+        this.closed = false;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        checkNotClosed();
+        this.block[this.blockLength++] = (byte) b;
+        if (this.blockLength == this.blockSize) {
+            submit();
+        }
+    }
+
+    @Override
+    public void write(final byte[] buffer, int offset, int length) throws IOException {
+        checkNotClosed();
+        while (length > 0) {
+            final int count = Math.min(length, this.blockSize - this.blockLength);
+            System.arraycopy(buffer, offset, this.block, this.blockLength, count);
+            this.blockLength += count;
+            offset += count;
+            length -= count;
+            if (this.blockLength == this.blockSize) {
+                submit();
+            }
+        }
+    }
+
+    /**
+     * Writes the blocks compressed so far to the underlying stream and flushes it; the current,
+     * partial block is not compressed, so that blocks keep their size.
+     */
+    @Override
+    public void flush() throws IOException {
+        checkNotClosed();
+        drain(0);
+        this.out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            if (this.blockLength > 0 || this.empty) {
+                submit(); // an empty member is written for empty input
+            }
+            drain(0);
+        } finally {
+            this.block = null;
+            this.out.close();
+        }
+    }
+
+    private void submit() throws IOException {
+        try {
+            IN_FLIGHT.acquire(); // released by the compressing thread, so it cannot deadlock
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        }
+        final byte[] data = Arrays.copyOf(this.block, this.blockLength);
+        this.blockLength = 0;
+        this.empty = false;
+        try {
+            this.pending.add(EXECUTOR.submit(() -> {
+                try {
+                    return compress(data);
+                } finally {
+                    IN_FLIGHT.release();
+                }
+            }));
+        } catch (final Throwable ex) {
+            IN_FLIGHT.release();
+            throw ex;
+        }
+        drain(2 * NUM_THREADS);
+    }
+
+    private void drain(final int maxPending) throws IOException {
+        while (this.pending.size() > maxPending) {
+            final Future<byte[]> future = this.pending.removeFirst();
+            try {
+                this.out.write(future.get());
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while compressing");
+            } catch (final ExecutionException ex) {
+                throw new IOException("Compression failed: " + ex.getCause().getMessage(),
+                        ex.getCause());
+            }
+        }
+    }
+
+    private void checkNotClosed() throws IOException {
+        if (this.closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private static byte[] compress(final byte[] data) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream stream = new GZIPOutputStream(bytes, 64 * 1024)) {
+            stream.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+}
@@ -0,0 +1,255 @@
+package eu.fbk.dkm.premon.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.fbk.rdfpro.AbstractRDFHandler;
+import eu.fbk.rdfpro.util.QuadModel;
+
+/**
+ * An {@code RDFHandler} collecting received quads in a {@code QuadModel} per graph, without
+ * synchronizing the threads that concurrently emit quads.
+ * <p>
+ * Each thread appends quads to its own per-graph buffers (remembering the last graph used, as
+ * converters tend to emit runs of quads in the same graph). If a {@link TermDictionary} is
+ * supplied, possibly shared among multiple sinks, buffers store quads as triples of integer IDs
+ * taken from it, so that equal terms are stored once and decoded to the same objects in all the
+ * resulting models; otherwise, buffers store the received terms as they are, without interning.
+ * Buffers are merged into the resulting models at {@link #endRDF()}, which may be called
+ * multiple times (later quads are merged in the models already produced). Namespaces are
+ * collected in a separate map, as they have to be applied to all the resulting models. The
+ * numbers of quads and duplicates handled by each thread are logged at merge time and
+ * accumulated in global counters.
+ * </p>
+ */
+public final class QuadModelSink extends AbstractRDFHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QuadModelSink.class);
+
+    private final String name;
+
+    @Nullable
+    private final TermDictionary dictionary;
+
+    private final Map<URI, QuadModel> models;
+
+    private final Map<String, String> namespaces;
+
+    private final List<Buffer> buffers;
+
+    private final ThreadLocal<Buffer> threadBuffer;
+
+    private long numQuads;
+
+    private long numDuplicates;
+
+    public QuadModelSink(final String name) {
+        this(name, null);
+    }
+
+    public QuadModelSink(final String name, @Nullable final TermDictionary dictionary) {
+        this.name = name;
+        this.dictionary = dictionary;
+        this.models = Maps.newHashMap();
+        this.namespaces = new ConcurrentHashMap<>();
+        this.buffers = new CopyOnWriteArrayList<>();
+        this.threadBuffer = ThreadLocal.withInitial(() -> {
+            final Buffer buffer = new Buffer(Thread.currentThread().getName());
+            this.buffers.add(buffer);
+            return buffer;
+        });
+    }
+
+    @Override
+    public void handleNamespace(final String prefix, final String uri) {
+        this.namespaces.put(prefix, uri);
+    }
+
+    @Override
+    public void handleStatement(final Statement stmt) {
+        final Resource context = stmt.getContext();
+        if (context != null && !(context instanceof URI)) {
+            LOGGER.warn("Unexpected non-URI graph: " + context);
+            return;
+        }
+        final TermDictionary dictionary = this.dictionary;
+        if (dictionary == null) {
+            this.threadBuffer.get().add((URI) context, stmt.getSubject(), stmt.getPredicate(),
+                    stmt.getObject());
+        } else {
+            this.threadBuffer.get().add((URI) context, dictionary.encode(stmt.getSubject()),
+                    dictionary.encode(stmt.getPredicate()), dictionary.encode(stmt.getObject()));
+        }
+    }
+
+    @Override
+    public synchronized void endRDF() {
+
+        // Decode the quads buffered by each thread into the per-graph models
+        for (final Buffer buffer : this.buffers) {
+            final Map<URI, Triples> triplesMap;
+            synchronized (buffer) {
+                triplesMap = buffer.triplesMap;
+                buffer.reset();
+            }
+            long numQuads = 0;
+            long numDuplicates = 0;
+            for (final Map.Entry<URI, Triples> entry : triplesMap.entrySet()) {
+                QuadModel model = this.models.get(entry.getKey());
+                if (model == null) {
+                    model = QuadModel.create();
+                    this.models.put(entry.getKey(), model);
+                }
+                final Triples triples = entry.getValue();
+                for (int i = 0; i < triples.size; i += 3) {
+                    final Resource subj;
+                    final URI pred;
+                    final Value obj;
+                    if (triples.terms != null) {
+                        subj = (Resource) triples.terms[i];
+                        pred = (URI) triples.terms[i + 1];
+                        obj = triples.terms[i + 2];
+                    } else {
+                        subj = (Resource) this.dictionary.decode(triples.ids[i]);
+                        pred = (URI) this.dictionary.decode(triples.ids[i + 1]);
+                        obj = this.dictionary.decode(triples.ids[i + 2]);
+                    }
+                    if (!model.add(subj, pred, obj)) {
+                        ++numDuplicates;
+                    }
+                }
+                numQuads += triples.size / 3;
+            }
+            if (numQuads == 0) {
+                continue;
+            }
+            this.numQuads += numQuads;
+            this.numDuplicates += numDuplicates;
+            LOGGER.debug("{}: thread {} handled {} quads ({} duplicates)", this.name,
+                    buffer.thread, numQuads, numDuplicates);
+        }
+    }
+
+    public synchronized Map<URI, QuadModel> getModels() {
+        return this.models;
+    }
+
+    public Map<String, String> getNamespaces() {
+        return ImmutableMap.copyOf(this.namespaces);
+    }
+
+    @Nullable
+    public TermDictionary getDictionary() {
+        return this.dictionary;
+    }
+
+    public synchronized long getNumQuads() {
+        return this.numQuads;
+    }
+
+    public synchronized long getNumDuplicates() {
+        return this.numDuplicates;
+    }
+
+    private static final class Buffer {
+
+        final String thread;
+
+        Map<URI, Triples> triplesMap;
+
+        @Nullable
+        URI lastGraph;
+
+        @Nullable
+        Triples lastTriples;
+
+        Buffer(final String thread) {
+            this.thread = thread;
+            reset();
+        }
+
+        synchronized void add(@Nullable final URI graph, final int subj, final int pred,
+                final int obj) {
+            triples(graph).add(subj, pred, obj);
+        }
+
+        synchronized void add(@Nullable final URI graph, final Value subj, final Value pred,
+                final Value obj) {
+            triples(graph).add(subj, pred, obj);
+        }
+
+        private Triples triples(@Nullable final URI graph) {
+            Triples triples = this.lastTriples;
+            if (triples == null || !(graph == null ? this.lastGraph == null
+                    : graph.equals(this.lastGraph))) {
+                triples = this.triplesMap.get(graph);
+                if (triples == null) {
+                    triples = new Triples();
+                    this.triplesMap.put(graph, triples);
+                }
+                this.lastGraph = graph;
+                this.lastTriples = triples;
+            }
+            return triples;
+        }
+
+        void reset() {
+            this.triplesMap = Maps.newHashMap();
+            this.lastGraph = null;
+            this.lastTriples = null;
+        }
+
+    }
+
+    private static final class Triples {
+
+        @Nullable
+        int[] ids; // if using a dictionary
+
+        @Nullable
+        Value[] terms; // otherwise
+
+        int size;
+
+        void add(final int subj, final int pred, final int obj) {
+            if (this.ids == null) {
+                this.ids = new int[3 * 64];
+            } else if (this.size + 3 > this.ids.length) {
+                this.ids = Arrays.copyOf(this.ids, this.ids.length * 2);
+            }
+            this.ids[this.size] = subj;
+            this.ids[this.size + 1] = pred;
+            this.ids[this.size + 2] = obj;
+            this.size += 3;
+        }
+
+        void add(final Value subj, final Value pred, final Value obj) {
+            if (this.terms == null) {
+                this.terms = new Value[3 * 64];
+            } else if (this.size + 3 > this.terms.length) {
+                this.terms = Arrays.copyOf(this.terms, this.terms.length * 2);
+            }
+            this.terms[this.size] = subj;
+            this.terms[this.size + 1] = pred;
+            this.terms[this.size + 2] = obj;
+            this.size += 3;
+        }
+
+    }
+
+}
@@ -0,0 +1,97 @@
+package eu.fbk.dkm.premon.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openrdf.model.Value;
+
+/**
+ * A thread-safe dictionary mapping RDF terms (URIs, literals, BNodes) to dense integer IDs.
+ * <p>
+ * IDs are assigned in order starting from 0. Besides allowing compact, integer-based storage of
+ * quads, the dictionary acts as an interning table: the term returned by {@link #decode(int)} is
+ * always the first instance encoded for that term, so that equal terms coming from different
+ * converters and graphs end up sharing the same object (and underlying strings). Once all the
+ * terms have been decoded, {@link #clear()} releases the memory of the dictionary, as the
+ * interned terms remain shared by the objects referencing them.
+ * </p>
+ */
+public final class TermDictionary {
+
+    private static final int CHUNK_BITS = 16;
+
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile ConcurrentHashMap<Value, Integer> ids;
+
+    private final AtomicInteger counter;
+
+    private volatile Value[][] chunks;
+
+    public TermDictionary() {
+        this.ids = new ConcurrentHashMap<>();
+        this.counter = new AtomicInteger();
+        this.chunks = new Value[0][];
+    }
+
+    public int encode(final Value term) {
+        final Integer id = this.ids.get(term);
+        if (id != null) {
+            return id;
+        }
+        return this.ids.computeIfAbsent(term, (final Value t) -> {
+            final int newID = this.counter.getAndIncrement();
+            chunk(newID >>> CHUNK_BITS)[newID & CHUNK_MASK] = t;
+            return newID;
+        });
+    }
+
+    public Value decode(final int id) {
+        return this.chunks[id >>> CHUNK_BITS][id & CHUNK_MASK];
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Value> T canonicalize(final T term) {
+        return (T) decode(encode(term));
+    }
+
+    /**
+     * Removes all the terms, releasing the memory of the dictionary. IDs previously returned
+     * become invalid. The method must not be called concurrently with other methods.
+     */
+    public synchronized void clear() {
+        this.ids = new ConcurrentHashMap<>(); // rather than clear(), which keeps the table size
+        this.chunks = new Value[0][];
+        this.counter.set(0);
+    }
+
+    public int size() {
+        return this.counter.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Term dictionary (" + size() + " terms)";
+    }
+
+    private Value[] chunk(final int index) {
+        Value[][] chunks = this.chunks;
+        if (index >= chunks.length || chunks[index] == null) {
+            synchronized (this) {
+                chunks = this.chunks;
+                if (index >= chunks.length) {
+                    chunks = Arrays.copyOf(chunks, Math.max(index + 1, chunks.length * 2));
+                }
+                if (chunks[index] == null) {
+                    chunks[index] = new Value[CHUNK_SIZE];
+                }
+                this.chunks = chunks; // publish
+            }
+        }
+        return chunks[index];
+    }
+
+}
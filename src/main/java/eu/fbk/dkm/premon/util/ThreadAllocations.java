@@ -0,0 +1,144 @@
+package eu.fbk.dkm.premon.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Tracks the bytes allocated by all the threads of the JVM, including worker threads that
+ * terminated in the meanwhile.
+ * <p>
+ * The JVM reports allocated bytes only for live threads, so a figure computed by summing the
+ * counters of live threads at two instants misses the allocations of threads terminated in
+ * between and may even become negative. Threads created via {@link #newThread(Runnable, String)}
+ * (or calling {@link #recordTermination()} as their last action, e.g., from
+ * {@code ForkJoinWorkerThread.onTermination()}) add their final counter to a running total before
+ * terminating, so that {@link #allocatedBytes(Snapshot, Snapshot)} accounts for them. Threads
+ * terminated without recording contribute the counter observed by the last snapshot, hence the
+ * figure is a lower bound but never negative. Memory used is proportional to the number of live
+ * threads.
+ * </p>
+ */
+public final class ThreadAllocations {
+
+    @Nullable
+    private static final com.sun.management.ThreadMXBean THREADS = getThreadMXBean();
+
+    private static final Object LOCK = new Object();
+
+    private static final Set<Long> RECORDED = Sets.newHashSet(); // recorded, maybe still alive
+
+    private static final Map<Long, Long> LAST_SEEN = Maps.newHashMap(); // at last snapshot
+
+    private static long terminatedBytes = 0L;
+
+    private ThreadAllocations() {
+    }
+
+    /**
+     * Returns a thread running the runnable supplied and then recording its allocated bytes.
+     */
+    public static Thread newThread(final Runnable runnable, final String name) {
+        return new Thread(() -> {
+            try {
+                runnable.run();
+            } finally {
+                recordTermination();
+            }
+        }, name);
+    }
+
+    /**
+     * Records the bytes allocated by the calling thread, which must be about to terminate.
+     */
+    public static void recordTermination() {
+        if (THREADS != null) {
+            final long id = Thread.currentThread().getId();
+            final long bytes = THREADS.getThreadAllocatedBytes(id);
+            if (bytes >= 0) {
+                synchronized (LOCK) {
+                    terminatedBytes += bytes;
+                    RECORDED.add(id);
+                    LAST_SEEN.remove(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the allocation counters, or null if not supported by the JVM.
+     */
+    @Nullable
+    public static Snapshot snapshot() {
+        if (THREADS == null) {
+            return null;
+        }
+        synchronized (LOCK) {
+            final long[] ids = THREADS.getAllThreadIds();
+            final long[] bytes = THREADS.getThreadAllocatedBytes(ids);
+            final Set<Long> alive = Sets.newHashSetWithExpectedSize(ids.length);
+            final Map<Long, Long> live = Maps.newHashMapWithExpectedSize(ids.length);
+            long liveBytes = 0L;
+            for (int i = 0; i < ids.length; ++i) {
+                alive.add(ids[i]);
+                if (bytes[i] >= 0 && !RECORDED.contains(ids[i])) {
+                    live.put(ids[i], bytes[i]);
+                    liveBytes += bytes[i];
+                }
+            }
+
+            // Threads gone without recording keep the counter of the last snapshot
+            for (final Map.Entry<Long, Long> entry : LAST_SEEN.entrySet()) {
+                if (!live.containsKey(entry.getKey())) {
+                    terminatedBytes += entry.getValue();
+                }
+            }
+            LAST_SEEN.clear();
+            LAST_SEEN.putAll(live);
+            RECORDED.retainAll(alive);
+            return new Snapshot(terminatedBytes + liveBytes);
+        }
+    }
+
+    /**
+     * Returns the bytes allocated between the two snapshots supplied, -1 if not available.
+     */
+    public static long allocatedBytes(@Nullable final Snapshot from, @Nullable final Snapshot to) {
+        if (from == null || to == null) {
+            return -1;
+        }
+        return Math.max(0, to.totalBytes - from.totalBytes);
+    }
+
+    @Nullable
+    private static com.sun.management.ThreadMXBean getThreadMXBean() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean) threads;
+            if (t.isThreadAllocatedMemorySupported() && t.isThreadAllocatedMemoryEnabled()) {
+                return t;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The bytes allocated by all threads up to an instant, as tracked by this class.
+     */
+    public static final class Snapshot {
+
+        private final long totalBytes;
+
+        Snapshot(final long totalBytes) {
+            this.totalBytes = totalBytes;
+        }
+
+    }
+
+}
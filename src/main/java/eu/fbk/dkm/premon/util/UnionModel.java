@@ -0,0 +1,124 @@
+package eu.fbk.dkm.premon.util;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.DiscreteDomain;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Range;
+import com.google.common.collect.Sets;
+
+import org.openrdf.model.Namespace;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+
+import eu.fbk.rdfpro.util.QuadModel;
+
+/**
+ * A read-only view over the union of multiple {@code QuadModel}s, with no materialization.
+ * <p>
+ * Iteration returns the statements of the first model, followed by the statements of each
+ * subsequent model that are not contained in the preceding models, so that each triple is
+ * returned once even if shared by several models (deduplication is done on the fly by probing
+ * the indexes of the preceding models). The view reflects later changes to the wrapped models.
+ * </p>
+ */
+public final class UnionModel implements Iterable<Statement> {
+
+    private final List<QuadModel> models;
+
+    private UnionModel(final List<QuadModel> models) {
+        this.models = models;
+    }
+
+    public static UnionModel of(final QuadModel model) {
+        return new UnionModel(ImmutableList.of(model));
+    }
+
+    public static UnionModel of(final List<QuadModel> models) {
+        Preconditions.checkArgument(!models.isEmpty(), "No model specified");
+        return new UnionModel(ImmutableList.copyOf(models));
+    }
+
+    /**
+     * Returns the wrapped models, in the order used for iteration and deduplication.
+     *
+     * @return an immutable list of models
+     */
+    public List<QuadModel> getModels() {
+        return this.models;
+    }
+
+    public Set<Namespace> getNamespaces() {
+        final Set<Namespace> namespaces = Sets.newHashSet();
+        for (final QuadModel model : this.models) {
+            namespaces.addAll(model.getNamespaces());
+        }
+        return namespaces;
+    }
+
+    public boolean contains(@Nullable final Resource subj, @Nullable final URI pred,
+            @Nullable final Value obj) {
+        for (final QuadModel model : this.models) {
+            if (model.contains(subj, pred, obj)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Iterable<Statement> filter(@Nullable final Resource subj, @Nullable final URI pred,
+            @Nullable final Value obj) {
+        return () -> iterator(subj, pred, obj);
+    }
+
+    @Override
+    public Iterator<Statement> iterator() {
+        return iterator(null, null, null);
+    }
+
+    public int size() {
+        if (this.models.size() == 1) {
+            return this.models.get(0).size();
+        }
+        return Iterators.size(iterator());
+    }
+
+    @Override
+    public String toString() {
+        return "Union of " + this.models.size() + " models";
+    }
+
+    private Iterator<Statement> iterator(@Nullable final Resource subj, @Nullable final URI pred,
+            @Nullable final Value obj) {
+        if (this.models.size() == 1) {
+            return this.models.get(0).filter(subj, pred, obj).iterator();
+        }
+        return Iterators.concat(Iterators.transform(
+                ContiguousSet.create(Range.closedOpen(0, this.models.size()),
+                        DiscreteDomain.integers()).iterator(),
+                (final Integer i) -> {
+                    final List<QuadModel> preceding = this.models.subList(0, i);
+                    final Iterator<Statement> iterator = this.models.get(i)
+                            .filter(subj, pred, obj).iterator();
+                    return Iterators.filter(iterator, (final Statement stmt) -> {
+                        for (final QuadModel model : preceding) {
+                            if (model.contains(stmt.getSubject(), stmt.getPredicate(),
+                                    stmt.getObject())) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    });
+                }));
+    }
+
+}
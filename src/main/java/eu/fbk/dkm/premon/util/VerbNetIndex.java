@@ -0,0 +1,182 @@
+package eu.fbk.dkm.premon.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the class and subclass IDs defined in a VerbNet folder (e.g., "give-13.1-1").
+ * <p>
+ * Indexes are obtained via {@link #forPath(File, File)}, which builds the index for a folder at
+ * most once per run (concurrent callers may both scan the folder, but only one index is kept) and
+ * shares it among all the converters needing it. Building an index requires a streaming scan of
+ * the VerbNet XML files, whose result is persisted in the cache folder supplied (if any) under a
+ * key derived from the names, sizes and modification times of the XML files, so that subsequent
+ * runs on unchanged data just list the folder and read the cached ID list.
+ * </p>
+ */
+public final class VerbNetIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VerbNetIndex.class);
+
+    private static final Map<File, VerbNetIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private final File folder;
+
+    private final List<String> classIDs;
+
+    private VerbNetIndex(final File folder, final List<String> classIDs) {
+        this.folder = folder;
+        this.classIDs = ImmutableList.copyOf(classIDs);
+    }
+
+    /**
+     * Returns the index for the folder specified, reusing the one already built in this run (if
+     * any) without involving the cache.
+     */
+    public static VerbNetIndex forPath(final File folder) {
+        return forPath(folder, null);
+    }
+
+    /**
+     * Returns the index for the folder specified, building it if not already available in this
+     * run, possibly reading it from or saving it to the cache folder supplied.
+     */
+    public static VerbNetIndex forPath(final File folder, @Nullable final File cacheFolder) {
+        File key;
+        try {
+            key = folder.getCanonicalFile();
+        } catch (final IOException ex) {
+            key = folder.getAbsoluteFile();
+        }
+        final VerbNetIndex index = INDEXES.get(key);
+        if (index != null) {
+            return index;
+        }
+        final VerbNetIndex newIndex = load(key, cacheFolder); // not holding a map lock
+        final VerbNetIndex oldIndex = INDEXES.putIfAbsent(key, newIndex);
+        return oldIndex != null ? oldIndex : newIndex;
+    }
+
+    public File getFolder() {
+        return this.folder;
+    }
+
+    /**
+     * Returns the IDs of all the VNCLASS and VNSUBCLASS elements, in file and document order.
+     *
+     * @return an immutable list of class IDs
+     */
+    public List<String> getClassIDs() {
+        return this.classIDs;
+    }
+
+    @Override
+    public String toString() {
+        return "VerbNet index for " + this.folder + " (" + this.classIDs.size() + " IDs)";
+    }
+
+    private static VerbNetIndex load(final File folder, @Nullable final File cacheFolder) {
+
+        final long ts = System.currentTimeMillis();
+        final List<File> files = folder.isDirectory() ? Ordering.<File>natural().sortedCopy(
+                Files.fileTreeTraverser().preOrderTraversal(folder)
+                        .filter(f -> !f.isDirectory() && f.getName().endsWith(".xml")))
+                : ImmutableList.of();
+
+        // Lookup the cached index, if available and computed on the same (unmodified) files
+        final File cacheFile = cacheFolder == null ? null : getCacheFile(cacheFolder, folder,
+                files);
+        if (cacheFile != null && cacheFile.exists()) {
+            try {
+                final VerbNetIndex index = new VerbNetIndex(folder,
+                        Files.readLines(cacheFile, StandardCharsets.UTF_8));
+                LOGGER.info("Loaded {} VerbNet IDs for {} from {} in {} ms",
+                        index.classIDs.size(), folder, cacheFile,
+                        System.currentTimeMillis() - ts);
+                return index;
+            } catch (final IOException ex) {
+                LOGGER.warn("Could not read cached VerbNet index " + cacheFile, ex);
+            }
+        }
+
+        // Scan the XML files, collecting class and subclass IDs
+        LOGGER.info("Loading VerbNet");
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        final ImmutableList.Builder<String> builder = ImmutableList.builder();
+        for (final File file : files) {
+            LOGGER.debug("Processing {} ...", file);
+            try (InputStream in = Files.asByteSource(file).openBufferedStream()) {
+                final XMLStreamReader reader = factory.createXMLStreamReader(in);
+                try {
+                    while (reader.hasNext()) {
+                        if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                            final String name = reader.getLocalName();
+                            if (name.equals("VNCLASS") || name.equals("VNSUBCLASS")) {
+                                final String id = reader.getAttributeValue(null, "ID");
+                                builder.add(id != null ? id : "");
+                            }
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            } catch (final Exception ex) {
+                LOGGER.error("Could not scan VerbNet file " + file, ex);
+            }
+        }
+        final VerbNetIndex index = new VerbNetIndex(folder, builder.build());
+        LOGGER.info("Indexed {} VerbNet IDs from {} files in {} in {} ms",
+                index.classIDs.size(), files.size(), folder, System.currentTimeMillis() - ts);
+
+        // Persist the index, writing to a temporary file first to avoid partial cache entries
+        if (cacheFile != null) {
+            try {
+                Files.createParentDirs(cacheFile);
+                final File tmpFile = new File(cacheFile.getPath() + ".tmp");
+                Files.write(Joiner.on('\n').join(index.classIDs), tmpFile,
+                        StandardCharsets.UTF_8);
+                if (!tmpFile.renameTo(cacheFile)) {
+                    throw new IOException("Could not rename " + tmpFile + " to " + cacheFile);
+                }
+            } catch (final IOException ex) {
+                LOGGER.warn("Could not cache VerbNet index in " + cacheFile, ex);
+            }
+        }
+        return index;
+    }
+
+    private static File getCacheFile(final File cacheFolder, final File folder,
+            final List<File> files) {
+        final Hasher hasher = Hashing.murmur3_128().newHasher();
+        final int prefixLength = folder.getPath().length();
+        for (final File file : files) {
+            hasher.putString(file.getPath().substring(prefixLength), StandardCharsets.UTF_8);
+            hasher.putLong(file.length());
+            hasher.putLong(file.lastModified());
+        }
+        return new File(cacheFolder, "verbnet-" + hasher.hash() + ".ids");
+    }
+
+}
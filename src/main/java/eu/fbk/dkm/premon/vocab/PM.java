@@ -39,6 +39,9 @@ public final class PM {
     /** Class pm:tbox. */
     public static final URI TBOX = createURI("tbox");
 
+    /** Class pm:closure. */
+    public static final URI CLOSURE = createURI("closure");
+
     // Utility methods
 
     private static URI createURI(final String localName) {
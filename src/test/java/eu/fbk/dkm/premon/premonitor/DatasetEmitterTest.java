@@ -0,0 +1,89 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.rio.RDFHandler;
+
+import eu.fbk.dkm.premon.vocab.PM;
+import eu.fbk.dkm.premon.vocab.PMO;
+import eu.fbk.rdfpro.RDFHandlers;
+import eu.fbk.rdfpro.util.Statements;
+
+public class DatasetEmitterTest {
+
+    private static final String[] FORMATS = new String[] { "trig", "tql", "ttl", "nq" };
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testGzipOutputMatchesRdfpro() throws Exception {
+        final List<Statement> stmts = statements();
+        for (final String format : FORMATS) {
+            final File gzipFile = new File(this.folder.getRoot(), "gzip." + format + ".gz");
+            final File plainFile = new File(this.folder.getRoot(), "plain." + format);
+            write(DatasetEmitter.write(gzipFile.getPath()), stmts);
+            write(RDFHandlers.write(DatasetEmitter.newWriterConfig(), 1000, plainFile.getPath()),
+                    stmts);
+            final byte[] expected = Files.toByteArray(plainFile);
+            final byte[] actual;
+            try (InputStream in = new GZIPInputStream(new FileInputStream(gzipFile))) {
+                actual = ByteStreams.toByteArray(in);
+            }
+            Assert.assertTrue(format, expected.length > 0);
+            Assert.assertArrayEquals(format, expected, actual);
+        }
+    }
+
+    private static void write(final RDFHandler handler, final List<Statement> stmts)
+            throws Exception {
+        try {
+            handler.startRDF();
+            handler.handleNamespace("pm", PM.NAMESPACE);
+            handler.handleNamespace("pmo", PMO.NAMESPACE);
+            handler.handleNamespace("rdfs", RDFS.NAMESPACE);
+            for (final Statement stmt : stmts) {
+                handler.handleStatement(stmt);
+            }
+            handler.endRDF();
+        } finally {
+            if (handler instanceof AutoCloseable) {
+                ((AutoCloseable) handler).close();
+            }
+        }
+    }
+
+    private static List<Statement> statements() {
+        final ValueFactory vf = Statements.VALUE_FACTORY;
+        final ImmutableList.Builder<Statement> builder = ImmutableList.builder();
+        for (int i = 0; i < 5000; ++i) {
+            final URI subject = vf.createURI(PM.NAMESPACE + "item-" + i);
+            final URI graph = i % 2 == 0 ? PM.ENTRIES
+                    : vf.createURI(PM.NAMESPACE + "pb17");
+            builder.add(vf.createStatement(subject, RDF.TYPE, PMO.SEMANTIC_CLASS, graph));
+            builder.add(vf.createStatement(subject, RDFS.LABEL,
+                    vf.createLiteral("item \"" + i + "\"\n", "en"), graph));
+            builder.add(vf.createStatement(subject, RDFS.SEEALSO, vf.createBNode("b" + i),
+                    graph));
+        }
+        return builder.build();
+    }
+
+}
@@ -0,0 +1,82 @@
+package eu.fbk.dkm.premon.premonitor;
+
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SourceMatcherTest {
+
+    private static final List<String> KEYS = ImmutableList.of("pb17", "pb", "nb10", "vn32",
+            "vn3", "fn15", "fn1", "wn31", "sl", "semlink", "pm", "a");
+
+    private static final String[] FRAGMENTS = new String[] { "pb17", "pb", "pb1", "nb10",
+            "nb", "vn32", "vn3", "vn", "fn15", "fn1", "fn", "wn31", "sl", "semlink", "sem",
+            "pm", "a", "abandon", "01", "-", "-", "/", "/", "_", "#", "." };
+
+    @Test
+    public void testMatchesAsRegexes() {
+        final SourceMatcher matcher = new SourceMatcher(KEYS);
+        final Random random = new Random(13);
+        for (int n = 0; n < 20000; ++n) {
+            final StringBuilder builder = new StringBuilder("http://premon.fbk.eu/resource/");
+            for (int i = random.nextInt(8); i >= 0; --i) {
+                builder.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            final String uri = builder.toString();
+            Assert.assertEquals(uri, matchAllRegex(uri), matcher.matchAll(uri));
+            Assert.assertEquals(uri, matchRegex(uri), matcher.match(uri));
+        }
+    }
+
+    @Test
+    public void testMatches() {
+        final SourceMatcher matcher = new SourceMatcher(KEYS);
+        Assert.assertEquals(KEYS.indexOf("pb17"),
+                matcher.match("http://premon.fbk.eu/resource/pb17-abandon_01"));
+        Assert.assertEquals(KEYS.indexOf("fn15"),
+                matcher.match("http://premon.fbk.eu/resource/fn15-abandonment"));
+        Assert.assertEquals(-1, matcher.match("http://premon.fbk.eu/resource/pb17"));
+        Assert.assertEquals(-1, matcher.match("http://premon.fbk.eu/resource/xpb17-abandon"));
+        Assert.assertEquals(1L << KEYS.indexOf("pm") | 1L << KEYS.indexOf("vn32"),
+                matcher.matchAll("http://premon.fbk.eu/resource/pm-vn32-give_13_1"));
+        Assert.assertEquals(0L, matcher.matchAll(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyKeys() {
+        final List<String> keys = Lists.newArrayList();
+        for (int i = 0; i < 65; ++i) {
+            keys.add("k" + i);
+        }
+        new SourceMatcher(keys);
+    }
+
+    // Previous matching logic: one regular expression per key
+    private static long matchAllRegex(final String string) {
+        long mask = 0L;
+        for (int i = 0; i < KEYS.size(); ++i) {
+            if (Pattern.compile("[-/]" + Pattern.quote(KEYS.get(i)) + "-").matcher(string)
+                    .find()) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    private static int matchRegex(final String string) {
+        for (int i = 0; i < KEYS.size(); ++i) {
+            if (Pattern.compile("[-/]" + Pattern.quote(KEYS.get(i)) + "-").matcher(string)
+                    .find()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
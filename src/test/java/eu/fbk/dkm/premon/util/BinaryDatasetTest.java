@@ -0,0 +1,118 @@
+package eu.fbk.dkm.premon.util;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.Namespace;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+public class BinaryDatasetTest {
+
+    private static final ValueFactoryImpl FACTORY = ValueFactoryImpl.getInstance();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+
+        // Generate statements over URIs (some non-ASCII), literals and BNodes, in 3 graphs
+        final List<Value> terms = Lists.newArrayList();
+        for (int i = 0; i < 300; ++i) {
+            terms.add(FACTORY.createURI("http://example.org/" + (i % 7 == 0 ? "é" : "") + i));
+        }
+        for (int i = 0; i < 50; ++i) {
+            terms.add(i % 3 == 0 ? FACTORY.createLiteral("label " + i, "en")
+                    : FACTORY.createLiteral("label " + i));
+        }
+        for (int i = 0; i < 20; ++i) {
+            terms.add(FACTORY.createLiteral(Integer.toString(i),
+                    FACTORY.createURI("http://www.w3.org/2001/XMLSchema#int")));
+        }
+        for (int i = 0; i < 10; ++i) {
+            terms.add(FACTORY.createBNode("b" + i));
+        }
+        final Random random = new Random(3);
+        final Set<List<Value>> quads = Sets.newHashSet();
+        final File file = this.folder.newFile("dataset.pmb");
+        final BinaryDatasetWriter writer = new BinaryDatasetWriter(file);
+        writer.startRDF();
+        writer.handleNamespace("ex", "http://example.org/");
+        while (quads.size() < 10000) {
+            final Value subj = terms.get(random.nextInt(terms.size()));
+            if (subj instanceof Resource) {
+                final Statement stmt = FACTORY.createStatement((Resource) subj,
+                        (URI) terms.get(random.nextInt(5)), terms.get(random.nextInt(terms.size())),
+                        random.nextInt(3) == 0 ? null : (URI) terms.get(random.nextInt(3)));
+                if (quads.add(quad(stmt))) {
+                    writer.handleStatement(stmt);
+                }
+            }
+        }
+        writer.endRDF();
+
+        final BinaryDataset dataset = BinaryDataset.open(file);
+        final List<Namespace> namespaces = dataset.getNamespaces();
+        Assert.assertEquals(1, namespaces.size());
+        Assert.assertEquals("ex", namespaces.get(0).getPrefix());
+        Assert.assertEquals("http://example.org/", namespaces.get(0).getName());
+        Assert.assertEquals(quads.size(), dataset.size());
+        Assert.assertEquals(3, dataset.getGraphs().size());
+
+        // Terms are mapped to their IDs and back
+        for (int i = 0; i < dataset.getNumTerms(); ++i) {
+            Assert.assertEquals(i, dataset.lookup(dataset.getTerm(i)));
+        }
+        Assert.assertEquals(-1, dataset.lookup(FACTORY.createURI("http://example.org/none")));
+
+        // All the patterns return the same statements of a scan (null context = any graph)
+        final List<List<Value>> quadList = Lists.newArrayList(quads);
+        for (int n = 0; n < 1000; ++n) {
+            final List<Value> quad = quadList.get(random.nextInt(quadList.size()));
+            final int pattern = n % 16;
+            final Resource subj = (pattern & 1) != 0 ? (Resource) quad.get(0) : null;
+            final URI pred = (pattern & 2) != 0 ? (URI) quad.get(1) : null;
+            final Value obj = (pattern & 4) != 0 ? quad.get(2) : null;
+            final Resource ctx = (pattern & 8) != 0 ? (Resource) quad.get(3) : null;
+            final Set<List<Value>> expected = Sets.newHashSet();
+            for (final List<Value> q : quads) {
+                if ((subj == null || subj.equals(q.get(0)))
+                        && (pred == null || pred.equals(q.get(1)))
+                        && (obj == null || obj.equals(q.get(2)))
+                        && (ctx == null || ctx.equals(q.get(3)))) {
+                    expected.add(q);
+                }
+            }
+            final List<List<Value>> actual = Lists.newArrayList();
+            for (final Statement stmt : dataset.filter(subj, pred, obj, ctx)) {
+                actual.add(quad(stmt));
+            }
+            Assert.assertEquals(expected.size(), actual.size());
+            Assert.assertEquals(expected, Sets.newHashSet(actual));
+            Assert.assertEquals(expected.size(), dataset.count(subj, pred, obj, ctx));
+        }
+        Assert.assertEquals(0, dataset.count(FACTORY.createURI("http://example.org/none"), null,
+                null, null));
+    }
+
+    // Statement.equals() ignores the context, so quads are compared as lists
+    private static List<Value> quad(final Statement stmt) {
+        return Arrays.asList(stmt.getSubject(), stmt.getPredicate(), stmt.getObject(),
+                stmt.getContext());
+    }
+
+}
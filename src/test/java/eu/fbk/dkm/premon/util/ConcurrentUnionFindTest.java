@@ -0,0 +1,92 @@
+package eu.fbk.dkm.premon.util;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrentUnionFindTest {
+
+    @Test
+    public void testSequential() {
+        final ConcurrentUnionFind uf = new ConcurrentUnionFind(6);
+        Assert.assertEquals(6, uf.size());
+        Assert.assertTrue(uf.union(4, 2));
+        Assert.assertTrue(uf.union(5, 4));
+        Assert.assertFalse(uf.union(2, 5));
+        Assert.assertTrue(uf.union(3, 1));
+        Assert.assertEquals(2, uf.find(5));
+        Assert.assertEquals(1, uf.find(3));
+        Assert.assertEquals(0, uf.find(0));
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        final int size = 200000;
+        final int[][] edges = new int[150000][];
+        final Random random = new Random(11);
+        for (int i = 0; i < edges.length; ++i) {
+            edges[i] = new int[] { random.nextInt(size), random.nextInt(size) };
+        }
+
+        // Reference partition, with the smallest element of each set as representative
+        final int[] parents = new int[size];
+        for (int i = 0; i < size; ++i) {
+            parents[i] = i;
+        }
+        int numUnions = 0;
+        for (final int[] edge : edges) {
+            final int root1 = find(parents, edge[0]);
+            final int root2 = find(parents, edge[1]);
+            if (root1 != root2) {
+                parents[Math.max(root1, root2)] = Math.min(root1, root2);
+                ++numUnions;
+            }
+        }
+
+        final ConcurrentUnionFind uf = new ConcurrentUnionFind(size);
+        final AtomicInteger counter = new AtomicInteger();
+        final int numThreads = 4;
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            final List<Future<?>> futures = Lists.newArrayList();
+            for (int t = 0; t < numThreads; ++t) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = thread; i < edges.length; i += numThreads) {
+                        if (uf.union(edges[i][0], edges[i][1])) {
+                            counter.incrementAndGet();
+                        }
+                        uf.find(edges[(i * 7) % edges.length][0]);
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(numUnions, counter.get());
+        for (int i = 0; i < size; ++i) {
+            Assert.assertEquals(find(parents, i), uf.find(i));
+        }
+    }
+
+    private static int find(final int[] parents, final int element) {
+        int root = element;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+        return root;
+    }
+
+}
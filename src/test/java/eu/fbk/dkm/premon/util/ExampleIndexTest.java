@@ -0,0 +1,116 @@
+package eu.fbk.dkm.premon.util;
+
+import java.io.File;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+public class ExampleIndexTest {
+
+    private static final ValueFactoryImpl FACTORY = ValueFactoryImpl.getInstance();
+
+    private static final String NS = "http://premon.fbk.eu/resource/";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testTokenize() {
+        Assert.assertEquals(ImmutableList.of("he", "gave", "up", "2", "times", "élan"),
+                ExampleIndex.tokenize("  He gave-up (2 times), élan!"));
+        Assert.assertEquals(ImmutableList.of(), ExampleIndex.tokenize(" ,.- "));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+
+        final URI give = uri("pb17-give.01");
+        final URI abandon = uri("pb17-abandon.01");
+        final URI giveUp = uri("pb17-give.08");
+        final ExampleIndex.Builder builder = ExampleIndex.builder();
+        builder.add(uri("ex1"), "pb17", "John gave Mary a book.", ImmutableList.of("gave"),
+                ImmutableMap.of(NS + "ex1-as", ImmutableList.of(give)));
+        builder.add(uri("ex2"), "pb17", "He gave up smoking, he gave up everything.",
+                ImmutableList.of("gave up"), ImmutableMap.of(NS + "ex2-as",
+                        ImmutableList.of(giveUp), NS + "ex2-as2", ImmutableList.of(abandon)));
+        builder.add(uri("ex3"), "nb10", "The gift was given to Mary.", ImmutableList.of(),
+                ImmutableMap.of("", ImmutableList.of(give)));
+        for (int i = 0; i < 2000; ++i) {
+            builder.add(uri("filler" + i), "fn15", "Filler sentence number " + i + ".",
+                    ImmutableList.of("number"), ImmutableMap.<String, List<URI>>of());
+        }
+        Assert.assertEquals(2003, builder.size());
+        final File file = this.folder.newFile("examples.pmx");
+        builder.write(file);
+
+        final ExampleIndex index = ExampleIndex.open(file);
+        Assert.assertEquals(2003, index.size());
+
+        // Hits store all the data of their examples
+        final List<ExampleIndex.Hit> hits = index.search("gave", null, null, 10);
+        Assert.assertEquals(2, hits.size());
+        Assert.assertEquals(uri("ex2"), hits.get(0).getExample()); // higher term frequency
+        Assert.assertEquals(uri("ex1"), hits.get(1).getExample());
+        Assert.assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+        Assert.assertEquals("pb17", hits.get(0).getResource());
+        Assert.assertEquals("He gave up smoking, he gave up everything.", hits.get(0).getText());
+        Assert.assertEquals(ImmutableSet.of(uri("ex2-as"), uri("ex2-as2")),
+                ImmutableSet.copyOf(hits.get(0).getAnnotationSets()));
+        Assert.assertEquals(ImmutableSet.of(giveUp, abandon),
+                ImmutableSet.copyOf(hits.get(0).getConcepts()));
+
+        // Text, anchor and concept conditions are conjunctive
+        Assert.assertEquals(ImmutableList.of(uri("ex1")),
+                examples(index.search("gave Mary", null, null, 10)));
+        Assert.assertEquals(ImmutableList.of(uri("ex2")),
+                examples(index.search(null, "up", null, 10)));
+        Assert.assertEquals(ImmutableList.of(uri("ex1"), uri("ex3")),
+                examples(index.search(null, null, ImmutableList.of(give), 10)));
+        Assert.assertEquals(ImmutableList.of(uri("ex1"), uri("ex3")),
+                examples(index.search("mary", null, ImmutableList.of(give), 10)));
+        Assert.assertEquals(ImmutableList.of(uri("ex1")),
+                examples(index.search("book", "gave", ImmutableList.of(give), 10)));
+        Assert.assertTrue(index.search("book", "gave", ImmutableList.of(abandon), 10).isEmpty());
+        Assert.assertTrue(index.search("missing", null, null, 10).isEmpty());
+        Assert.assertTrue(index.search(null, null, null, 10).isEmpty());
+
+        // Only the annotation sets with the concepts searched are returned
+        final ExampleIndex.Hit hit = index.search(null, null, ImmutableList.of(abandon), 10)
+                .get(0);
+        Assert.assertEquals(ImmutableList.of(uri("ex2-as2")), hit.getAnnotationSets());
+        Assert.assertEquals(ImmutableList.of(),
+                index.search("gift", null, null, 10).get(0).getAnnotationSets());
+
+        // Top k selection, with ties broken by example order
+        final List<ExampleIndex.Hit> fillers = index.search("filler", "number", null, 5);
+        Assert.assertEquals(5, fillers.size());
+        for (int i = 0; i < 5; ++i) {
+            Assert.assertEquals(uri("filler" + i), fillers.get(i).getExample());
+        }
+        Assert.assertEquals(ImmutableList.of(uri("filler1234")),
+                examples(index.search("sentence 1234", null, null, 5)));
+        Assert.assertTrue(index.search("filler", null, null, 0).isEmpty());
+    }
+
+    private static List<URI> examples(final List<ExampleIndex.Hit> hits) {
+        final ImmutableList.Builder<URI> builder = ImmutableList.builder();
+        for (final ExampleIndex.Hit hit : hits) {
+            builder.add(hit.getExample());
+        }
+        return builder.build();
+    }
+
+    private static URI uri(final String localName) {
+        return FACTORY.createURI(NS + localName);
+    }
+
+}
@@ -0,0 +1,68 @@
+package eu.fbk.dkm.premon.util;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HyperLogLogTest {
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    @Test
+    public void testExactBelowThreshold() {
+        final HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 1000; ++i) {
+            sketch.add(hash(i));
+            sketch.add(hash(i));
+        }
+        Assert.assertEquals(1000, sketch.count());
+        Assert.assertEquals(0.0, sketch.getRelativeError(), 0.0);
+    }
+
+    @Test
+    public void testEstimate() {
+        for (final int n : new int[] { 5000, 50000, 1000000 }) {
+            final HyperLogLog sketch = new HyperLogLog();
+            for (int i = 0; i < n; ++i) {
+                sketch.add(hash(i));
+            }
+            final double error = Math.abs(sketch.count() - n) / (double) n;
+            Assert.assertTrue(n + ": " + sketch.count(), error < 4 * sketch.getRelativeError());
+            Assert.assertTrue(sketch.getRelativeError() > 0.0);
+        }
+    }
+
+    @Test
+    public void testMerge() {
+        final HyperLogLog all = new HyperLogLog();
+        final HyperLogLog large = new HyperLogLog();
+        final HyperLogLog small = new HyperLogLog();
+        for (int i = 0; i < 100000; ++i) {
+            all.add(hash(i));
+            large.add(hash(i));
+        }
+        for (int i = 99900; i < 100500; ++i) {
+            all.add(hash(i));
+            small.add(hash(i));
+        }
+        final HyperLogLog merged = new HyperLogLog();
+        merged.merge(small);
+        Assert.assertEquals(600, merged.count());
+        merged.merge(large);
+        Assert.assertEquals(all.count(), merged.count());
+        small.merge(large);
+        Assert.assertEquals(all.count(), small.count());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPrecision() {
+        new HyperLogLog(3);
+    }
+
+    private static long hash(final int value) {
+        return HASH.hashInt(value).asLong();
+    }
+
+}
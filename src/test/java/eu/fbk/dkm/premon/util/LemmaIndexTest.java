@@ -0,0 +1,96 @@
+package eu.fbk.dkm.premon.util;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.ValueFactoryImpl;
+
+public class LemmaIndexTest {
+
+    private static final ValueFactoryImpl FACTORY = ValueFactoryImpl.getInstance();
+
+    private static final String NS = "http://premon.fbk.eu/resource/";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+
+        // Index some lemmas with the same prefix, with multiple POS and resources
+        final LemmaIndex.Builder builder = LemmaIndex.builder();
+        final Map<String, Set<LemmaIndex.Match>> expected = Maps.newHashMap();
+        final String[] lemmas = new String[] { "give", "give_up", "give_in", "gift", "giver",
+                "abandon", "élan", "run" };
+        final String[] poss = new String[] { "verb", "noun" };
+        final String[] resources = new String[] { "pb17", "vn32", "fn15" };
+        for (int i = 0; i < lemmas.length; ++i) {
+            for (int j = 0; j <= i % poss.length; ++j) {
+                for (int k = 0; k <= (i + j) % resources.length; ++k) {
+                    final URI entry = uri("l-" + lemmas[i] + "-" + poss[j]);
+                    final URI concept = uri(resources[k] + "-" + lemmas[i] + "_" + j);
+                    builder.add(lemmas[i], poss[j], entry, resources[k], concept);
+                    builder.add(lemmas[i], poss[j], entry, resources[k], concept); // dup
+                    final LemmaIndex.Match match = new LemmaIndex.Match(lemmas[i], poss[j],
+                            entry, resources[k], concept);
+                    expected.computeIfAbsent(lemmas[i] + "/" + poss[j],
+                            key -> Sets.newHashSet()).add(match);
+                    expected.computeIfAbsent(lemmas[i], key -> Sets.newHashSet()).add(match);
+                }
+            }
+        }
+        final File file = this.folder.newFile("lemmas.pmi");
+        builder.write(file);
+
+        final LemmaIndex index = LemmaIndex.open(file);
+        Assert.assertEquals(12, index.size());
+        for (final String lemma : lemmas) {
+            Assert.assertEquals(expected.get(lemma), Sets.newHashSet(index.lookup(lemma, null)));
+            Assert.assertEquals(expected.get(lemma).size(), index.lookup(lemma, null).size());
+            for (final String pos : poss) {
+                final Set<LemmaIndex.Match> matches = expected.get(lemma + "/" + pos);
+                final List<LemmaIndex.Match> actual = index.lookup(lemma, pos);
+                Assert.assertEquals(matches == null ? 0 : matches.size(), actual.size());
+                if (matches != null) {
+                    Assert.assertEquals(matches, Sets.newHashSet(actual));
+                }
+            }
+        }
+
+        // Lookups normalize lemmas and POS, and fail on missing entries
+        Assert.assertEquals(expected.get("give_up"),
+                Sets.newHashSet(index.lookup(" Give Up ", null)));
+        Assert.assertEquals(expected.get("give_in/verb"),
+                Sets.newHashSet(index.lookup("give+in", "VERB")));
+        Assert.assertTrue(index.lookup("giv", null).isEmpty());
+        Assert.assertTrue(index.lookup("gives", null).isEmpty());
+        Assert.assertTrue(index.lookup("run", "adjective").isEmpty());
+        Assert.assertTrue(index.lookup("zzz", null).isEmpty());
+        Assert.assertTrue(index.lookup("", null).isEmpty());
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        final File file = this.folder.newFile("empty.pmi");
+        LemmaIndex.builder().write(file);
+        final LemmaIndex index = LemmaIndex.open(file);
+        Assert.assertEquals(0, index.size());
+        Assert.assertTrue(index.lookup("give", null).isEmpty());
+        Assert.assertTrue(index.lookup("give", "verb").isEmpty());
+    }
+
+    private static URI uri(final String localName) {
+        return FACTORY.createURI(NS + localName);
+    }
+
+}
@@ -0,0 +1,60 @@
+package eu.fbk.dkm.premon.util;
+
+import java.util.Random;
+import java.util.Set;
+
+import com.google.common.collect.Sets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongSetTest {
+
+    @Test
+    public void testAddContains() {
+        final LongSet set = new LongSet();
+        final Set<Long> expected = Sets.newHashSet();
+        final Random random = new Random(7);
+        for (int i = 0; i < 100000; ++i) {
+            final long value = i % 1000 == 0 ? 0L : random.nextInt(50000) * 0x100000001L;
+            Assert.assertEquals(expected.add(value), set.add(value));
+        }
+        Assert.assertEquals(expected.size(), set.size());
+        for (long value = -10; value < 60000; ++value) {
+            final long v = value * 0x100000001L;
+            Assert.assertEquals(expected.contains(v), set.contains(v));
+        }
+        final Set<Long> actual = Sets.newHashSet();
+        set.forEach(v -> Assert.assertTrue(actual.add(v)));
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testZero() {
+        final LongSet set = new LongSet();
+        Assert.assertFalse(set.contains(0L));
+        Assert.assertTrue(set.add(0L));
+        Assert.assertFalse(set.add(0L));
+        Assert.assertTrue(set.contains(0L));
+        Assert.assertEquals(1, set.size());
+    }
+
+    @Test
+    public void testAddAll() {
+        final LongSet set1 = new LongSet();
+        final LongSet set2 = new LongSet();
+        final Set<Long> expected = Sets.newHashSet();
+        for (long value = 0; value < 3000; ++value) {
+            set1.add(value);
+            set2.add(-value * 31);
+            expected.add(value);
+            expected.add(-value * 31);
+        }
+        set1.addAll(set2);
+        Assert.assertEquals(expected.size(), set1.size());
+        for (final long value : expected) {
+            Assert.assertTrue(set1.contains(value));
+        }
+    }
+
+}